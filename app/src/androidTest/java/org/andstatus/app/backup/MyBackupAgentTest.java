@@ -13,6 +13,7 @@ import org.andstatus.app.context.MyContextHolder;
 import org.andstatus.app.context.MyStorage;
 import org.andstatus.app.context.TestSuite;
 import org.andstatus.app.context.DemoData;
+import org.andstatus.app.database.DatabaseHolder;
 import org.andstatus.app.service.MyServiceManager;
 import org.andstatus.app.util.FileUtils;
 import org.andstatus.app.util.MyLog;
@@ -95,6 +96,19 @@ public class MyBackupAgentTest {
         MyBackupDescriptor backupDescriptor = backupManager.getBackupAgent().getBackupDescriptor();
         assertEquals(MyBackupDescriptor.BACKUP_SCHEMA_VERSION, backupDescriptor.getBackupSchemaVersion());
         
+        String databaseKey = MyBackupAgent.DATABASE_KEY + "_" + DatabaseHolder.DATABASE_NAME;
+        JSONObject databaseChecksum = jso.getJSONObject(MyBackupDescriptor.KEY_FILES).getJSONObject(databaseKey);
+        long databaseLength = databaseChecksum.getLong(MyBackupDescriptor.KEY_FILE_LENGTH);
+        assertTrue("Database length " + databaseChecksum, databaseLength > 10000);
+        assertTrue("Database checksum " + databaseChecksum,
+                databaseChecksum.getLong(MyBackupDescriptor.KEY_FILE_CRC32) != 0);
+        JSONObject databaseHeader = FileUtils.getJSONObject(new File(backupManager.getDataFolder(),
+                databaseKey + MyBackupDataOutput.HEADER_FILE_SUFFIX));
+        assertTrue("Database is compressed " + databaseHeader,
+                databaseHeader.getString(MyBackupDataOutput.KEY_FILE_EXTENSION).endsWith(".gz"));
+        assertTrue("Database is compressed " + databaseHeader,
+                databaseHeader.getInt(MyBackupDataOutput.KEY_DATA_SIZE) < databaseLength);
+
         File accountHeader = new File(backupManager.getDataFolder(), "account_header.json");
         assertTrue(accountHeader.exists());
         jso = FileUtils.getJSONObject(accountHeader);
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import android.database.MatrixCursor;
+
+import org.andstatus.app.database.MsgTable;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CursorRowTest {
+
+    @Test
+    public void testRowsOfOneCursor() {
+        MatrixCursor cursor = new MatrixCursor(new String[]{MsgTable._ID, MsgTable.BODY, MsgTable.PUBLIC});
+        cursor.addRow(new Object[]{5L, "First body", 1});
+        cursor.addRow(new Object[]{7L, null, 0});
+        CursorRow row = new CursorRow(cursor);
+        assertEquals(1, row.getColumnIndex(MsgTable.BODY));
+        assertEquals(-1, row.getColumnIndex(MsgTable.VIA));
+
+        assertTrue(cursor.moveToNext());
+        assertEquals(5L, row.getLong(MsgTable._ID));
+        assertEquals("First body", row.getString(MsgTable.BODY));
+        assertEquals(true, row.getBoolean(MsgTable.PUBLIC));
+        assertEquals("", row.getString(MsgTable.VIA));
+        assertEquals(0, row.getLong(MsgTable.VIA));
+
+        assertTrue(cursor.moveToNext());
+        assertEquals(7L, row.getLong(MsgTable._ID));
+        assertEquals("", row.getString(MsgTable.BODY));
+        assertEquals(false, row.getBoolean(MsgTable.PUBLIC));
+        cursor.close();
+    }
+
+    @Test
+    public void testColumnNamesAsInCursor() {
+        MatrixCursor cursor = new MatrixCursor(new String[]{MsgTable._ID, MsgTable.BODY, "Mixed_Case"});
+        CursorRow row = new CursorRow(cursor);
+        String[] names = {MsgTable.BODY, MsgTable.BODY.toUpperCase(), "msg." + MsgTable.BODY,
+                "MSG." + MsgTable._ID, "mixed_case", "Mixed_Case", "t.MIXED_CASE", MsgTable.VIA, "msg." + MsgTable.VIA};
+        for (String name : names) {
+            assertEquals(name, cursor.getColumnIndex(name), row.getColumnIndex(name));
+            assertEquals("Second lookup of " + name, cursor.getColumnIndex(name), row.getColumnIndex(name));
+        }
+        assertEquals(1, row.getColumnIndex("msg." + MsgTable.BODY.toUpperCase()));
+        cursor.close();
+    }
+}
@@ -13,8 +13,10 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -100,6 +102,29 @@ public class DataPrunerTest {
         assertEquals(0, dp.pruneAttachments());
     }
 
+    @Test
+    public void testPruneDownloadedFiles() throws IOException {
+        DataPruner dp = new DataPruner(MyContextHolder.get());
+        dp.pruneDownloadedFiles();
+        long lastModifiedOld = ((System.currentTimeMillis() - TimeUnit.DAYS.toMillis(
+                DataPruner.MIN_DAYS_ORPHAN_FILES_TO_KEEP + 1)) / 1000) * 1000;
+
+        DownloadFile fresh = new DownloadFile("orphan_fresh.txt");
+        assertTrue("Created " + fresh, fresh.getFile().createNewFile() || fresh.exists());
+        DownloadFile old = new DownloadFile("orphan_old.txt");
+        assertTrue("Created " + old, old.getFile().createNewFile() || old.exists());
+        if (!old.getFile().setLastModified(lastModifiedOld)) {
+            MyLog.e(this, "Couldn't set modification date of " + old);
+            fresh.delete();
+            old.delete();
+            return;
+        }
+        assertEquals(1, dp.pruneDownloadedFiles());
+        assertTrue("Fresh file is kept", fresh.exists());
+        assertFalse("Old file is deleted", old.exists());
+        fresh.delete();
+    }
+
     private void clearPrunedDate() {
         SharedPreferencesUtil.putLong(MyPreferences.KEY_DATA_PRUNED_DATE, 0);
     }
@@ -41,12 +41,15 @@ import org.andstatus.app.service.CommandEnum;
 import org.andstatus.app.service.CommandExecutionContext;
 import org.andstatus.app.timeline.Timeline;
 import org.andstatus.app.timeline.TimelineType;
+import org.andstatus.app.util.LongSet;
 import org.andstatus.app.util.SelectionAndArgs;
 import org.andstatus.app.util.TriState;
 import org.junit.Before;
 import org.junit.Test;
 
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -143,9 +146,9 @@ public class DataUpdaterTest {
                 cursor != null && cursor.getCount() > 0);
         cursor.close();
 
-        Set<Long> friendsIds = MyQuery.getFriendsIds(ma.getUserId());
+        LongSet friendsIds = MyQuery.getFriendsIds(ma.getUserId());
         MyContextHolder.get().persistentAccounts().initialize();
-        for (long id : friendsIds) {
+        for (long id : friendsIds.toArray()) {
             assertTrue("isFriend: " + id, MyContextHolder.get().persistentAccounts().isMeOrMyFriend(id));
         }
     }
@@ -311,6 +314,12 @@ public class DataUpdaterTest {
         assertTrue("Message favorited", cursor.getInt(0) == 1);
         assertTrue("Message not favorited by AccountUser", cursor.getLong(1) == ma.getUserId());
         cursor.close();
+        assertEquals("Sent date copied to " + MsgOfUserTable.TABLE_NAME,
+                MyQuery.msgIdToLongColumnValue(MsgTable.SENT_DATE, messageId),
+                MyQuery.sqlToLong(null, "", "SELECT " + MsgOfUserTable.MSG_SENT_DATE
+                        + " FROM " + MsgOfUserTable.TABLE_NAME
+                        + " WHERE " + MsgOfUserTable.MSG_ID + "=" + messageId
+                        + " AND " + MsgOfUserTable.USER_ID + "=" + ma.getUserId()));
 
         assertEquals("Message stored as loaded", DownloadStatus.LOADED, DownloadStatus.load(
                 MyQuery.msgIdToLongColumnValue(MsgTable.MSG_STATUS, messageId)));
@@ -566,4 +575,45 @@ public class DataUpdaterTest {
         long messageId = di.onActivity(message.update(accountUser));
         assertTrue("Message added", messageId != 0);
     }
+
+    @Test
+    public void testOnActivitiesPage() {
+        MyAccount ma = DemoData.getMyAccount(DemoData.GNUSOCIAL_TEST_ACCOUNT_NAME);
+        MbUser accountUser = ma.toPartialUser();
+        MbUser author = MbUser.fromOriginAndUserOid(accountUser.originId, "pageAuthor" + DemoData.TESTRUN_UID);
+        author.setUserName("pageAuthor" + DemoData.TESTRUN_UID);
+
+        List<MbActivity> activities = new ArrayList<>();
+        for (int ind = 0; ind < 3; ind++) {
+            MbMessage message = MbMessage.fromOriginAndOid(accountUser.originId,
+                    accountUser.oid, "pageMsg" + ind + "-" + System.nanoTime(), DownloadStatus.LOADED);
+            message.setBody("Message " + ind + " of the page");
+            message.setUpdatedDate(System.currentTimeMillis());
+            message.setAuthor(author);
+            activities.add(message.update(accountUser));
+        }
+
+        DataUpdater di = new DataUpdater(ma);
+        di.onActivities(activities);
+        di.saveLum();
+        long authorId = MyQuery.oidToId(OidEnum.USER_OID, accountUser.originId, author.oid);
+        assertTrue("Author added", authorId != 0);
+        for (MbActivity activity : activities) {
+            MbMessage message = activity.getMessage();
+            long messageId = MyQuery.oidToId(OidEnum.MSG_OID, accountUser.originId, message.oid);
+            assertTrue("Message added " + message, messageId != 0);
+            assertEquals("Message id " + message, messageId, message.msgId);
+            assertEquals("Author of " + message, authorId,
+                    MyQuery.msgIdToLongColumnValue(MsgTable.AUTHOR_ID, messageId));
+        }
+
+        List<String> oids = new ArrayList<>();
+        for (MbActivity activity : activities) {
+            oids.add(activity.getMessage().oid);
+        }
+        oids.add("nonexistent" + System.nanoTime());
+        Map<String, Long> ids = MyQuery.oidsToIds(OidEnum.MSG_OID, accountUser.originId, oids);
+        assertEquals("Found ids " + ids, activities.size(), ids.size());
+        assertEquals(activities.get(1).getMessage().msgId, (long) ids.get(activities.get(1).getMessage().oid));
+    }
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import org.andstatus.app.backup.ProgressLogger;
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.database.MsgTable;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author yvolk@yurivolkov.com
+ */
+public class MyDataCheckerConversationsTest {
+
+    @Before
+    public void setUp() throws Exception {
+        TestSuite.initializeWithData(this);
+    }
+
+    @Test
+    public void testBrokenConversationIsFixed() {
+        long replyId = MyQuery.sqlToLong(null, "", "SELECT " + MsgTable._ID
+                + " FROM " + MsgTable.TABLE_NAME
+                + " WHERE " + MsgTable.IN_REPLY_TO_MSG_ID + "<>0"
+                + " ORDER BY " + MsgTable._ID + " DESC LIMIT 1");
+        assertTrue("Reply found", replyId != 0);
+        long conversationId = MyQuery.msgIdToLongColumnValue(MsgTable.CONVERSATION_ID, replyId);
+        assertTrue("Reply is in a conversation", conversationId != 0);
+        assertEquals("Conversations need fixes", 0, newChecker().countChanges());
+
+        DbUtils.execSQL(MyContextHolder.get().getDatabase(), "UPDATE " + MsgTable.TABLE_NAME
+                + " SET " + MsgTable.CONVERSATION_ID + "=" + (conversationId + 100000)
+                + " WHERE " + MsgTable._ID + "=" + replyId);
+        assertTrue("Broken conversation found", newChecker().countChanges() > 0);
+
+        newChecker().fixData();
+        assertEquals("Conversation restored", conversationId,
+                MyQuery.msgIdToLongColumnValue(MsgTable.CONVERSATION_ID, replyId));
+        assertEquals("Conversations need fixes after fixing", 0, newChecker().countChanges());
+    }
+
+    private MyDataCheckerConversations newChecker() {
+        return new MyDataCheckerConversations(MyContextHolder.get(), ProgressLogger.getEmpty());
+    }
+}
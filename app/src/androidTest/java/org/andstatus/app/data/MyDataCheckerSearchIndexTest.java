@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import org.andstatus.app.backup.ProgressLogger;
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.database.MsgFtsTable;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author yvolk@yurivolkov.com
+ */
+public class MyDataCheckerSearchIndexTest {
+
+    @Before
+    public void setUp() throws Exception {
+        TestSuite.initializeWithData(this);
+    }
+
+    @Test
+    public void testFullTextIndexIsCountedAndRebuilt() {
+        SQLiteDatabase db = MyContextHolder.get().getDatabase();
+        newChecker().fixData();
+        assertEquals("Search index needs fixes", 0, newChecker().countChanges());
+
+        long msgId = MyQuery.sqlToLong(db, "", "SELECT " + MsgFtsTable.DOCID
+                + " FROM " + MsgFtsTable.TABLE_NAME + " ORDER BY " + MsgFtsTable.DOCID + " DESC LIMIT 1");
+        assertTrue("Indexed message found", msgId != 0);
+        DbUtils.execSQL(db, "DELETE FROM " + MsgFtsTable.TABLE_NAME + " WHERE " + MsgFtsTable.DOCID + "=" + msgId);
+        long countIndexed = MsgSearchIndex.countIndexed(db);
+        assertEquals("Message removed from the index", MsgSearchIndex.countToIndex(db) - 1, countIndexed);
+
+        assertEquals("Rebuilding needed", 1, newChecker().countChanges());
+        assertEquals("Not rebuilt by counting", countIndexed, MsgSearchIndex.countIndexed(db));
+
+        newChecker().fixData();
+        assertEquals("Rebuilt", countIndexed + 1, MsgSearchIndex.countIndexed(db));
+        assertEquals("Message " + msgId + " indexed", msgId, MyQuery.sqlToLong(db, "", "SELECT "
+                + MsgFtsTable.DOCID + " FROM " + MsgFtsTable.TABLE_NAME + " WHERE " + MsgFtsTable.DOCID + "=" + msgId));
+        assertEquals("Search index needs fixes after fixing", 0, newChecker().countChanges());
+    }
+
+    private MyDataCheckerSearchIndex newChecker() {
+        return new MyDataCheckerSearchIndex(MyContextHolder.get(), ProgressLogger.getEmpty());
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import org.andstatus.app.account.MyAccount;
+import org.andstatus.app.context.DemoData;
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.context.UserInTimeline;
+import org.andstatus.app.database.UserTable;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author yvolk@yurivolkov.com
+ */
+public class UserCacheTest {
+
+    @Before
+    public void setUp() throws Exception {
+        TestSuite.initializeWithData(this);
+    }
+
+    @Test
+    public void testFormatName() {
+        assertEquals("@john", UserCache.formatName(UserInTimeline.AT_USERNAME, "john", "john@example.com", "John"));
+        assertEquals("john@example.com",
+                UserCache.formatName(UserInTimeline.WEBFINGER_ID, "john", "john@example.com", "John"));
+        assertEquals("John @john",
+                UserCache.formatName(UserInTimeline.REAL_NAME_AT_USERNAME, "john", "john@example.com", "John"));
+        assertEquals("", UserCache.formatName(UserInTimeline.REAL_NAME_AT_USERNAME, "john", "", ""));
+    }
+
+    @Test
+    public void testNamesAndInvalidation() {
+        MyAccount ma = DemoData.getConversationMyAccount();
+        long userId = ma.getUserId();
+        String userName = MyQuery.userIdToStringColumnValue(UserTable.USERNAME, userId);
+        String realName = MyQuery.userIdToStringColumnValue(UserTable.REAL_NAME, userId);
+        assertTrue("User name of " + ma, userName.length() > 0);
+        assertEquals(userName, UserCache.getName(userId, UserInTimeline.USERNAME));
+        assertEquals("@" + userName, UserCache.getName(userId, UserInTimeline.AT_USERNAME));
+        assertEquals(MyQuery.userIdToStringColumnValue(UserTable.WEBFINGER_ID, userId),
+                UserCache.getWebfingerId(userId));
+        assertEquals(realName, UserCache.getName(userId, UserInTimeline.REAL_NAME));
+        assertEquals("", UserCache.getName(0, UserInTimeline.USERNAME));
+
+        String realNameNew = realName + " changed";
+        setRealName(userId, realNameNew);
+        assertEquals("Cached", realName, UserCache.getName(userId, UserInTimeline.REAL_NAME));
+        UserCache.invalidate(userId);
+        assertEquals("Invalidated", realNameNew, UserCache.getName(userId, UserInTimeline.REAL_NAME));
+
+        setRealName(userId, realName);
+        UserCache.invalidate(userId);
+        assertEquals(realName, UserCache.getName(userId, UserInTimeline.REAL_NAME));
+    }
+
+    private void setRealName(long userId, String realName) {
+        DbUtils.execSQL(MyContextHolder.get().getDatabase(), "UPDATE " + UserTable.TABLE_NAME
+                + " SET " + UserTable.REAL_NAME + "=" + MyQuery.quoteIfNotQuoted(realName)
+                + " WHERE " + UserTable._ID + "=" + userId);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.andstatus.app.backup.ProgressLogger;
+import org.andstatus.app.data.DbUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author yvolk@yurivolkov.com
+ */
+public class DatabaseConverterTest {
+
+    @Test
+    public void testConvert31() {
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        try {
+            DbUtils.execSQL(db, "CREATE TABLE msg (_id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                    + " msg_sent_date INTEGER)");
+            DbUtils.execSQL(db, "CREATE TABLE msgofuser (user_id INTEGER NOT NULL, msg_id INTEGER NOT NULL,"
+                    + " subscribed BOOLEAN DEFAULT 0 NOT NULL,"
+                    + " CONSTRAINT pk_msgofuser PRIMARY KEY (user_id ASC, msg_id ASC))");
+            DbUtils.execSQL(db, "INSERT INTO msg (_id, msg_sent_date) VALUES (1, 1000)");
+            DbUtils.execSQL(db, "INSERT INTO msg (_id, msg_sent_date) VALUES (2, 2000)");
+            DbUtils.execSQL(db, "INSERT INTO msgofuser (user_id, msg_id, subscribed) VALUES (5, 1, 1)");
+            DbUtils.execSQL(db, "INSERT INTO msgofuser (user_id, msg_id, subscribed) VALUES (5, 2, 1)");
+            DbUtils.execSQL(db, "INSERT INTO msgofuser (user_id, msg_id, subscribed) VALUES (6, 2, 1)");
+
+            assertEquals("Upgraded version", 32,
+                    new DatabaseConverter.Convert31().execute(db, 31, ProgressLogger.getEmpty()));
+
+            assertEquals(1000, sentDateOf(db, 5, 1));
+            assertEquals(2000, sentDateOf(db, 5, 2));
+            assertEquals(2000, sentDateOf(db, 6, 2));
+            Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type='index'"
+                    + " AND name='idx_msgofuser_user_sent_date'", null);
+            try {
+                assertTrue("Index created", cursor.moveToFirst());
+            } finally {
+                DbUtils.closeSilently(cursor);
+            }
+        } finally {
+            db.close();
+        }
+    }
+
+    private long sentDateOf(SQLiteDatabase db, long userId, long msgId) {
+        Cursor cursor = db.rawQuery("SELECT " + MsgOfUserTable.MSG_SENT_DATE + " FROM " + MsgOfUserTable.TABLE_NAME
+                + " WHERE " + MsgOfUserTable.USER_ID + "=" + userId
+                + " AND " + MsgOfUserTable.MSG_ID + "=" + msgId, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            DbUtils.closeSilently(cursor);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.graphics;
+
+import android.graphics.Bitmap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BitmapPoolTest {
+
+    @Test
+    public void testReuse() {
+        final int size = 100;
+        BitmapPool pool = new BitmapPool(2L * size * size * ImageCache.BYTES_PER_PIXEL);
+        assertNull(pool.get(size, size));
+
+        Bitmap bitmap = Bitmap.createBitmap(size, size, CachedImage.BITMAP_CONFIG);
+        assertTrue(pool.put(bitmap));
+        assertEquals(bitmap, pool.get(size, size));
+        assertNull("Taken already", pool.get(size, size));
+
+        assertFalse("Immutable", pool.put(Bitmap.createBitmap(bitmap)));
+        assertFalse("Larger than the pool", pool.put(Bitmap.createBitmap(size * 2, size * 2,
+                CachedImage.BITMAP_CONFIG)));
+
+        for (int ind = 0; ind < 3; ind++) {
+            assertTrue(pool.put(Bitmap.createBitmap(size, size, CachedImage.BITMAP_CONFIG)));
+        }
+        assertTrue(pool.getInfo(), pool.getInfo().contains("pool: 2 bitmaps"));
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.graphics;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Point;
+import android.support.test.InstrumentationRegistry;
+
+import org.andstatus.app.data.DbUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author yvolk@yurivolkov.com
+ */
+public class ImageCacheTest {
+
+    @Test
+    public void testImageLargerThanCache() throws IOException {
+        final int size = 200;
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        File file = new File(context.getCacheDir(), "ImageCacheTest.png");
+        Bitmap source = Bitmap.createBitmap(size, size, CachedImage.BITMAP_CONFIG);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            assertTrue(source.compress(Bitmap.CompressFormat.PNG, 100, out));
+        } finally {
+            DbUtils.closeSilently(out);
+        }
+        try {
+            int maxBytes = size * size * ImageCache.BYTES_PER_PIXEL / 2;
+            ImageCache cache = new ImageCache(context, CacheName.ATTACHED_IMAGE, size * 2, maxBytes);
+            CachedImage image = cache.loadAndGetImage(this, 1, file.getAbsolutePath(), new Point(size, size));
+            assertNotNull(image);
+            assertFalse("Image is shown, so it's not expired", image.isExpired());
+            assertFalse(image.getBitmap().isRecycled());
+            assertEquals("Larger than the cache", 0, cache.size());
+            assertNull("Bitmap of the shown image is not pooled", cache.bitmapPool.get(size, size));
+            assertNull(cache.getCachedImage(this, 1, file.getAbsolutePath()));
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+}
@@ -16,9 +16,24 @@
 
 package org.andstatus.app.msg;
 
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.andstatus.app.context.MyPreferences;
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.data.DbUtils;
+import org.andstatus.app.data.MsgSearchIndex;
+import org.andstatus.app.database.MsgFtsTable;
+import org.andstatus.app.database.MsgTable;
 import org.andstatus.app.util.MyHtml;
+import org.andstatus.app.util.SharedPreferencesUtil;
+import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -28,6 +43,11 @@ import static org.junit.Assert.assertTrue;
  */
 public class KeywordsFilterTest {
 
+    @Before
+    public void setUp() throws Exception {
+        TestSuite.initialize(this);
+    }
+
     @Test
     public void testPhrases() {
         String query = "\"deleted notice\"";
@@ -59,6 +79,141 @@ public class KeywordsFilterTest {
         assertNotMatchAll(query, body2);
     }
 
+    @Test
+    public void testFtsQuery() {
+        assertEquals("", new KeywordsFilter("").getFtsQuery());
+        assertEquals("\"word\"", new KeywordsFilter("Word").getFtsQuery());
+        assertEquals("\"word\" \"deleted notice\"",
+                new KeywordsFilter("word, \"deleted notice\"").getFtsQuery());
+        assertEquals("\"node js\"", new KeywordsFilter("node.js").getFtsQuery());
+        KeywordsFilter filter = new KeywordsFilter("#hashtag");
+        assertEquals("\"hashtag hashtag\"", filter.getFtsQuery());
+        assertEquals("(msg._id IN (SELECT docid FROM msg_fts WHERE msg_fts MATCH ?)"
+                        + " AND msg.body_to_search LIKE ?)",
+                filter.getSqlSelection("msg._id", "msg.body_to_search"));
+        String[] args = filter.prependSqlSelectionArgs(new String[]{"other"});
+        assertEquals(3, args.length);
+        assertEquals(filter.getFtsQuery(), args[0]);
+        assertEquals("%,hashtag,#hashtag,%", args[1]);
+        assertEquals("other", args[2]);
+
+        filter = new KeywordsFilter("word, other");
+        assertEquals("(msg._id IN (SELECT docid FROM msg_fts WHERE msg_fts MATCH ?)"
+                        + " AND msg.body_to_search LIKE ? AND msg.body_to_search LIKE ?)",
+                filter.getSqlSelection("msg._id", "msg.body_to_search"));
+        args = filter.prependSqlSelectionArgs(new String[]{});
+        assertEquals(3, args.length);
+        assertEquals("%,word,%", args[1]);
+        assertEquals("%,other,%", args[2]);
+
+        filter = new KeywordsFilter("-");
+        assertEquals("Punctuation only", "", filter.getFtsQuery());
+        assertEquals("(msg.body_to_search LIKE ?)", filter.getSqlSelection("msg._id", "msg.body_to_search"));
+        args = filter.prependSqlSelectionArgs(new String[]{});
+        assertEquals(1, args.length);
+        assertEquals("%,-,%", args[0]);
+    }
+
+    @Test
+    public void testHashtagSearch() {
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        try {
+            DbUtils.execSQL(db, "CREATE TABLE " + MsgTable.TABLE_NAME + " (" + MsgTable._ID + " INTEGER PRIMARY KEY,"
+                    + " " + MsgTable.BODY_TO_SEARCH + " TEXT)");
+            MsgFtsTable.create(db);
+            addMessage(db, 1, "Plain word andstatus in the body");
+            addMessage(db, 2, "The #AndStatus hashtag");
+            addMessage(db, 3, "Mention of @AndStatus");
+
+            assertEquals("[1, 2, 3]", searchMessages(db, "andstatus"));
+            assertEquals("[2]", searchMessages(db, "#andstatus"));
+            assertEquals("[3]", searchMessages(db, "@AndStatus"));
+            assertEquals("[2]", searchMessages(db, "hashtag #andstatus"));
+            assertEquals("[]", searchMessages(db, "#hashtag"));
+        } finally {
+            db.close();
+        }
+    }
+
+    /** Search matches whole words, like the filter for hiding messages does */
+    @Test
+    public void testSearchMatchesLikeFilter() {
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        try {
+            DbUtils.execSQL(db, "CREATE TABLE " + MsgTable.TABLE_NAME + " (" + MsgTable._ID + " INTEGER PRIMARY KEY,"
+                    + " " + MsgTable.BODY_TO_SEARCH + " TEXT)");
+            MsgFtsTable.create(db);
+            String[] bodies = {"Plain word andstatus in the body", "Using node.js - a runtime",
+                    "東京 タワー", "東京タワー", "Ünïcode wörds and ΟΔΟΣ"};
+            for (int ind = 0; ind < bodies.length; ind++) {
+                addMessage(db, ind + 1, bodies[ind]);
+            }
+            String[] queries = {"andstatus", "andstat", "word andstatus", "node.js", "node", "js", "-",
+                    "東京", "東京タワー", "タワー", "ünïcode", "WÖRDS", "οδος", "οδ", "#andstatus"};
+            for (String query : queries) {
+                KeywordsFilter filter = new KeywordsFilter(query);
+                List<Long> expected = new ArrayList<>();
+                for (int ind = 0; ind < bodies.length; ind++) {
+                    if (filter.matchedAll(MyHtml.getBodyToSearch(bodies[ind]))) {
+                        expected.add(ind + 1L);
+                    }
+                }
+                assertEquals("Query '" + query + "'", expected.toString(), searchMessages(db, query));
+            }
+            assertEquals("Partial words don't match", "[]", searchMessages(db, "andstat"));
+            assertEquals("[2]", searchMessages(db, "-"));
+            assertEquals("[3]", searchMessages(db, "東京"));
+            assertEquals("[4]", searchMessages(db, "東京タワー"));
+        } finally {
+            db.close();
+        }
+    }
+
+    private void addMessage(SQLiteDatabase db, long msgId, String body) {
+        String bodyToSearch = MyHtml.getBodyToSearch(body);
+        ContentValues values = new ContentValues();
+        values.put(MsgTable._ID, msgId);
+        values.put(MsgTable.BODY_TO_SEARCH, bodyToSearch);
+        db.insert(MsgTable.TABLE_NAME, null, values);
+        MsgSearchIndex.update(db, msgId, bodyToSearch);
+    }
+
+    private String searchMessages(SQLiteDatabase db, String query) {
+        KeywordsFilter filter = new KeywordsFilter(query);
+        List<Long> msgIds = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT msg." + MsgTable._ID + " FROM " + MsgTable.TABLE_NAME + " AS msg WHERE "
+                        + filter.getSqlSelection("msg." + MsgTable._ID, "msg." + MsgTable.BODY_TO_SEARCH)
+                        + " ORDER BY msg." + MsgTable._ID,
+                filter.prependSqlSelectionArgs(new String[]{}));
+        try {
+            while (cursor.moveToNext()) {
+                msgIds.add(cursor.getLong(0));
+            }
+        } finally {
+            DbUtils.closeSilently(cursor);
+        }
+        return msgIds.toString();
+    }
+
+    @Test
+    public void testFilterForHidingMessages() {
+        final String keywordsOld = SharedPreferencesUtil.getString(
+                MyPreferences.KEY_FILTER_HIDE_MESSAGES_BASED_ON_KEYWORDS, "");
+        try {
+            SharedPreferencesUtil.putString(MyPreferences.KEY_FILTER_HIDE_MESSAGES_BASED_ON_KEYWORDS, "spam");
+            KeywordsFilter filter1 = KeywordsFilter.forHidingMessages();
+            assertTrue(filter1 == KeywordsFilter.forHidingMessages());
+            assertTrue(filter1.matchedAny(MyHtml.getBodyToSearch("Some spam here")));
+
+            SharedPreferencesUtil.putString(MyPreferences.KEY_FILTER_HIDE_MESSAGES_BASED_ON_KEYWORDS, "ham");
+            KeywordsFilter filter2 = KeywordsFilter.forHidingMessages();
+            assertFalse(filter1 == filter2);
+            assertFalse(filter2.matchedAny(MyHtml.getBodyToSearch("Some spam here")));
+        } finally {
+            SharedPreferencesUtil.putString(MyPreferences.KEY_FILTER_HIDE_MESSAGES_BASED_ON_KEYWORDS, keywordsOld);
+        }
+    }
+
     private void assertOneQueryToKeywords(String query, String... keywords) {
         int size = keywords.length;
         KeywordsFilter filter1 = new KeywordsFilter(query);
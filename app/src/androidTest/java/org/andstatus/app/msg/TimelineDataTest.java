@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.msg;
+
+import org.andstatus.app.WhichPage;
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.util.Benchmark;
+import org.andstatus.app.util.MicroBenchmark;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author yvolk@yurivolkov.com
+ */
+public class TimelineDataTest {
+    private static final int PAGE_SIZE = 200;
+
+    @Before
+    public void setUp() throws Exception {
+        TestSuite.initialize(this);
+    }
+
+    @Test
+    public void testOlderPages() {
+        TimelinePage page1 = newPage(WhichPage.TOP, 0, 10000);
+        TimelineData data = new TimelineData(null, page1);
+        assertEquals(PAGE_SIZE, data.size());
+        long edgeId = 10000 - PAGE_SIZE + 1;
+        TimelineViewItem edgeItem = data.getById(edgeId);
+        assertEquals(edgeId, edgeItem.getMsgId());
+
+        TimelinePage page2 = newPage(WhichPage.OLDER, page1.params.minSentDateLoaded, edgeId);
+        data = new TimelineData(data, page2);
+        assertEquals("Duplicated edge item should be removed " + data, PAGE_SIZE * 2 - 1, data.size());
+        assertTrue("The item of the younger page is kept", edgeItem == data.getById(edgeId));
+        assertEquals(edgeId, data.getItem(PAGE_SIZE - 1).getMsgId());
+        assertEquals(edgeId - 1, data.getItem(PAGE_SIZE).getMsgId());
+        assertEquals(0, data.getItem(data.size()).getMsgId());
+        assertEquals(0, data.getById(edgeId + PAGE_SIZE).getMsgId());
+
+        for (int ind = 0; ind < 5; ind++) {
+            data = addOlderPage(data);
+        }
+        assertEquals("Pages are dropped " + data, 5, data.pages.size());
+        assertEquals("The youngest page dropped", 0, data.getById(10000).getMsgId());
+        for (int position = 1; position < data.size(); position++) {
+            assertEquals("Position " + position, data.getItem(position - 1).getMsgId() - 1,
+                    data.getItem(position).getMsgId());
+        }
+    }
+
+    @Benchmark
+    @Test
+    public void testMergingBenchmark() throws Exception {
+        TimelinePage firstPage = newPage(WhichPage.TOP, 0, 100000);
+        TimelineData data = new TimelineData(null, firstPage);
+        for (int ind = 0; ind < 4; ind++) {
+            data = addOlderPage(data);
+        }
+        final TimelineData fullData = data;
+        final long lastId = fullData.getItem(fullData.size() - 1).getMsgId();
+        new MicroBenchmark("Timeline pages merging").measure(new MicroBenchmark.Operation() {
+            @Override
+            public Object run() throws Exception {
+                TimelineData data = addOlderPage(fullData);
+                assertEquals("The edge item is merged", lastId - PAGE_SIZE + 1,
+                        data.getItem(data.size() - 1).getMsgId());
+                return data.getById(lastId);
+            }
+        });
+    }
+
+    private TimelineData addOlderPage(TimelineData data) {
+        TimelinePage lastPage = data.pages.get(data.pages.size() - 1);
+        return new TimelineData(data, newPage(WhichPage.OLDER, lastPage.params.minSentDateLoaded,
+                lastPage.items.get(lastPage.items.size() - 1).getMsgId()));
+    }
+
+    /** Message ids and sent dates descend from the youngest ones */
+    private TimelinePage newPage(WhichPage whichPage, long maxSentDate, long youngestMsgId) {
+        TimelineListParameters params = new TimelineListParameters(MyContextHolder.get());
+        params.whichPage = whichPage;
+        params.maxSentDate = maxSentDate;
+        List<TimelineViewItem> items = new ArrayList<>();
+        for (long msgId = youngestMsgId; msgId > youngestMsgId - PAGE_SIZE; msgId--) {
+            TimelineViewItem item = new TimelineViewItem();
+            item.setMsgId(msgId);
+            item.sentDate = msgId * 1000;
+            item.setBody("Message number " + msgId);
+            items.add(item);
+            params.rememberSentDateLoaded(item.sentDate);
+        }
+        params.rowsLoaded = items.size();
+        return new TimelinePage(params, items);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.msg;
+
+import android.database.Cursor;
+
+import org.andstatus.app.WhichPage;
+import org.andstatus.app.account.MyAccount;
+import org.andstatus.app.context.DemoData;
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.data.DbUtils;
+import org.andstatus.app.data.TimelineSql;
+import org.andstatus.app.database.MsgTable;
+import org.andstatus.app.timeline.Timeline;
+import org.andstatus.app.timeline.TimelineType;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author yvolk@yurivolkov.com
+ */
+public class TimelineListParametersTest {
+
+    @Before
+    public void setUp() throws Exception {
+        TestSuite.initializeWithData(this);
+    }
+
+    @Test
+    public void testLoadYoungestPages() {
+        MyAccount ma = DemoData.getConversationMyAccount();
+        assertTrue("Home timeline of " + ma + " is not empty",
+                loadYoungestPage(Timeline.getTimeline(TimelineType.HOME, ma, 0, null)) > 0);
+        loadYoungestPage(Timeline.getTimeline(TimelineType.MENTIONS, ma, 0, null));
+        loadYoungestPage(Timeline.getTimeline(TimelineType.FAVORITES, ma, 0, null));
+        loadYoungestPage(Timeline.getTimeline(TimelineType.DIRECT, ma, 0, null));
+        loadYoungestPage(Timeline.getTimeline(TimelineType.USER, ma, ma.getUserId(), null));
+        assertTrue("Everything timeline is not empty",
+                loadYoungestPage(Timeline.getTimeline(TimelineType.EVERYTHING, null, 0, ma.getOrigin())) > 0);
+        assertTrue("Combined Home timeline is not empty",
+                loadYoungestPage(Timeline.getTimeline(TimelineType.HOME, null, 0, null)) > 0);
+    }
+
+    /** @return number of rows loaded. Their sent dates should descend */
+    private int loadYoungestPage(Timeline timeline) {
+        TimelineListParameters params = new TimelineListParameters(MyContextHolder.get());
+        params.timeline = timeline;
+        params.whichPage = WhichPage.YOUNGEST;
+        params.mProjection = TimelineSql.getTimelineProjection();
+        Cursor cursor = params.queryDatabase();
+        assertNotNull("Cursor for " + timeline, cursor);
+        int rowsCount = 0;
+        try {
+            long prevSentDate = Long.MAX_VALUE;
+            int sentDateIndex = cursor.getColumnIndexOrThrow(MsgTable.SENT_DATE);
+            while (cursor.moveToNext()) {
+                rowsCount++;
+                long sentDate = cursor.getLong(sentDateIndex);
+                assertTrue("Sent dates descend in " + timeline + ", row " + rowsCount,
+                        sentDate <= prevSentDate);
+                prevSentDate = sentDate;
+            }
+        } finally {
+            DbUtils.closeSilently(cursor);
+        }
+        assertTrue("Page size of " + timeline + ": " + rowsCount, rowsCount <= TimelineListParameters.PAGE_SIZE);
+        return rowsCount;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.net.http;
+
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.data.DbUtils;
+import org.andstatus.app.net.http.ConnectionException.StatusCode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cz.msebera.android.httpclient.HttpResponse;
+import cz.msebera.android.httpclient.client.methods.HttpGet;
+import cz.msebera.android.httpclient.client.methods.HttpPost;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Requests go through the shared pooled client of {@link MyHttpClientFactory} to a local HTTP server
+ * @author yvolk@yurivolkov.com
+ */
+public class HttpConnectionApacheCommonTest {
+    private ServerSocket serverSocket;
+    private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+    private final AtomicInteger connectionsAccepted = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        TestSuite.initialize(this);
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        }, "HttpServerMock");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void tearDown() {
+        DbUtils.closeSilently(serverSocket);
+        for (Socket socket : sockets) {
+            DbUtils.closeSilently(socket);
+        }
+    }
+
+    @Test
+    public void testRedirectsReleaseConnections() throws ConnectionException {
+        HttpConnectionApacheCommon common = new HttpConnectionApacheCommon(new SharedClientSpecific());
+        String urlRoot = "http://127.0.0.1:" + serverSocket.getLocalPort();
+        // More requests, than connections per route, so a connection leaked by a redirect would block them
+        int requestsCount = 3 * MyHttpClientFactory.MAX_CONNECTIONS_PER_ROUTE;
+        for (int ind = 0; ind < requestsCount; ind++) {
+            HttpReadResult result = new HttpReadResult(urlRoot + "/redirect2");
+            common.getRequest(result);
+            assertEquals(result.toString(), StatusCode.OK, result.getStatusCode());
+            assertTrue(result.toString(), result.redirected);
+            assertEquals(urlRoot + "/target", result.getUrl());
+            assertEquals("target", result.strResponse);
+        }
+        assertTrue("Connections are reused, accepted: " + connectionsAccepted.get(),
+                connectionsAccepted.get() <= MyHttpClientFactory.MAX_CONNECTIONS_PER_ROUTE);
+    }
+
+    private static class SharedClientSpecific implements HttpConnectionApacheSpecific {
+        @Override
+        public void httpApachePostRequest(HttpPost httpPost, HttpReadResult result) throws ConnectionException {
+            throw new ConnectionException("Not expected");
+        }
+
+        @Override
+        public HttpResponse httpApacheGetResponse(HttpGet httpGet) throws IOException {
+            return MyHttpClientFactory.getHttpClient(getSslMode()).execute(httpGet);
+        }
+
+        @Override
+        public void httpApacheSetAuthorization(HttpGet httpGet) throws IOException {
+            // No authorization
+        }
+
+        @Override
+        public SslModeEnum getSslMode() {
+            return SslModeEnum.SECURE;
+        }
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                sockets.add(socket);
+                connectionsAccepted.incrementAndGet();
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        serveConnection(socket);
+                    }
+                }, "HttpServerMockConnection");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                break;
+            }
+        }
+    }
+
+    /** Keeps the connection alive: "/redirect2" redirects to "/redirect1", which redirects to "/target" */
+    private void serveConnection(Socket socket) {
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            OutputStream out = socket.getOutputStream();
+            String requestLine;
+            while ((requestLine = reader.readLine()) != null) {
+                String line;
+                do {
+                    line = reader.readLine();
+                } while (line != null && line.length() > 0);
+                String path = requestLine.split(" ")[1];
+                String response;
+                if (path.startsWith("/redirect")) {
+                    int count = Integer.parseInt(path.substring("/redirect".length()));
+                    String location = count > 1 ? "/redirect" + (count - 1) : "/target";
+                    String body = "Moved to " + location;
+                    response = "HTTP/1.1 302 Found\r\nLocation: http://127.0.0.1:" + serverSocket.getLocalPort()
+                            + location + "\r\nContent-Length: " + body.length() + "\r\n\r\n" + body;
+                } else {
+                    response = "HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: 6\r\n\r\ntarget";
+                }
+                out.write(response.getBytes("UTF-8"));
+                out.flush();
+            }
+        } catch (IOException e) {
+            // The connection was closed
+        } finally {
+            DbUtils.closeSilently(socket);
+        }
+    }
+}
@@ -21,6 +21,10 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -49,4 +53,38 @@ public class HttpReadResultTest {
         assertEquals(true, result.hasFormParams());
         assertTrue(result.toString(), result.toString().contains("posted"));
     }
+
+    @Test
+    public void testStreamedArray() throws Exception {
+        final String in = "{\"since_id\":\"12\",\"statuses\":[{\"id\":850007368138018817,\"text\":\"Text1\","
+                + "\"user\":{\"name\":\"author1\"},\"truncated\":false,\"geo\":null,\"tags\":[\"a\",1.5]},"
+                + "{\"id\":2,\"text\":\"Text2\"}]}";
+        final List<JSONObject> items = new ArrayList<>();
+        JsonObjectConsumer consumer = new JsonObjectConsumer() {
+            @Override
+            public void accept(JSONObject jso) {
+                items.add(jso);
+            }
+        };
+        HttpReadResult result = new HttpReadResult("https://example.com/somepath/file.json")
+                .setArrayItemConsumer("statuses", consumer);
+        result.readStream(new ByteArrayInputStream(in.getBytes(HttpConnectionUtils.UTF_8)));
+        result.readArrayItems();
+        assertEquals(2, items.size());
+        JSONObject item = items.get(0);
+        assertEquals(850007368138018817L, item.getLong("id"));
+        assertEquals("Text1", item.getString("text"));
+        assertEquals("author1", item.getJSONObject("user").getString("name"));
+        assertFalse(item.getBoolean("truncated"));
+        assertTrue(item.isNull("geo"));
+        assertEquals(1.5, item.getJSONArray("tags").getDouble(1), 0.0001);
+        assertEquals("Text2", items.get(1).getString("text"));
+
+        items.clear();
+        result = new HttpReadResult("https://example.com/somepath/file.json")
+                .setArrayItemConsumer("items", consumer);
+        result.strResponse = in;
+        result.readArrayItems();
+        assertEquals("Found array in other key", 2, items.size());
+    }
 }
@@ -30,6 +30,7 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
@@ -198,4 +199,31 @@ public class ConnectionGnuSocialTest {
         assertEquals("Actor; " + activity, "andstatus@loadaverage.org", activity.getActor().getWebFingerId());
         assertEquals("Author; " + activity, "igor@herds.eu", activity.getMessage().getAuthor().getWebFingerId());
     }
+
+    @Test
+    public void testUsersDownloadInChunks() throws IOException {
+        // The same response is parsed as a User and as the rate limit status
+        connection.getHttpMock().setResponse("{\"id\":\"123\",\"screen_name\":\"someuser\","
+                + "\"remaining_hits\":3,\"hourly_limit\":100}");
+        assertFalse(connection.isApiSupported(ApiRoutineEnum.GET_USERS));
+        Connection.UsersDownload download = connection.newUsersDownload();
+        try {
+            List<MbUser> users = download.getUsers(Arrays.asList("1", "2"));
+            assertEquals("First chunk: " + users, 2, users.size());
+            users = download.getUsers(Arrays.asList("3", "4"));
+            assertEquals("Only one request remained: " + users, 1, users.size());
+            users = download.getUsers(Arrays.asList("5"));
+            assertEquals("No requests remained: " + users, 0, users.size());
+        } finally {
+            download.close();
+        }
+        int rateLimitRequests = 0;
+        for (HttpReadResult result : connection.getHttpMock().getResults()) {
+            if (result.getUrl().contains("rate_limit_status")) {
+                rateLimitRequests++;
+            }
+        }
+        assertEquals("Rate limit is checked once per download", 1, rateLimitRequests);
+        assertEquals(4, connection.getHttpMock().getRequestsCounter());
+    }
 }
@@ -43,6 +43,7 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
@@ -199,4 +200,18 @@ public class ConnectionTwitterTest {
         assertTrue("Message added", messageId != 0);
     }
 
+    @Test
+    public void testGetUsers() throws IOException {
+        httpConnection.setResponse("[{\"id\":3004183,\"id_str\":\"3004183\",\"name\":\"First User\","
+                + "\"screen_name\":\"firstuser\"},"
+                + "{\"id\":144771645,\"id_str\":\"144771645\",\"name\":\"Second User\","
+                + "\"screen_name\":\"seconduser\"}]");
+        List<MbUser> users = connection.getUsers(Arrays.asList("3004183", "144771645"));
+        assertEquals("Users: " + users, 2, users.size());
+        assertEquals("firstuser", users.get(0).getUserName());
+        assertEquals("144771645", users.get(1).oid);
+        assertEquals(1, httpConnection.getRequestsCounter());
+        String url = httpConnection.substring2PostedPath("users/lookup");
+        assertTrue(url, url.contains("user_id=3004183%2C144771645"));
+    }
 }
@@ -40,6 +40,8 @@ import org.andstatus.app.net.social.TimelinePosition;
 import org.andstatus.app.net.social.pumpio.ConnectionPumpio.ConnectionAndUrl;
 import org.andstatus.app.origin.OriginConnectionData;
 import org.andstatus.app.util.MyHtml;
+import org.andstatus.app.util.Benchmark;
+import org.andstatus.app.util.MicroBenchmark;
 import org.andstatus.app.util.MyLog;
 import org.andstatus.app.util.RawResourceUtils;
 import org.andstatus.app.util.TriState;
@@ -159,6 +161,25 @@ public class ConnectionPumpioTest {
         }
     }
 
+    @Benchmark
+    @Test
+    public void testTimelineParsingBenchmark() throws Exception {
+        String jso = RawResourceUtils.getString(InstrumentationRegistry.getInstrumentation().getContext(),
+                org.andstatus.app.tests.R.raw.pumpio_user_t131t_inbox);
+        final JSONArray jArr = new JSONObject(jso).getJSONArray("items");
+        new MicroBenchmark("Pump.io inbox").measure(new MicroBenchmark.Operation() {
+            @Override
+            public Object run() throws Exception {
+                MbActivity activity = null;
+                for (int index = 0; index < jArr.length(); index++) {
+                    activity = connection.activityFromJson(jArr.getJSONObject(index));
+                    assertFalse("Parsed " + index, activity.isEmpty());
+                }
+                return activity;
+            }
+        });
+    }
+
     @Test
     public void testGetTimeline() throws IOException {
         String sinceId = "https%3A%2F%2F" + originUrl.getHost() + "%2Fapi%2Factivity%2Ffrefq3232sf";
@@ -17,6 +17,7 @@
 package org.andstatus.app.service;
 
 import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
 
 import org.andstatus.app.account.MyAccount;
 import org.andstatus.app.context.MyContextHolder;
@@ -28,6 +29,7 @@ import org.andstatus.app.data.DemoMessageInserter;
 import org.andstatus.app.data.MyContentType;
 import org.andstatus.app.context.DemoData;
 import org.andstatus.app.net.http.ConnectionException;
+import org.andstatus.app.net.http.HttpReadResult;
 import org.andstatus.app.net.social.ConnectionTwitterGnuSocialMock;
 import org.andstatus.app.net.social.MbAttachment;
 import org.andstatus.app.net.social.MbMessage;
@@ -41,6 +43,7 @@ import java.net.URL;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 public class AttachmentDownloaderTest {
@@ -74,6 +77,62 @@ public class AttachmentDownloaderTest {
         testFileProvider(dd.getDownloadId());
     }
     
+    @Test
+    public void testRevalidation() throws IOException {
+        String body = "A message with an attachment to revalidate";
+        DemoMessageInserter mi = new DemoMessageInserter(ma);
+        MbMessage message = mi.buildMessage(mi.buildUser(), body, null, null, DownloadStatus.LOADED);
+        message.attachments.add(MbAttachment.fromUrlAndContentType(
+                new URL("http://www.example.com/pictures/revalidated_image.png"), MyContentType.IMAGE));
+        long msgId = mi.onActivity(message.update(ma.toPartialUser()));
+        long downloadId = DownloadData.getSingleForMessage(msgId, MyContentType.IMAGE, null).getDownloadId();
+
+        final String eTag1 = "\"revalidated-1\"";
+        final String lastModified1 = "Mon, 16 Oct 2017 10:00:00 GMT";
+        HttpReadResult result = loadWithValidators(downloadId, eTag1, lastModified1, true);
+        assertFalse("Not conditional", result.isNotModified());
+        DownloadData data = DownloadData.fromId(downloadId);
+        assertEquals("ETag saved and reloaded", eTag1, data.getETagToRevalidate());
+        assertEquals("Last-Modified saved and reloaded", lastModified1, data.getLastModifiedToRevalidate());
+        String filename1 = data.getFilename();
+
+        // The server may omit the validators in the "Not Modified" response
+        result = loadWithValidators(downloadId, eTag1, lastModified1, false);
+        assertTrue("Not modified", result.isNotModified());
+        data = DownloadData.fromId(downloadId);
+        assertEquals("Loaded " + data, DownloadStatus.LOADED, data.getStatus());
+        assertEquals("The same file", filename1, data.getFilename());
+        assertTrue("File exists " + data.getFilename(), data.getFile().exists());
+        assertEquals("ETag kept", eTag1, data.getETagToRevalidate());
+        assertEquals("Last-Modified kept", lastModified1, data.getLastModifiedToRevalidate());
+
+        final String eTag2 = "\"revalidated-2\"";
+        result = loadWithValidators(downloadId, eTag2, "", true);
+        assertFalse("Modified", result.isNotModified());
+        data = DownloadData.fromId(downloadId);
+        assertNotEquals("New file", filename1, data.getFilename());
+        assertTrue("File exists " + data.getFilename(), data.getFile().exists());
+        assertEquals("New ETag", eTag2, data.getETagToRevalidate());
+        assertEquals("No Last-Modified", "", data.getLastModifiedToRevalidate());
+    }
+
+    private HttpReadResult loadWithValidators(long downloadId, String eTag, String lastModified,
+                                              boolean validatorsSentWithNotModified) throws IOException {
+        FileDownloader loader = FileDownloader.newForDownloadRow(downloadId);
+        ConnectionTwitterGnuSocialMock connection = new ConnectionTwitterGnuSocialMock();
+        connection.getHttpMock().setResponseValidators(eTag, lastModified, validatorsSentWithNotModified);
+        InputStream inputStream = InstrumentationRegistry.getInstrumentation().getContext().getResources()
+                .openRawResource(org.andstatus.app.tests.R.raw.large_image);
+        connection.getHttpMock().setResponseFileStream(inputStream);
+        loader.connectionMock = connection;
+        CommandData commandData = CommandData.newCommand(CommandEnum.FETCH_ATTACHMENT);
+        loader.load(commandData);
+        inputStream.close();
+        assertFalse("Loaded " + commandData, commandData.getResult().hasError());
+        assertEquals("Requested", 1, connection.getHttpMock().getRequestsCounter());
+        return connection.getHttpMock().getResults().get(0);
+    }
+
     private void testFileProvider(long downloadRowId) throws IOException {
         DownloadData data = DownloadData.fromId(downloadRowId);
         assertTrue(data.getFilename(), data.getFile().exists());
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.service;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.andstatus.app.account.MyAccount;
+import org.andstatus.app.context.DemoData;
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.data.DbUtils;
+import org.andstatus.app.database.CommandTable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author yvolk@yurivolkov.com
+ */
+public class CommandQueueTest {
+    private static final String UNTOUCHED = "untouched";
+    private MyAccount ma;
+
+    @Before
+    public void setUp() throws Exception {
+        TestSuite.initializeWithData(this);
+        MyServiceManager.setServiceUnavailable();
+        MyServiceManager.stopService();
+        ma = DemoData.getConversationMyAccount();
+    }
+
+    @After
+    public void tearDown() {
+        new CommandQueue().clear();
+        MyServiceManager.setServiceAvailable();
+    }
+
+    @Test
+    public void testIncrementalSave() {
+        CommandQueue queues = new CommandQueue();
+        queues.clear();
+        CommandData unchanged = CommandData.newItemCommand(CommandEnum.FETCH_AVATAR, ma, 1);
+        CommandData changed = CommandData.newItemCommand(CommandEnum.FETCH_AVATAR, ma, 2);
+        CommandData removed = CommandData.newItemCommand(CommandEnum.FETCH_AVATAR, ma, 3);
+        queues.addToQueue(QueueType.CURRENT, unchanged);
+        queues.addToQueue(QueueType.CURRENT, changed);
+        queues.addToQueue(QueueType.CURRENT, removed);
+        queues.save();
+        assertEquals(3, countRows(""));
+
+        queues = new CommandQueue().load();
+        assertEquals(3, queues.get(QueueType.CURRENT).size());
+        // Changed behind the loaded queues, so a rewrite of the row would be noticed
+        DbUtils.execSQL(getDb(), "UPDATE " + CommandTable.TABLE_NAME + " SET " + CommandTable.PROGRESS_TEXT
+                + "='" + UNTOUCHED + "' WHERE " + CommandTable._ID + "=" + unchanged.getCommandId());
+        CommandData changedLoaded = queues.get(QueueType.CURRENT).find(changed);
+        assertTrue(queues.get(QueueType.CURRENT).remove(changedLoaded));
+        changedLoaded.getResult().incrementNumIoExceptions();
+        queues.addToQueue(QueueType.RETRY, changedLoaded);
+        assertTrue(queues.get(QueueType.CURRENT).remove(removed));
+        queues.save();
+
+        assertEquals("Removed command is deleted", 2, countRows(""));
+        assertEquals("Unchanged row is left alone", 1, countRows(CommandTable._ID + "=" + unchanged.getCommandId()
+                + " AND " + CommandTable.PROGRESS_TEXT + "='" + UNTOUCHED + "'"));
+        assertEquals("Changed row is replaced", 1, countRows(CommandTable._ID + "=" + changed.getCommandId()
+                + " AND " + CommandTable.QUEUE_TYPE + "='" + QueueType.RETRY.save() + "'"
+                + " AND " + CommandTable.NUM_IO_EXCEPTIONS + "=1"));
+
+        queues = new CommandQueue().load();
+        assertEquals(1, queues.get(QueueType.CURRENT).size());
+        assertEquals(unchanged, queues.get(QueueType.CURRENT).peek());
+        assertEquals(1, queues.get(QueueType.RETRY).size());
+        assertEquals(1, queues.get(QueueType.RETRY).find(changed).getResult().getNumIoExceptions());
+        assertNull(queues.get(QueueType.CURRENT).find(removed));
+        queues.save();
+        assertEquals("Nothing changed", 2, countRows(""));
+    }
+
+    private SQLiteDatabase getDb() {
+        return MyContextHolder.get().getDatabase();
+    }
+
+    private long countRows(String where) {
+        Cursor cursor = getDb().rawQuery("SELECT COUNT(*) FROM " + CommandTable.TABLE_NAME
+                + (where.length() > 0 ? " WHERE " + where : ""), null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            DbUtils.closeSilently(cursor);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.service;
+
+import org.andstatus.app.account.MyAccount;
+import org.andstatus.app.context.DemoData;
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.data.DbUtils;
+import org.andstatus.app.timeline.TimelineType;
+import org.andstatus.app.util.LongSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author yvolk@yurivolkov.com
+ */
+public class IndexedCommandQueueTest {
+    private MyAccount ma;
+
+    @Before
+    public void setUp() throws Exception {
+        TestSuite.initializeWithData(this);
+        ma = DemoData.getConversationMyAccount();
+    }
+
+    @Test
+    public void testDeduplicationAndLanes() {
+        IndexedCommandQueue queue = IndexedCommandQueue.forExecution();
+        CommandData avatar1 = CommandData.newItemCommand(CommandEnum.FETCH_AVATAR, ma, 1);
+        CommandData avatar2 = CommandData.newItemCommand(CommandEnum.FETCH_AVATAR, ma, 2);
+        CommandData timeline = CommandData.newTimelineCommand(CommandEnum.GET_TIMELINE, ma, TimelineType.HOME)
+                .setInForeground(true);
+        assertTrue(queue.offer(avatar1));
+        assertTrue(queue.offer(avatar2));
+        assertTrue(queue.offer(timeline));
+        assertFalse("Duplicate", queue.offer(CommandData.newItemCommand(CommandEnum.FETCH_AVATAR, ma, 1)));
+        assertEquals(3, queue.size());
+        assertTrue(queue.contains(CommandData.newItemCommand(CommandEnum.FETCH_AVATAR, ma, 2)));
+        assertTrue(avatar2 == queue.find(CommandData.newItemCommand(CommandEnum.FETCH_AVATAR, ma, 2)));
+        assertTrue(queue.hasForeground());
+
+        assertEquals(timeline, queue.poll(true));
+        assertNull("Background commands are left", queue.poll(true));
+        assertEquals(2, queue.size());
+
+        assertTrue(queue.remove(CommandData.newItemCommand(CommandEnum.FETCH_AVATAR, ma, 1)));
+        assertFalse(queue.contains(avatar1));
+        assertEquals(avatar2, queue.peek());
+        Iterator<CommandData> iterator = queue.iterator();
+        assertEquals(avatar2, iterator.next());
+        iterator.remove();
+        assertFalse(iterator.hasNext());
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testRetryOrder() {
+        final String method = "testRetryOrder";
+        IndexedCommandQueue queue = IndexedCommandQueue.forRetry();
+        CommandData executedLater = CommandData.newItemCommand(CommandEnum.FETCH_AVATAR, ma, 1);
+        CommandData executedEarlier = CommandData.newItemCommand(CommandEnum.FETCH_AVATAR, ma, 2);
+        executedEarlier.getResult().afterExecutionEnded();
+        DbUtils.waitMs(method, 10);
+        executedLater.getResult().afterExecutionEnded();
+        assertTrue(queue.offer(executedLater));
+        assertTrue(queue.offer(executedEarlier));
+        assertEquals(executedEarlier, queue.poll());
+        assertEquals(executedLater, queue.poll());
+    }
+
+    @Test
+    public void testPerOriginLimit() {
+        MyAccount ma2 = TestSuite.getMyContextForTest().persistentAccounts()
+                .fromAccountName(DemoData.GNUSOCIAL_TEST_ACCOUNT_NAME);
+        long originId = ma.getOriginId();
+        assertTrue(originId != ma2.getOriginId());
+        CommandData executing1 = CommandData.newItemCommand(CommandEnum.FETCH_AVATAR, ma, 11);
+        CommandData executing2 = CommandData.newItemCommand(CommandEnum.FETCH_AVATAR, ma, 12);
+        CommandData noOrigin1 = CommandData.newCommand(CommandEnum.CLEAR_NOTIFICATIONS);
+        CommandData noOrigin2 = CommandData.newCommand(CommandEnum.DELETE_COMMAND);
+        assertEquals(0, noOrigin1.getTimeline().getOrigin().getId());
+
+        LongSet originsAtLimit = MyService.getOriginsAtLimit(Arrays.asList(executing1, noOrigin1, noOrigin2), 2);
+        assertTrue("Below the limit: " + originsAtLimit, originsAtLimit.isEmpty());
+        originsAtLimit = MyService.getOriginsAtLimit(Arrays.asList(executing1, noOrigin1, executing2, noOrigin2), 2);
+        assertEquals(1, originsAtLimit.size());
+        assertTrue(originsAtLimit.contains(originId));
+        assertFalse("Commands without Origin are not limited", originsAtLimit.contains(0));
+
+        IndexedCommandQueue queue = IndexedCommandQueue.forExecution();
+        CommandData limited1 = CommandData.newItemCommand(CommandEnum.FETCH_AVATAR, ma, 1);
+        CommandData limited2 = CommandData.newTimelineCommand(CommandEnum.GET_TIMELINE, ma, TimelineType.HOME)
+                .setInForeground(true);
+        CommandData other = CommandData.newItemCommand(CommandEnum.FETCH_AVATAR, ma2, 2);
+        assertTrue(queue.offer(limited1));
+        assertTrue(queue.offer(limited2));
+        assertTrue(queue.offer(other));
+        assertTrue(queue.offer(noOrigin1));
+
+        assertEquals(noOrigin1, queue.poll(false, originsAtLimit));
+        assertEquals(other, queue.poll(false, originsAtLimit));
+        assertNull(queue.poll(false, originsAtLimit));
+        assertEquals("Skipped commands stay in the queue", 2, queue.size());
+        assertTrue(queue.contains(limited1));
+        assertEquals(limited2, queue.poll(true, new LongSet()));
+        assertEquals(limited1, queue.poll(false, new LongSet()));
+        assertTrue(queue.isEmpty());
+    }
+}
@@ -86,6 +86,10 @@ public class LargeImageTest {
         DownloadData data = DownloadData.fromId(dd.getDownloadId());
         assertFalse("Loaded " + data.getUri(), commandData.getResult().hasError());
         assertTrue("File exists " + data.getUri(), data.getFile().exists());
+        assertTrue("Image size stored " + data.getImageSize(), data.getImageSize().x > 10);
+        assertTrue("Thumbnail size stored " + data.getThumbnailSize(),
+                data.getThumbnailSize().x > 10 && data.getThumbnailSize().x < data.getImageSize().x);
+        assertTrue("Thumbnail exists", data.getFile().getThumbnail().exists());
 
         assertEquals("Conversations need fixes", 0, new MyDataCheckerConversations(MyContextHolder.get(),
                 ProgressLogger.getEmpty()).countChanges());
@@ -93,7 +97,8 @@ public class LargeImageTest {
     }
 
     private void loadingTest(DownloadData dd) {
-        CachedImage image = new AttachedImageFile(dd.getDownloadId(), dd.getFilename()).loadAndGetImage();
+        CachedImage image = new AttachedImageFile(dd.getDownloadId(), dd.getFilename(),
+                dd.getImageSize().x, dd.getImageSize().y).loadAndGetImage();
         int width = image.getImageSize().x;
         assertTrue("Not wide already " + width, width < 4000 && width > 10);
         int height = image.getImageSize().y;
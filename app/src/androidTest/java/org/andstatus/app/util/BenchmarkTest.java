@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.util;
+
+import android.support.test.InstrumentationRegistry;
+
+import org.andstatus.app.account.MyAccount;
+import org.andstatus.app.context.DemoData;
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.msg.KeywordsFilter;
+import org.andstatus.app.net.social.Connection;
+import org.andstatus.app.net.social.ConnectionMastodonMock;
+import org.andstatus.app.net.social.ConnectionTwitterGnuSocialMock;
+import org.andstatus.app.net.social.MbActivity;
+import org.andstatus.app.net.social.TimelinePosition;
+import org.andstatus.app.service.CommandData;
+import org.andstatus.app.service.CommandEnum;
+import org.andstatus.app.service.IndexedCommandQueue;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Time of hot paths: parsing of timelines from the JSON fixtures, which are used in the connection tests,
+ * preparing message bodies for search, filtering of messages by keywords and polling of the command queue.
+ * Benchmarks, which need package-private members, are in their packages and are marked with {@link Benchmark} too.
+ * Results are logged by {@link MicroBenchmark}
+ * @author yvolk@yurivolkov.com
+ */
+@Benchmark
+public class BenchmarkTest {
+
+    @Before
+    public void setUp() throws Exception {
+        TestSuite.initializeWithData(this);
+    }
+
+    @Test
+    public void testTwitterTimeline() throws Exception {
+        benchmarkTimeline("twitter home timeline", new ConnectionTwitterGnuSocialMock(),
+                Connection.ApiRoutineEnum.HOME_TIMELINE, org.andstatus.app.tests.R.raw.twitter_home_timeline, 4);
+    }
+
+    @Test
+    public void testGnuSocialTimeline() throws Exception {
+        benchmarkTimeline("GNU social public timeline", new ConnectionTwitterGnuSocialMock(),
+                Connection.ApiRoutineEnum.PUBLIC_TIMELINE, org.andstatus.app.tests.R.raw.quitter_home, 3);
+    }
+
+    @Test
+    public void testMastodonTimeline() throws Exception {
+        benchmarkTimeline("Mastodon home timeline", new ConnectionMastodonMock(),
+                Connection.ApiRoutineEnum.HOME_TIMELINE, org.andstatus.app.tests.R.raw.mastodon_home_timeline, 1);
+    }
+
+    private void benchmarkTimeline(String name, final Connection connection,
+                                   final Connection.ApiRoutineEnum apiRoutine, int resourceId,
+                                   final int expectedSize) throws Exception {
+        connection.getHttpMock().setResponse(RawResourceUtils.getString(
+                InstrumentationRegistry.getInstrumentation().getContext(), resourceId));
+        new MicroBenchmark(name).measure(new MicroBenchmark.Operation() {
+            @Override
+            public Object run() throws Exception {
+                List<MbActivity> timeline = connection.getTimeline(apiRoutine, TimelinePosition.EMPTY,
+                        TimelinePosition.EMPTY, 20, DemoData.GNUSOCIAL_TEST_ACCOUNT_USER_OID);
+                assertEquals("Number of items in the Timeline", expectedSize, timeline.size());
+                return timeline;
+            }
+        });
+    }
+
+    private static final String HTML_BODY = "<p>Looking for the <b>deleted notice</b> with a word,"
+            + " that is interesting."
+            + " See <a href=\"https://example.com/notice/12345\">https://example.com/notice/12345</a>"
+            + " by @someone@example.com #AndStatus</p>";
+
+    @Test
+    public void testBodyToSearch() throws Exception {
+        new MicroBenchmark("Body to search").setIterations(200, 1000).measure(new MicroBenchmark.Operation() {
+            @Override
+            public Object run() throws Exception {
+                String bodyToSearch = MyHtml.getBodyToSearch(HTML_BODY);
+                assertTrue("Body to search " + bodyToSearch, bodyToSearch.contains(",deleted,notice,"));
+                return bodyToSearch;
+            }
+        });
+    }
+
+    /** Compare with {@link #testBodyToSearch()} to get the time of the filter itself */
+    @Test
+    public void testKeywordsFilter() throws Exception {
+        final KeywordsFilter filter = new KeywordsFilter("spam, \"deleted notice\", word, #andstatus, other, ham");
+        new MicroBenchmark("Keywords filter").setIterations(200, 1000).measure(new MicroBenchmark.Operation() {
+            @Override
+            public Object run() throws Exception {
+                String bodyToSearch = MyHtml.getBodyToSearch(HTML_BODY);
+                assertTrue("Matched " + bodyToSearch, filter.matchedAny(bodyToSearch));
+                return bodyToSearch;
+            }
+        });
+    }
+
+    @Test
+    public void testCommandQueuePolling() throws Exception {
+        MyAccount ma = DemoData.getConversationMyAccount();
+        final IndexedCommandQueue queue = IndexedCommandQueue.forExecution();
+        final int size = 5000;
+        for (int ind = 1; ind <= size; ind++) {
+            queue.offer(CommandData.newItemCommand(ind % 2 == 0 ? CommandEnum.FETCH_AVATAR
+                    : CommandEnum.FETCH_ATTACHMENT, ma, ind));
+        }
+        new MicroBenchmark("Command queue polling, size=" + size).setIterations(100, 1000)
+                .measure(new MicroBenchmark.Operation() {
+            @Override
+            public Object run() throws Exception {
+                CommandData commandData = queue.poll();
+                assertTrue("Returned " + commandData, !queue.contains(commandData) && queue.offer(commandData));
+                return commandData;
+            }
+        });
+        assertEquals(size, queue.size());
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.util;
+
+import android.util.Log;
+
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.data.DbUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author yvolk@yurivolkov.com
+ */
+public class LogFileAppenderTest {
+    private static final String FILENAME = "LogFileAppenderTest.txt";
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        TestSuite.initialize(this);
+        file = MyLog.getFileInLogDir(FILENAME, true);
+        assertNotNull(file);
+        deleteFile();
+    }
+
+    @After
+    public void tearDown() {
+        deleteFile();
+    }
+
+    private void deleteFile() {
+        if (file.exists()) {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void testOrderAndFlush() throws IOException {
+        LogFileAppender appender = new LogFileAppender();
+        for (int ind = 0; ind < 100; ind++) {
+            appender.append(Log.VERBOSE, FILENAME, "line" + ind + "\n");
+        }
+        appender.flushNow();
+        List<String> lines = readLines();
+        assertEquals(lines.toString(), 100, lines.size());
+        for (int ind = 0; ind < 100; ind++) {
+            assertEquals("line" + ind, lines.get(ind));
+        }
+        appender.close();
+    }
+
+    @Test
+    public void testQueueBoundAndDroppedCount() throws IOException {
+        LogFileAppender appender = new LogFileAppender();
+        final int droppedCount = 10;
+        // The writer waits, while we fill the queue
+        synchronized (appender.writerLock) {
+            for (int ind = 0; ind < LogFileAppender.QUEUE_CAPACITY + droppedCount; ind++) {
+                appender.append(Log.VERBOSE, FILENAME, "line" + ind + "\n");
+            }
+            assertEquals(droppedCount, appender.getDroppedCount());
+        }
+        appender.flushNow();
+        assertEquals(0, appender.getDroppedCount());
+        List<String> lines = readLines();
+        assertEquals(LogFileAppender.QUEUE_CAPACITY + 1, lines.size());
+        assertTrue(lines.get(0), lines.get(0).endsWith(droppedCount + " log lines were dropped"));
+        assertEquals("line0", lines.get(1));
+        assertEquals("line" + (LogFileAppender.QUEUE_CAPACITY - 1), lines.get(LogFileAppender.QUEUE_CAPACITY));
+        appender.close();
+    }
+
+    @Test
+    public void testWriterContinuesAfterException() throws IOException {
+        final String method = "testWriterContinuesAfterException";
+        LogFileAppender appender = new LogFileAppender();
+        // No file name causes a NullPointerException in the writer thread
+        appender.append(Log.ERROR, null, "lost\n");
+        appender.append(Log.ERROR, FILENAME, "written\n");
+        for (int ind = 0; ind < 100 && readLines().isEmpty(); ind++) {
+            DbUtils.waitMs(method, 50);
+        }
+        assertEquals("Written by the writer thread", "[written]", readLines().toString());
+        appender.close();
+    }
+
+    private List<String> readLines() throws IOException {
+        if (!file.exists()) {
+            return Collections.emptyList();
+        }
+        String text = new String(FileUtils.getBytes(file), "UTF-8");
+        return text.isEmpty() ? Collections.<String>emptyList() : Arrays.asList(text.split("\n"));
+    }
+}
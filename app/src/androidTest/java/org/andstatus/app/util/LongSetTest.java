@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.util;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LongSetTest {
+
+    @Test
+    public void testAddRemove() {
+        LongSet set = new LongSet();
+        assertTrue(set.isEmpty());
+        assertTrue(set.add(0));
+        assertFalse(set.add(0));
+        assertTrue(set.add(-5));
+        assertTrue(set.add(Long.MAX_VALUE));
+        assertEquals(3, set.size());
+        assertTrue(set.contains(0));
+        assertTrue(set.contains(Long.MAX_VALUE));
+        assertFalse(set.contains(5));
+        assertTrue(set.remove(0));
+        assertFalse(set.contains(0));
+        assertFalse(set.remove(0));
+        assertEquals(2, set.toArray().length);
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(-5));
+    }
+
+    @Test
+    public void testSameAsHashSet() {
+        Random random = new Random(1);
+        LongSet set = new LongSet();
+        Set<Long> expected = new HashSet<>();
+        for (int ind = 0; ind < 20000; ind++) {
+            long value = random.nextInt(500) - 10;
+            switch (random.nextInt(3)) {
+                case 0:
+                    assertEquals("add " + value, expected.add(value), set.add(value));
+                    break;
+                case 1:
+                    assertEquals("remove " + value, expected.remove(value), set.remove(value));
+                    break;
+                default:
+                    assertEquals("contains " + value, expected.contains(value), set.contains(value));
+                    break;
+            }
+            assertEquals(expected.size(), set.size());
+        }
+        Set<Long> actual = new HashSet<>();
+        for (long value : set.toArray()) {
+            actual.add(value);
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testLongList() {
+        LongList list = new LongList(1);
+        for (long value = 0; value < 100; value++) {
+            list.add(value * 3);
+        }
+        assertEquals(100, list.size());
+        assertEquals(297, list.get(99));
+        assertTrue(list.contains(150));
+        assertFalse(list.contains(151));
+        assertEquals(100, list.toArray().length);
+    }
+}
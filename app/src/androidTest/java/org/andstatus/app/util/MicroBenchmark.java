@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.util;
+
+import java.util.Arrays;
+
+/**
+ * Minimal benchmark harness for instrumentation tests, where JMH cannot run:
+ * warms the operation up, then measures several rounds and logs the median time per operation,
+ * so the numbers can be compared between builds.
+ * @author yvolk@yurivolkov.com
+ */
+public class MicroBenchmark {
+    private static final String TAG = MicroBenchmark.class.getSimpleName();
+    private static final int ROUNDS = 5;
+
+    public interface Operation {
+        /** @return any result of the operation, so its calculation is not optimized out */
+        Object run() throws Exception;
+    }
+
+    private final String name;
+    private int warmupIterations = 20;
+    private int iterationsPerRound = 20;
+    private volatile int sink = 0;
+
+    public MicroBenchmark(String name) {
+        this.name = name;
+    }
+
+    public MicroBenchmark setIterations(int warmupIterations, int iterationsPerRound) {
+        this.warmupIterations = warmupIterations;
+        this.iterationsPerRound = Math.max(iterationsPerRound, 1);
+        return this;
+    }
+
+    /** @return median time of one operation, nanoseconds */
+    public long measure(Operation operation) throws Exception {
+        for (int ind = 0; ind < warmupIterations; ind++) {
+            consume(operation.run());
+        }
+        long[] nanosPerOperation = new long[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            long startedAt = System.nanoTime();
+            for (int ind = 0; ind < iterationsPerRound; ind++) {
+                consume(operation.run());
+            }
+            nanosPerOperation[round] = (System.nanoTime() - startedAt) / iterationsPerRound;
+        }
+        long[] sorted = Arrays.copyOf(nanosPerOperation, ROUNDS);
+        Arrays.sort(sorted);
+        long median = sorted[ROUNDS / 2];
+        MyLog.i(TAG, "Benchmark " + name + ": " + formatNanos(median) + " per operation; rounds (ns): "
+                + Arrays.toString(nanosPerOperation));
+        return median;
+    }
+
+    private void consume(Object result) {
+        sink += result == null ? 0 : System.identityHashCode(result);
+    }
+
+    static String formatNanos(long nanos) {
+        if (nanos >= 10000000L) {
+            return (nanos / 1000000L) + "ms";
+        }
+        if (nanos >= 10000L) {
+            return (nanos / 1000L) + "us";
+        }
+        return nanos + "ns";
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MultiPatternMatcherTest {
+
+    @Test
+    public void testOverlappingPatterns() {
+        MultiPatternMatcher matcher = new MultiPatternMatcher(Arrays.asList("he", "she", "his", "hers"));
+        assertTrue(matcher.matchesAny("ushers"));
+        assertFalse(matcher.matchesAll("ushers"));
+        assertTrue(matcher.matchesAll("ushers of his"));
+        assertFalse(matcher.matchesAny("hi, s, hr"));
+        assertFalse(matcher.matchesAny(""));
+        assertFalse(matcher.matchesAny(null));
+
+        // The pattern is found via a failure link only
+        matcher = new MultiPatternMatcher(Arrays.asList("abcd", "bc"));
+        assertTrue(matcher.matchesAll("xabcx abcd"));
+        assertFalse(matcher.matchesAll("xabcx"));
+        assertTrue(matcher.matchesAny("xabcx"));
+    }
+
+    @Test
+    public void testEmpty() {
+        MultiPatternMatcher matcher = new MultiPatternMatcher(Collections.<String>emptyList());
+        assertTrue(matcher.isEmpty());
+        assertFalse(matcher.matchesAny("any text"));
+        assertFalse(matcher.matchesAll("any text"));
+    }
+
+    @Test
+    public void testSameAsContains() {
+        List<String> patterns = new ArrayList<>();
+        for (int ind = 0; ind < 150; ind++) {
+            patterns.add(",word" + ind + ",");
+        }
+        patterns.add(",deleted,notice,");
+        MultiPatternMatcher matcher = new MultiPatternMatcher(patterns);
+        String[] texts = {",looking,for,the,deleted,notice,", ",word1,word15,", ",word150,", ",word14", ",word149,"};
+        for (String text : texts) {
+            boolean any = false;
+            boolean all = true;
+            for (String pattern : patterns) {
+                if (text.contains(pattern)) {
+                    any = true;
+                } else {
+                    all = false;
+                }
+            }
+            assertEquals(text, any, matcher.matchesAny(text));
+            assertEquals(text, all, matcher.matchesAll(text));
+        }
+    }
+}
@@ -83,6 +83,17 @@ public class MyHtmlTest {
         String text4 = "Uh someone on XYZ just said \"I found a Something in the XYZ fridge.\" @ABVinskeep we''re gonna need an investigation of this.";
         String result4 = ",uh,someone,on,xyz,just,said,i,found,a,something,in,the,xyz,fridge,abvinskeep,@abvinskeep,we,re,gonna,need,an,investigation,of,this,";
         assertEquals(result4, MyHtml.getBodyToSearch(text4));
+
+        assertEquals("", MyHtml.getBodyToSearch("  \n "));
+        assertEquals(",", MyHtml.getBodyToSearch("..."));
+        assertEquals(",a,&,b,c,user,@user,tag,#tag,", MyHtml.getBodyToSearch("A &amp; b &lt;c&gt; &#64;user &#x23;tag"));
+        assertEquals(",first,line,second,line,",
+                MyHtml.getBodyToSearch("<p>First line<br/>second</p><p>line</p>"));
+        for (String text : new String[]{text1, text2, text3, text4, "&lt;p&gt;Escaped&lt;/p&gt;, ?x!? #!a @@b #a#b!c",
+                "ΟΔΟΣ #ΟΔΟΣ ΚΑΙ ΣΟΦΙΑ", "İstanbul"}) {
+            assertEquals(text, MyHtml.normalizeWordsForSearch(MyHtml.fromHtml(text)).toLowerCase(),
+                    MyHtml.getBodyToSearch(text));
+        }
     }
 
     @Test
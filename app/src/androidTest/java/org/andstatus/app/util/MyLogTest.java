@@ -55,6 +55,7 @@ public class MyLogTest {
         MyLog.setLogToFile(true);
         assertFalse(TextUtils.isEmpty(MyLog.getLogFilename()));
         MyLog.v(this, method);
+        MyLog.flushLogFile();
         File file = MyLog.getFileInLogDir(MyLog.getLogFilename(), true);
         assertTrue(file.exists());
         
@@ -20,6 +20,7 @@ import org.andstatus.app.database.FriendshipTable;
 import org.andstatus.app.origin.Origin;
 import org.andstatus.app.util.CollectionsUtil;
 import org.andstatus.app.util.I18n;
+import org.andstatus.app.util.LongSet;
 import org.andstatus.app.util.MyLog;
 import org.andstatus.app.util.Permissions;
 import org.json.JSONArray;
@@ -43,7 +44,7 @@ public class PersistentAccounts {
     private final MyContext myContext;
     private final List<MyAccount> mAccounts = new CopyOnWriteArrayList<>();
     private int distinctOriginsCount = 0;
-    private volatile Set<Long> myFriends = null;
+    private volatile LongSet myFriends = null;
 
     private PersistentAccounts(MyContext myContext) {
         this.myContext = myContext;
@@ -480,7 +481,7 @@ public class PersistentAccounts {
     }
 
     private void initializeMyFriends() {
-        Set<Long> friends = new HashSet<>();
+        LongSet friends = new LongSet();
         String sql = "SELECT DISTINCT " + FriendshipTable.FRIEND_ID + " FROM " + FriendshipTable.TABLE_NAME
                 + " WHERE " + FriendshipTable.FOLLOWED + "=1";
         SQLiteDatabase db = myContext.getDatabase();
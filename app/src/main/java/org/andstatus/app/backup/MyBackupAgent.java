@@ -20,6 +20,7 @@ import android.app.backup.BackupAgent;
 import android.app.backup.BackupDataInput;
 import android.app.backup.BackupDataOutput;
 import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
 import android.os.ParcelFileDescriptor;
 
 import org.andstatus.app.R;
@@ -34,19 +35,29 @@ import org.andstatus.app.data.MyDataChecker;
 import org.andstatus.app.database.DatabaseHolder;
 import org.andstatus.app.service.MyServiceManager;
 import org.andstatus.app.service.MyServiceState;
-import org.andstatus.app.util.FileUtils;
 import org.andstatus.app.util.MyLog;
 import org.andstatus.app.util.SharedPreferencesUtil;
 import org.andstatus.app.util.TriState;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Checksum;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 public class MyBackupAgent extends BackupAgent {
     public static final String DATABASE_KEY = "database";
     public static final String SHARED_PREFERENCES_KEY = "shared_preferences";
+    private static final String COMPRESSED_FILE_EXTENSION = ".gz";
+    private static final String RESTORED_FILE_SUFFIX = ".restored";
+    private static final int BUFFER_LENGTH = 64 * 1024;
 
     private MyBackupDescriptor backupDescriptor = null;
 
@@ -140,50 +151,127 @@ public class MyBackupAgent extends BackupAgent {
         sharedPreferencesBackedUp = backupFile(data,
                 SHARED_PREFERENCES_KEY,
                 SharedPreferencesUtil.defaultSharedPreferencesPath(MyContextHolder.get().context()));
-        databasesBackedUp = backupFile(data,
+        databasesBackedUp = backupDatabase(data,
                 DATABASE_KEY + "_" + DatabaseHolder.DATABASE_NAME,
                 MyStorage.getDatabasePath(DatabaseHolder.DATABASE_NAME));
         accountsBackedUp = MyContextHolder.get().persistentAccounts().onBackup(data, backupDescriptor);
     }
     
     private long backupFile(MyBackupDataOutput data, String key, File dataFile) throws IOException {
-        final int chunkSize = 10000;
-        long backedUpCount = 0;
-        if (dataFile.exists()) {
-            long fileLength = dataFile.length();
-            if ( fileLength > Integer.MAX_VALUE) {
-                throw new FileNotFoundException("File '" 
-                        + dataFile.getName() + "' is too large for backup: " + fileLength + " bytes" );
-            } 
-            int bytesToWrite = (int) fileLength;
-            data.writeEntityHeader(key, bytesToWrite, MyBackupDataOutput.getDataFileExtension(dataFile));
-            int bytesWritten = 0;
-            while (bytesWritten < bytesToWrite) {
-                byte[] bytes = FileUtils.getBytes(dataFile, bytesWritten, chunkSize);
-                if (bytes.length <= 0) {
-                    break;
-                }
-                bytesWritten += bytes.length;
-                data.writeEntityData(bytes, bytes.length);
+        if (!dataFile.exists()) {
+            MyLog.v(this, "File doesn't exist key='" + key + "', path='" + dataFile.getAbsolutePath());
+            return 0;
+        }
+        long fileLength = dataFile.length();
+        CheckedInputStream in = new CheckedInputStream(new FileInputStream(dataFile), new CRC32());
+        try {
+            writeEntity(data, key, dataFile, in, fileLength, MyBackupDataOutput.getDataFileExtension(dataFile));
+        } finally {
+            DbUtils.closeSilently(in, dataFile.getAbsolutePath());
+        }
+        backupDescriptor.setFileChecksum(key, fileLength, in.getChecksum().getValue());
+        return 1;
+    }
+
+    /** The database is compressed, so even a large one fits into the entity of the backup */
+    private long backupDatabase(MyBackupDataOutput data, String key, File dbFile) throws IOException {
+        if (!dbFile.exists()) {
+            MyLog.v(this, "File doesn't exist key='" + key + "', path='" + dbFile.getAbsolutePath());
+            return 0;
+        }
+        File snapshotFile = new File(MyContextHolder.get().context().getCacheDir(),
+                key + COMPRESSED_FILE_EXTENSION);
+        try {
+            CRC32 crc32 = new CRC32();
+            long length = compressDatabaseSnapshot(dbFile, snapshotFile, crc32);
+            InputStream in = new FileInputStream(snapshotFile);
+            try {
+                writeEntity(data, key, dbFile, in, snapshotFile.length(),
+                        MyBackupDataOutput.getDataFileExtension(dbFile) + COMPRESSED_FILE_EXTENSION);
+            } finally {
+                DbUtils.closeSilently(in, snapshotFile.getAbsolutePath());
             }
-            if (bytesWritten != bytesToWrite) {
-                throw new FileNotFoundException("Couldn't backup "
-                        + filePartiallyWritten(key, dataFile, bytesToWrite, bytesWritten));
+            backupDescriptor.setFileChecksum(key, length, crc32.getValue());
+        } finally {
+            if (snapshotFile.exists() && !snapshotFile.delete()) {
+                MyLog.v(this, "Couldn't delete " + snapshotFile.getAbsolutePath());
             }
-            backedUpCount++;
-            backupDescriptor.getLogger().logProgress(
-                    "Backed up " + fileWritten(key, dataFile, bytesWritten));
-        } else {
-            MyLog.v(this, "File doesn't exist key='" + key + "', path='" + dataFile.getAbsolutePath());
         }
-        return backedUpCount;
+        return 1;
     }
 
-    private String fileWritten(String key, File dataFile, int bytesWritten) {
+    /** Copies the database file while an exclusive transaction is held, so the copy is consistent
+     * even if some other thread tries to write to the database
+     * @return length of the uncompressed database */
+    private long compressDatabaseSnapshot(File dbFile, File snapshotFile, Checksum checksum) throws IOException {
+        SQLiteDatabase db = MyContextHolder.get().getDatabase();
+        if (db == null) {
+            throw new FileNotFoundException("Database is not available");
+        }
+        long length;
+        db.beginTransaction();
+        try {
+            InputStream in = new CheckedInputStream(new FileInputStream(dbFile), checksum);
+            OutputStream out = null;
+            try {
+                out = new GZIPOutputStream(new FileOutputStream(snapshotFile, false), BUFFER_LENGTH);
+                length = copyStream(in, out);
+                out.close();
+                out = null;
+            } finally {
+                DbUtils.closeSilently(out, snapshotFile.getAbsolutePath());
+                DbUtils.closeSilently(in, dbFile.getAbsolutePath());
+            }
+        } finally {
+            db.endTransaction();
+        }
+        MyLog.v(this, "Database snapshot compressed from " + length + " to " + snapshotFile.length() + " bytes");
+        return length;
+    }
+
+    private void writeEntity(MyBackupDataOutput data, String key, File dataFile, InputStream in,
+                             long fileLength, String fileExtension) throws IOException {
+        if (fileLength > Integer.MAX_VALUE) {
+            throw new FileNotFoundException("File '"
+                    + dataFile.getName() + "' is too large for backup: " + fileLength + " bytes" );
+        }
+        int bytesToWrite = (int) fileLength;
+        data.writeEntityHeader(key, bytesToWrite, fileExtension);
+        byte[] buffer = new byte[BUFFER_LENGTH];
+        int bytesWritten = 0;
+        while (bytesWritten < bytesToWrite) {
+            int bytesRead = in.read(buffer, 0, Math.min(buffer.length, bytesToWrite - bytesWritten));
+            if (bytesRead <= 0) {
+                break;
+            }
+            data.writeEntityData(buffer, bytesRead);
+            bytesWritten += bytesRead;
+        }
+        if (bytesWritten != bytesToWrite) {
+            throw new FileNotFoundException("Couldn't backup "
+                    + filePartiallyWritten(key, dataFile, bytesToWrite, bytesWritten));
+        }
+        backupDescriptor.getLogger().logProgress(
+                "Backed up " + fileWritten(key, dataFile, bytesWritten));
+    }
+
+    /** @return number of bytes copied */
+    private static long copyStream(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_LENGTH];
+        long length = 0;
+        int bytesRead;
+        while ((bytesRead = in.read(buffer)) > 0) {
+            out.write(buffer, 0, bytesRead);
+            length += bytesRead;
+        }
+        return length;
+    }
+
+    private String fileWritten(String key, File dataFile, long bytesWritten) {
         return filePartiallyWritten(key, dataFile, bytesWritten, bytesWritten);
     }
     
-    private String filePartiallyWritten(String key, File dataFile, int bytesToWrite, int bytesWritten) {
+    private String filePartiallyWritten(String key, File dataFile, long bytesToWrite, long bytesWritten) {
         if ( bytesWritten == bytesToWrite) {
             return "file:'" + dataFile.getName()
                     + "', key:'" + key + "', length:"
@@ -259,7 +347,7 @@ public class MyBackupAgent extends BackupAgent {
         restoreSharedPreferences(data);
         assertNextHeader(data, DATABASE_KEY + "_" + DatabaseHolder.DATABASE_NAME);
         databasesRestored += restoreFile(data,
-                    MyStorage.getDatabasePath(DatabaseHolder.DATABASE_NAME));
+                    MyStorage.getDatabasePath(DatabaseHolder.DATABASE_NAME), true);
         MyContextHolder.release();
         MyContextHolder.setOnRestore(true);
         MyContextHolder.initialize(this, this);
@@ -282,7 +370,7 @@ public class MyBackupAgent extends BackupAgent {
         final String filename = "preferences";
         File tempFile = new File(SharedPreferencesUtil.prefsDirectory(MyContextHolder.get()
                 .context()), filename + ".xml");
-        sharedPreferencesRestored += restoreFile(data, tempFile);
+        sharedPreferencesRestored += restoreFile(data, tempFile, false);
         SharedPreferencesUtil.copyAll(SharedPreferencesUtil.getSharedPreferences(filename),
                 SharedPreferencesUtil.getDefaultSharedPreferences());
         if (!tempFile.delete()) {
@@ -320,37 +408,51 @@ public class MyBackupAgent extends BackupAgent {
         return false;
     }
     
-    /** Returns count of restores files */
-    public long restoreFile(MyBackupDataInput data, File dataFile) throws IOException {
-        if (dataFile.exists() && !dataFile.delete()) {
-            throw new FileNotFoundException("Couldn't delete old file before restore '"
-                    + dataFile.getName() + "'");
-        }
+    /** The file is written to a temporary file first and replaces the old one only after it's verified
+     * @return count of restored files */
+    public long restoreFile(MyBackupDataInput data, File dataFile, boolean compressed) throws IOException {
         final String method = "restoreFile";
-        MyLog.i(this, method + " started, " + fileWritten(data.getKey(), dataFile, data.getDataSize()));
-        final int chunkSize = 10000;
-        int bytesToWrite = data.getDataSize();
-        int bytesWritten = 0;
-        FileOutputStream output = new FileOutputStream(dataFile, false);
+        String key = data.getKey();
+        int bytesToRead = data.getDataSize();
+        MyLog.i(this, method + " started, " + fileWritten(key, dataFile, bytesToRead));
+        File tempFile = new File(dataFile.getAbsolutePath() + RESTORED_FILE_SUFFIX);
+        if (tempFile.exists() && !tempFile.delete()) {
+            throw new FileNotFoundException("Couldn't delete temporary file '" + tempFile.getName() + "'");
+        }
+        InputStream entityIn = data.newEntityInputStream();
+        CheckedInputStream in = null;
+        OutputStream out = null;
+        long length;
         try {
-            while (bytesToWrite > bytesWritten) {
-                byte[] bytes = new byte[chunkSize];
-                int bytesRead = data.readEntityData(bytes, 0, bytes.length);
-                if (bytesRead == 0) {
-                    break;
-                }
-                output.write(bytes, 0, bytesRead);
-                bytesWritten += bytesRead;
+            in = new CheckedInputStream(compressed ? new GZIPInputStream(entityIn, BUFFER_LENGTH) : entityIn,
+                    new CRC32());
+            out = new FileOutputStream(tempFile, false);
+            length = copyStream(in, out);
+            out.close();
+            out = null;
+            int bytesNotRead = entityIn.available();
+            if (bytesNotRead > 0) {
+                throw new FileNotFoundException("Couldn't restore " + filePartiallyWritten(key, dataFile,
+                        bytesToRead, bytesToRead - bytesNotRead));
             }
-            if (bytesWritten != bytesToWrite) {
-                throw new FileNotFoundException("Couldn't restore " 
-                        + filePartiallyWritten(data.getKey(), dataFile, bytesToWrite, bytesWritten));
+            backupDescriptor.verifyFileChecksum(key, length, in.getChecksum().getValue());
+            if (dataFile.exists() && !dataFile.delete()) {
+                throw new FileNotFoundException("Couldn't delete old file before restore '"
+                        + dataFile.getName() + "'");
+            }
+            if (!tempFile.renameTo(dataFile)) {
+                throw new FileNotFoundException("Couldn't rename '" + tempFile.getName()
+                        + "' to '" + dataFile.getName() + "'");
             }
         } finally {
-            output.close();
+            DbUtils.closeSilently(out, tempFile.getAbsolutePath());
+            DbUtils.closeSilently(in, key);
+            if (tempFile.exists() && !tempFile.delete()) {
+                MyLog.v(this, "Couldn't delete " + tempFile.getAbsolutePath());
+            }
         }
         backupDescriptor.getLogger().logProgress("Restored "
-                + filePartiallyWritten(data.getKey(), dataFile, bytesToWrite, bytesWritten));
+                + fileWritten(key, dataFile, length));
         return 1;
     }
 
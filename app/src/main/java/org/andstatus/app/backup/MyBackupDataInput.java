@@ -19,13 +19,17 @@ package org.andstatus.app.backup;
 import android.app.backup.BackupDataInput;
 
 import org.andstatus.app.context.MyContext;
+import org.andstatus.app.data.DbUtils;
 import org.andstatus.app.util.FileUtils;
 import org.andstatus.app.util.MyLog;
 import org.json.JSONObject;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.TreeSet;
@@ -39,6 +43,8 @@ public class MyBackupDataInput {
     private Iterator<BackupHeader> keysIterator;
     private boolean mHeaderReady = false;
     private int dataOffset = 0;
+    /** Stays open while data of the current entity is being read */
+    private InputStream dataIn = null;
     private BackupHeader header = BackupHeader.getEmpty();
     
     static class BackupHeader implements Comparable<BackupHeader> {
@@ -151,6 +157,7 @@ public class MyBackupDataInput {
     }
 
     private boolean readNextHeader2() throws IOException {
+        closeDataFile();
         mHeaderReady = false;
         dataOffset = 0;
         if (keysIterator.hasNext()) {
@@ -215,18 +222,72 @@ public class MyBackupDataInput {
         } else if (size < 1 || dataOffset >= header.dataSize) {
             // skip
         } else if (mHeaderReady) {
-            File dataFile = new File(dataFolder, header.key + MyBackupDataOutput.DATA_FILE_SUFFIX + header.fileExtension);
-            byte[] readData = FileUtils.getBytes(dataFile, dataOffset, size);
-            bytesRead = readData.length;
-            System.arraycopy(readData, 0, data, offset, bytesRead);
+            if (dataIn == null) {
+                File dataFile = new File(dataFolder, header.key + MyBackupDataOutput.DATA_FILE_SUFFIX + header.fileExtension);
+                dataIn = new BufferedInputStream(new FileInputStream(dataFile));
+            }
+            bytesRead = Math.max(dataIn.read(data, offset, Math.min(size, header.dataSize - dataOffset)), 0);
         } else {
             throw new IllegalStateException("Entity header not read");
         }
         MyLog.v(this, "key=" + header.key + ", offset=" + dataOffset + ", bytes read=" + bytesRead);
         dataOffset += bytesRead;
+        if (dataOffset >= header.dataSize) {
+            closeDataFile();
+        }
         return bytesRead;
     }
 
+    private void closeDataFile() {
+        if (dataIn != null) {
+            DbUtils.closeSilently(dataIn, header.key);
+            dataIn = null;
+        }
+    }
+
+    /** Data of the current entity as a stream, read with {@link #readEntityData(byte[], int, int)} */
+    InputStream newEntityInputStream() {
+        return new EntityInputStream(getDataSize());
+    }
+
+    private class EntityInputStream extends InputStream {
+        private static final int CHUNK_SIZE = 32 * 1024;
+        private final int dataSize;
+        private int bytesRead = 0;
+
+        EntityInputStream(int dataSize) {
+            this.dataSize = dataSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] bytes = new byte[1];
+            return read(bytes, 0, 1) > 0 ? bytes[0] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            int toRead = Math.min(Math.min(length, CHUNK_SIZE), dataSize - bytesRead);
+            if (toRead <= 0) {
+                return -1;
+            }
+            int read = readEntityData(buffer, offset, toRead);
+            if (read <= 0) {
+                return -1;
+            }
+            bytesRead += read;
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return dataSize - bytesRead;
+        }
+    }
+
     /** {@link BackupDataInput#skipEntityData()}  */
     public void skipEntityData() throws IOException {
         if (backupDataInput != null) {
@@ -237,6 +298,7 @@ public class MyBackupDataInput {
     }
 
     private void skipEntityData2() {
+        closeDataFile();
         if (mHeaderReady) {
             mHeaderReady = false;
         } else {
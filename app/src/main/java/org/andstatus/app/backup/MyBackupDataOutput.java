@@ -44,6 +44,8 @@ public class MyBackupDataOutput {
     private int sizeToWrite = 0;
     private int sizeWritten = 0;
     private File dataFile = null;
+    /** Stays open while data of the current entity is being written */
+    private OutputStream dataOut = null;
     private int headerOrdinalNumber = 0;
 
     public MyBackupDataOutput(BackupDataOutput backupDataOutput) {
@@ -66,6 +68,7 @@ public class MyBackupDataOutput {
 
     private int writeEntityHeader2(String key, int dataSize, String fileExtension) throws IOException {
         MyLog.v(this, "Writing header for '" + key + "', size=" + dataSize);
+        closeDataFile();
         sizeToWrite = dataSize;
         sizeWritten = 0;
         writeHeaderFile(key, dataSize, fileExtension);
@@ -119,7 +122,10 @@ public class MyBackupDataOutput {
         if (size < 0) {
             throw new FileNotFoundException("Wrong number of bytes to write: " + size);
         }
-        appendBytesToFile(dataFile, data, size);
+        if (dataOut == null) {
+            dataOut = new BufferedOutputStream(new FileOutputStream(dataFile, true));
+        }
+        dataOut.write(data, 0, size);
         sizeWritten += size;
         if (sizeWritten >= sizeToWrite) {
             try {
@@ -128,6 +134,7 @@ public class MyBackupDataOutput {
                             + ", expected=" + sizeToWrite );
                 }
             } finally {
+                closeDataFile();
                 dataFile = null;
                 sizeWritten = 0;
             }
@@ -135,6 +142,16 @@ public class MyBackupDataOutput {
         return size;
     }
 
+    private void closeDataFile() throws IOException {
+        if (dataOut != null) {
+            try {
+                dataOut.close();
+            } finally {
+                dataOut = null;
+            }
+        }
+    }
+
     private int appendBytesToFile(File file, byte[] data, int size) throws IOException {
         MyLog.v(this, "Appending data to file='" + file.getName() + "', size=" + size);
         FileOutputStream fileOutputStream = null;
@@ -43,15 +43,19 @@ public class MyBackupDescriptor {
 
     static final int BACKUP_SCHEMA_VERSION_UNKNOWN = -1;
     /** Depends, in particular, on @{@link DatabaseCreator#DATABASE_VERSION}
+     * v.7 2026-10-18 app.v.35 database is compressed, checksums of files are stored in the descriptor
      * v.6 2016-11-27 app.v.31 database schema changed
      * v.5 2016-05-22 app.v.27 database schema changed
      * v.4 2016-02-28 app.v.23 database schema changed
      */
-    static final int BACKUP_SCHEMA_VERSION = 6;
+    static final int BACKUP_SCHEMA_VERSION = 7;
     static final String KEY_ACCOUNTS_COUNT = "accounts_count";
     static final String KEY_CREATED_DATE = "created_date";
     static final String KEY_BACKUP_SCHEMA_VERSION = "backup_schema_version";
     static final String KEY_APPLICATION_VERSION_CODE = "app_version_code";
+    static final String KEY_FILES = "files";
+    static final String KEY_FILE_LENGTH = "length";
+    static final String KEY_FILE_CRC32 = "crc32";
     
     private int backupSchemaVersion = BACKUP_SCHEMA_VERSION_UNKNOWN;
     private int applicationVersionCode = 0;
@@ -60,6 +64,8 @@ public class MyBackupDescriptor {
     private FileDescriptor fileDescriptor = null;
 
     private long accountsCount = 0;
+    /** Length and checksum of the (uncompressed) content of each backed up file by its key */
+    private JSONObject files = new JSONObject();
 
     private final ProgressLogger progressLogger;
     
@@ -80,6 +86,10 @@ public class MyBackupDescriptor {
             myBackupDescriptor.createdDate = jso.optLong(KEY_CREATED_DATE, myBackupDescriptor.createdDate);
             myBackupDescriptor.applicationVersionCode = jso.optInt(KEY_APPLICATION_VERSION_CODE, myBackupDescriptor.applicationVersionCode);
             myBackupDescriptor.accountsCount = jso.optLong(KEY_ACCOUNTS_COUNT, myBackupDescriptor.accountsCount);
+            JSONObject files = jso.optJSONObject(KEY_FILES);
+            if (files != null) {
+                myBackupDescriptor.files = files;
+            }
             if (myBackupDescriptor.backupSchemaVersion != BACKUP_SCHEMA_VERSION) {
                 try {
                     MyLog.w(TAG, "Bad backup descriptor: " + jso.toString(2) );
@@ -137,6 +147,7 @@ public class MyBackupDescriptor {
             jso.put(KEY_CREATED_DATE, createdDateNew);
             jso.put(KEY_APPLICATION_VERSION_CODE, applicationVersionCode);
             jso.put(KEY_ACCOUNTS_COUNT, accountsCount);
+            jso.put(KEY_FILES, files);
             
             writeStringToFileDescriptor(jso.toString(), fileDescriptor, true);
             createdDate = createdDateNew;
@@ -187,6 +198,31 @@ public class MyBackupDescriptor {
         progressLogger.logProgress("Accounts backed up:" + accountsCount);
     }
 
+    void setFileChecksum(String key, long length, long crc32) throws IOException {
+        JSONObject file = new JSONObject();
+        try {
+            file.put(KEY_FILE_LENGTH, length);
+            file.put(KEY_FILE_CRC32, crc32);
+            files.put(key, file);
+        } catch (JSONException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /** Compares restored content of the file with its length and checksum, stored on backup */
+    void verifyFileChecksum(String key, long length, long crc32) throws IOException {
+        JSONObject file = files.optJSONObject(key);
+        if (file == null) {
+            throw new FileNotFoundException("No checksum of key='" + key + "' in the backup descriptor");
+        }
+        long lengthExpected = file.optLong(KEY_FILE_LENGTH, -1);
+        long crc32Expected = file.optLong(KEY_FILE_CRC32, -1);
+        if (length != lengthExpected || crc32 != crc32Expected) {
+            throw new FileNotFoundException("Restored data of key='" + key + "' is corrupted: length:" + length
+                    + ", crc32:" + crc32 + ", expected length:" + lengthExpected + ", crc32:" + crc32Expected);
+        }
+    }
+
     public ProgressLogger getLogger() {
         return progressLogger;
     }
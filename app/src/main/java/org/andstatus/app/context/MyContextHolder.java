@@ -30,6 +30,7 @@ import net.jcip.annotations.ThreadSafe;
 import org.andstatus.app.FirstActivity;
 import org.andstatus.app.database.DatabaseConverterController;
 import org.andstatus.app.graphics.ImageCaches;
+import org.andstatus.app.net.http.MyHttpClientFactory;
 import org.andstatus.app.os.AsyncTaskLauncher;
 import org.andstatus.app.util.I18n;
 import org.andstatus.app.util.MyLog;
@@ -207,6 +208,8 @@ public final class MyContextHolder {
         builder.append(ImageCaches.getCacheInfo());
         builder.append("\n");
         builder.append(AsyncTaskLauncher.threadPoolInfo());
+        builder.append("\n");
+        builder.append(MyHttpClientFactory.getPoolInfo());
         return builder.toString();
     }
 
@@ -31,6 +31,7 @@ import net.jcip.annotations.ThreadSafe;
 import org.andstatus.app.ClassInApplicationPackage;
 import org.andstatus.app.account.PersistentAccounts;
 import org.andstatus.app.data.AssertionData;
+import org.andstatus.app.data.UserCache;
 import org.andstatus.app.database.DatabaseConverterController;
 import org.andstatus.app.database.DatabaseHolder;
 import org.andstatus.app.graphics.ImageCaches;
@@ -115,6 +116,7 @@ public final class MyContextImpl implements MyContext {
         }
         mPreferencesChangeTime = MyPreferences.getPreferencesChangeTime();
         initializeDatabase(createApplicationData);
+        UserCache.clear();
 
         switch (mState) {
             case DATABASE_READY:
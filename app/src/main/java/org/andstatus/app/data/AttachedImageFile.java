@@ -16,8 +16,6 @@
 
 package org.andstatus.app.data;
 
-import android.database.Cursor;
-
 import org.andstatus.app.database.DownloadTable;
 import org.andstatus.app.graphics.CacheName;
 import org.andstatus.app.graphics.CachedImage;
@@ -27,14 +25,27 @@ public class AttachedImageFile extends ImageFile {
 
     private final long downloadRowId;
 
-    public static AttachedImageFile fromCursor(Cursor cursor) {
+    public static AttachedImageFile fromCursor(CursorRow row) {
         return new AttachedImageFile(
-                DbUtils.getLong(cursor, DownloadTable.IMAGE_ID),
-                DbUtils.getString(cursor, DownloadTable.IMAGE_FILE_NAME));
+                row.getLong(DownloadTable.IMAGE_ID),
+                row.getString(DownloadTable.IMAGE_FILE_NAME),
+                row.getInt(DownloadTable.IMAGE_WIDTH),
+                row.getInt(DownloadTable.IMAGE_HEIGHT),
+                row.getInt(DownloadTable.IMAGE_THUMBNAIL_WIDTH),
+                row.getInt(DownloadTable.IMAGE_THUMBNAIL_HEIGHT));
     }
 
     public AttachedImageFile(long downloadRowIdIn, String filename) {
-        super(filename);
+        this(downloadRowIdIn, filename, 0, 0);
+    }
+
+    public AttachedImageFile(long downloadRowIdIn, String filename, int width, int height) {
+        this(downloadRowIdIn, filename, width, height, 0, 0);
+    }
+
+    private AttachedImageFile(long downloadRowIdIn, String filename, int width, int height,
+                              int thumbnailWidth, int thumbnailHeight) {
+        super(filename, width, height, thumbnailWidth, thumbnailHeight);
         downloadRowId = downloadRowIdIn;
     }
 
@@ -43,6 +43,7 @@ public class AvatarData extends DownloadData {
         AvatarData data = new AvatarData(userIdIn, Uri.EMPTY);
         if (!data.getUri().equals(avatarUriNew)) {
             deleteAllOfThisUser(userIdIn);
+            UserCache.invalidate(userIdIn);
             data = new AvatarData(userIdIn, avatarUriNew);
         }
         return data;
@@ -51,5 +52,11 @@ public class AvatarData extends DownloadData {
     private AvatarData(long userIdIn, Uri avatarUriNew) {
         super(userIdIn, 0, MyContentType.IMAGE, avatarUriNew);
     }
+
+    @Override
+    public void saveToDatabase() {
+        super.saveToDatabase();
+        UserCache.invalidate(userId);
+    }
     
 }
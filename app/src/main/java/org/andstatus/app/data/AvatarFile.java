@@ -16,7 +16,6 @@
 
 package org.andstatus.app.data;
 
-import android.database.Cursor;
 import android.support.annotation.NonNull;
 
 import org.andstatus.app.R;
@@ -31,14 +30,21 @@ public class AvatarFile extends ImageFile {
     public static final int AVATAR_SIZE_DIP = 48;
     
     public AvatarFile(long userIdIn, String filename) {
-        super(filename);
+        this(userIdIn, filename, 0, 0, 0, 0);
+    }
+
+    private AvatarFile(long userIdIn, String filename, int width, int height,
+                       int thumbnailWidth, int thumbnailHeight) {
+        super(filename, width, height, thumbnailWidth, thumbnailHeight);
         userId = userIdIn;
     }
 
     @NonNull
-    public static AvatarFile fromCursor(long userId, Cursor cursor) {
-        String avatarFilename = DbUtils.getString(cursor, DownloadTable.AVATAR_FILE_NAME);
-        return new AvatarFile(userId, avatarFilename);
+    public static AvatarFile fromCursor(long userId, CursorRow row) {
+        String avatarFilename = row.getString(DownloadTable.AVATAR_FILE_NAME);
+        return new AvatarFile(userId, avatarFilename, row.getInt(DownloadTable.AVATAR_WIDTH),
+                row.getInt(DownloadTable.AVATAR_HEIGHT), row.getInt(DownloadTable.AVATAR_THUMBNAIL_WIDTH),
+                row.getInt(DownloadTable.AVATAR_THUMBNAIL_HEIGHT));
     }
 
     @Override
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+import org.andstatus.app.util.MyLog;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Current row of a Cursor with column indexes, which are computed once for the Cursor's projection.
+ * Create one instance per Cursor and reuse it while iterating over the rows,
+ * so mapping a row doesn't look up each column by name again.
+ * @author yvolk@yurivolkov.com
+ */
+public class CursorRow {
+    private static final String TAG = CursorRow.class.getSimpleName();
+    @NonNull
+    public final Cursor cursor;
+    /** By the requested names, including the names, which were looked up with {@link #findColumnIndex(String)} */
+    private final Map<String, Integer> columnIndexes;
+    /** By lower case names, the first of duplicated names wins, as in {@link android.database.AbstractCursor} */
+    private final Map<String, Integer> lowerCaseColumnIndexes;
+
+    public CursorRow(@NonNull Cursor cursor) {
+        this.cursor = cursor;
+        String[] columnNames = cursor.getColumnNames();
+        columnIndexes = new HashMap<>(columnNames.length * 2);
+        lowerCaseColumnIndexes = new HashMap<>(columnNames.length * 2);
+        for (int ind = 0; ind < columnNames.length; ind++) {
+            // The same as in SQLiteCursor: the last of duplicated names wins
+            columnIndexes.put(columnNames[ind], ind);
+            String lowerCaseName = columnNames[ind].toLowerCase(Locale.US);
+            if (!lowerCaseColumnIndexes.containsKey(lowerCaseName)) {
+                lowerCaseColumnIndexes.put(lowerCaseName, ind);
+            }
+        }
+    }
+
+    /**
+     * Like {@link Cursor#getColumnIndex(String)}, the name is case insensitive and may have a "table." prefix
+     * @return -1 if the column is absent in the projection
+     */
+    public int getColumnIndex(String columnName) {
+        Integer columnIndex = columnIndexes.get(columnName);
+        if (columnIndex == null) {
+            columnIndex = findColumnIndex(columnName);
+            columnIndexes.put(columnName, columnIndex);
+        }
+        return columnIndex;
+    }
+
+    private int findColumnIndex(String columnName) {
+        if (columnName == null) {
+            return -1;
+        }
+        int periodIndex = columnName.lastIndexOf('.');
+        String name = periodIndex < 0 ? columnName : columnName.substring(periodIndex + 1);
+        Integer columnIndex = lowerCaseColumnIndexes.get(name.toLowerCase(Locale.US));
+        return columnIndex == null ? -1 : columnIndex;
+    }
+
+    @NonNull
+    public String getString(String columnName) {
+        return DbUtils.getString(cursor, getColumnIndex(columnName));
+    }
+
+    public boolean getBoolean(String columnName) {
+        return getInt(columnName) == 1;
+    }
+
+    public long getLong(String columnName) {
+        long value = 0;
+        int columnIndex = getColumnIndex(columnName);
+        if (columnIndex >= 0) {
+            try {
+                value = cursor.getLong(columnIndex);
+            } catch (Exception e){
+                MyLog.d(TAG, "getLong column " + columnName, e);
+            }
+        }
+        return value;
+    }
+
+    public int getInt(String columnName) {
+        int value = 0;
+        int columnIndex = getColumnIndex(columnName);
+        if (columnIndex >= 0) {
+            try {
+                value = cursor.getInt(columnIndex);
+            } catch (Exception e){
+                MyLog.d(TAG, "getInt column " + columnName, e);
+            }
+        }
+        return value;
+    }
+}
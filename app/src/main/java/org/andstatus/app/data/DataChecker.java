@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.provider.BaseColumns;
+
+import org.andstatus.app.backup.ProgressLogger;
+import org.andstatus.app.context.MyContext;
+import org.andstatus.app.service.MyServiceManager;
+import org.andstatus.app.util.MyLog;
+import org.andstatus.app.util.SharedPreferencesUtil;
+
+/**
+ * Base of the checkers of the data, which fix it in chunks of rows, so a table of any size is checked
+ * without loading it into memory.
+ * @author yvolk@yurivolkov.com
+ */
+abstract class DataChecker {
+    static final int PROGRESS_REPORT_PERIOD_SECONDS = 20;
+    static final int CHUNK_SIZE = 1000;
+    private static final String KEY_PREFIX_LAST_ID = "data_checker_last_id_";
+
+    final MyContext myContext;
+    final ProgressLogger logger;
+    /** If true, changes are counted, but not saved */
+    boolean countOnly = false;
+
+    /**
+     * A pass over rows of a table in the order of their {@link BaseColumns#_ID}.
+     * Changes of each chunk are written in one transaction, and the last id of the chunk is remembered,
+     * so an interrupted pass is resumed after the last written chunk
+     */
+    abstract class ChunkedPass {
+        final String name;
+
+        ChunkedPass(String name) {
+            this.name = name;
+        }
+
+        /** @return SQL, which selects rows with ids greater than lastId, ordered by the id (the first column) */
+        abstract String selectChunk(long lastId, int limit);
+
+        /** Called inside the transaction of the chunk. If {@link #countOnly}, only checks the row
+         * @return true if the row has (or should have) been changed */
+        abstract boolean fixRow(SQLiteDatabase db, Cursor cursor);
+
+        /** @return number of changed rows */
+        int run() {
+            final String method = "pass " + name;
+            SQLiteDatabase db = myContext.getDatabase();
+            if (db == null) {
+                MyLog.v(this, method + "; Database is null");
+                return 0;
+            }
+            String keyLastId = KEY_PREFIX_LAST_ID + name;
+            long lastId = countOnly ? 0 : SharedPreferencesUtil.getLong(keyLastId);
+            if (lastId > 0) {
+                logger.logProgress(method + " resumed after id " + lastId);
+            }
+            long rowsCount = 0;
+            int changedCount = 0;
+            boolean more = true;
+            while (more) {
+                int rowsInChunk = 0;
+                long lastIdInChunk = lastId;
+                int changedInChunk = 0;
+                db.beginTransaction();
+                try {
+                    Cursor cursor = null;
+                    try {
+                        cursor = db.rawQuery(selectChunk(lastId, CHUNK_SIZE), null);
+                        while (cursor.moveToNext()) {
+                            rowsInChunk++;
+                            lastIdInChunk = cursor.getLong(0);
+                            if (fixRow(db, cursor)) {
+                                changedInChunk++;
+                            }
+                        }
+                    } finally {
+                        DbUtils.closeSilently(cursor);
+                    }
+                    db.setTransactionSuccessful();
+                } catch (Exception e) {
+                    String logMsg = method + " error after id " + lastId + ": " + e.getMessage();
+                    logger.logProgress(logMsg);
+                    MyLog.e(this, logMsg, e);
+                    return changedCount;
+                } finally {
+                    db.endTransaction();
+                }
+                rowsCount += rowsInChunk;
+                changedCount += changedInChunk;
+                lastId = lastIdInChunk;
+                more = rowsInChunk == CHUNK_SIZE;
+                if (!countOnly) {
+                    if (more) {
+                        SharedPreferencesUtil.putLong(keyLastId, lastId);
+                    } else {
+                        SharedPreferencesUtil.removeKey(keyLastId);
+                    }
+                }
+                if (logger.loggedMoreSecondsAgoThan(PROGRESS_REPORT_PERIOD_SECONDS)) {
+                    logger.logProgress(name + ": checked " + rowsCount + " rows"
+                            + (changedCount == 0 ? "" : ", changed " + changedCount));
+                    MyServiceManager.setServiceUnavailable();
+                }
+            }
+            MyLog.v(this, method + " ended, " + rowsCount + " rows, changed " + changedCount);
+            return changedCount;
+        }
+    }
+
+    DataChecker(MyContext myContext, ProgressLogger logger) {
+        this.myContext = myContext;
+        this.logger = logger;
+    }
+
+    public abstract void fixData();
+}
@@ -16,44 +16,57 @@
 
 package org.andstatus.app.data;
 
-import android.content.ContentResolver;
 import android.content.SharedPreferences;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 
 import org.andstatus.app.context.MyContext;
-import org.andstatus.app.context.MyContextHolder;
 import org.andstatus.app.context.MyPreferences;
+import org.andstatus.app.context.MyStorage;
 import org.andstatus.app.database.DownloadTable;
 import org.andstatus.app.database.FriendshipTable;
 import org.andstatus.app.database.MsgTable;
 import org.andstatus.app.database.MsgOfUserTable;
 import org.andstatus.app.database.UserTable;
+import org.andstatus.app.util.LongList;
 import org.andstatus.app.util.MyLog;
 import org.andstatus.app.util.RelativeTime;
-import org.andstatus.app.util.SelectionAndArgs;
 import org.andstatus.app.util.SharedPreferencesUtil;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Clean database from outdated information
  * old Messages, log files...
+ * Messages are deleted in chunks, a transaction per chunk, so the pruner doesn't block
+ * synchronization and UI queries for long. Attachments of the messages are deleted in the same transactions.
  */
 public class DataPruner {
     private MyContext mMyContext;
-    private ContentResolver mContentResolver;
     private int mDeleted = 0;
     static final long MAX_DAYS_LOGS_TO_KEEP = 10;
     static final long PRUNE_MIN_PERIOD_DAYS = 1;	
+    /** Max number of messages (or downloads) deleted in one transaction */
+    static final int CHUNK_SIZE = 200;
+    /** Pause between the transactions, so other threads may get the database lock */
+    private static final long PAUSE_BETWEEN_CHUNKS_MS = 50;
+    /** Temporary table with IDs of messages, which shouldn't be deleted */
+    private static final String KEEP_TABLE = "prune_keep";
+    /** Downloaded files, which are not in the database, are deleted only after this time,
+     * so we won't delete a file, which is being downloaded */
+    static final long MIN_DAYS_ORPHAN_FILES_TO_KEEP = 1;
+
+    private final StringBuilder timing = new StringBuilder();
+    private long phaseStartedAt = 0;
 
     public DataPruner(MyContext myContext) {
         mMyContext = myContext;
-        mContentResolver = myContext.context().getContentResolver();
     }
 
     /**
@@ -68,129 +81,282 @@ public class DataPruner {
         MyLog.v(this, method + " started");
 
         mDeleted = 0;
-        int nDeletedTime = 0;
+        timing.setLength(0);
+        startPhase();
         // We're using global preferences here
         SharedPreferences sp = SharedPreferencesUtil
                 .getDefaultSharedPreferences();
-
-        // Don't delete messages, which are favorited by any user
-        String sqlNotFavoritedMessage = "NOT EXISTS ("
-                + "SELECT * FROM " + MsgOfUserTable.TABLE_NAME + " AS gnf WHERE "
-                + MsgTable.TABLE_NAME + "." + MsgTable._ID + "=gnf." + MsgOfUserTable.MSG_ID
-                + " AND gnf." + MsgOfUserTable.FAVORITED + "=1"
-                + ")";
-        String sqlNotLatestMessageByFollowedUser = MsgTable.TABLE_NAME + "." + MsgTable._ID + " NOT IN("
-                + "SELECT " + UserTable.USER_MSG_ID
-                + " FROM " + UserTable.TABLE_NAME + " AS userf"
-                + " INNER JOIN " + FriendshipTable.TABLE_NAME
-                + " ON" 
-                + " userf." + UserTable._ID + "=" + FriendshipTable.TABLE_NAME + "." + FriendshipTable.FRIEND_ID
-                + " AND " + FriendshipTable.TABLE_NAME + "." + FriendshipTable.FOLLOWED + "=1"
-                + ")";
-
         int maxDays = Integer.parseInt(sp.getString(MyPreferences.KEY_HISTORY_TIME, "3"));
         long latestTimestamp = 0;
-
-        int nTweets = 0;
-        int nToDeleteSize = 0;
-        int nDeletedSize = 0;
         int maxSize = Integer.parseInt(sp.getString(MyPreferences.KEY_HISTORY_SIZE, "2000"));
         long latestTimestampSize = 0;
-        Cursor cursor = null;
-        try {
-            if (maxDays > 0) {
-                latestTimestamp = System.currentTimeMillis() - java.util.concurrent.TimeUnit.DAYS.toMillis(maxDays);
-                SelectionAndArgs sa = new SelectionAndArgs();
-                sa.addSelection(MsgTable.TABLE_NAME + "." + MsgTable.INS_DATE + " <  ?",
-                        String.valueOf(latestTimestamp));
-                sa.addSelection(sqlNotFavoritedMessage);
-                sa.addSelection(sqlNotLatestMessageByFollowedUser);
-                nDeletedTime = mContentResolver.delete(MatchedUri.MSG_CONTENT_URI, sa.selection, sa.selectionArgs);
-            }
-
-            if (maxSize > 0) {
-                nDeletedSize = 0;
-                cursor = mContentResolver.query(MatchedUri.MSG_CONTENT_COUNT_URI, null, null, null, null);
-                if (cursor.moveToFirst()) {
-                    // Count is in the first column
-                    nTweets = cursor.getInt(0);
-                    nToDeleteSize = nTweets - maxSize;
+        long nMessages = 0;
+        SQLiteDatabase db = mMyContext.getDatabase();
+        if (db == null) {
+            MyLog.v(this, method + "; Database is null");
+        } else {
+            try {
+                if (maxDays > 0) {
+                    latestTimestamp = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(maxDays);
                 }
-                cursor.close();
-                if (nToDeleteSize > 0) {
-                    // Find INS_DATE of the most recent tweet to delete
-                    cursor = mContentResolver.query(MatchedUri.MSG_CONTENT_URI, new String[] {
-                            MsgTable.INS_DATE
-                    }, null, null, MsgTable.INS_DATE + " ASC LIMIT 0," + nToDeleteSize);
-                    if (cursor.moveToLast()) {
-                        latestTimestampSize = cursor.getLong(0);
-                    }
-                    cursor.close();
-                    if (latestTimestampSize > 0) {
-                        SelectionAndArgs sa = new SelectionAndArgs();
-                        sa.addSelection(MsgTable.TABLE_NAME + "." + MsgTable.INS_DATE + " <=  ?",
-                                String.valueOf(latestTimestampSize));
-                        sa.addSelection(sqlNotFavoritedMessage);
-                        sa.addSelection(sqlNotLatestMessageByFollowedUser);
-                        nDeletedSize = mContentResolver.delete(MatchedUri.MSG_CONTENT_URI, sa.selection,
-                                sa.selectionArgs);
+                if (maxSize > 0) {
+                    nMessages = MyQuery.sqlToLong(db, method, "SELECT COUNT(*) FROM " + MsgTable.TABLE_NAME);
+                    if (nMessages > maxSize) {
+                        // INS_DATE of the most recent message to delete
+                        latestTimestampSize = MyQuery.sqlToLong(db, method, "SELECT " + MsgTable.INS_DATE
+                                + " FROM " + MsgTable.TABLE_NAME
+                                + " ORDER BY " + MsgTable.INS_DATE + " ASC"
+                                + " LIMIT 1 OFFSET " + (nMessages - maxSize - 1));
                     }
                 }
+                long deleteBefore = Math.max(latestTimestamp, latestTimestampSize > 0 ? latestTimestampSize + 1 : 0);
+                endPhase("count");
+                if (deleteBefore > 0) {
+                    fillKeepTable(db);
+                    endPhase("keep");
+                    mDeleted = deleteMessages(db, deleteBefore);
+                    endPhase("messages");
+                }
+                pruned = true;
+            } catch (Exception e) {
+                MyLog.i(this, method + " failed", e);
+            } finally {
+                dropKeepTable(db);
             }
-            pruned = true;
-        } catch (Exception e) {
-            MyLog.i(this, method + " failed", e);
-        } finally {
-            DbUtils.closeSilently(cursor);
-        }
-        mDeleted = nDeletedTime + nDeletedSize;
-        if (mDeleted > 0) {
             pruneAttachments();
+            endPhase("attachments");
+            pruneDownloadedFiles();
+            endPhase("files");
         }
         pruneLogs(MAX_DAYS_LOGS_TO_KEEP);
+        endPhase("logs");
         setDataPrunedNow();
         if (MyLog.isVerboseEnabled()) {
-            MyLog.v(this,
-                    method + " " + (pruned ? "succeeded" : "failed") + "; History time=" + maxDays + " days; deleted " + nDeletedTime
-                    + " , before " + new Date(latestTimestamp).toString());
-            MyLog.v(this, method + "; History size=" + maxSize + " messages; deleted "
-                    + nDeletedSize + " of " + nTweets + " messages, before " + new Date(latestTimestampSize).toString());
+            MyLog.v(this, method + " " + (pruned ? "succeeded" : "failed")
+                    + "; History time=" + maxDays + " days, before " + new Date(latestTimestamp).toString()
+                    + "; History size=" + maxSize + " of " + nMessages + " messages, before "
+                    + new Date(latestTimestampSize).toString()
+                    + "; deleted " + mDeleted + " messages");
         }
+        MyLog.i(this, method + " phases:" + timing);
         return pruned;
     }
 
+    private void startPhase() {
+        phaseStartedAt = System.currentTimeMillis();
+    }
+
+    private void endPhase(String phase) {
+        long now = System.currentTimeMillis();
+        timing.append(" " + phase + ":" + (now - phaseStartedAt) + "ms");
+        phaseStartedAt = now;
+    }
+
+    /** The table is in the "temp" database of the connection, so we use it inside transactions only */
+    private void fillKeepTable(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            DbUtils.execSQL(db, "CREATE TEMP TABLE IF NOT EXISTS " + KEEP_TABLE + " ("
+                    + MsgOfUserTable.MSG_ID + " INTEGER PRIMARY KEY)");
+            DbUtils.execSQL(db, "DELETE FROM " + KEEP_TABLE);
+            // Don't delete messages, which are favorited by any user
+            DbUtils.execSQL(db, "INSERT OR IGNORE INTO " + KEEP_TABLE
+                    + " SELECT " + MsgOfUserTable.MSG_ID + " FROM " + MsgOfUserTable.TABLE_NAME
+                    + " WHERE " + MsgOfUserTable.FAVORITED + "=1");
+            // ...and the latest messages of followed users
+            DbUtils.execSQL(db, "INSERT OR IGNORE INTO " + KEEP_TABLE
+                    + " SELECT userf." + UserTable.USER_MSG_ID
+                    + " FROM " + UserTable.TABLE_NAME + " AS userf"
+                    + " INNER JOIN " + FriendshipTable.TABLE_NAME
+                    + " ON"
+                    + " userf." + UserTable._ID + "=" + FriendshipTable.TABLE_NAME + "." + FriendshipTable.FRIEND_ID
+                    + " AND " + FriendshipTable.TABLE_NAME + "." + FriendshipTable.FOLLOWED + "=1"
+                    + " WHERE userf." + UserTable.USER_MSG_ID + "<>0");
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private void dropKeepTable(SQLiteDatabase db) {
+        try {
+            DbUtils.execSQL(db, "DROP TABLE IF EXISTS " + KEEP_TABLE);
+        } catch (Exception e) {
+            MyLog.d(this, "dropKeepTable", e);
+        }
+    }
+
+    /** Deletes messages, inserted before the time, together with their attachments and search index
+     * @return number of deleted messages */
+    private int deleteMessages(SQLiteDatabase db, long deleteBefore) {
+        final String method = "deleteMessages";
+        int deleted = 0;
+        long lastId = 0;
+        boolean more = true;
+        while (more) {
+            LongList ids = new LongList(CHUNK_SIZE);
+            List<DownloadFile> files = new ArrayList<>();
+            db.beginTransaction();
+            try {
+                Cursor cursor = null;
+                try {
+                    cursor = db.rawQuery("SELECT " + MsgTable._ID + " FROM " + MsgTable.TABLE_NAME
+                            + " WHERE " + MsgTable._ID + ">" + lastId
+                            + " AND " + MsgTable.INS_DATE + "<" + deleteBefore
+                            + " AND " + MsgTable._ID + " NOT IN (SELECT " + MsgOfUserTable.MSG_ID
+                            + " FROM " + KEEP_TABLE + ")"
+                            + " ORDER BY " + MsgTable._ID
+                            + " LIMIT " + CHUNK_SIZE, null);
+                    while (cursor.moveToNext()) {
+                        ids.add(cursor.getLong(0));
+                    }
+                } finally {
+                    DbUtils.closeSilently(cursor);
+                }
+                if (!ids.isEmpty()) {
+                    String inIds = " IN (" + idsToString(ids) + ")";
+                    files = deleteDownloads(db, DownloadTable.MSG_ID + inIds, 0);
+                    db.delete(MsgOfUserTable.TABLE_NAME, MsgOfUserTable.MSG_ID + inIds, null);
+                    MsgSearchIndex.delete(db, MsgTable._ID + inIds, null);
+                    deleted += db.delete(MsgTable.TABLE_NAME, MsgTable._ID + inIds, null);
+                    db.setTransactionSuccessful();
+                }
+            } finally {
+                db.endTransaction();
+            }
+            for (DownloadFile file : files) {
+                file.delete();
+            }
+            more = ids.size() == CHUNK_SIZE;
+            if (more) {
+                lastId = ids.get(ids.size() - 1);
+                DbUtils.waitMs(method, PAUSE_BETWEEN_CHUNKS_MS);
+            }
+        }
+        return deleted;
+    }
+
+    private static String idsToString(LongList ids) {
+        StringBuilder builder = new StringBuilder();
+        for (int ind = 0; ind < ids.size(); ind++) {
+            if (ind > 0) {
+                builder.append(",");
+            }
+            builder.append(ids.get(ind));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Deletes selected rows of the {@link DownloadTable}. Should be called inside a transaction;
+     * the files should be deleted after the transaction succeeded
+     * @param limit max number of rows to delete, 0 - no limit
+     * @return downloaded files of the deleted rows
+     */
+    private static List<DownloadFile> deleteDownloads(SQLiteDatabase db, String selection, int limit) {
+        LongList ids = new LongList();
+        List<DownloadFile> files = new ArrayList<>();
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery("SELECT " + DownloadTable._ID + ", " + DownloadTable.FILE_NAME
+                    + " FROM " + DownloadTable.TABLE_NAME
+                    + " WHERE " + selection
+                    + " ORDER BY " + DownloadTable._ID
+                    + (limit > 0 ? " LIMIT " + limit : ""), null);
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+                files.add(new DownloadFile(cursor.getString(1)));
+            }
+        } finally {
+            DbUtils.closeSilently(cursor);
+        }
+        if (!ids.isEmpty()) {
+            db.delete(DownloadTable.TABLE_NAME, DownloadTable._ID + " IN (" + idsToString(ids) + ")", null);
+        }
+        return files;
+    }
+
+    /** Deletes attachments of messages, which are not in the database
+     * @return number of deleted downloads */
     long pruneAttachments() {
         final String method = "pruneAttachments";
-        String sql = "SELECT DISTINCT " + DownloadTable.MSG_ID + " FROM " + DownloadTable.TABLE_NAME
-                + " WHERE " + DownloadTable.MSG_ID + " NOT NULL"
-                + " AND NOT EXISTS (" 
-                + "SELECT * FROM " + MsgTable.TABLE_NAME
-                + " WHERE " + MsgTable.TABLE_NAME + "." + MsgTable._ID + "=" + DownloadTable.MSG_ID
-                + ")";
-        SQLiteDatabase db = MyContextHolder.get().getDatabase();
+        SQLiteDatabase db = mMyContext.getDatabase();
         if (db == null) {
             MyLog.v(this, method + "; Database is null");
             return 0;
         }
         long nDeleted = 0;
-        List<Long> list = new ArrayList<Long>();
+        boolean more = true;
+        while (more) {
+            List<DownloadFile> files;
+            db.beginTransaction();
+            try {
+                // Deleted rows are not selected again, so each chunk starts from the beginning
+                files = deleteDownloads(db, DownloadTable.MSG_ID + " NOT NULL"
+                        + " AND NOT EXISTS ("
+                        + "SELECT * FROM " + MsgTable.TABLE_NAME
+                        + " WHERE " + MsgTable.TABLE_NAME + "." + MsgTable._ID + "=" + DownloadTable.MSG_ID
+                        + ")", CHUNK_SIZE);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            for (DownloadFile file : files) {
+                file.delete();
+            }
+            nDeleted += files.size();
+            more = files.size() == CHUNK_SIZE;
+            if (more) {
+                DbUtils.waitMs(method, PAUSE_BETWEEN_CHUNKS_MS);
+            }
+        }
+        if (nDeleted > 0) {
+            MyLog.v(this, method + "; Attachments deleted: " + nDeleted);
+        }
+        return nDeleted;
+    }
+
+    /** Deletes old downloaded files, which are not referenced from the {@link DownloadTable}
+     * @return number of deleted files */
+    long pruneDownloadedFiles() {
+        final String method = "pruneDownloadedFiles";
+        SQLiteDatabase db = mMyContext.getDatabase();
+        File dir = MyStorage.getDataFilesDir(MyStorage.DIRECTORY_DOWNLOADS);
+        if (db == null || dir == null) {
+            return 0;
+        }
+        File[] files = dir.listFiles();
+        if (files == null || files.length == 0) {
+            return 0;
+        }
+        Set<String> filenames = new HashSet<>();
         Cursor cursor = null;
         try {
-            cursor = db.rawQuery(sql, null);
+            cursor = db.rawQuery("SELECT " + DownloadTable.FILE_NAME + " FROM " + DownloadTable.TABLE_NAME
+                    + " WHERE " + DownloadTable.FILE_NAME + " NOT NULL", null);
             while (cursor.moveToNext()) {
-                list.add(cursor.getLong(0));
+                String filename = cursor.getString(0);
+                filenames.add(filename);
+                filenames.add(DownloadFile.getThumbnailFilename(filename));
             }
         } finally {
             DbUtils.closeSilently(cursor);
         }
-        for (Long msgId : list) {
-            DownloadData.deleteAllOfThisMsg(db, msgId);
-            nDeleted++;
+        long latestTimestamp = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(MIN_DAYS_ORPHAN_FILES_TO_KEEP);
+        long deletedCount = 0;
+        for (File file : files) {
+            if (file.isFile() && !filenames.contains(file.getName()) && file.lastModified() < latestTimestamp) {
+                if (file.delete()) {
+                    deletedCount++;
+                } else {
+                    MyLog.v(this, method + "; couldn't delete: " + file.getAbsolutePath());
+                }
+            }
         }
-        if (nDeleted > 0) {
-            MyLog.v(this, method + "; Attachments deleted for " + nDeleted + " messages");
+        if (deletedCount > 0) {
+            MyLog.v(this, method + "; deleted " + deletedCount + " files");
         }
-        return nDeleted;
+        return deletedCount;
     }
 
     public static void setDataPrunedNow() {
@@ -17,6 +17,7 @@
 package org.andstatus.app.data;
 
 import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.support.annotation.NonNull;
 import android.text.TextUtils;
@@ -47,7 +48,11 @@ import org.andstatus.app.util.UriUtils;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Stores (updates) messages and users
@@ -60,8 +65,7 @@ public class DataUpdater {
     static final String MSG_ASSERTION_KEY = "insertOrUpdateMsg";
     private final CommandExecutionContext execContext;
     private LatestUserMessages lum = new LatestUserMessages();
-    private KeywordsFilter keywordsFilter = new KeywordsFilter(
-            SharedPreferencesUtil.getString(MyPreferences.KEY_FILTER_HIDE_MESSAGES_BASED_ON_KEYWORDS, ""));
+    private KeywordsFilter keywordsFilter = KeywordsFilter.forHidingMessages();
 
     public DataUpdater(MyAccount ma) {
         this(new CommandExecutionContext(CommandData.newAccountCommand(CommandEnum.EMPTY, ma)));
@@ -75,6 +79,120 @@ public class DataUpdater {
         return onActivity(mbActivity, true);
     }
 
+    /**
+     * Stores a downloaded page of activities in one database transaction.
+     * Ids of messages and users, which are already in the database, are looked up
+     * with a few set-based queries beforehand.
+     * Latest user messages are not saved here, see {@link #saveLum()}
+     */
+    public void onActivities(@NonNull List<MbActivity> activities) {
+        if (activities.isEmpty()) {
+            return;
+        }
+        lookupIds(activities);
+        SQLiteDatabase db = execContext.getMyContext().getDatabase();
+        if (db == null) {
+            MyLog.v(this, "onActivities; Database is null");
+            return;
+        }
+        db.beginTransaction();
+        try {
+            for (MbActivity activity : activities) {
+                onActivity(activity, false);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private void lookupIds(@NonNull List<MbActivity> activities) {
+        List<MbMessage> messages = new ArrayList<>();
+        List<MbUser> users = new ArrayList<>();
+        for (MbActivity activity : activities) {
+            collectObjectsToLookup(activity, messages, users);
+        }
+        Map<Long, Set<String>> msgOids = new HashMap<>();
+        for (MbMessage message : messages) {
+            oidsOfOrigin(msgOids, message.originId).add(message.oid);
+        }
+        Map<Long, Set<String>> userOids = new HashMap<>();
+        for (MbUser user : users) {
+            oidsOfOrigin(userOids, user.originId).add(user.oid);
+        }
+        Map<Long, Map<String, Long>> msgIds = new HashMap<>();
+        for (Map.Entry<Long, Set<String>> entry : msgOids.entrySet()) {
+            msgIds.put(entry.getKey(), MyQuery.oidsToIds(OidEnum.MSG_OID, entry.getKey(), entry.getValue()));
+        }
+        Map<Long, Map<String, Long>> userIds = new HashMap<>();
+        for (Map.Entry<Long, Set<String>> entry : userOids.entrySet()) {
+            userIds.put(entry.getKey(), MyQuery.oidsToIds(OidEnum.USER_OID, entry.getKey(), entry.getValue()));
+        }
+        for (MbMessage message : messages) {
+            Long msgId = msgIds.get(message.originId).get(message.oid);
+            if (msgId != null) {
+                message.msgId = msgId;
+            }
+        }
+        for (MbUser user : users) {
+            Long userId = userIds.get(user.originId).get(user.oid);
+            if (userId != null) {
+                user.userId = userId;
+            }
+        }
+    }
+
+    @NonNull
+    private static Set<String> oidsOfOrigin(Map<Long, Set<String>> oids, long originId) {
+        Set<String> set = oids.get(originId);
+        if (set == null) {
+            set = new HashSet<>();
+            oids.put(originId, set);
+        }
+        return set;
+    }
+
+    private static void collectObjectsToLookup(MbActivity activity, List<MbMessage> messages, List<MbUser> users) {
+        if (activity == null || activity.isEmpty()) {
+            return;
+        }
+        collectUserToLookup(activity.getActor(), users);
+        switch (activity.getObjectType()) {
+            case ACTIVITY:
+                collectObjectsToLookup(activity.getActivity(), messages, users);
+                break;
+            case MESSAGE:
+                collectMessageToLookup(activity.getMessage(), messages, users);
+                break;
+            case USER:
+                collectUserToLookup(activity.getUser(), users);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void collectMessageToLookup(MbMessage message, List<MbMessage> messages, List<MbUser> users) {
+        if (message == null || message.isEmpty()) {
+            return;
+        }
+        if (message.msgId == 0 && !TextUtils.isEmpty(message.oid)) {
+            messages.add(message);
+        }
+        collectUserToLookup(message.getAuthor(), users);
+        collectUserToLookup(message.getRecipient(), users);
+        collectMessageToLookup(message.getInReplyTo(), messages, users);
+        for (MbMessage reply : message.replies) {
+            collectMessageToLookup(reply, messages, users);
+        }
+    }
+
+    private static void collectUserToLookup(MbUser user, List<MbUser> users) {
+        if (user != null && user.nonEmpty() && user.userId == 0 && user.isOidReal()) {
+            users.add(user);
+        }
+    }
+
     /**
      * TODO: parse Actor, ActivityType etc...
      * @return id of the "MbObject"
@@ -268,6 +386,10 @@ public class DataUpdater {
                 Uri msgUri = MatchedUri.getMsgUri(me.getUserId(), message.msgId);
                 execContext.getContext().getContentResolver().update(msgUri, values, null, null);
             }
+            if (values.containsKey(MsgTable.BODY_TO_SEARCH)) {
+                MsgSearchIndex.update(execContext.getMyContext().getDatabase(), message.msgId,
+                        values.getAsString(MsgTable.BODY_TO_SEARCH));
+            }
 
             if (isFirstTimeLoaded || isDraftUpdated) {
                 saveAttachments(message);
@@ -495,6 +617,7 @@ public class DataUpdater {
                         .getUserId();
             } else if (values.size() > 0) {
                 execContext.getContext().getContentResolver().update(userUri, values, null, null);
+                UserCache.invalidate(userId);
             }
             mbUser.userId = userId;
             if (mbUser.hasLatestMessage()) {
@@ -511,9 +634,7 @@ public class DataUpdater {
         List<MbActivity> activities = execContext.getConnection().getTimeline(
                 TimelineType.USER.getConnectionApiRoutine(), TimelinePosition.EMPTY,
                 TimelinePosition.EMPTY, 1, userOid);
-        for (MbActivity item : activities) {
-            onActivity(item, false);
-        }
+        onActivities(activities);
         saveLum();
     }
 
@@ -4,11 +4,15 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
+import android.graphics.Point;
 import android.net.Uri;
+import android.support.annotation.NonNull;
 import android.text.TextUtils;
 
 import org.andstatus.app.context.MyContextHolder;
 import org.andstatus.app.database.DownloadTable;
+import org.andstatus.app.graphics.CacheName;
+import org.andstatus.app.graphics.ImageCaches;
 import org.andstatus.app.os.AsyncTaskLauncher;
 import org.andstatus.app.os.MyAsyncTask;
 import org.andstatus.app.service.CommandData;
@@ -39,6 +43,15 @@ public class DownloadData {
 
     private long loadTimeNew = 0;
     private DownloadFile fileNew = DownloadFile.EMPTY;
+    /** HTTP validators of the downloaded file, used for conditional requests */
+    private String eTag = "";
+    private String lastModified = "";
+    /** Dimensions of the downloaded image, 0 if unknown */
+    private int width = 0;
+    private int height = 0;
+    /** Dimensions of the downscaled variant of the image, 0 if there is no such file */
+    private int thumbnailWidth = 0;
+    private int thumbnailHeight = 0;
 
     public static DownloadData fromId(long downloadId) {
         DownloadData dd = new DownloadData();
@@ -92,7 +105,13 @@ public class DownloadData {
     private void loadOtherFields() {
         if (checkHardErrorBeforeLoad()) return;
         String sql = "SELECT " + DownloadTable.DOWNLOAD_STATUS + ", "
-                + DownloadTable.FILE_NAME
+                + DownloadTable.FILE_NAME + ", "
+                + DownloadTable.ETAG + ", "
+                + DownloadTable.LAST_MODIFIED + ", "
+                + DownloadTable.WIDTH + ", "
+                + DownloadTable.HEIGHT + ", "
+                + DownloadTable.THUMBNAIL_WIDTH + ", "
+                + DownloadTable.THUMBNAIL_HEIGHT
                 + (downloadType == DownloadType.UNKNOWN ? ", " + DownloadTable.DOWNLOAD_TYPE : "")
                 + (userId == 0 ? ", " + DownloadTable.USER_ID : "")
                 + (msgId == 0 ? ", " + DownloadTable.MSG_ID : "")
@@ -115,6 +134,12 @@ public class DownloadData {
             if (cursor.moveToNext()) {
                 status = DownloadStatus.load(DbUtils.getLong(cursor, DownloadTable.DOWNLOAD_STATUS));
                 fileStored = new DownloadFile(DbUtils.getString(cursor, DownloadTable.FILE_NAME));
+                eTag = DbUtils.getString(cursor, DownloadTable.ETAG);
+                lastModified = DbUtils.getString(cursor, DownloadTable.LAST_MODIFIED);
+                width = DbUtils.getInt(cursor, DownloadTable.WIDTH);
+                height = DbUtils.getInt(cursor, DownloadTable.HEIGHT);
+                thumbnailWidth = DbUtils.getInt(cursor, DownloadTable.THUMBNAIL_WIDTH);
+                thumbnailHeight = DbUtils.getInt(cursor, DownloadTable.THUMBNAIL_HEIGHT);
                 if (downloadType == DownloadType.UNKNOWN) {
                     downloadType = DownloadType.load(DbUtils.getLong(cursor, DownloadTable.DOWNLOAD_TYPE));
                 }
@@ -194,6 +219,33 @@ public class DownloadData {
                 + getOptionalExtension());
     }
 
+    /** @return ETag of the stored file, if we have the file to revalidate */
+    public String getETagToRevalidate() {
+        return fileStored.exists() ? eTag : "";
+    }
+
+    /** @return Last-Modified of the stored file, if we have the file to revalidate */
+    public String getLastModifiedToRevalidate() {
+        return fileStored.exists() ? lastModified : "";
+    }
+
+    /** The file was downloaded successfully, or the stored file was confirmed to be up to date */
+    public void onDownloaded(boolean notModified, String eTagIn, String lastModifiedIn) {
+        if (notModified) {
+            // A validator, absent in the "Not Modified" response, is still valid
+            fileNew = fileStored;
+            if (!TextUtils.isEmpty(eTagIn)) {
+                eTag = eTagIn;
+            }
+            if (!TextUtils.isEmpty(lastModifiedIn)) {
+                lastModified = lastModifiedIn;
+            }
+            return;
+        }
+        eTag = eTagIn;
+        lastModified = lastModifiedIn;
+    }
+
     private String getOptionalExtension() {
         return TextUtils.isEmpty(MyContentType.getExtension(uri.toString())) ? "" : "."
                 + (MyContentType.getExtension(uri.toString()));
@@ -208,6 +260,7 @@ public class DownloadData {
             status = DownloadStatus.SOFT_ERROR;
         } else {
             status = DownloadStatus.LOADED;
+            measureImage();
         }
         try {
             if (downloadId == 0) {
@@ -223,6 +276,37 @@ public class DownloadData {
         }
     }
 
+    /**
+     * Reads image bounds once per downloaded file, so showing it later needs only one decoding.
+     * Saves downscaled variant of a large image, so e.g. an avatar is shown without reading the original file
+     */
+    private void measureImage() {
+        if (contentType != MyContentType.IMAGE || (fileNew.equals(fileStored) && width > 0)) {
+            return;
+        }
+        Point size = ImageCaches.getImageSize(fileNew.getFilePath());
+        width = Math.max(size.x, 0);
+        height = Math.max(size.y, 0);
+        Point thumbnailSize = ImageCaches.createThumbnail(getCacheName(), this, fileNew.getFilePath(), size,
+                fileNew.getThumbnail().getFile());
+        thumbnailWidth = thumbnailSize.x;
+        thumbnailHeight = thumbnailSize.y;
+    }
+
+    private CacheName getCacheName() {
+        return downloadType == DownloadType.AVATAR ? CacheName.AVATAR : CacheName.ATTACHED_IMAGE;
+    }
+
+    @NonNull
+    public Point getImageSize() {
+        return new Point(width, height);
+    }
+
+    @NonNull
+    public Point getThumbnailSize() {
+        return new Point(thumbnailWidth, thumbnailHeight);
+    }
+
     private void addNew() {
        ContentValues values = new ContentValues();
        values.put(DownloadTable.DOWNLOAD_TYPE, downloadType.save());
@@ -237,6 +321,12 @@ public class DownloadData {
        values.put(DownloadTable.URI, uri.toString());
        values.put(DownloadTable.DOWNLOAD_STATUS, status.save());
        values.put(DownloadTable.FILE_NAME, fileNew.getFilename());
+       values.put(DownloadTable.ETAG, eTag);
+       values.put(DownloadTable.LAST_MODIFIED, lastModified);
+       values.put(DownloadTable.WIDTH, width);
+       values.put(DownloadTable.HEIGHT, height);
+       values.put(DownloadTable.THUMBNAIL_WIDTH, thumbnailWidth);
+       values.put(DownloadTable.THUMBNAIL_HEIGHT, thumbnailHeight);
 
        downloadId = DbUtils.addRowWithRetry(MyContextHolder.get(), DownloadTable.TABLE_NAME, values, 3);
        if (downloadId == -1) {
@@ -266,6 +356,14 @@ public class DownloadData {
             values.put(DownloadTable.FILE_NAME, fileNew.getFilename());
             values.put(DownloadTable.VALID_FROM, loadTimeNew);
         }
+        if (!isError()) {
+            values.put(DownloadTable.ETAG, eTag);
+            values.put(DownloadTable.LAST_MODIFIED, lastModified);
+            values.put(DownloadTable.WIDTH, width);
+            values.put(DownloadTable.HEIGHT, height);
+            values.put(DownloadTable.THUMBNAIL_WIDTH, thumbnailWidth);
+            values.put(DownloadTable.THUMBNAIL_HEIGHT, thumbnailHeight);
+        }
 
         if (DbUtils.updateRowWithRetry(MyContextHolder.get(), DownloadTable.TABLE_NAME, downloadId, values, 3) != 1) {
             softError = true;
@@ -411,7 +509,8 @@ public class DownloadData {
         if (!hardError && downloadId == 0) {
             saveToDatabase();
         }
-        if (!DownloadStatus.LOADED.equals(status) && !hardError) {
+        // A loaded avatar is revalidated on each refresh of its user; a loaded attachment doesn't change
+        if (!hardError && (!DownloadStatus.LOADED.equals(status) || userId != 0)) {
             MyServiceManager.sendCommand(
                     userId != 0 ?
                             CommandData.newUserCommand(CommandEnum.FETCH_AVATAR, null, null, userId, "")
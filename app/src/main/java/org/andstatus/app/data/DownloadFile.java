@@ -28,6 +28,7 @@ public class DownloadFile {
     private final String filename;
     private final File file;
     public static final DownloadFile EMPTY = new DownloadFile(null);
+    private static final String THUMBNAIL_PREFIX = "thumb_";
 
     public DownloadFile(String filename) {
         this.filename = filename;
@@ -66,8 +67,21 @@ public class DownloadFile {
         return filename;
     }
 
-    /** returns true if the file existed and was deleted */
+    /** Downscaled variant of the image, which is stored next to the original file */
+    @NonNull
+    public DownloadFile getThumbnail() {
+        return isEmpty() ? EMPTY : new DownloadFile(getThumbnailFilename(filename));
+    }
+
+    static String getThumbnailFilename(String filename) {
+        return THUMBNAIL_PREFIX + filename;
+    }
+
+    /** returns true if the file existed and was deleted. Its thumbnail is deleted also */
     public boolean delete() {
+        if (!isEmpty() && !filename.startsWith(THUMBNAIL_PREFIX)) {
+            getThumbnail().delete();
+        }
         return deleteFileLogged(file);
     }
     
@@ -33,10 +33,17 @@ import org.andstatus.app.util.MyLog;
 
 public abstract class ImageFile {
     private final DownloadFile downloadFile;
+    /** Stored in the database on download, so scaling is chosen without reading the file twice */
     private volatile Point size = null;
+    /** Downscaled variant of the image, created on download, if the image is large */
+    private final Point thumbnailSize;
 
-    ImageFile(String filename) {
+    ImageFile(String filename, int width, int height, int thumbnailWidth, int thumbnailHeight) {
         downloadFile = new DownloadFile(filename);
+        if (width > 0 && height > 0) {
+            size = new Point(width, height);
+        }
+        thumbnailSize = new Point(thumbnailWidth, thumbnailHeight);
     }
 
     public void showImage(@NonNull MyActivity myActivity, IdentifiableImageView imageView) {
@@ -101,7 +108,25 @@ public abstract class ImageFile {
     }
 
     private CachedImage getImageFromCache() {
-        return ImageCaches.getCachedImage(getCacheName(), this, getId(), downloadFile.getFilePath());
+        return ImageCaches.getCachedImage(getCacheName(), this, getId(), getFileToLoad().getFilePath());
+    }
+
+    private CachedImage loadImage(Object objTag) {
+        DownloadFile fileToLoad = getFileToLoad();
+        return ImageCaches.loadAndGetImage(getCacheName(), objTag, getId(), fileToLoad.getFilePath(),
+                fileToLoad == downloadFile ? getStoredSize() : thumbnailSize);
+    }
+
+    /** @return the smallest file, which is good enough for the image cache */
+    @NonNull
+    private DownloadFile getFileToLoad() {
+        if (ImageCaches.isThumbnailSufficient(getCacheName(), getStoredSize(), thumbnailSize)) {
+            DownloadFile thumbnail = downloadFile.getThumbnail();
+            if (thumbnail.exists()) {
+                return thumbnail;
+            }
+        }
+        return downloadFile;
     }
 
     public void preloadImageAsync() {
@@ -116,7 +141,7 @@ public abstract class ImageFile {
 
     public CachedImage loadAndGetImage() {
         if (downloadFile.exists()) {
-            return ImageCaches.loadAndGetImage(getCacheName(), this, getId(), downloadFile.getFilePath());
+            return loadImage(this);
         }
         requestAsyncDownload();
         return null;
@@ -133,7 +158,7 @@ public abstract class ImageFile {
                         if (skip()) {
                             return null;
                         }
-                        return ImageCaches.loadAndGetImage(getCacheName(), this, getId(), downloadFile.getFilePath());
+                        return loadImage(this);
                     }
 
                     @Override
@@ -206,8 +231,7 @@ public abstract class ImageFile {
 
                     @Override
                     protected Void doInBackground2(Void... params) {
-                        CachedImage image = ImageCaches.loadAndGetImage(getCacheName(), this, getId(),
-                                downloadFile.getFilePath());
+                        CachedImage image = loadImage(this);
                         if (image == null) {
                             logResult("Failed to preload", taskSuffix);
                         } else if (image.id != getId()) {
@@ -233,11 +257,18 @@ public abstract class ImageFile {
 
     public Point getSize() {
         if (size == null && downloadFile.exists()) {
-            size = ImageCaches.getImageSize(getCacheName(), getId(), downloadFile.getFilePath());
+            size = ImageCaches.getImageSize(downloadFile.getFilePath());
         }
         return size == null ? new Point() : size;
     }
 
+    /** @return empty point if the size is unknown yet */
+    @NonNull
+    private Point getStoredSize() {
+        Point storedSize = size;
+        return storedSize == null ? new Point() : storedSize;
+    }
+
     public boolean isEmpty() {
         return getId()==0 || downloadFile.isEmpty();
     }
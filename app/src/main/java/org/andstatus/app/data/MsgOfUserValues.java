@@ -24,6 +24,7 @@ import android.provider.BaseColumns;
 import android.text.TextUtils;
 
 import org.andstatus.app.database.MsgOfUserTable;
+import org.andstatus.app.database.MsgTable;
 import org.andstatus.app.util.ContentValuesUtils;
 
 class MsgOfUserValues {
@@ -62,6 +63,9 @@ class MsgOfUserValues {
         ContentValuesUtils.moveBooleanKey(MsgOfUserTable.MENTIONED, sourceSuffix, values, userValues.contentValues);
         ContentValuesUtils.moveBooleanKey(MsgOfUserTable.REPLIED, sourceSuffix, values, userValues.contentValues);
         ContentValuesUtils.moveBooleanKey(MsgOfUserTable.DIRECTED, sourceSuffix, values, userValues.contentValues);
+        if (values.containsKey(MsgTable.SENT_DATE)) {
+            userValues.contentValues.put(MsgOfUserTable.MSG_SENT_DATE, values.getAsLong(MsgTable.SENT_DATE));
+        }
         return userValues;
     }
 
@@ -117,6 +121,10 @@ class MsgOfUserValues {
     
     long insert(SQLiteDatabase db) {
         if (!isEmpty()) {
+            if (!contentValues.containsKey(MsgOfUserTable.MSG_SENT_DATE)) {
+                contentValues.put(MsgOfUserTable.MSG_SENT_DATE,
+                        MyQuery.msgIdToLongColumnValue(MsgTable.SENT_DATE, msgId));
+            }
             rowId = db.insert(MsgOfUserTable.TABLE_NAME, MsgOfUserTable.MSG_ID, contentValues);
             if (rowId == -1) {
                 throw new SQLException("Failed to insert row into " + MsgOfUserTable.TABLE_NAME);
@@ -125,6 +133,13 @@ class MsgOfUserValues {
         return rowId;
     }
 
+    /** Keeps {@link MsgOfUserTable#MSG_SENT_DATE} of all Users in sync with the message */
+    static void updateSentDate(SQLiteDatabase db, long msgId, long sentDate) {
+        ContentValues values = new ContentValues();
+        values.put(MsgOfUserTable.MSG_SENT_DATE, sentDate);
+        db.update(MsgOfUserTable.TABLE_NAME, values, MsgOfUserTable.MSG_ID + "=" + msgId, null);
+    }
+
     public int update(SQLiteDatabase db) {
         int count = 0;
         if (!isValid()) {
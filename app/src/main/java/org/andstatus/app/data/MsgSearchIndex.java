@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.text.TextUtils;
+
+import org.andstatus.app.database.MsgFtsTable;
+import org.andstatus.app.database.MsgTable;
+import org.andstatus.app.util.MyLog;
+
+/**
+ * Keeps {@link MsgFtsTable} in sync with {@link MsgTable#BODY_TO_SEARCH}
+ * @author yvolk@yurivolkov.com
+ */
+public class MsgSearchIndex {
+    private static final String TAG = MsgSearchIndex.class.getSimpleName();
+
+    private MsgSearchIndex() {
+        // Empty
+    }
+
+    public static void update(SQLiteDatabase db, long msgId, String bodyToSearch) {
+        if (db == null || msgId == 0) {
+            MyLog.v(TAG, "update; Database is null or no msgId");
+            return;
+        }
+        db.delete(MsgFtsTable.TABLE_NAME, MsgFtsTable.DOCID + "=" + msgId, null);
+        if (!TextUtils.isEmpty(bodyToSearch)) {
+            ContentValues values = new ContentValues();
+            values.put(MsgFtsTable.DOCID, msgId);
+            values.put(MsgFtsTable.BODY_TO_SEARCH, bodyToSearch);
+            db.insert(MsgFtsTable.TABLE_NAME, null, values);
+        }
+    }
+
+    /** Removes the index of messages, selected from the {@link MsgTable} */
+    public static int delete(SQLiteDatabase db, String msgSelection, String[] selectionArgs) {
+        return db.delete(MsgFtsTable.TABLE_NAME, MsgFtsTable.DOCID + " IN ("
+                + "SELECT " + MsgTable._ID + " FROM " + MsgTable.TABLE_NAME
+                + " WHERE (" + msgSelection + "))", selectionArgs);
+    }
+
+    /** Recreates the whole index from the {@link MsgTable}
+     * @return number of indexed messages */
+    public static long rebuild(SQLiteDatabase db) {
+        DbUtils.execSQL(db, "DELETE FROM " + MsgFtsTable.TABLE_NAME);
+        DbUtils.execSQL(db, "INSERT INTO " + MsgFtsTable.TABLE_NAME + " ("
+                + MsgFtsTable.DOCID + ", " + MsgFtsTable.BODY_TO_SEARCH + ")"
+                + " SELECT " + MsgTable._ID + ", " + MsgTable.BODY_TO_SEARCH
+                + " FROM " + MsgTable.TABLE_NAME
+                + " WHERE " + MsgTable.BODY_TO_SEARCH + " IS NOT NULL"
+                + " AND " + MsgTable.BODY_TO_SEARCH + "!=''");
+        return countIndexed(db);
+    }
+
+    public static long countIndexed(SQLiteDatabase db) {
+        return MyQuery.sqlToLong(db, "countIndexed", "SELECT COUNT(*) FROM " + MsgFtsTable.TABLE_NAME);
+    }
+
+    public static long countToIndex(SQLiteDatabase db) {
+        return MyQuery.sqlToLong(db, "countToIndex", "SELECT COUNT(*) FROM " + MsgTable.TABLE_NAME
+                + " WHERE " + MsgTable.BODY_TO_SEARCH + " IS NOT NULL"
+                + " AND " + MsgTable.BODY_TO_SEARCH + "!=''");
+    }
+}
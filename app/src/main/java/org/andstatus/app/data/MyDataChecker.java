@@ -61,6 +61,8 @@ public class MyDataChecker {
                 });
     }
 
+    /** Merging of users changes ids of users in other tables, so it goes first.
+     * The checkers run in sequence: they write to the same database, where writes are serialized anyway */
     public void fixData() {
         new MyDataCheckerMergeUsers(myContext, logger).fixData();
         new MyDataCheckerConversations(myContext, logger).fixData();
@@ -16,75 +16,32 @@
 
 package org.andstatus.app.data;
 
+import android.content.ContentValues;
 import android.database.Cursor;
-import android.text.TextUtils;
+import android.database.sqlite.SQLiteDatabase;
 
 import org.andstatus.app.backup.ProgressLogger;
 import org.andstatus.app.context.MyContext;
 import org.andstatus.app.database.MsgTable;
-import org.andstatus.app.service.MyServiceManager;
 import org.andstatus.app.util.MyLog;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
-import java.util.concurrent.ConcurrentHashMap;
-
 /**
+ * Fixes links of messages to their conversations and to the messages, which they reply to.
+ * Messages are checked in chunks, so memory used doesn't depend on the number of messages
  * @author yvolk@yurivolkov.com
  */
-public class MyDataCheckerConversations {
-    private static final int PROGRESS_REPORT_PERIOD_SECONDS = 20;
-    private final MyContext myContext;
-    private final ProgressLogger logger;
-
-    Map<Long, MsgItem> items = new TreeMap<>();
-    Map<Long, List<MsgItem>> replies = new TreeMap<>();
-
-    private class MsgItem {
-        long id = 0;
-        long originId = 0;
-        long inReplyToId_initial = 0;
-        long inReplyToId = 0;
-        long conversationId_initial = 0;
-        long conversationId = 0;
-        String conversationOid = "";
-
-        public boolean fixConversationId(long conversationId) {
-            final boolean different = this.conversationId != conversationId;
-            if (different) {
-                this.conversationId = conversationId;
-            }
-            return different;
-        }
-
-        public boolean fixInReplyToId(int inReplyToId) {
-            final boolean different = this.inReplyToId != inReplyToId;
-            if (different) {
-                this.inReplyToId = inReplyToId;
-            }
-            return different;
-        }
-
-        public boolean isChanged() {
-            return isConversationIdChanged() || isInReplyToIdChanged();
-        }
-
-        public boolean isConversationIdChanged() {
-            return conversationId != conversationId_initial;
-        }
-
-        public boolean isInReplyToIdChanged() {
-            return inReplyToId != inReplyToId_initial;
-        }
-    }
+public class MyDataCheckerConversations extends DataChecker {
+    /** Each pass over replies moves conversation ids at least one level down the conversations */
+    private static final int MAX_REPLIES_PASSES = 10;
+    private static final String FIRST_MEMBERS_TABLE = "conversation_first";
+    private static final String FIRST_MSG_ID = "first_msg_id";
+    private int loggedChanges = 0;
 
     public MyDataCheckerConversations(MyContext myContext, ProgressLogger logger) {
-        this.myContext = myContext;
-        this.logger = logger;
+        super(myContext, logger);
     }
 
+    @Override
     public void fixData() {
         fixInternal(false);
     }
@@ -95,161 +52,179 @@ public class MyDataCheckerConversations {
 
     public int fixInternal(boolean countOnly) {
         final String method = "checkConversations";
+        this.countOnly = countOnly;
         logger.logProgress(method + " started");
-        loadMessages();
-        fixConversationsUsingReplies();
-        fixConversationsUsingConversationOid();
-        int changedCount = saveChanges(countOnly);
+        SQLiteDatabase db = myContext.getDatabase();
+        if (db == null) {
+            MyLog.v(this, method + "; Database is null");
+            return 0;
+        }
+        loggedChanges = 0;
+        int changedCount = fixReplies();
+        try {
+            fillFirstMembersTable(db);
+            int changedByOids = newConversationOidsPass().run();
+            changedCount += changedByOids;
+            if (changedByOids > 0) {
+                changedCount += fixReplies();
+            }
+        } finally {
+            dropFirstMembersTable(db);
+        }
         logger.logProgress(method + " ended, " + (changedCount > 0 ?  "changed " + changedCount
                 + " messages" : " no changes were needed"));
         DbUtils.waitMs(method, changedCount == 0 ? 1000 : 3000);
         return changedCount;
     }
 
-    private void loadMessages() {
-        items.clear();
-        replies.clear();
-        String sql = "SELECT " + MsgTable._ID
-                + ", " + MsgTable.ORIGIN_ID
-                + ", " + MsgTable.IN_REPLY_TO_MSG_ID
-                + ", " + MsgTable.CONVERSATION_ID
-                + ", " + MsgTable.CONVERSATION_OID
-                + " FROM " + MsgTable.TABLE_NAME
-                ;
-        Cursor c = null;
-        long rowsCount = 0;
-        try {
-            c = myContext.getDatabase().rawQuery(sql, null);
-            while (c.moveToNext()) {
-                rowsCount++;
-                MsgItem item = new MsgItem();
-                item.id = c.getLong(0);
-                item.originId = c.getLong(1);
-                item.inReplyToId = c.getLong(2);
-                item.inReplyToId_initial = item.inReplyToId;
-                item.conversationId = c.getLong(3);
-                item.conversationId_initial = item.conversationId;
-                item.conversationOid = c.getString(4);
-                items.put(item.id, item);
-                if (item.inReplyToId != 0) {
-                    List<MsgItem> replies1 = replies.get(item.inReplyToId);
-                    if (replies1 == null) {
-                        replies1 = new ArrayList<>();
-                        replies.put(item.inReplyToId, replies1);
-                    }
-                    replies1.add(item);
-                }
+    /** Repeats passes over replies until nothing changes, as each pass sees changes of the previous ones */
+    private int fixReplies() {
+        int changedCount = 0;
+        for (int pass = 1; pass <= MAX_REPLIES_PASSES; pass++) {
+            int changedInPass = newRepliesPass().run();
+            changedCount += changedInPass;
+            if (changedInPass == 0 || countOnly) {
+                return changedCount;
             }
-        } finally {
-            DbUtils.closeSilently(c);
         }
-        logger.logProgress(Long.toString(rowsCount) + " messages loaded");
+        logger.logProgress("Too long conversations, some of them were not fixed");
+        return changedCount;
     }
 
-    private void fixConversationsUsingReplies() {
-        int counter = 0;
-        for (MsgItem item : items.values()) {
-            if (item.inReplyToId != 0) {
-                MsgItem parent = items.get(item.inReplyToId);
-                if (parent == null) {
-                    item.fixInReplyToId(0);
-                } else {
-                    if (parent.conversationId == 0) {
-                        parent.fixConversationId(item.conversationId == 0 ? parent.id : item.conversationId);
-                    }
-                    if (item.fixConversationId(parent.conversationId)) {
-                        changeConversationOfReplies(item, 200);
-                    }
-                }
+    /** Removes links to absent messages; a reply gets conversation of the message, which it replies to */
+    private ChunkedPass newRepliesPass() {
+        return new ChunkedPass("conversationReplies") {
+            @Override
+            String selectChunk(long lastId, int limit) {
+                return "SELECT msg1." + MsgTable._ID
+                        + ", msg1." + MsgTable.CONVERSATION_ID
+                        + ", parent." + MsgTable._ID
+                        + ", parent." + MsgTable.CONVERSATION_ID
+                        + " FROM " + MsgTable.TABLE_NAME + " AS msg1"
+                        + " LEFT OUTER JOIN " + MsgTable.TABLE_NAME + " AS parent"
+                        + " ON parent." + MsgTable._ID + "=msg1." + MsgTable.IN_REPLY_TO_MSG_ID
+                        + " WHERE msg1." + MsgTable._ID + ">" + lastId
+                        + " AND msg1." + MsgTable.IN_REPLY_TO_MSG_ID + "<>0"
+                        + " ORDER BY msg1." + MsgTable._ID
+                        + " LIMIT " + limit;
             }
-            counter++;
-            if (logger.loggedMoreSecondsAgoThan(PROGRESS_REPORT_PERIOD_SECONDS)) {
-                logger.logProgress("Checked replies for " + counter + " messages of " + items.size());
-            }
-        }
-    }
 
-    private void fixConversationsUsingConversationOid() {
-        int counter = 0;
-        Map<Long, Map<String, MsgItem>> origins = new ConcurrentHashMap<>();
-        for (MsgItem item : items.values()) {
-            if (!TextUtils.isEmpty(item.conversationOid)) {
-                Map<String, MsgItem> firstConversationMembers = origins.get(item.originId);
-                if (firstConversationMembers == null) {
-                    firstConversationMembers = new ConcurrentHashMap<>();
-                    origins.put(item.originId, firstConversationMembers);
+            @Override
+            boolean fixRow(SQLiteDatabase db, Cursor cursor) {
+                long id = cursor.getLong(0);
+                long conversationId = cursor.getLong(1);
+                long parentId = cursor.getLong(2);
+                long parentConversationId = cursor.getLong(3);
+                if (parentId == 0) {
+                    logChange(id, "inReplyToId removed");
+                    update(db, id, MsgTable.IN_REPLY_TO_MSG_ID, 0);
+                    return true;
                 }
-                MsgItem parent = firstConversationMembers.get(item.conversationOid);
-                if (parent == null) {
-                    item.fixConversationId(item.conversationId == 0 ? item.id : item.conversationId);
-                    firstConversationMembers.put(item.conversationOid, item);
-                } else {
-                    if (item.fixConversationId(parent.conversationId)) {
-                        changeConversationOfReplies(item, 200);
-                    }
+                boolean changed = false;
+                if (parentConversationId == 0) {
+                    parentConversationId = conversationId == 0 ? parentId : conversationId;
+                    logChange(parentId, "conversationId changed from 0 to " + parentConversationId);
+                    update(db, parentId, MsgTable.CONVERSATION_ID, parentConversationId);
+                    changed = true;
                 }
+                if (conversationId != parentConversationId) {
+                    logChange(id, "conversationId changed from " + conversationId + " to " + parentConversationId);
+                    update(db, id, MsgTable.CONVERSATION_ID, parentConversationId);
+                    changed = true;
+                }
+                return changed;
+            }
+        };
+    }
+
+    /** Messages with the same conversation oid get conversation of the first of them */
+    private ChunkedPass newConversationOidsPass() {
+        return new ChunkedPass("conversationOids") {
+            @Override
+            String selectChunk(long lastId, int limit) {
+                return "SELECT msg1." + MsgTable._ID
+                        + ", msg1." + MsgTable.CONVERSATION_ID
+                        + ", firstmsg." + MsgTable._ID
+                        + ", firstmsg." + MsgTable.CONVERSATION_ID
+                        + " FROM " + MsgTable.TABLE_NAME + " AS msg1"
+                        + " INNER JOIN " + FIRST_MEMBERS_TABLE + " AS fm"
+                        + " ON fm." + MsgTable.ORIGIN_ID + "=msg1." + MsgTable.ORIGIN_ID
+                        + " AND fm." + MsgTable.CONVERSATION_OID + "=msg1." + MsgTable.CONVERSATION_OID
+                        + " INNER JOIN " + MsgTable.TABLE_NAME + " AS firstmsg"
+                        + " ON firstmsg." + MsgTable._ID + "=fm." + FIRST_MSG_ID
+                        + " WHERE msg1." + MsgTable._ID + ">" + lastId
+                        + " ORDER BY msg1." + MsgTable._ID
+                        + " LIMIT " + limit;
             }
-            counter++;
-            if (logger.loggedMoreSecondsAgoThan(PROGRESS_REPORT_PERIOD_SECONDS)) {
-                logger.logProgress("Checked conversations for " + counter + " messages of " + items.size());
+
+            @Override
+            boolean fixRow(SQLiteDatabase db, Cursor cursor) {
+                long id = cursor.getLong(0);
+                long conversationId = cursor.getLong(1);
+                long firstId = cursor.getLong(2);
+                long firstConversationId = cursor.getLong(3);
+                // The first message gets its own id, if it has no conversation yet
+                long conversationIdExpected = id == firstId
+                        ? (conversationId == 0 ? id : conversationId)
+                        : (firstConversationId == 0 ? firstId : firstConversationId);
+                if (conversationId == conversationIdExpected) {
+                    return false;
+                }
+                logChange(id, "conversationId changed from " + conversationId + " to " + conversationIdExpected);
+                update(db, id, MsgTable.CONVERSATION_ID, conversationIdExpected);
+                return true;
             }
-        }
+        };
     }
 
-    private void changeConversationOfReplies(MsgItem parent, int level) {
-        List<MsgItem> replies1 = replies.get(parent.id);
-        if (replies1 == null) {
+    private void update(SQLiteDatabase db, long msgId, String column, long value) {
+        if (countOnly) {
             return;
         }
-        for (MsgItem item : replies1) {
-            if (item.fixConversationId(parent.conversationId)) {
-                if (level > 0) {
-                    changeConversationOfReplies(item, level - 1);
-                } else {
-                    logger.logProgress("Too long conversation, couldn't fix msgId=" + item.id);
-                }
-            }
+        ContentValues values = new ContentValues();
+        if (value == 0) {
+            values.putNull(column);
+        } else {
+            values.put(column, value);
         }
+        db.update(MsgTable.TABLE_NAME, values, MsgTable._ID + "=" + msgId, null);
     }
 
-    private int saveChanges(boolean countOnly) {
-        int changedCount = 0;
-        for (MsgItem item : items.values()) {
-            if (item.isChanged()) {
-                String sql = "";
-                try {
-                    if (changedCount < 5) {
-                        MyLog.v(this, "msgId=" + item.id + "; "
-                            + (item.isInReplyToIdChanged() ? "inReplyToId changed from "
-                                + item.inReplyToId_initial + " to " + item.inReplyToId : "")
-                            + (item.isInReplyToIdChanged() && item.isConversationIdChanged() ? " and " : "")
-                            + (item.isConversationIdChanged() ? "conversationId changed from "
-                                + item.conversationId_initial + " to " + item.conversationId : ""));
-                    }
-                    if (!countOnly) {
-                        sql = "UPDATE " + MsgTable.TABLE_NAME
-                                + " SET "
-                                + (item.isInReplyToIdChanged() ?
-                                    MsgTable.IN_REPLY_TO_MSG_ID + "=" + DbUtils.sqlZeroToNull(item.inReplyToId) : "")
-                                + (item.isInReplyToIdChanged() && item.isConversationIdChanged() ? ", " : "")
-                                + (item.isConversationIdChanged() ?
-                                    MsgTable.CONVERSATION_ID + "=" + DbUtils.sqlZeroToNull(item.conversationId) : "")
-                                + " WHERE " + MsgTable._ID + "=" + item.id;
-                        myContext.getDatabase().execSQL(sql);
-                    }
-                    changedCount++;
-                    if (logger.loggedMoreSecondsAgoThan(PROGRESS_REPORT_PERIOD_SECONDS)) {
-                        logger.logProgress("Saved changes for " + changedCount + " messages");
-                        MyServiceManager.setServiceUnavailable();
-                    }
-                } catch (Exception e) {
-                    String logMsg = "Error: " + e.getMessage() + ", SQL:" + sql;
-                    logger.logProgress(logMsg);
-                    MyLog.e(this, logMsg, e);
-                }
-            }
+    private void logChange(long msgId, String change) {
+        if (loggedChanges < 5) {
+            loggedChanges++;
+            MyLog.v(this, "msgId=" + msgId + "; " + change);
+        }
+    }
+
+    /** The first (by id) message of each conversation oid of an origin.
+     * The table is in the "temp" database of the connection, so we use it inside transactions only */
+    private void fillFirstMembersTable(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            DbUtils.execSQL(db, "CREATE TEMP TABLE IF NOT EXISTS " + FIRST_MEMBERS_TABLE + " ("
+                    + MsgTable.ORIGIN_ID + " INTEGER NOT NULL,"
+                    + MsgTable.CONVERSATION_OID + " TEXT NOT NULL,"
+                    + FIRST_MSG_ID + " INTEGER NOT NULL,"
+                    + " PRIMARY KEY (" + MsgTable.ORIGIN_ID + ", " + MsgTable.CONVERSATION_OID + "))");
+            DbUtils.execSQL(db, "DELETE FROM " + FIRST_MEMBERS_TABLE);
+            DbUtils.execSQL(db, "INSERT OR IGNORE INTO " + FIRST_MEMBERS_TABLE
+                    + " SELECT " + MsgTable.ORIGIN_ID + ", " + MsgTable.CONVERSATION_OID + ", " + MsgTable._ID
+                    + " FROM " + MsgTable.TABLE_NAME
+                    + " WHERE " + MsgTable.CONVERSATION_OID + " NOT NULL"
+                    + " AND " + MsgTable.CONVERSATION_OID + "<>''"
+                    + " ORDER BY " + MsgTable._ID);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
         }
-        return changedCount;
     }
 
+    private void dropFirstMembersTable(SQLiteDatabase db) {
+        try {
+            DbUtils.execSQL(db, "DROP TABLE IF EXISTS " + FIRST_MEMBERS_TABLE);
+        } catch (Exception e) {
+            MyLog.d(this, "dropFirstMembersTable", e);
+        }
+    }
 }
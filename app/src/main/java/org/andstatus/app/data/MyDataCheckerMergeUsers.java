@@ -17,6 +17,7 @@
 package org.andstatus.app.data;
 
 import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.support.annotation.NonNull;
 
 import org.andstatus.app.backup.ProgressLogger;
@@ -37,15 +38,13 @@ import java.util.concurrent.ConcurrentSkipListSet;
 /**
  * @author yvolk@yurivolkov.com
  */
-public class MyDataCheckerMergeUsers {
-    private final MyContext myContext;
-    private final ProgressLogger logger;
+public class MyDataCheckerMergeUsers extends DataChecker {
 
     public MyDataCheckerMergeUsers(MyContext myContext, ProgressLogger logger) {
-        this.myContext = myContext;
-        this.logger = logger;
+        super(myContext, logger);
     }
 
+    @Override
     public void fixData() {
         final String method = "checkUsers";
         logger.logProgress(method + " started");
@@ -55,6 +54,9 @@ public class MyDataCheckerMergeUsers {
             mergeUser(activity);
             changedCount++;
         }
+        if (changedCount > 0) {
+            UserCache.clear();
+        }
         logger.logProgress(method + " ended, "
                 + (changedCount > 0 ?  changedCount + " users merged" : " no changes were needed"));
         DbUtils.waitMs(method, changedCount == 0 ? 1000 : 3000);
@@ -124,7 +126,19 @@ public class MyDataCheckerMergeUsers {
         return activity;
     }
 
+    /** All changes of one merge are in one transaction */
     private void mergeUser(MbActivity activity) {
+        SQLiteDatabase db = myContext.getDatabase();
+        db.beginTransaction();
+        try {
+            mergeUser2(activity);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private void mergeUser2(MbActivity activity) {
         MbUser user = activity.getUser();
         String logMsg = "Merging " + user + " with " + activity.getActor();
         logger.logProgress(logMsg);
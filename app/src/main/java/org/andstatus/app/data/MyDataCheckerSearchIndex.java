@@ -16,12 +16,13 @@
 
 package org.andstatus.app.data;
 
+import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 
 import org.andstatus.app.backup.ProgressLogger;
 import org.andstatus.app.context.MyContext;
 import org.andstatus.app.database.MsgTable;
-import org.andstatus.app.service.MyServiceManager;
 import org.andstatus.app.util.MyHtml;
 import org.andstatus.app.util.MyLog;
 
@@ -30,62 +31,82 @@ import static org.andstatus.app.data.MyQuery.quoteIfNotQuoted;
 /**
  * @author yvolk@yurivolkov.com
  */
-public class MyDataCheckerSearchIndex {
-    private static final int PROGRESS_REPORT_PERIOD_SECONDS = 20;
-    private final MyContext myContext;
-    private final ProgressLogger logger;
+public class MyDataCheckerSearchIndex extends DataChecker {
 
     public MyDataCheckerSearchIndex(MyContext myContext, ProgressLogger logger) {
-        this.myContext = myContext;
-        this.logger = logger;
+        super(myContext, logger);
     }
 
+    @Override
     public void fixData() {
+        fixInternal(false);
+    }
+
+    /** @return number of messages with wrong body to search, plus 1 if the full-text index needs rebuilding */
+    public long countChanges() {
+        return fixInternal(true);
+    }
+
+    private long fixInternal(boolean countOnly) {
+        this.countOnly = countOnly;
         logger.logProgress("Search index update started");
-        String sql = "SELECT " + MsgTable._ID
-                + ", " + MsgTable.BODY
-                + ", " + MsgTable.BODY_TO_SEARCH
-                + " FROM " + MsgTable.TABLE_NAME
-                ;
-        Cursor c = null;
-        long rowsCount = 0;
-        long changedCount = 0;
-        try {
-            c = myContext.getDatabase().rawQuery(sql, null);
-            while (c.moveToNext()) {
-                rowsCount++;
-                long id = c.getLong(0);
-                String body = c.getString(1);
-                String bodyToSearch = c.getString(2);
+        long changedCount = new ChunkedPass("searchIndex") {
+            @Override
+            String selectChunk(long lastId, int limit) {
+                return "SELECT " + MsgTable._ID
+                        + ", " + MsgTable.BODY
+                        + ", " + MsgTable.BODY_TO_SEARCH
+                        + " FROM " + MsgTable.TABLE_NAME
+                        + " WHERE " + MsgTable._ID + ">" + lastId
+                        + " ORDER BY " + MsgTable._ID
+                        + " LIMIT " + limit;
+            }
+
+            @Override
+            boolean fixRow(SQLiteDatabase db, Cursor cursor) {
+                long id = cursor.getLong(0);
+                String body = cursor.getString(1);
                 String bodyToSearchExpected = MyHtml.getBodyToSearch(body);
-                if (!bodyToSearchExpected.equals(bodyToSearch)) {
-                    changedCount++;
-                    MyLog.i(this, "Wrong body to search for " + id + ": " + quoteIfNotQuoted(body));
-                    sql = "UPDATE " + MsgTable.TABLE_NAME
-                            + " SET "
-                            + MsgTable.BODY_TO_SEARCH + "=" + quoteIfNotQuoted(bodyToSearchExpected)
-                            + " WHERE " + MsgTable._ID + "=" + id;
-                    myContext.getDatabase().execSQL(sql);
+                if (bodyToSearchExpected.equals(cursor.getString(2))) {
+                    return false;
                 }
-                if (logger.loggedMoreSecondsAgoThan(PROGRESS_REPORT_PERIOD_SECONDS)) {
-                    logger.logProgress("Updating search index"
-                            + (changedCount == 0 ? ". " : ", changed " + changedCount + " of ")
-                            + rowsCount + " messages"
-                    );
-                    MyServiceManager.setServiceUnavailable();
+                MyLog.i(MyDataCheckerSearchIndex.this, "Wrong body to search for " + id + ": "
+                        + quoteIfNotQuoted(body));
+                if (!countOnly) {
+                    ContentValues values = new ContentValues();
+                    values.put(MsgTable.BODY_TO_SEARCH, bodyToSearchExpected);
+                    db.update(MsgTable.TABLE_NAME, values, MsgTable._ID + "=" + id, null);
+                    MsgSearchIndex.update(db, id, bodyToSearchExpected);
                 }
+                return true;
             }
-        } catch (Exception e) {
-            String logMsg = "Error: " + e.getMessage() + ", SQL:" + sql;
-            logger.logProgress(logMsg);
-            MyLog.e(this, logMsg, e);
-        } finally {
-            DbUtils.closeSilently(c);
-        }
+        }.run();
         logger.logProgress(changedCount == 0
-                ? "No changes to search index were needed. " + rowsCount + " messages"
-                : "Changed search index for " + changedCount + " of " + rowsCount + " messages");
-        DbUtils.waitMs(this, changedCount == 0 ? 1000 : 3000);
+                ? "No changes to search index were needed"
+                : "Changed search index for " + changedCount + " messages");
+        changedCount += checkFullTextIndex();
+        if (!countOnly) {
+            DbUtils.waitMs(this, changedCount == 0 ? 1000 : 3000);
+        }
+        return changedCount;
+    }
+
+    /** @return 1 if the full-text index needs to be (or was) rebuilt. If {@link #countOnly}, it is not rebuilt */
+    private long checkFullTextIndex() {
+        long countToIndex = MsgSearchIndex.countToIndex(myContext.getDatabase());
+        long countIndexed = MsgSearchIndex.countIndexed(myContext.getDatabase());
+        if (countToIndex == countIndexed) {
+            return 0;
+        }
+        if (countOnly) {
+            logger.logProgress("Full-text index needs rebuilding: " + countIndexed + " of " + countToIndex
+                    + " messages indexed");
+            return 1;
+        }
+        logger.logProgress("Rebuilding full-text index: " + countIndexed + " of " + countToIndex + " messages indexed");
+        countIndexed = MsgSearchIndex.rebuild(myContext.getDatabase());
+        logger.logProgress("Full-text index rebuilt for " + countIndexed + " messages");
+        return 1;
     }
 
 }
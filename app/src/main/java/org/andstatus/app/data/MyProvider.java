@@ -122,6 +122,8 @@ public class MyProvider extends ContentProvider {
             String descSuffix = "; args=" + Arrays.toString(selectionArgs);
             sqlDesc = selectionG + descSuffix;
             count = db.delete(MsgOfUserTable.TABLE_NAME, selectionG, selectionArgs);
+            sqlDesc = "search index of " + selection + descSuffix;
+            MsgSearchIndex.delete(db, selection, selectionArgs);
             // Now delete messages themselves
             sqlDesc = selection + descSuffix;
             count = db.delete(MsgTable.TABLE_NAME, selection, selectionArgs);
@@ -138,6 +140,7 @@ public class MyProvider extends ContentProvider {
         int count;
         // TODO: Delete related records also... 
         count = db.delete(UserTable.TABLE_NAME, selection, selectionArgs);
+        UserCache.clear();
         return count;
     }
 
@@ -300,8 +303,10 @@ public class MyProvider extends ContentProvider {
                     }
                     KeywordsFilter searchQuery  = new KeywordsFilter(rawQuery);
                     // TODO: Search in MyDatabase.User.USERNAME also
-                    selection = "(" + UserTable.AUTHOR_NAME + " LIKE ?  OR "
-                            + searchQuery.getSqlSelection(MsgTable.BODY_TO_SEARCH)
+                    selection = "(" + TimelineSql.userNameOf(ProjectionMap.MSG_TABLE_ALIAS + "." + MsgTable.AUTHOR_ID)
+                            + " LIKE ?  OR "
+                            + searchQuery.getSqlSelection(ProjectionMap.MSG_TABLE_ALIAS + "." + BaseColumns._ID,
+                                    ProjectionMap.MSG_TABLE_ALIAS + "." + MsgTable.BODY_TO_SEARCH)
                             + ")" + selection;
 
                     selectionArgs = searchQuery.prependSqlSelectionArgs(selectionArgs);
@@ -451,6 +456,9 @@ public class MyProvider extends ContentProvider {
                     count = db.update(MsgTable.TABLE_NAME, values, BaseColumns._ID + "=" + rowId
                             + (StringUtils.nonEmpty(selection) ? " AND (" + selection + ')' : ""),
                             selectionArgs);
+                    if (count > 0 && values.containsKey(MsgTable.SENT_DATE)) {
+                        MsgOfUserValues.updateSentDate(db, rowId, values.getAsLong(MsgTable.SENT_DATE));
+                    }
                 }
                 count += msgOfUserValues.update(db);
                 otherUserValues.update(db);
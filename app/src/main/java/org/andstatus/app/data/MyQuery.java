@@ -33,17 +33,21 @@ import org.andstatus.app.database.UserTable;
 import org.andstatus.app.origin.Origin;
 import org.andstatus.app.timeline.Timeline;
 import org.andstatus.app.util.I18n;
+import org.andstatus.app.util.LongList;
+import org.andstatus.app.util.LongSet;
 import org.andstatus.app.util.MyHtml;
 import org.andstatus.app.util.MyLog;
 import org.andstatus.app.util.StringUtils;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 public class MyQuery {
     static final String TAG = MyQuery.class.getSimpleName();
+    private static final int OIDS_PER_QUERY = 200;
 
     private MyQuery() {
         // Empty
@@ -101,6 +105,70 @@ public class MyQuery {
         return sqlToLong(database, msgLog, sql);
     }
 
+    /**
+     * Set-based version of {@link #oidToId(OidEnum, long, String)}: one query per {@link #OIDS_PER_QUERY} oids
+     * @return map of the found oids to ids. Not found oids are absent in the map
+     */
+    @NonNull
+    public static Map<String, Long> oidsToIds(OidEnum oidEnum, long originId, @NonNull Collection<String> oids) {
+        Map<String, Long> ids = new HashMap<>();
+        SQLiteDatabase db = MyContextHolder.get().getDatabase();
+        if (db == null) {
+            MyLog.v(TAG, "oidsToIds; Database is null");
+            return ids;
+        }
+        String table;
+        String originColumn;
+        String oidColumn;
+        switch (oidEnum) {
+            case MSG_OID:
+                table = MsgTable.TABLE_NAME;
+                originColumn = MsgTable.ORIGIN_ID;
+                oidColumn = MsgTable.MSG_OID;
+                break;
+            case USER_OID:
+                table = UserTable.TABLE_NAME;
+                originColumn = UserTable.ORIGIN_ID;
+                oidColumn = UserTable.USER_OID;
+                break;
+            default:
+                throw new IllegalArgumentException("oidsToIds; Unknown oidEnum " + oidEnum);
+        }
+        List<String> oidList = new ArrayList<>(oids);
+        for (int start = 0; start < oidList.size(); start += OIDS_PER_QUERY) {
+            StringBuilder inList = new StringBuilder();
+            for (String oid : oidList.subList(start, Math.min(start + OIDS_PER_QUERY, oidList.size()))) {
+                if (TextUtils.isEmpty(oid)) {
+                    continue;
+                }
+                if (inList.length() > 0) {
+                    inList.append(",");
+                }
+                inList.append(quoteIfNotQuoted(oid));
+            }
+            if (inList.length() == 0) {
+                continue;
+            }
+            String sql = "SELECT " + BaseColumns._ID + ", " + oidColumn + " FROM " + table
+                    + " WHERE " + originColumn + "=" + originId
+                    + " AND " + oidColumn + " IN (" + inList + ")";
+            Cursor c = null;
+            try {
+                c = db.rawQuery(sql, null);
+                while (c.moveToNext()) {
+                    ids.put(c.getString(1), c.getLong(0));
+                }
+            } finally {
+                DbUtils.closeSilently(c);
+            }
+        }
+        if (MyLog.isVerboseEnabled()) {
+            MyLog.v(TAG, "oidsToIds; " + oidEnum + ", origin=" + originId + ": "
+                    + ids.size() + " of " + oids.size() + " found");
+        }
+        return ids;
+    }
+
     public static long sqlToLong(SQLiteDatabase databaseIn, String msgLogIn, String sql) {
         String msgLog = StringUtils.notNull(msgLogIn);
         SQLiteDatabase db = databaseIn == null ? MyContextHolder.get().getDatabase() : databaseIn;
@@ -249,35 +317,13 @@ public class MyQuery {
         final String method = "msgIdToUsername";
         String userName = "";
         if (messageId != 0) {
-            SQLiteStatement prog = null;
-            String sql = "";
-            try {
-                if (userIdColumnName.contentEquals(MsgTable.ACTOR_ID) ||
-                        userIdColumnName.contentEquals(MsgTable.AUTHOR_ID) ||
-                        userIdColumnName.contentEquals(MsgTable.IN_REPLY_TO_USER_ID) ||
-                        userIdColumnName.contentEquals(MsgTable.RECIPIENT_ID)) {
-                    sql = "SELECT " + userNameField(userInTimeline) + " FROM " + UserTable.TABLE_NAME
-                            + " INNER JOIN " + MsgTable.TABLE_NAME + " ON "
-                            + MsgTable.TABLE_NAME + "." + userIdColumnName + "=" + UserTable.TABLE_NAME + "." + BaseColumns._ID
-                            + " WHERE " + MsgTable.TABLE_NAME + "." + BaseColumns._ID + "=" + messageId;
-                } else {
-                    throw new IllegalArgumentException( method + "; Unknown name \"" + userIdColumnName + "\"");
-                }
-                SQLiteDatabase db = MyContextHolder.get().getDatabase();
-                if (db == null) {
-                    MyLog.v(TAG, method + "; Database is null");
-                    return "";
-                }
-                prog = db.compileStatement(sql);
-                userName = prog.simpleQueryForString();
-            } catch (SQLiteDoneException e) {
-                MyLog.ignored(TAG, e);
-                userName = "";
-            } catch (Exception e) {
-                MyLog.e(TAG, method, e);
-                userName = "";
-            } finally {
-                DbUtils.closeSilently(prog);
+            if (userIdColumnName.contentEquals(MsgTable.ACTOR_ID) ||
+                    userIdColumnName.contentEquals(MsgTable.AUTHOR_ID) ||
+                    userIdColumnName.contentEquals(MsgTable.IN_REPLY_TO_USER_ID) ||
+                    userIdColumnName.contentEquals(MsgTable.RECIPIENT_ID)) {
+                userName = UserCache.getName(msgIdToLongColumnValue(userIdColumnName, messageId), userInTimeline);
+            } else {
+                throw new IllegalArgumentException( method + "; Unknown name \"" + userIdColumnName + "\"");
             }
             if (MyLog.isVerboseEnabled()) {
                 MyLog.v(TAG, method + "; " + userIdColumnName + ": " + messageId + " -> " + userName );
@@ -291,7 +337,7 @@ public class MyQuery {
     }
 
     public static String userIdToName(long userId, UserInTimeline userInTimeline) {
-        return idToStringColumnValue(UserTable.TABLE_NAME, userNameField(userInTimeline), userId);
+        return UserCache.getName(userId, userInTimeline);
     }
 
     /**
@@ -472,7 +518,7 @@ public class MyQuery {
     }
 
     @NonNull
-    public static Set<Long> getFollowersIds(long userId) {
+    public static LongSet getFollowersIds(long userId) {
         String where = FriendshipTable.FRIEND_ID + "=" + userId
                 + " AND " + FriendshipTable.FOLLOWED + "=1";
         String sql = "SELECT " + FriendshipTable.USER_ID
@@ -482,7 +528,7 @@ public class MyQuery {
     }
 
     @NonNull
-    public static Set<Long> getFriendsIds(long userId) {
+    public static LongSet getFriendsIds(long userId) {
         String where = FriendshipTable.USER_ID + "=" + userId
                 + " AND " + FriendshipTable.FOLLOWED + "=1";
         String sql = "SELECT " + FriendshipTable.FRIEND_ID
@@ -492,8 +538,8 @@ public class MyQuery {
     }
 
     @NonNull
-    private static Set<Long> getLongs(String sql) {
-        Set<Long> ids = new HashSet<>();
+    private static LongSet getLongs(String sql) {
+        LongSet ids = new LongSet();
         SQLiteDatabase db = MyContextHolder.get().getDatabase();
         if (db == null) {
             MyLog.v(TAG, "getLongs; Database is null");
@@ -515,7 +561,7 @@ public class MyQuery {
      *  MyAccounts' userIDs, who follow the specified User
      */
     @NonNull
-    public static Set<Long> getMyFollowersOf(long userId) {
+    public static LongSet getMyFollowersOf(long userId) {
         SelectedUserIds selectedAccounts = new SelectedUserIds(Timeline.EMPTY);
 
         String where = FriendshipTable.USER_ID + selectedAccounts.getSql()
@@ -531,8 +577,8 @@ public class MyQuery {
     /**
      * Newest replies are the first
      */
-    public static List<Long> getReplyIds(long msgId) {
-        List<Long> replies = new ArrayList<>();
+    public static LongList getReplyIds(long msgId) {
+        LongList replies = new LongList();
         String sql = "SELECT " + MsgTable._ID
                 + " FROM " + MsgTable.TABLE_NAME
                 + " WHERE " + MsgTable.IN_REPLY_TO_MSG_ID + "=" + msgId
@@ -555,8 +601,8 @@ public class MyQuery {
         return replies;
     }
 
-    public static List<Long> getRebloggers(long msgId) {
-        List<Long> rebloggers = new ArrayList<>();
+    public static LongList getRebloggers(long msgId) {
+        LongList rebloggers = new LongList();
         String sql = "SELECT " + MsgOfUserTable.USER_ID
                 + " FROM " + MsgOfUserTable.TABLE_NAME
                 + " WHERE " + MsgOfUserTable.MSG_ID + "=" + msgId
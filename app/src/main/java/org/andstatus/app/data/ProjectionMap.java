@@ -44,23 +44,28 @@ public class ProjectionMap {
         MSG.put(MsgTable.ORIGIN_ID, MsgTable.ORIGIN_ID);
         MSG.put(MsgTable.MSG_OID, MsgTable.MSG_OID);
         MSG.put(MsgTable.AUTHOR_ID, MsgTable.AUTHOR_ID);
-        MSG.put(UserTable.AUTHOR_NAME, UserTable.AUTHOR_NAME);
         MSG.put(DownloadTable.DOWNLOAD_STATUS, DownloadTable.DOWNLOAD_STATUS);
         MSG.put(DownloadTable.FILE_NAME, DownloadTable.FILE_NAME);
         MSG.put(DownloadTable.AVATAR_FILE_NAME, AVATAR_IMAGE_TABLE_ALIAS + "." + DownloadTable.FILE_NAME + " AS " + DownloadTable.AVATAR_FILE_NAME);
+        MSG.put(DownloadTable.AVATAR_WIDTH, AVATAR_IMAGE_TABLE_ALIAS + "." + DownloadTable.WIDTH + " AS " + DownloadTable.AVATAR_WIDTH);
+        MSG.put(DownloadTable.AVATAR_HEIGHT, AVATAR_IMAGE_TABLE_ALIAS + "." + DownloadTable.HEIGHT + " AS " + DownloadTable.AVATAR_HEIGHT);
+        MSG.put(DownloadTable.AVATAR_THUMBNAIL_WIDTH, AVATAR_IMAGE_TABLE_ALIAS + "." + DownloadTable.THUMBNAIL_WIDTH + " AS " + DownloadTable.AVATAR_THUMBNAIL_WIDTH);
+        MSG.put(DownloadTable.AVATAR_THUMBNAIL_HEIGHT, AVATAR_IMAGE_TABLE_ALIAS + "." + DownloadTable.THUMBNAIL_HEIGHT + " AS " + DownloadTable.AVATAR_THUMBNAIL_HEIGHT);
         MSG.put(DownloadTable.IMAGE_FILE_NAME, ATTACHMENT_IMAGE_TABLE_ALIAS + "." + DownloadTable.FILE_NAME + " AS " + DownloadTable.IMAGE_FILE_NAME);
         MSG.put(DownloadTable.IMAGE_ID, ATTACHMENT_IMAGE_TABLE_ALIAS + "." + DownloadTable._ID + " AS " + DownloadTable.IMAGE_ID);
         MSG.put(DownloadTable.IMAGE_URL, ATTACHMENT_IMAGE_TABLE_ALIAS + "." + DownloadTable.URI + " AS " + DownloadTable.IMAGE_URL);
+        MSG.put(DownloadTable.IMAGE_WIDTH, ATTACHMENT_IMAGE_TABLE_ALIAS + "." + DownloadTable.WIDTH + " AS " + DownloadTable.IMAGE_WIDTH);
+        MSG.put(DownloadTable.IMAGE_HEIGHT, ATTACHMENT_IMAGE_TABLE_ALIAS + "." + DownloadTable.HEIGHT + " AS " + DownloadTable.IMAGE_HEIGHT);
+        MSG.put(DownloadTable.IMAGE_THUMBNAIL_WIDTH, ATTACHMENT_IMAGE_TABLE_ALIAS + "." + DownloadTable.THUMBNAIL_WIDTH + " AS " + DownloadTable.IMAGE_THUMBNAIL_WIDTH);
+        MSG.put(DownloadTable.IMAGE_THUMBNAIL_HEIGHT, ATTACHMENT_IMAGE_TABLE_ALIAS + "." + DownloadTable.THUMBNAIL_HEIGHT + " AS " + DownloadTable.IMAGE_THUMBNAIL_HEIGHT);
         MSG.put(MsgTable.ACTOR_ID, MsgTable.ACTOR_ID);
-        MSG.put(UserTable.SENDER_NAME, UserTable.SENDER_NAME);
         MSG.put(MsgTable.BODY, MsgTable.BODY);
+        MSG.put(MsgTable.BODY_TO_SEARCH, MsgTable.BODY_TO_SEARCH);
         MSG.put(MsgTable.VIA, MsgTable.VIA);
         MSG.put(MsgTable.URL, MsgTable.URL);
         MSG.put(MsgTable.IN_REPLY_TO_MSG_ID, MsgTable.IN_REPLY_TO_MSG_ID);
         MSG.put(MsgTable.IN_REPLY_TO_USER_ID, MsgTable.IN_REPLY_TO_USER_ID);
-        MSG.put(UserTable.IN_REPLY_TO_NAME, UserTable.IN_REPLY_TO_NAME);
         MSG.put(MsgTable.RECIPIENT_ID, MsgTable.RECIPIENT_ID);
-        MSG.put(UserTable.RECIPIENT_NAME, UserTable.RECIPIENT_NAME);
         MSG.put(UserTable.LINKED_USER_ID, UserTable.LINKED_USER_ID);
         MSG.put(MsgOfUserTable.USER_ID, MsgOfUserTable.TABLE_NAME + "." + MsgOfUserTable.USER_ID + " AS " + MsgOfUserTable.USER_ID);
         MSG.put(MsgOfUserTable.DIRECTED, MsgOfUserTable.DIRECTED);
@@ -95,6 +100,10 @@ public class ProjectionMap {
         USER.put(UserTable.HOMEPAGE, UserTable.HOMEPAGE);
         USER.put(UserTable.AVATAR_URL, UserTable.AVATAR_URL);
         USER.put(DownloadTable.AVATAR_FILE_NAME, AVATAR_IMAGE_TABLE_ALIAS + "." + DownloadTable.FILE_NAME + " AS " + DownloadTable.AVATAR_FILE_NAME);
+        USER.put(DownloadTable.AVATAR_WIDTH, AVATAR_IMAGE_TABLE_ALIAS + "." + DownloadTable.WIDTH + " AS " + DownloadTable.AVATAR_WIDTH);
+        USER.put(DownloadTable.AVATAR_HEIGHT, AVATAR_IMAGE_TABLE_ALIAS + "." + DownloadTable.HEIGHT + " AS " + DownloadTable.AVATAR_HEIGHT);
+        USER.put(DownloadTable.AVATAR_THUMBNAIL_WIDTH, AVATAR_IMAGE_TABLE_ALIAS + "." + DownloadTable.THUMBNAIL_WIDTH + " AS " + DownloadTable.AVATAR_THUMBNAIL_WIDTH);
+        USER.put(DownloadTable.AVATAR_THUMBNAIL_HEIGHT, AVATAR_IMAGE_TABLE_ALIAS + "." + DownloadTable.THUMBNAIL_HEIGHT + " AS " + DownloadTable.AVATAR_THUMBNAIL_HEIGHT);
         USER.put(UserTable.BANNER_URL, UserTable.BANNER_URL);
 
         USER.put(UserTable.MSG_COUNT, UserTable.MSG_COUNT);
@@ -16,12 +16,10 @@
 
 package org.andstatus.app.data;
 
-import android.database.Cursor;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
 import android.provider.BaseColumns;
 import android.support.annotation.NonNull;
-import android.text.TextUtils;
 
 import org.andstatus.app.context.MyContextHolder;
 import org.andstatus.app.context.MyPreferences;
@@ -35,7 +33,6 @@ import org.andstatus.app.origin.Origin;
 import org.andstatus.app.origin.OriginType;
 import org.andstatus.app.timeline.Timeline;
 import org.andstatus.app.timeline.TimelineType;
-import org.andstatus.app.util.SharedPreferencesUtil;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -43,10 +40,45 @@ import java.util.Collection;
 import java.util.List;
 
 public class TimelineSql {
+    private static final String MEMBERSHIP_TABLE_ALIAS = "mou";
+
     private TimelineSql() {
         // Empty
     }
 
+    /**
+     * Messages of these timelines are selected by the flags of {@link MsgOfUserTable} of the account(s),
+     * so the query starts from that table: a page is a range scan of its index
+     * by the account and {@link MsgOfUserTable#MSG_SENT_DATE} with point lookups of the messages
+     */
+    public static boolean isMembershipTimeline(@NonNull Timeline timeline) {
+        switch (timeline.getTimelineType()) {
+            case HOME:
+                // Combined Home timeline shows all loaded messages
+                return !timeline.isCombined() && new SelectedUserIds(timeline).size() > 0;
+            case MENTIONS:
+            case FAVORITES:
+            case DIRECT:
+                return new SelectedUserIds(timeline).size() > 0;
+            default:
+                return false;
+        }
+    }
+
+    /** @return Column to select pages of the timeline by and to sort them */
+    @NonNull
+    public static String sentDateColumn(@NonNull Timeline timeline) {
+        return isMembershipTimeline(timeline)
+                ? MEMBERSHIP_TABLE_ALIAS + "." + MsgOfUserTable.MSG_SENT_DATE
+                : ProjectionMap.MSG_TABLE_ALIAS + "." + MsgTable.SENT_DATE;
+    }
+
+    /** @return Expression for the name of the user, as it is shown in timelines */
+    static String userNameOf(String userIdColumn) {
+        return "(SELECT " + userNameField() + " FROM " + UserTable.TABLE_NAME
+                + " WHERE " + UserTable.TABLE_NAME + "." + BaseColumns._ID + "=" + userIdColumn + ")";
+    }
+
     /**
      * @param uri the same as uri for
      *            {@link MyProvider#query(Uri, String[], String, String[], String)}
@@ -63,8 +95,8 @@ public class TimelineSql {
         SqlWhere where = new SqlWhere();
 
         boolean linkedUserDefined = false;
-        boolean authorNameDefined = false;
-        String authorTableName = "";
+        boolean membershipJoined = false;
+        String authorIdColumn = ProjectionMap.MSG_TABLE_ALIAS + "." + MsgTable.AUTHOR_ID;
         switch (timeline.getTimelineType()) {
             case FOLLOWERS:
             case MY_FOLLOWERS:
@@ -84,14 +116,9 @@ public class TimelineSql {
                         + " AND " + FriendshipTable.FOLLOWED + "=1 )"
                         + ") as fUser";
                 linkedUserDefined = true;
-                boolean defineAuthorName = columns.contains(UserTable.AUTHOR_NAME);
-                if (defineAuthorName) {
-                    authorNameDefined = true;
-                    authorTableName = "u1";
-                }
+                authorIdColumn = "fUserId";
                 String userTable = "(SELECT "
                         + BaseColumns._ID
-                        + (defineAuthorName ? ", " + TimelineSql.userNameField() + " AS " + UserTable.AUTHOR_NAME : "")
                         + ", " + UserTable.USER_MSG_ID
                         + " FROM " + UserTable.TABLE_NAME + ")";
                 msgTable += " INNER JOIN " + userTable + " as u1"
@@ -118,6 +145,17 @@ public class TimelineSql {
                 where.append(MsgTable.MSG_STATUS + "=" + DownloadStatus.SENDING.save());
                 break;
             default:
+                if (isMembershipTimeline(timeline)) {
+                    msgTable = "(SELECT *, " + MsgOfUserTable.USER_ID + " AS " + UserTable.LINKED_USER_ID
+                            + " FROM " + MsgOfUserTable.TABLE_NAME
+                            + " WHERE " + MsgOfUserTable.USER_ID + selectedAccounts.getSql()
+                            + ") AS " + MEMBERSHIP_TABLE_ALIAS
+                            + " INNER JOIN " + MsgTable.TABLE_NAME + " AS " + ProjectionMap.MSG_TABLE_ALIAS
+                            + " ON " + ProjectionMap.MSG_TABLE_ALIAS + "." + BaseColumns._ID + "="
+                            + MEMBERSHIP_TABLE_ALIAS + "." + MsgOfUserTable.MSG_ID;
+                    linkedUserDefined = true;
+                    membershipJoined = true;
+                }
                 break;
         }
 
@@ -129,8 +167,8 @@ public class TimelineSql {
             tables = "(SELECT * FROM (" + msgTable + ")" + where.getWhere() + ") AS " + ProjectionMap.MSG_TABLE_ALIAS;
         }
 
-        if (columns.contains(MsgOfUserTable.FAVORITED)
-                || (columns.contains(UserTable.LINKED_USER_ID) && !linkedUserDefined)
+        if (!membershipJoined && (columns.contains(MsgOfUserTable.FAVORITED)
+                || (columns.contains(UserTable.LINKED_USER_ID) && !linkedUserDefined))
                 ) {
             String tbl = "(SELECT *" 
                     + (linkedUserDefined ? "" : ", " + MsgOfUserTable.USER_ID + " AS "
@@ -159,27 +197,21 @@ public class TimelineSql {
             }
         }
     
-        if (!authorNameDefined && columns.contains(UserTable.AUTHOR_NAME)) {
-            tables = "(" + tables + ") LEFT OUTER JOIN (SELECT "
-                    + BaseColumns._ID + ", " 
-                    + TimelineSql.userNameField() + " AS " + UserTable.AUTHOR_NAME
-                    + " FROM " + UserTable.TABLE_NAME + ") AS author ON "
-                    + ProjectionMap.MSG_TABLE_ALIAS + "." + MsgTable.AUTHOR_ID + "=author."
-                    + BaseColumns._ID;
-            authorNameDefined = true;
-            authorTableName = "author";
-        }
-        if (authorNameDefined && columns.contains(DownloadTable.AVATAR_FILE_NAME)) {
+        if (columns.contains(DownloadTable.AVATAR_FILE_NAME)) {
             tables = "(" + tables + ") LEFT OUTER JOIN (SELECT "
                     + DownloadTable.USER_ID + ", "
                     + DownloadTable.DOWNLOAD_STATUS + ", "
+                    + DownloadTable.WIDTH + ", "
+                    + DownloadTable.HEIGHT + ", "
+                    + DownloadTable.THUMBNAIL_WIDTH + ", "
+                    + DownloadTable.THUMBNAIL_HEIGHT + ", "
                     + DownloadTable.FILE_NAME
                     + " FROM " + DownloadTable.TABLE_NAME + ") AS " + ProjectionMap.AVATAR_IMAGE_TABLE_ALIAS
                     + " ON "
                     + ProjectionMap.AVATAR_IMAGE_TABLE_ALIAS + "." + DownloadTable.DOWNLOAD_STATUS
                     + "=" + DownloadStatus.LOADED.save() + " AND " 
                     + ProjectionMap.AVATAR_IMAGE_TABLE_ALIAS + "." + DownloadTable.USER_ID
-                    + "=" + authorTableName + "." + BaseColumns._ID;
+                    + "=" + authorIdColumn;
         }
         if (columns.contains(DownloadTable.IMAGE_FILE_NAME)) {
             tables = "(" + tables + ") LEFT OUTER JOIN (SELECT "
@@ -187,6 +219,10 @@ public class TimelineSql {
                     + DownloadTable.MSG_ID + ", "
                     + DownloadTable.CONTENT_TYPE + ", "
                     + (columns.contains(DownloadTable.IMAGE_URL) ? DownloadTable.URI + ", " : "")
+                    + DownloadTable.WIDTH + ", "
+                    + DownloadTable.HEIGHT + ", "
+                    + DownloadTable.THUMBNAIL_WIDTH + ", "
+                    + DownloadTable.THUMBNAIL_HEIGHT + ", "
                     + DownloadTable.FILE_NAME
                     + " FROM " + DownloadTable.TABLE_NAME + ") AS " + ProjectionMap.ATTACHMENT_IMAGE_TABLE_ALIAS
                     +  " ON "
@@ -195,27 +231,6 @@ public class TimelineSql {
                     + ProjectionMap.ATTACHMENT_IMAGE_TABLE_ALIAS + "." + DownloadTable.MSG_ID
                     + "=" + ProjectionMap.MSG_TABLE_ALIAS + "." + BaseColumns._ID;
         }
-        if (columns.contains(UserTable.SENDER_NAME)) {  // TODO: Rename SENDER to ACTOR
-            tables = "(" + tables + ") LEFT OUTER JOIN (SELECT " + BaseColumns._ID + ", "
-                    + TimelineSql.userNameField() + " AS " + UserTable.SENDER_NAME
-                    + " FROM " + UserTable.TABLE_NAME + ") AS sender ON "
-                    + ProjectionMap.MSG_TABLE_ALIAS + "." + MsgTable.ACTOR_ID + "=sender."
-                    + BaseColumns._ID;
-        }
-        if (columns.contains(UserTable.IN_REPLY_TO_NAME)) {
-            tables = "(" + tables + ") LEFT OUTER JOIN (SELECT " + BaseColumns._ID + ", "
-                    + TimelineSql.userNameField() + " AS " + UserTable.IN_REPLY_TO_NAME
-                    + " FROM " + UserTable.TABLE_NAME + ") AS prevAuthor ON "
-                    + ProjectionMap.MSG_TABLE_ALIAS + "." + MsgTable.IN_REPLY_TO_USER_ID
-                    + "=prevAuthor." + BaseColumns._ID;
-        }
-        if (columns.contains(UserTable.RECIPIENT_NAME)) {
-            tables = "(" + tables + ") LEFT OUTER JOIN (SELECT " + BaseColumns._ID + ", "
-                    + TimelineSql.userNameField() + " AS " + UserTable.RECIPIENT_NAME
-                    + " FROM " + UserTable.TABLE_NAME + ") AS recipient ON "
-                    + ProjectionMap.MSG_TABLE_ALIAS + "." + MsgTable.RECIPIENT_ID + "=recipient."
-                    + BaseColumns._ID;
-        }
         if (columns.contains(FriendshipTable.AUTHOR_FOLLOWED)) {
             tables = "(" + tables + ") LEFT OUTER JOIN (SELECT "
                     + FriendshipTable.USER_ID + ", "
@@ -250,11 +265,8 @@ public class TimelineSql {
      */
     public static String[] getTimelineProjection() {
         List<String> columnNames = getBaseProjection();
-        if (!columnNames.contains(MsgTable.AUTHOR_ID)) {
-            columnNames.add(MsgTable.AUTHOR_ID);
-        }
         columnNames.add(MsgTable.ACTOR_ID);
-        columnNames.add(UserTable.SENDER_NAME);
+        columnNames.add(MsgTable.BODY_TO_SEARCH);
         columnNames.add(MsgTable.VIA);
         columnNames.add(MsgOfUserTable.REBLOGGED);
         return columnNames.toArray(new String[]{});
@@ -264,37 +276,30 @@ public class TimelineSql {
         List<String> columnNames = new ArrayList<>();
         columnNames.add(MsgTable._ID);
         columnNames.add(MsgTable.ORIGIN_ID);
-        columnNames.add(UserTable.AUTHOR_NAME);
+        // Names and avatars of the users are in the UserCache
+        columnNames.add(MsgTable.AUTHOR_ID);
         columnNames.add(MsgTable.BODY);
         columnNames.add(MsgTable.IN_REPLY_TO_MSG_ID);
-        columnNames.add(UserTable.IN_REPLY_TO_NAME);
-        columnNames.add(UserTable.RECIPIENT_NAME);
+        columnNames.add(MsgTable.IN_REPLY_TO_USER_ID);
+        columnNames.add(MsgTable.RECIPIENT_ID);
         columnNames.add(MsgOfUserTable.FAVORITED);
         columnNames.add(MsgTable.SENT_DATE);
         columnNames.add(MsgTable.UPDATED_DATE);
         columnNames.add(MsgTable.MSG_STATUS);
         columnNames.add(UserTable.LINKED_USER_ID);
-        if (MyPreferences.getShowAvatars()) {
-            columnNames.add(MsgTable.AUTHOR_ID);
-            columnNames.add(DownloadTable.AVATAR_FILE_NAME);
-        }
         if (MyPreferences.getDownloadAndDisplayAttachedImages()) {
             columnNames.add(DownloadTable.IMAGE_ID);
             columnNames.add(DownloadTable.IMAGE_FILE_NAME);
-        }
-        if (SharedPreferencesUtil.getBoolean(MyPreferences.KEY_MARK_REPLIES_IN_TIMELINE, true)
-                || SharedPreferencesUtil.getBoolean(
-                MyPreferences.KEY_FILTER_HIDE_REPLIES_NOT_TO_ME_OR_FRIENDS, false)) {
-            columnNames.add(MsgTable.IN_REPLY_TO_USER_ID);
+            columnNames.add(DownloadTable.IMAGE_WIDTH);
+            columnNames.add(DownloadTable.IMAGE_HEIGHT);
+            columnNames.add(DownloadTable.IMAGE_THUMBNAIL_WIDTH);
+            columnNames.add(DownloadTable.IMAGE_THUMBNAIL_HEIGHT);
         }
         return columnNames;
     }
 
     public static String[] getConversationProjection() {
         List<String> columnNames = getBaseProjection();
-        if (!columnNames.contains(MsgTable.AUTHOR_ID)) {
-            columnNames.add(MsgTable.AUTHOR_ID);
-        }
         columnNames.add(MsgTable.ACTOR_ID);
         columnNames.add(MsgTable.VIA);
         columnNames.add(MsgOfUserTable.REBLOGGED);
@@ -302,30 +307,16 @@ public class TimelineSql {
     }
 
     @NonNull
-    public static String userColumnNameToNameAtTimeline(Cursor cursor, String columnName, boolean showOrigin) {
-        return userColumnIndexToNameAtTimeline(cursor, cursor.getColumnIndex(columnName), showOrigin);
-    }
-
-    @NonNull
-    public static String userColumnIndexToNameAtTimeline(Cursor cursor, int columnIndex, boolean showOrigin) {
-        String userName = "";
-        if (columnIndex >= 0) {
-            userName = cursor.getString(columnIndex);
-            if (TextUtils.isEmpty(userName)) {
-                userName = "";
-            }
-        }
+    public static String userIdToNameAtTimeline(CursorRow row, long userId, boolean showOrigin) {
+        String userName = UserCache.getName(userId, MyPreferences.getUserInTimeline());
         if (showOrigin) {
-            long originId = DbUtils.getLong(cursor, MsgTable.ORIGIN_ID);
+            long originId = row.getLong(MsgTable.ORIGIN_ID);
             if (originId != 0) {
                 Origin origin = MyContextHolder.get().persistentOrigins().fromId(originId);
                 userName += " / " + origin.getName();
                 if (origin.getOriginType() == OriginType.GNUSOCIAL &&
-                        MyPreferences.isShowDebuggingInfoInUi()) {
-                    long authorId = DbUtils.getLong(cursor, MsgTable.AUTHOR_ID);
-                    if (authorId != 0) {
-                        userName += " id:" + MyQuery.idToOid(OidEnum.USER_OID, authorId, 0);
-                    }
+                        MyPreferences.isShowDebuggingInfoInUi() && userId != 0) {
+                    userName += " id:" + MyQuery.idToOid(OidEnum.USER_OID, userId, 0);
                 }
             }
         }
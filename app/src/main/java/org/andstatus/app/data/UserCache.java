@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.provider.BaseColumns;
+import android.support.annotation.NonNull;
+import android.text.TextUtils;
+
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.context.UserInTimeline;
+import org.andstatus.app.database.DownloadTable;
+import org.andstatus.app.database.UserTable;
+import org.andstatus.app.util.MyLog;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Names of Users, formatted for each {@link UserInTimeline}, and their avatars, by User id.
+ * Timelines, conversations and lists of Users get them from here instead of joining
+ * {@link UserTable} and {@link DownloadTable} for each row.
+ * The least recently used Users are evicted. A User should be invalidated after its data is changed,
+ * see {@link #invalidate(long)}
+ * @author yvolk@yurivolkov.com
+ */
+public class UserCache {
+    private static final String TAG = UserCache.class.getSimpleName();
+    static final int CAPACITY = 1000;
+
+    private static class CachedUser {
+        /** Indexed by {@link UserInTimeline#ordinal()} */
+        final String[] names = new String[UserInTimeline.values().length];
+        final AvatarFile avatarFile;
+
+        CachedUser(String userName, String webFingerId, String realName, AvatarFile avatarFile) {
+            for (UserInTimeline userInTimeline : UserInTimeline.values()) {
+                names[userInTimeline.ordinal()] = formatName(userInTimeline, userName, webFingerId, realName);
+            }
+            this.avatarFile = avatarFile;
+        }
+    }
+
+    private static final Map<Long, CachedUser> users = new LinkedHashMap<Long, CachedUser>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CachedUser> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+    /** Incremented on each invalidation, so a User loaded before it is not put into the cache */
+    private static long invalidations = 0;
+
+    private UserCache() {
+        // Empty
+    }
+
+    /** @return Name of the User as {@link MyQuery#userNameField(UserInTimeline)} formats it,
+     *  or empty string if the User is not found */
+    @NonNull
+    public static String getName(long userId, @NonNull UserInTimeline userInTimeline) {
+        CachedUser user = get(userId);
+        return user == null ? "" : user.names[userInTimeline.ordinal()];
+    }
+
+    @NonNull
+    public static String getWebfingerId(long userId) {
+        return getName(userId, UserInTimeline.WEBFINGER_ID);
+    }
+
+    /** @return The loaded avatar of the User or {@link AvatarFile#EMPTY} */
+    @NonNull
+    public static AvatarFile getAvatarFile(long userId) {
+        CachedUser user = get(userId);
+        return user == null ? AvatarFile.EMPTY : user.avatarFile;
+    }
+
+    public static void invalidate(long userId) {
+        if (userId == 0) {
+            return;
+        }
+        synchronized (users) {
+            invalidations++;
+            users.remove(userId);
+        }
+    }
+
+    public static void clear() {
+        synchronized (users) {
+            invalidations++;
+            users.clear();
+        }
+    }
+
+    private static CachedUser get(long userId) {
+        if (userId == 0) {
+            return null;
+        }
+        long invalidationsBefore;
+        synchronized (users) {
+            CachedUser user = users.get(userId);
+            if (user != null) {
+                return user;
+            }
+            invalidationsBefore = invalidations;
+        }
+        CachedUser user = load(userId);
+        if (user != null) {
+            synchronized (users) {
+                if (invalidationsBefore == invalidations) {
+                    users.put(userId, user);
+                }
+            }
+        }
+        return user;
+    }
+
+    private static CachedUser load(long userId) {
+        final String method = "load";
+        SQLiteDatabase db = MyContextHolder.get().getDatabase();
+        if (db == null) {
+            MyLog.v(TAG, method + "; Database is null");
+            return null;
+        }
+        String sql = "SELECT " + UserTable.USERNAME + ", "
+                + UserTable.WEBFINGER_ID + ", "
+                + UserTable.REAL_NAME + ", "
+                + "av." + DownloadTable.FILE_NAME + " AS " + DownloadTable.AVATAR_FILE_NAME + ", "
+                + "av." + DownloadTable.WIDTH + " AS " + DownloadTable.AVATAR_WIDTH + ", "
+                + "av." + DownloadTable.HEIGHT + " AS " + DownloadTable.AVATAR_HEIGHT + ", "
+                + "av." + DownloadTable.THUMBNAIL_WIDTH + " AS " + DownloadTable.AVATAR_THUMBNAIL_WIDTH + ", "
+                + "av." + DownloadTable.THUMBNAIL_HEIGHT + " AS " + DownloadTable.AVATAR_THUMBNAIL_HEIGHT
+                + " FROM " + UserTable.TABLE_NAME
+                + " LEFT OUTER JOIN " + DownloadTable.TABLE_NAME + " AS av"
+                + " ON av." + DownloadTable.USER_ID + "=" + UserTable.TABLE_NAME + "." + BaseColumns._ID
+                + " AND av." + DownloadTable.DOWNLOAD_STATUS + "=" + DownloadStatus.LOADED.save()
+                + " WHERE " + UserTable.TABLE_NAME + "." + BaseColumns._ID + "=" + userId;
+        CachedUser user = null;
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery(sql, null);
+            if (cursor.moveToFirst()) {
+                CursorRow row = new CursorRow(cursor);
+                user = new CachedUser(row.getString(UserTable.USERNAME), row.getString(UserTable.WEBFINGER_ID),
+                        row.getString(UserTable.REAL_NAME), AvatarFile.fromCursor(userId, row));
+            }
+        } catch (Exception e) {
+            MyLog.e(TAG, method + "; userId=" + userId, e);
+        } finally {
+            DbUtils.closeSilently(cursor);
+        }
+        return user;
+    }
+
+    /** The same as SQL of {@link MyQuery#userNameField(UserInTimeline)}: empty if any part is absent */
+    @NonNull
+    static String formatName(UserInTimeline userInTimeline, String userName, String webFingerId, String realName) {
+        switch (userInTimeline) {
+            case AT_USERNAME:
+                return TextUtils.isEmpty(userName) ? "" : "@" + userName;
+            case WEBFINGER_ID:
+                return webFingerId;
+            case REAL_NAME:
+                return realName;
+            case REAL_NAME_AT_USERNAME:
+                return TextUtils.isEmpty(realName) || TextUtils.isEmpty(userName) ? ""
+                        : realName + " @" + userName;
+            default:
+                return userName;
+        }
+    }
+}
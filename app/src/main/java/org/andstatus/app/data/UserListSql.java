@@ -20,7 +20,6 @@ import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
 import android.provider.BaseColumns;
 
-import org.andstatus.app.context.MyPreferences;
 import org.andstatus.app.database.DownloadTable;
 import org.andstatus.app.database.UserTable;
 import org.andstatus.app.user.UserListType;
@@ -49,6 +48,10 @@ public class UserListSql {
             tables = "(" + tables + ") LEFT OUTER JOIN (SELECT "
                     + DownloadTable.USER_ID + ", "
                     + DownloadTable.DOWNLOAD_STATUS + ", "
+                    + DownloadTable.WIDTH + ", "
+                    + DownloadTable.HEIGHT + ", "
+                    + DownloadTable.THUMBNAIL_WIDTH + ", "
+                    + DownloadTable.THUMBNAIL_HEIGHT + ", "
                     + DownloadTable.FILE_NAME
                     + " FROM " + DownloadTable.TABLE_NAME + ") AS " + ProjectionMap.AVATAR_IMAGE_TABLE_ALIAS
                     + " ON "
@@ -79,9 +82,7 @@ public class UserListSql {
 
         columnNames.add(UserTable.PROFILE_URL);
         columnNames.add(UserTable.HOMEPAGE);
-        if (MyPreferences.getShowAvatars()) {
-            columnNames.add(DownloadTable.AVATAR_FILE_NAME);
-        }
+        // Avatars are in the UserCache
 
         columnNames.add(UserTable.MSG_COUNT);
         columnNames.add(UserTable.FAVORITES_COUNT);
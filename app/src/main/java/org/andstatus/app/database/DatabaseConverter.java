@@ -123,7 +123,7 @@ class DatabaseConverter {
         }
     }
 
-    private static abstract class OneStep {
+    static abstract class OneStep {
         SQLiteDatabase db;
         int oldVersion;
         ProgressLogger progressLogger;
@@ -423,4 +423,93 @@ class DatabaseConverter {
         }
     }
 
+    static class Convert26 extends OneStep {
+        Convert26() {
+            versionTo = 27;
+        }
+
+        @Override
+        protected void execute2() {
+            sql = "CREATE VIRTUAL TABLE msg_fts USING fts4(body_to_search)";
+            DbUtils.execSQL(db, sql);
+
+            sql = "INSERT INTO msg_fts (docid, body_to_search)"
+                    + " SELECT _id, body_to_search FROM msg"
+                    + " WHERE body_to_search IS NOT NULL AND body_to_search!=''";
+            DbUtils.execSQL(db, sql);
+        }
+    }
+
+    static class Convert27 extends OneStep {
+        Convert27() {
+            versionTo = 28;
+        }
+
+        @Override
+        protected void execute2() {
+            sql = "ALTER TABLE download ADD COLUMN etag TEXT";
+            DbUtils.execSQL(db, sql);
+            sql = "ALTER TABLE download ADD COLUMN last_modified TEXT";
+            DbUtils.execSQL(db, sql);
+        }
+    }
+
+    static class Convert28 extends OneStep {
+        Convert28() {
+            versionTo = 29;
+        }
+
+        @Override
+        protected void execute2() {
+            sql = "ALTER TABLE download ADD COLUMN width INTEGER NOT NULL DEFAULT 0";
+            DbUtils.execSQL(db, sql);
+            sql = "ALTER TABLE download ADD COLUMN height INTEGER NOT NULL DEFAULT 0";
+            DbUtils.execSQL(db, sql);
+        }
+    }
+
+    static class Convert29 extends OneStep {
+        Convert29() {
+            versionTo = 30;
+        }
+
+        @Override
+        protected void execute2() {
+            sql = "ALTER TABLE download ADD COLUMN thumbnail_width INTEGER NOT NULL DEFAULT 0";
+            DbUtils.execSQL(db, sql);
+            sql = "ALTER TABLE download ADD COLUMN thumbnail_height INTEGER NOT NULL DEFAULT 0";
+            DbUtils.execSQL(db, sql);
+        }
+    }
+
+    static class Convert30 extends OneStep {
+        Convert30() {
+            versionTo = 31;
+        }
+
+        @Override
+        protected void execute2() {
+            sql = "CREATE INDEX idx_msgofuser_msg_id ON msgofuser (msg_id)";
+            DbUtils.execSQL(db, sql);
+        }
+    }
+
+    static class Convert31 extends OneStep {
+        Convert31() {
+            versionTo = 32;
+        }
+
+        @Override
+        protected void execute2() {
+            sql = "ALTER TABLE msgofuser ADD COLUMN mou_sent_date INTEGER NOT NULL DEFAULT 0";
+            DbUtils.execSQL(db, sql);
+            sql = "UPDATE msgofuser SET mou_sent_date=(SELECT msg.msg_sent_date FROM msg"
+                    + " WHERE msg._id=msgofuser.msg_id) WHERE EXISTS (SELECT * FROM msg"
+                    + " WHERE msg._id=msgofuser.msg_id)";
+            DbUtils.execSQL(db, sql);
+            sql = "CREATE INDEX idx_msgofuser_user_sent_date ON msgofuser (user_id, mou_sent_date)";
+            DbUtils.execSQL(db, sql);
+        }
+    }
+
 }
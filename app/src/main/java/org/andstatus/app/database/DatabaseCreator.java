@@ -31,6 +31,12 @@ public class DatabaseCreator {
      * This is used to check (and upgrade if necessary)
      * existing database after application update.
      *
+     * v.32 2017-10-23 app.v.35 Sent date of a message copied to {@link MsgOfUserTable} for paging User's timelines
+     * v.31 2017-10-22 app.v.35 Index by message added to {@link MsgOfUserTable} for deleting messages in chunks
+     * v.30 2017-10-21 app.v.35 Sizes of downscaled image variants (thumbnails) added to {@link DownloadTable}
+     * v.29 2017-10-20 app.v.35 Image dimensions added to {@link DownloadTable}
+     * v.28 2017-10-19 app.v.35 HTTP validators added to {@link DownloadTable} for conditional downloads
+     * v.27 2017-10-18 app.v.35 Full-text search index of messages {@link MsgFtsTable} added
      * v.26 2016-11-27 app.v.31 Conversation ID added to MsgTable, see https://github.com/andstatus/andstatus/issues/361
      * v.25 2016-06-07 app.v.27 TimelineTable and CommandTable added
      * v.24 2016-02-27 app.v.23 several attributes added to User, https://github.com/andstatus/andstatus/issues/320
@@ -54,7 +60,7 @@ public class DatabaseCreator {
      *      All messages are in the same table.
      *      Allows to have multiple User Accounts in different Originating systems (twitter.com etc. )
      */
-    public static final int DATABASE_VERSION = 26;
+    public static final int DATABASE_VERSION = 32;
     public static final long ORIGIN_ID_TWITTER =  1L;
 
     private final SQLiteDatabase db;
@@ -70,6 +76,7 @@ public class DatabaseCreator {
     public DatabaseCreator create() {
         MyLog.i(this, "Creating tables");
         MsgTable.create(db);
+        MsgFtsTable.create(db);
         MsgOfUserTable.create(db);
         UserTable.create(db);
         FriendshipTable.create(db);
@@ -55,6 +55,18 @@ public final class DownloadTable implements BaseColumns {
      */
     public static final String DOWNLOAD_STATUS = "download_status";
     public static final String FILE_NAME = "file_name";
+    /** HTTP validators of the downloaded file: "ETag" and "Last-Modified" headers of the response */
+    public static final String ETAG = "etag";
+    public static final String LAST_MODIFIED = "last_modified";
+    /** Dimensions of the downloaded image, so we can choose scaling without reading the file. 0 if unknown */
+    public static final String WIDTH = "width";
+    public static final String HEIGHT = "height";
+    /**
+     * Dimensions of the image variant, downscaled for display at download time, 0 if there is no such file.
+     * See {@link org.andstatus.app.data.DownloadFile#getThumbnail()}
+     */
+    public static final String THUMBNAIL_WIDTH = "thumbnail_width";
+    public static final String THUMBNAIL_HEIGHT = "thumbnail_height";
 
     /*
      * Derived columns (they are not stored in this table but are result of joins)
@@ -66,6 +78,14 @@ public final class DownloadTable implements BaseColumns {
     /** Alias helping to show first attached image */
     public static final String IMAGE_FILE_NAME = "image_file_name";
     public static final String IMAGE_URL = "image_url";
+    public static final String IMAGE_WIDTH = "image_width";
+    public static final String IMAGE_HEIGHT = "image_height";
+    public static final String AVATAR_WIDTH = "avatar_width";
+    public static final String AVATAR_HEIGHT = "avatar_height";
+    public static final String IMAGE_THUMBNAIL_WIDTH = "image_thumbnail_width";
+    public static final String IMAGE_THUMBNAIL_HEIGHT = "image_thumbnail_height";
+    public static final String AVATAR_THUMBNAIL_WIDTH = "avatar_thumbnail_width";
+    public static final String AVATAR_THUMBNAIL_HEIGHT = "avatar_thumbnail_height";
 
     public static void create(SQLiteDatabase db) {
         DbUtils.execSQL(db, "CREATE TABLE " + DownloadTable.TABLE_NAME + " ("
@@ -78,7 +98,13 @@ public final class DownloadTable implements BaseColumns {
                 + DownloadTable.URI + " TEXT NOT NULL,"
                 + DownloadTable.LOADED_DATE + " INTEGER,"
                 + DownloadTable.DOWNLOAD_STATUS + " INTEGER NOT NULL DEFAULT 0,"
-                + DownloadTable.FILE_NAME + " TEXT"
+                + DownloadTable.FILE_NAME + " TEXT,"
+                + DownloadTable.ETAG + " TEXT,"
+                + DownloadTable.LAST_MODIFIED + " TEXT,"
+                + DownloadTable.WIDTH + " INTEGER NOT NULL DEFAULT 0,"
+                + DownloadTable.HEIGHT + " INTEGER NOT NULL DEFAULT 0,"
+                + DownloadTable.THUMBNAIL_WIDTH + " INTEGER NOT NULL DEFAULT 0,"
+                + DownloadTable.THUMBNAIL_HEIGHT + " INTEGER NOT NULL DEFAULT 0"
                 + ")");
 
         DbUtils.execSQL(db, "CREATE INDEX idx_download_user ON " + DownloadTable.TABLE_NAME + " ("
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.database;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import org.andstatus.app.data.DbUtils;
+
+/**
+ * Full-text search index of messages, see <a href="https://www.sqlite.org/fts3.html">SQLite FTS3 and FTS4</a>.
+ * The "docid" of a row is {@link MsgTable#_ID} of the indexed message
+ * @author yvolk@yurivolkov.com
+ */
+public final class MsgFtsTable {
+    public static final String TABLE_NAME = "msg_fts";
+
+    private MsgFtsTable() {
+        // Empty
+    }
+
+    /** Implicit primary key of the FTS table, equal to {@link MsgTable#_ID} */
+    public static final String DOCID = "docid";
+    /** A copy of {@link MsgTable#BODY_TO_SEARCH} */
+    public static final String BODY_TO_SEARCH = MsgTable.BODY_TO_SEARCH;
+
+    public static void create(SQLiteDatabase db) {
+        DbUtils.execSQL(db, "CREATE VIRTUAL TABLE " + TABLE_NAME + " USING fts4("
+                + BODY_TO_SEARCH
+                + ")");
+    }
+}
@@ -71,6 +71,12 @@ public final class MsgOfUserTable {
      * This is Direct message which was sent by (Sender) or to (Recipient) this User
      */
     public static final String DIRECTED = "directed";
+    /**
+     * Copy of {@link MsgTable#SENT_DATE} of the message, so a page of the User's timeline
+     * is a range scan of the index by the User and this date.
+     * Its name differs from the name of the original column, because the tables are joined
+     */
+    public static final String MSG_SENT_DATE = "mou_sent_date";
 
     /** It's not in a database, for passing data only */
     public static final String SUFFIX_FOR_OTHER_USER = "_other";
@@ -86,7 +92,17 @@ public final class MsgOfUserTable {
                 + MsgOfUserTable.MENTIONED + " BOOLEAN DEFAULT 0 NOT NULL,"
                 + MsgOfUserTable.REPLIED + " BOOLEAN DEFAULT 0 NOT NULL,"
                 + MsgOfUserTable.DIRECTED + " BOOLEAN DEFAULT 0 NOT NULL,"
+                + MsgOfUserTable.MSG_SENT_DATE + " INTEGER DEFAULT 0 NOT NULL,"
                 + " CONSTRAINT pk_msgofuser PRIMARY KEY (" + MsgOfUserTable.USER_ID + " ASC, " + MsgOfUserTable.MSG_ID + " ASC)"
                 + ")");
+
+        DbUtils.execSQL(db, "CREATE INDEX idx_msgofuser_msg_id ON " + MsgOfUserTable.TABLE_NAME + " ("
+                + MsgOfUserTable.MSG_ID
+                + ")");
+
+        DbUtils.execSQL(db, "CREATE INDEX idx_msgofuser_user_sent_date ON " + MsgOfUserTable.TABLE_NAME + " ("
+                + MsgOfUserTable.USER_ID + ", "
+                + MsgOfUserTable.MSG_SENT_DATE
+                + ")");
     }
 }
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.graphics;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Mutable bitmaps, which are free for reuse via {@link android.graphics.BitmapFactory.Options#inBitmap}
+ * or as a drawing target. The pool is filled lazily: by bitmaps evicted from an {@link ImageCache}.
+ * <p>
+ * Before KitKat a bitmap may be reused for the image of exactly the same size only,
+ * so the bitmaps are bucketed by width and height. Since KitKat any bitmap, which has enough bytes allocated,
+ * may be reused, so the buckets are powers of two of the allocation size.
+ * @author yvolk@yurivolkov.com
+ */
+class BitmapPool {
+    private static final boolean REUSE_BY_BYTE_COUNT = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+
+    private final long maxBytes;
+    private long currentBytes = 0;
+    private long reused = 0;
+    private long dropped = 0;
+    private final Map<Long, Queue<Bitmap>> buckets = new HashMap<>();
+    /** Order, in which the bitmaps were added, to drop the oldest ones first */
+    private final Queue<Long> addedToBuckets = new ArrayDeque<>();
+
+    BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /** @return a bitmap for an image of this size and {@link CachedImage#BITMAP_CONFIG} or null */
+    @Nullable
+    synchronized Bitmap get(int width, int height) {
+        if (width < 1 || height < 1) {
+            return null;
+        }
+        if (REUSE_BY_BYTE_COUNT) {
+            long bytesNeeded = (long) width * height * ImageCache.BYTES_PER_PIXEL;
+            for (int power = ceilLog2(bytesNeeded); power <= ceilLog2(bytesNeeded) + 1; power++) {
+                Bitmap bitmap = poll(power);
+                if (bitmap != null) {
+                    return bitmap;
+                }
+            }
+            return null;
+        }
+        return poll(sizeKey(width, height));
+    }
+
+    /** @return false if the bitmap cannot be reused, so it was not added */
+    synchronized boolean put(@NonNull Bitmap bitmap) {
+        if (bitmap.isRecycled() || !bitmap.isMutable() || bitmap.getConfig() != CachedImage.BITMAP_CONFIG) {
+            return false;
+        }
+        long bytes = getAllocationByteCount(bitmap);
+        if (bytes > maxBytes) {
+            return false;
+        }
+        long key = REUSE_BY_BYTE_COUNT ? floorLog2(bytes) : sizeKey(bitmap.getWidth(), bitmap.getHeight());
+        Queue<Bitmap> bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            buckets.put(key, bucket);
+        }
+        bucket.add(bitmap);
+        addedToBuckets.add(key);
+        currentBytes += bytes;
+        while (currentBytes > maxBytes && dropOldest()) {
+            dropped++;
+        }
+        return true;
+    }
+
+    synchronized void clear() {
+        buckets.clear();
+        addedToBuckets.clear();
+        currentBytes = 0;
+    }
+
+    synchronized String getInfo() {
+        return "pool: " + addedToBuckets.size() + " bitmaps in " + buckets.size() + " buckets"
+                + ", reused:" + reused + ", dropped:" + dropped;
+    }
+
+    private Bitmap poll(long key) {
+        Queue<Bitmap> bucket = buckets.get(key);
+        if (bucket == null) {
+            return null;
+        }
+        Bitmap bitmap = bucket.poll();
+        if (bitmap != null) {
+            addedToBuckets.remove(key);
+            currentBytes -= getAllocationByteCount(bitmap);
+            reused++;
+        }
+        return bitmap;
+    }
+
+    private boolean dropOldest() {
+        Long key = addedToBuckets.poll();
+        if (key == null) {
+            return false;
+        }
+        Queue<Bitmap> bucket = buckets.get(key);
+        Bitmap bitmap = bucket == null ? null : bucket.poll();
+        if (bitmap != null) {
+            currentBytes -= getAllocationByteCount(bitmap);
+        }
+        return true;
+    }
+
+    private static long sizeKey(int width, int height) {
+        return ((long) width << 32) | height;
+    }
+
+    private static int floorLog2(long value) {
+        return 63 - Long.numberOfLeadingZeros(value);
+    }
+
+    private static int ceilLog2(long value) {
+        return value <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(value - 1);
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    static long getAllocationByteCount(@NonNull Bitmap bitmap) {
+        if (REUSE_BY_BYTE_COUNT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getByteCount();
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.andstatus.app.graphics;
 
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
@@ -29,37 +30,45 @@ import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.Shader;
 import android.os.Build;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.text.TextUtils;
 import android.util.DisplayMetrics;
 import android.util.LruCache;
 
 import org.andstatus.app.context.MyPreferences;
+import org.andstatus.app.data.DbUtils;
+import org.andstatus.app.util.I18n;
 import org.andstatus.app.util.MyLog;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.util.Queue;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Set;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author yvolk@yurivolkov.com
  * On LruCache usage read http://developer.android.com/reference/android/util/LruCache.html
+ * The capacity is in bytes. Bitmaps of evicted images are returned to the {@link BitmapPool}
+ * and are reused for decoding of new images, so scrolling of a timeline doesn't allocate new bitmaps.
  */
 public class ImageCache extends LruCache<String, CachedImage> {
 
     public final static int BYTES_PER_PIXEL = 4;
+    /** Part of the cache capacity, which is used for the free bitmaps */
+    private static final int POOL_PART_OF_CACHE_DIVIDER = 4;
+    private static final int THUMBNAIL_QUALITY = 90;
     final CacheName name;
-    private volatile int requestedCacheSize;
-    private volatile int currentCacheSize;
     private volatile int maxBitmapHeight;
     private volatile int maxBitmapWidth;
     final AtomicLong hits = new AtomicLong();
     final AtomicLong misses = new AtomicLong();
     final Set<String> brokenBitmaps = new ConcurrentSkipListSet<>();
-    final Queue<Bitmap> recycledBitmaps;
+    final BitmapPool bitmapPool;
     final DisplayMetrics displayMetrics;
     volatile boolean rounded = false;
 
@@ -68,8 +77,9 @@ public class ImageCache extends LruCache<String, CachedImage> {
         throw new IllegalStateException("Cache cannot be resized");
     }
 
-    public ImageCache(Context context, CacheName name, int maxBitmapHeightWidthIn, int requestedCacheSizeIn) {
-        super(requestedCacheSizeIn);
+    /** @param maxBytesIn Capacity of the cache in bytes */
+    public ImageCache(Context context, CacheName name, int maxBitmapHeightWidthIn, int maxBytesIn) {
+        super(maxBytesIn);
         this.name = name;
         displayMetrics = context.getResources().getDisplayMetrics();
         int maxBitmapHeightWidth = maxBitmapHeightWidthIn;
@@ -82,58 +92,35 @@ public class ImageCache extends LruCache<String, CachedImage> {
             }
         }
         this.setMaxBounds(maxBitmapHeightWidth, maxBitmapHeightWidth);
-        this.requestedCacheSize = requestedCacheSizeIn;
-        this.currentCacheSize = this.requestedCacheSize;
-        recycledBitmaps = new ConcurrentLinkedQueue<>();
-        try {
-            for (int i = 0; i < currentCacheSize + 2; i++) {
-                recycledBitmaps.add(newBlankBitmap());
-            }
-        } catch (OutOfMemoryError e) {
-            MyLog.w(this, getInfo(), e);
-            currentCacheSize = recycledBitmaps.size() - 2;
-            if (currentCacheSize < 0) {
-                currentCacheSize = 0;
-            }
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                super.resize(currentCacheSize);
-            }
-        }
+        bitmapPool = new BitmapPool(maxBytesIn / POOL_PART_OF_CACHE_DIVIDER);
     }
 
-    private Bitmap newBlankBitmap() {
-        Bitmap bitmap;
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
-            bitmap = Bitmap.createBitmap(displayMetrics, maxBitmapWidth,
-                    maxBitmapHeight, CachedImage.BITMAP_CONFIG);
-        } else {
-            bitmap = Bitmap.createBitmap(maxBitmapWidth,
-                    maxBitmapHeight, CachedImage.BITMAP_CONFIG);
-            bitmap.setDensity(displayMetrics.densityDpi);
-        }
-        return bitmap;
+    @Override
+    protected int sizeOf(String key, CachedImage value) {
+        return (int) BitmapPool.getAllocationByteCount(value.getBitmap());
     }
 
     @Nullable
     CachedImage getCachedImage(Object objTag, long imageId, String path) {
-        return getImage(objTag, imageId, path, true);
+        return getImage(objTag, imageId, path, new Point(), true);
     }
 
     @Nullable
-    CachedImage loadAndGetImage(Object objTag, long imageId, String path) {
-        return getImage(objTag, imageId, path, false);
+    CachedImage loadAndGetImage(Object objTag, long imageId, String path, @NonNull Point imageSize) {
+        return getImage(objTag, imageId, path, imageSize, false);
     }
 
     @Override
     protected void entryRemoved(boolean evicted, String key, CachedImage oldValue, CachedImage newValue) {
         if (oldValue.isBitmapRecyclable()) {
             oldValue.makeExpired();
-            recycledBitmaps.add(oldValue.getBitmap());
+            bitmapPool.put(oldValue.getBitmap());
         }
     }
 
     @Nullable
-    private CachedImage getImage(Object objTag, long imageId, String path, boolean fromCacheOnly) {
+    private CachedImage getImage(Object objTag, long imageId, String path, Point imageSize,
+                                 boolean fromCacheOnly) {
         if (TextUtils.isEmpty(path)) {
             return null;
         }
@@ -148,9 +135,11 @@ public class ImageCache extends LruCache<String, CachedImage> {
         } else {
             misses.incrementAndGet();
             if (!fromCacheOnly) {
-                image = loadImage(objTag, imageId, path);
+                image = loadImage(objTag, imageId, path, imageSize);
                 if (image != null) {
-                    if (currentCacheSize > 0) {
+                    // An image, larger than the cache, would be evicted during its put,
+                    // and its bitmap would go to the pool, while the image is shown
+                    if (sizeOf(path, image) <= maxSize()) {
                         put(path, image);
                     }
                 } else {
@@ -162,29 +151,47 @@ public class ImageCache extends LruCache<String, CachedImage> {
     }
 
     @Nullable
-    private CachedImage loadImage(Object objTag, long imageId, String path) {
-        Bitmap bitmap = loadBitmap(objTag, imageId, path);
+    private CachedImage loadImage(Object objTag, long imageId, String path, Point imageSize) {
+        Bitmap bitmap = loadBitmap(objTag, path, imageSize);
         if (bitmap == null) {
             return null;
         }
         Rect srcRect = new Rect(0, 0, bitmap.getWidth(), bitmap.getHeight());
-        Bitmap background = getSuitableRecycledBitmap(srcRect);
-        if (background == null) {
-            MyLog.w(objTag, "No suitable bitmap found to cache "
-                    + srcRect.width() + "x" + srcRect.height() + " '" + path + "'");
-            return null ;
+        if (!rounded) {
+            return new CachedImage(imageId, bitmap, srcRect);
         }
+        Bitmap background = getBlankBitmap(srcRect.width(), srcRect.height());
         Canvas canvas = new Canvas(background);
         canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
-        if (rounded) {
-            drawRoundedBitmap(canvas, bitmap);
-        } else {
-            canvas.drawBitmap(bitmap, 0 , 0, null);
+        drawRoundedBitmap(canvas, bitmap);
+        if (!bitmapPool.put(bitmap)) {
+            bitmap.recycle();
         }
-        bitmap.recycle();
         return new CachedImage(imageId, background, srcRect);
     }
 
+    private Bitmap getBlankBitmap(int width, int height) {
+        Bitmap bitmap = bitmapPool.get(width, height);
+        if (bitmap != null) {
+            if (bitmap.getWidth() != width || bitmap.getHeight() != height) {
+                reconfigure(bitmap, width, height);
+            }
+            return bitmap;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            bitmap = Bitmap.createBitmap(displayMetrics, width, height, CachedImage.BITMAP_CONFIG);
+        } else {
+            bitmap = Bitmap.createBitmap(width, height, CachedImage.BITMAP_CONFIG);
+            bitmap.setDensity(displayMetrics.densityDpi);
+        }
+        return bitmap;
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static void reconfigure(Bitmap bitmap, int width, int height) {
+        bitmap.reconfigure(width, height, CachedImage.BITMAP_CONFIG);
+    }
+
     /**
      * The solution is from http://evel.io/2013/07/21/rounded-avatars-in-android/
      */
@@ -198,23 +205,18 @@ public class ImageCache extends LruCache<String, CachedImage> {
         canvas.drawOval(rectF, paint);
     }
 
-    private Bitmap getSuitableRecycledBitmap(Rect srcRect) {
-        return recycledBitmaps.poll();
-    }
-
     @Nullable
-    private Bitmap loadBitmap(Object objTag, long imageId, String path) {
+    private Bitmap loadBitmap(Object objTag, String path, Point imageSize) {
         Bitmap bitmap = null;
         if (MyPreferences.isShowDebuggingInfoInUi()) {
-            bitmap = BitmapFactory
-                    .decodeFile(path, calculateScaling(objTag, getImageSize(imageId, path)));
+            bitmap = decodeFile(objTag, path, imageSize);
         } else {
             try {
-                bitmap = BitmapFactory
-                        .decodeFile(path, calculateScaling(objTag, getImageSize(imageId, path)));
+                bitmap = decodeFile(objTag, path, imageSize);
             } catch (OutOfMemoryError e) {
                 MyLog.w(objTag, getInfo(), e);
                 evictAll();
+                bitmapPool.clear();
             }
         }
         if (MyLog.isVerboseEnabled()) {
@@ -225,12 +227,47 @@ public class ImageCache extends LruCache<String, CachedImage> {
         return bitmap;
     }
 
-    Point getImageSize(long imageId, String path) {
-        if (!TextUtils.isEmpty(path)) {
-            CachedImage image = get(path);
-            if (image != null) {
-                return image.getImageSize();
+    /**
+     * Decodes into a pooled bitmap, if a suitable one is free.
+     * The file is read once, if its size is known, otherwise its bounds are read first
+     */
+    private Bitmap decodeFile(Object objTag, String path, Point knownSize) {
+        Point imageSize = knownSize.x > 0 && knownSize.y > 0 ? knownSize : getImageSize(path);
+        BitmapFactory.Options options = calculateScaling(objTag, imageSize);
+        options.inMutable = true;
+        options.inPreferredConfig = CachedImage.BITMAP_CONFIG;
+        Bitmap candidate = getBitmapToDecodeInto(imageSize, options.inSampleSize);
+        if (candidate != null) {
+            options.inBitmap = candidate;
+            try {
+                Bitmap bitmap = BitmapFactory.decodeFile(path, options);
+                if (bitmap != null) {
+                    return bitmap;
+                }
+            } catch (IllegalArgumentException e) {
+                MyLog.v(objTag, "Couldn't reuse bitmap for '" + path + "'", e);
             }
+            bitmapPool.put(candidate);
+            options.inBitmap = null;
+        }
+        return BitmapFactory.decodeFile(path, options);
+    }
+
+    @Nullable
+    private Bitmap getBitmapToDecodeInto(Point imageSize, int inSampleSize) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            int sampleSize = inSampleSize < 2 ? 1 : inSampleSize;
+            int width = (imageSize.x + sampleSize - 1) / sampleSize;
+            int height = (imageSize.y + sampleSize - 1) / sampleSize;
+            return bitmapPool.get(width, height);
+        }
+        // Before KitKat only images of the same size, decoded without scaling, may reuse a bitmap
+        return inSampleSize < 2 ? bitmapPool.get(imageSize.x, imageSize.y) : null;
+    }
+
+    @NonNull
+    static Point getImageSize(String path) {
+        if (!TextUtils.isEmpty(path)) {
             try {
                 BitmapFactory.Options options = new BitmapFactory.Options();
                 options.inJustDecodeBounds = true;
@@ -243,6 +280,59 @@ public class ImageCache extends LruCache<String, CachedImage> {
         return new Point(0, 0);
     }
 
+    /**
+     * Decodes the image, scaled for this cache, and saves it to the thumbnail file,
+     * so later it can be shown without reading the original file
+     * @return size of the saved thumbnail, empty if the image is not larger than the cache needs or on error
+     */
+    @NonNull
+    Point createThumbnail(Object objTag, String path, Point imageSize, File thumbnailFile) {
+        BitmapFactory.Options options = calculateScaling(objTag, imageSize);
+        if (options.inSampleSize < 2 || thumbnailFile == null) {
+            return new Point();
+        }
+        options.inPreferredConfig = CachedImage.BITMAP_CONFIG;
+        Bitmap bitmap = null;
+        OutputStream out = null;
+        boolean saved = false;
+        try {
+            bitmap = BitmapFactory.decodeFile(path, options);
+            if (bitmap != null) {
+                out = new BufferedOutputStream(new FileOutputStream(thumbnailFile));
+                saved = bitmap.compress(bitmap.hasAlpha() ? Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG,
+                        THUMBNAIL_QUALITY, out);
+            }
+        } catch (IOException e) {
+            MyLog.d(objTag, "Couldn't save thumbnail of '" + path + "'", e);
+        } catch (OutOfMemoryError e) {
+            MyLog.w(objTag, "Couldn't create thumbnail of '" + path + "'; " + getInfo(), e);
+        } finally {
+            DbUtils.closeSilently(out, thumbnailFile.getName());
+        }
+        if (!saved || bitmap == null) {
+            if (bitmap != null) {
+                bitmap.recycle();
+            }
+            if (thumbnailFile.exists() && !thumbnailFile.delete()) {
+                MyLog.d(objTag, "Couldn't delete " + thumbnailFile.getAbsolutePath());
+            }
+            return new Point();
+        }
+        Point thumbnailSize = new Point(bitmap.getWidth(), bitmap.getHeight());
+        bitmap.recycle();
+        return thumbnailSize;
+    }
+
+    /** @return true if the smaller variant of the image is not worse than the scaled original for this cache */
+    boolean isThumbnailSufficient(Point imageSize, Point thumbnailSize) {
+        if (thumbnailSize.x < 1 || thumbnailSize.y < 1) {
+            return false;
+        }
+        int sampleSize = Math.max(calculateScaling(this, imageSize).inSampleSize, 1);
+        return (thumbnailSize.x + 1) * sampleSize >= imageSize.x
+                && (thumbnailSize.y + 1) * sampleSize >= imageSize.y;
+    }
+
     BitmapFactory.Options calculateScaling(Object objTag, Point imageSize) {
         BitmapFactory.Options options = new BitmapFactory.Options();
         int x = maxBitmapWidth;
@@ -262,11 +352,8 @@ public class ImageCache extends LruCache<String, CachedImage> {
     public String getInfo() {
         StringBuilder builder = new StringBuilder(name.title);
         builder.append(": " + maxBitmapWidth + "x" + maxBitmapHeight + ", "
-                + size() + " of " + currentCacheSize);
-        if (requestedCacheSize != currentCacheSize) {
-            builder.append(" (initially capacity was " + requestedCacheSize + ")");
-        }
-        builder.append(", free: " + recycledBitmaps.size());
+                + I18n.formatBytes(size()) + " of " + I18n.formatBytes(maxSize()));
+        builder.append(", " + bitmapPool.getInfo());
         if (!brokenBitmaps.isEmpty()) {
             builder.append(", broken: " + brokenBitmaps.size());
         }
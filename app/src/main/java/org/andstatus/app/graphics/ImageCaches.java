@@ -33,6 +33,7 @@ import org.andstatus.app.util.I18n;
 import org.andstatus.app.util.MyLog;
 import org.andstatus.app.util.SharedPreferencesUtil;
 
+import java.io.File;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -81,7 +82,7 @@ public class ImageCaches {
             cacheSize = ATTACHED_IMAGES_CACHE_SIZE_MAX;
         }
         attachedImagesCache = new ImageCache(context, CacheName.ATTACHED_IMAGE, imageSize,
-                cacheSize);
+                cacheSizeInBytes(imageSize, cacheSize));
     }
 
     private static void initializeAvatarsCache(Context context) {
@@ -98,7 +99,8 @@ public class ImageCaches {
         if (cacheSize > AVATARS_CACHE_SIZE_MAX) {
             cacheSize = AVATARS_CACHE_SIZE_MAX;
         }
-        avatarsCache = new ImageCache(context, CacheName.AVATAR, imageSize, cacheSize);
+        avatarsCache = new ImageCache(context, CacheName.AVATAR, imageSize,
+                cacheSizeInBytes(imageSize, cacheSize));
         setAvatarsRounded();
     }
 
@@ -107,6 +109,11 @@ public class ImageCaches {
         avatarsCache.rounded = SharedPreferencesUtil.getBoolean(MyPreferences.KEY_ROUNDED_AVATARS, true);
     }
 
+    /** The cache is limited by the memory of this number of the largest images, smaller images take less */
+    private static int cacheSizeInBytes(int imageSize, int cacheSize) {
+        return imageSize * imageSize * ImageCache.BYTES_PER_PIXEL * cacheSize;
+    }
+
     private static int calcCacheSize(Context context, int imageSize, float partOfAvailableMemory) {
         return Math.round(partOfAvailableMemory * getTotalAppMemory(context)
                 / imageSize / imageSize / ImageCache.BYTES_PER_PIXEL);
@@ -132,13 +139,35 @@ public class ImageCaches {
         return memInfo;
     }
 
+    /** Reads the image dimensions only, without decoding it */
     @NonNull
-    public static Point getImageSize(CacheName cacheName, long imageId, String path) {
-        return getCache(cacheName).getImageSize(imageId, path);
+    public static Point getImageSize(String path) {
+        return ImageCache.getImageSize(path);
     }
 
-    public static CachedImage loadAndGetImage(CacheName cacheName, Object objTag, long imageId, String path) {
-        return getCache(cacheName).loadAndGetImage(objTag, imageId, path);
+    /**
+     * Saves the image, downscaled to the bounds of the cache, to the thumbnail file
+     * @return size of the thumbnail, empty if it wasn't created
+     */
+    @NonNull
+    public static Point createThumbnail(CacheName cacheName, Object objTag, String path, Point imageSize,
+                                        File thumbnailFile) {
+        ImageCache cache = getCache(cacheName);
+        return cache == null ? new Point() : cache.createThumbnail(objTag, path, imageSize, thumbnailFile);
+    }
+
+    public static boolean isThumbnailSufficient(CacheName cacheName, Point imageSize, Point thumbnailSize) {
+        ImageCache cache = getCache(cacheName);
+        return cache != null && cache.isThumbnailSufficient(imageSize, thumbnailSize);
+    }
+
+    /**
+     * @param imageSize known dimensions of the image (e.g. stored on download),
+     *                  empty if they should be read from the file
+     */
+    public static CachedImage loadAndGetImage(CacheName cacheName, Object objTag, long imageId, String path,
+                                              @NonNull Point imageSize) {
+        return getCache(cacheName).loadAndGetImage(objTag, imageId, path, imageSize);
     }
 
     public static CachedImage getCachedImage(CacheName cacheName, Object objTag, long imageId, String path) {
@@ -17,9 +17,8 @@
 package org.andstatus.app.msg;
 
 import android.content.Context;
-import android.database.Cursor;
 
-import org.andstatus.app.data.DbUtils;
+import org.andstatus.app.data.CursorRow;
 import org.andstatus.app.database.MsgTable;
 import org.andstatus.app.util.I18n;
 
@@ -88,9 +87,9 @@ public abstract class ConversationItem extends MessageViewItem implements Compar
 
     abstract String[] getProjection();
     
-    void load(Cursor cursor) {
-        inReplyToMsgId = DbUtils.getLong(cursor, MsgTable.IN_REPLY_TO_MSG_ID);
-        updatedDate = DbUtils.getLong(cursor, MsgTable.UPDATED_DATE);
+    void load(CursorRow row) {
+        inReplyToMsgId = row.getLong(MsgTable.IN_REPLY_TO_MSG_ID);
+        updatedDate = row.getLong(MsgTable.UPDATED_DATE);
     }
 
     @Override
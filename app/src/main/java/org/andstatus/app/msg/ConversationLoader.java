@@ -26,6 +26,7 @@ import org.andstatus.app.LoadableListActivity.ProgressPublisher;
 import org.andstatus.app.SyncLoader;
 import org.andstatus.app.account.MyAccount;
 import org.andstatus.app.context.MyContext;
+import org.andstatus.app.data.CursorRow;
 import org.andstatus.app.data.DbUtils;
 import org.andstatus.app.data.MatchedUri;
 import org.andstatus.app.data.MyQuery;
@@ -42,8 +43,11 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class ConversationLoader<T extends ConversationItem> extends SyncLoader<T> {
@@ -60,13 +64,14 @@ public abstract class ConversationLoader<T extends ConversationItem> extends Syn
 
     final Map<Long, T> cachedMessages = new ConcurrentHashMap<>();
     final List<T> msgList = new ArrayList<>();
+    private final Set<Long> msgIdsInList = new HashSet<>();
     LoadableListActivity.ProgressPublisher mProgress;
 
     public List<T> getList() {
         return msgList;
     }
 
-    final List<Long> idsOfTheMessagesToFind = new ArrayList<>();
+    final Set<Long> idsOfTheMessagesToFind = new HashSet<>();
 
     public ConversationLoader(
             Class<T> tClass, MyContext myContext, MyAccount ma, long selectedMessageId, boolean sync) {
@@ -83,6 +88,7 @@ public abstract class ConversationLoader<T extends ConversationItem> extends Syn
         cachedMessages.clear();
         idsOfTheMessagesToFind.clear();
         msgList.clear();
+        msgIdsInList.clear();
         if (sync) {
             requestConversationSync(selectedMessageId);
         }
@@ -135,7 +141,7 @@ public abstract class ConversationLoader<T extends ConversationItem> extends Syn
         try {
             cursor = myContext.context().getContentResolver().query(uri, oMsg.getProjection(), null, null, null);
             if (cursor != null && cursor.moveToFirst()) {
-                oMsg.load(cursor);
+                oMsg.load(new CursorRow(cursor));
                 loaded = true;
             }
         } finally {
@@ -146,7 +152,7 @@ public abstract class ConversationLoader<T extends ConversationItem> extends Syn
 
     protected boolean addMessageToList(T oMsg) {
         boolean added = false;
-        if (msgList.contains(oMsg)) {
+        if (!msgIdsInList.add(oMsg.getMsgId())) {
             MyLog.v(this, "Message id=" + oMsg.getMsgId() + " is in the list already");
         } else {
             msgList.add(oMsg);
@@ -222,17 +228,31 @@ public abstract class ConversationLoader<T extends ConversationItem> extends Syn
             oMsg.mListOrder = 0;
             oMsg.historyOrder = 0;
         }
+        Map<Long, List<ConversationItem>> replies = new HashMap<>();
+        for (int ind = msgList.size() - 1; ind >= 0; ind--) {
+            ConversationItem reply = msgList.get(ind);
+            if (reply.inReplyToMsgId != 0) {
+                List<ConversationItem> list = replies.get(reply.inReplyToMsgId);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    replies.put(reply.inReplyToMsgId, list);
+                }
+                list.add(reply);
+            }
+        }
         OrderCounters order = new OrderCounters();
         for (int ind = msgList.size()-1; ind >= 0; ind--) {
             ConversationItem oMsg = msgList.get(ind);
             if (oMsg.mListOrder < 0 ) {
                 continue;
             }
-            enumerateBranch(oMsg, order, 0);
+            enumerateBranch(oMsg, replies, order, 0);
         }
     }
 
-    private void enumerateBranch(ConversationItem oMsg, OrderCounters order, int indent) {
+    /** @param replies Replies to each message, in reversed order of the list */
+    private void enumerateBranch(ConversationItem oMsg, Map<Long, List<ConversationItem>> replies,
+                                 OrderCounters order, int indent) {
         if (!addMessageIdToFind(oMsg.getMsgId())) {
             return;
         }
@@ -244,12 +264,12 @@ public abstract class ConversationLoader<T extends ConversationItem> extends Syn
                 && indentNext < MAX_INDENT_LEVEL) {
             indentNext++;
         }
-        for (int ind = msgList.size() - 1; ind >= 0; ind--) {
-           ConversationItem reply = msgList.get(ind);
-           if (reply.inReplyToMsgId == oMsg.getMsgId()) {
-               reply.mNParentReplies = oMsg.mNReplies;
-               enumerateBranch(reply, order, indentNext);
-           }
+        List<ConversationItem> list = replies.get(oMsg.getMsgId());
+        if (list != null) {
+            for (ConversationItem reply : list) {
+                reply.mNParentReplies = oMsg.mNReplies;
+                enumerateBranch(reply, replies, order, indentNext);
+            }
         }
     }
 
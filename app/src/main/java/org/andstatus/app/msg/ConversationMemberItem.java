@@ -16,9 +16,7 @@
 
 package org.andstatus.app.msg;
 
-import android.database.Cursor;
-
-import org.andstatus.app.data.DbUtils;
+import org.andstatus.app.data.CursorRow;
 import org.andstatus.app.database.MsgTable;
 import org.andstatus.app.util.MyHtml;
 
@@ -40,10 +38,10 @@ public class ConversationMemberItem extends ConversationItem {
     }
 
     @Override
-    void load(Cursor cursor) {
-        super.load(cursor);
-        authorId = DbUtils.getLong(cursor, MsgTable.AUTHOR_ID);
-        setBody(MyHtml.fromHtml(DbUtils.getString(cursor, MsgTable.BODY)));
+    void load(CursorRow row) {
+        super.load(row);
+        authorId = row.getLong(MsgTable.AUTHOR_ID);
+        setBody(MyHtml.fromHtml(row.getString(MsgTable.BODY)));
     }
 
     @Override
@@ -17,18 +17,17 @@
 package org.andstatus.app.msg;
 
 import android.content.Context;
-import android.database.Cursor;
 import android.provider.BaseColumns;
 import android.text.Html;
 import android.text.TextUtils;
 
 import org.andstatus.app.context.MyPreferences;
 import org.andstatus.app.data.AttachedImageFile;
-import org.andstatus.app.data.AvatarFile;
-import org.andstatus.app.data.DbUtils;
+import org.andstatus.app.data.CursorRow;
 import org.andstatus.app.data.DownloadStatus;
 import org.andstatus.app.data.MyQuery;
 import org.andstatus.app.data.TimelineSql;
+import org.andstatus.app.data.UserCache;
 import org.andstatus.app.database.MsgOfUserTable;
 import org.andstatus.app.database.MsgTable;
 import org.andstatus.app.database.UserTable;
@@ -55,7 +54,7 @@ public class ConversationViewItem extends ConversationItem {
     }
 
     @Override
-    void load(Cursor cursor) {
+    void load(CursorRow row) {
         /**
          * IDs of all known senders of this message except for the Author
          * These "senders" reblogged the message
@@ -63,35 +62,35 @@ public class ConversationViewItem extends ConversationItem {
         Set<Long> rebloggerIds = new HashSet<>();
         int ind=0;
         do {
-            long msgId = DbUtils.getLong(cursor, BaseColumns._ID);
+            long msgId = row.getLong(BaseColumns._ID);
             if (msgId != getMsgId()) {
                 if (ind > 0) {
-                    cursor.moveToPrevious();
+                    row.cursor.moveToPrevious();
                 }
                 break;
             }
-            long senderId = DbUtils.getLong(cursor, MsgTable.ACTOR_ID);
-            authorId = DbUtils.getLong(cursor, MsgTable.AUTHOR_ID);
-            long linkedUserId = DbUtils.getLong(cursor, UserTable.LINKED_USER_ID);
+            long senderId = row.getLong(MsgTable.ACTOR_ID);
+            authorId = row.getLong(MsgTable.AUTHOR_ID);
+            long linkedUserId = row.getLong(UserTable.LINKED_USER_ID);
     
             if (ind == 0) {
                 // This is the same for all retrieved rows
-                super.load(cursor);
-                msgStatus = DownloadStatus.load(DbUtils.getLong(cursor, MsgTable.MSG_STATUS));
-                authorName = TimelineSql.userColumnNameToNameAtTimeline(cursor, UserTable.AUTHOR_NAME, false);
-                setBody(MyHtml.prepareForView(DbUtils.getString(cursor, MsgTable.BODY)));
-                String via = DbUtils.getString(cursor, MsgTable.VIA);
+                super.load(row);
+                msgStatus = DownloadStatus.load(row.getLong(MsgTable.MSG_STATUS));
+                authorName = TimelineSql.userIdToNameAtTimeline(row, authorId, false);
+                setBody(MyHtml.prepareForView(row.getString(MsgTable.BODY)));
+                String via = row.getString(MsgTable.VIA);
                 if (!TextUtils.isEmpty(via)) {
                     messageSource = Html.fromHtml(via).toString().trim();
                 }
-                avatarFile = AvatarFile.fromCursor(authorId, cursor);
+                avatarFile = UserCache.getAvatarFile(authorId);
                 if (MyPreferences.getDownloadAndDisplayAttachedImages()) {
-                    attachedImageFile = AttachedImageFile.fromCursor(cursor);
+                    attachedImageFile = AttachedImageFile.fromCursor(row);
                 }
-                inReplyToMsgId = DbUtils.getLong(cursor, MsgTable.IN_REPLY_TO_MSG_ID);
-                inReplyToUserId = DbUtils.getLong(cursor, MsgTable.IN_REPLY_TO_USER_ID);
-                inReplyToName = TimelineSql.userColumnNameToNameAtTimeline(cursor, UserTable.IN_REPLY_TO_NAME, false);
-                recipientName = TimelineSql.userColumnNameToNameAtTimeline(cursor, UserTable.RECIPIENT_NAME, false);
+                inReplyToMsgId = row.getLong(MsgTable.IN_REPLY_TO_MSG_ID);
+                inReplyToUserId = row.getLong(MsgTable.IN_REPLY_TO_USER_ID);
+                inReplyToName = TimelineSql.userIdToNameAtTimeline(row, inReplyToUserId, false);
+                recipientName = TimelineSql.userIdToNameAtTimeline(row, row.getLong(MsgTable.RECIPIENT_ID), false);
             }
     
             if (senderId != authorId) {
@@ -101,7 +100,7 @@ public class ConversationViewItem extends ConversationItem {
                 if (getLinkedUserId() == 0 || !getLinkedMyAccount().isValid()) {
                     setLinkedUserAndAccount(linkedUserId);
                 }
-                if (DbUtils.getInt(cursor, MsgOfUserTable.REBLOGGED) == 1) {
+                if (row.getInt(MsgOfUserTable.REBLOGGED) == 1) {
                     if (linkedUserId != authorId) {
                         rebloggerIds.add(linkedUserId);
                     }
@@ -109,22 +108,22 @@ public class ConversationViewItem extends ConversationItem {
                         reblogged = true;
                     }
                 }
-                if (getLinkedMyAccount().getUserId() == linkedUserId & DbUtils.getInt(cursor, MsgOfUserTable.FAVORITED) == 1) {
+                if (getLinkedMyAccount().getUserId() == linkedUserId & row.getInt(MsgOfUserTable.FAVORITED) == 1) {
                     favorited = true;
                 }
             }
             
             ind++;
-        } while (cursor.moveToNext());
+        } while (row.cursor.moveToNext());
 
-        for (long rebloggerId : MyQuery.getRebloggers(getMsgId())) {
+        for (long rebloggerId : MyQuery.getRebloggers(getMsgId()).toArray()) {
             if (!rebloggerIds.contains(rebloggerId)) {
                 rebloggerIds.add(rebloggerId);
             }
         }
 
         for (long rebloggerId : rebloggerIds) {
-            rebloggers.put(rebloggerId, MyQuery.userIdToWebfingerId(rebloggerId));
+            rebloggers.put(rebloggerId, UserCache.getWebfingerId(rebloggerId));
         }
     }
 }
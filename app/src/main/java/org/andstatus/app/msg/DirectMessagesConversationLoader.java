@@ -23,6 +23,7 @@ import android.support.annotation.NonNull;
 
 import org.andstatus.app.account.MyAccount;
 import org.andstatus.app.context.MyContext;
+import org.andstatus.app.data.CursorRow;
 import org.andstatus.app.data.DbUtils;
 import org.andstatus.app.data.MatchedUri;
 import org.andstatus.app.data.MyQuery;
@@ -53,9 +54,10 @@ public class DirectMessagesConversationLoader<T extends ConversationItem> extend
             cursor = myContext.context().getContentResolver().query(uri, oMsg.getProjection(),
                     selection, null, null);
             if (cursor != null) {
+                CursorRow row = new CursorRow(cursor);
                 while (cursor.moveToNext()) {
-                    T oMsg2 = newOMsg(DbUtils.getLong(cursor, BaseColumns._ID));
-                    oMsg2.load(cursor);
+                    T oMsg2 = newOMsg(row.getLong(BaseColumns._ID));
+                    oMsg2.load(row);
                     addMessageToList(oMsg2);
                 }
             }
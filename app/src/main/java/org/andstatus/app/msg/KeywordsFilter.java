@@ -19,7 +19,11 @@ package org.andstatus.app.msg;
 import android.support.annotation.NonNull;
 import android.text.TextUtils;
 
+import org.andstatus.app.context.MyPreferences;
+import org.andstatus.app.database.MsgFtsTable;
+import org.andstatus.app.util.MultiPatternMatcher;
 import org.andstatus.app.util.MyHtml;
+import org.andstatus.app.util.SharedPreferencesUtil;
 import org.andstatus.app.util.StringUtils;
 
 import java.util.ArrayList;
@@ -28,11 +32,33 @@ import java.util.List;
 public class KeywordsFilter {
     final List<String> keywordsToFilter;
     private final List<String> keywordsRaw;
+    private final String keywordsIn;
+    /** All {@link #keywordsToFilter} compiled for one pass matching */
+    private final MultiPatternMatcher matcher;
     private static final char DOUBLE_QUOTE = '"';
 
+    private static volatile KeywordsFilter hidingFilter = new KeywordsFilter("");
+
     public KeywordsFilter(String keywordsIn) {
+        this.keywordsIn = keywordsIn == null ? "" : keywordsIn;
         keywordsRaw = parseFilterString(keywordsIn);
         keywordsToFilter = rawToActual(keywordsRaw);
+        matcher = new MultiPatternMatcher(keywordsToFilter);
+    }
+
+    /**
+     * The filter, defined by {@link MyPreferences#KEY_FILTER_HIDE_MESSAGES_BASED_ON_KEYWORDS}.
+     * It is shared and rebuilt only after the preference changes
+     */
+    @NonNull
+    public static KeywordsFilter forHidingMessages() {
+        String keywordsIn = SharedPreferencesUtil.getString(MyPreferences.KEY_FILTER_HIDE_MESSAGES_BASED_ON_KEYWORDS, "");
+        KeywordsFilter filter = hidingFilter;
+        if (!filter.keywordsIn.equals(keywordsIn)) {
+            filter = new KeywordsFilter(keywordsIn);
+            hidingFilter = filter;
+        }
+        return filter;
     }
 
     @NonNull
@@ -91,51 +117,102 @@ public class KeywordsFilter {
     }
 
     public boolean matchedAny(String s) {
-        if (keywordsToFilter.isEmpty() || TextUtils.isEmpty(s)) {
-            return false;
-        }
-        for (String keyword : keywordsToFilter) {
-            if (s.contains(keyword)) {
-                return true;
-            }
-        }
-        return false;
+        return matcher.matchesAny(s);
     }
 
     public boolean matchedAll(String s) {
-        if (keywordsToFilter.isEmpty() || TextUtils.isEmpty(s)) {
-            return false;
-        }
-        for (String keyword : keywordsToFilter) {
-            if (!s.contains(keyword)) {
-                return false;
-            }
-        }
-        return true;
+        return matcher.matchesAll(s);
     }
 
+    /**
+     * Selection of messages, containing all keywords as whole words, like {@link #matchedAll(String)} does:
+     * each keyword is matched against the {@link org.andstatus.app.database.MsgTable#BODY_TO_SEARCH}.
+     * The full-text search index {@link MsgFtsTable} only narrows the messages to check.
+     * It is not used, if no keyword has a token for its tokenizer, see {@link #getFtsQuery()}
+     * @param msgIdFieldName qualified name of the {@link org.andstatus.app.database.MsgTable#_ID} field
+     * @param bodyToSearchFieldName qualified name of the {@link org.andstatus.app.database.MsgTable#BODY_TO_SEARCH} field
+     */
     @NonNull
-    public String getSqlSelection(String fieldName) {
+    public String getSqlSelection(String msgIdFieldName, String bodyToSearchFieldName) {
         if (isEmpty()) {
             return "";
         }
         StringBuilder selection = new StringBuilder();
-        for (int ind=0; ind<keywordsToFilter.size(); ind++) {
-            if (ind > 0) {
+        if (!TextUtils.isEmpty(getFtsQuery())) {
+            selection.append(msgIdFieldName + " IN (SELECT " + MsgFtsTable.DOCID + " FROM "
+                    + MsgFtsTable.TABLE_NAME + " WHERE " + MsgFtsTable.TABLE_NAME + " MATCH ?)");
+        }
+        for (int ind = 0; ind < keywordsToFilter.size(); ind++) {
+            if (selection.length() > 0) {
                 selection.append(" AND ");
             }
-            selection.append(fieldName + " LIKE ?");
+            selection.append(bodyToSearchFieldName + " LIKE ?");
         }
-        return selection.length() == 0 ? "" : "(" + selection.toString() + ")";
+        return "(" + selection.toString() + ")";
     }
 
     @NonNull
     public String[] prependSqlSelectionArgs(String[] selectionArgs) {
+        if (isEmpty()) {
+            return selectionArgs;
+        }
         String[] selectionArgsOut = selectionArgs;
+        for (int ind = keywordsToFilter.size() - 1; ind >= 0; ind--) {
+            selectionArgsOut = StringUtils.addBeforeArray(selectionArgsOut, "%" + keywordsToFilter.get(ind) + "%");
+        }
+        String ftsQuery = getFtsQuery();
+        return TextUtils.isEmpty(ftsQuery) ? selectionArgsOut : StringUtils.addBeforeArray(selectionArgsOut, ftsQuery);
+    }
+
+    /**
+     * Each keyword is a phrase of its tokens, all phrases should match,
+     * see https://www.sqlite.org/fts3.html#full_text_index_queries
+     * Keywords without tokens, e.g. of punctuation only, are left to the LIKE part of the selection
+     * @return empty string if no keyword has a token
+     */
+    @NonNull
+    String getFtsQuery() {
+        StringBuilder query = new StringBuilder();
         for (String keyword : keywordsToFilter) {
-            selectionArgsOut = StringUtils.addBeforeArray(selectionArgsOut, "%" + keyword + "%");
+            String phrase = toFtsTokens(keyword);
+            if (TextUtils.isEmpty(phrase)) {
+                continue;
+            }
+            if (query.length() > 0) {
+                query.append(" ");
+            }
+            query.append(DOUBLE_QUOTE + phrase + DOUBLE_QUOTE);
         }
-        return selectionArgsOut;
+        return query.toString();
+    }
+
+    /**
+     * Splits text into tokens the way the "simple" tokenizer of {@link MsgFtsTable} does:
+     * ASCII letters and digits and all non-ASCII characters form tokens, other characters separate them.
+     * Keywords are sequences of whole words, so their tokens are whole tokens of a matching message
+     * @return tokens, separated by spaces
+     */
+    @NonNull
+    static String toFtsTokens(String text) {
+        StringBuilder tokens = new StringBuilder();
+        boolean inToken = false;
+        for (int ind = 0; ind < text.length(); ind++) {
+            char c = text.charAt(ind);
+            if (isFtsTokenChar(c)) {
+                if (!inToken && tokens.length() > 0) {
+                    tokens.append(' ');
+                }
+                tokens.append(c);
+                inToken = true;
+            } else {
+                inToken = false;
+            }
+        }
+        return tokens.toString();
+    }
+
+    private static boolean isFtsTokenChar(char c) {
+        return c > 127 || (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
     }
 
     @NonNull
@@ -146,8 +146,9 @@ public class MessageEditorData {
             data.setBody(MyQuery.msgIdToStringColumnValue(MsgTable.BODY, msgId));
             data.downloadData = DownloadData.getSingleForMessage(msgId, MyContentType.IMAGE, Uri.EMPTY);
             if (data.downloadData.getStatus() == DownloadStatus.LOADED) {
+                Point imageSize = data.downloadData.getImageSize();
                 AttachedImageFile imageFile = new AttachedImageFile(data.downloadData.getDownloadId(),
-                        data.downloadData.getFilename());
+                        data.downloadData.getFilename(), imageSize.x, imageSize.y);
                 data.image = imageFile.loadAndGetImage();
             }
             data.inReplyToId = MyQuery.msgIdToLongColumnValue(MsgTable.IN_REPLY_TO_MSG_ID, msgId);
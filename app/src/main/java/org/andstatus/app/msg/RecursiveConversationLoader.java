@@ -22,6 +22,7 @@ import android.provider.BaseColumns;
 
 import org.andstatus.app.account.MyAccount;
 import org.andstatus.app.context.MyContext;
+import org.andstatus.app.data.CursorRow;
 import org.andstatus.app.data.DbUtils;
 import org.andstatus.app.data.MatchedUri;
 import org.andstatus.app.data.MyQuery;
@@ -31,10 +32,18 @@ import org.andstatus.app.timeline.Timeline;
 import org.andstatus.app.timeline.TimelineType;
 import org.andstatus.app.util.MyLog;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * @author yvolk@yurivolkov.com
  */
 public class RecursiveConversationLoader<T extends ConversationItem> extends ConversationLoader<T> {
+    /** Cached messages by {@link ConversationItem#inReplyToMsgId} */
+    private final Map<Long, List<T>> cachedReplies = new HashMap<>();
+
     public RecursiveConversationLoader(Class<T> tClass, MyContext myContext, MyAccount ma,
                                        long selectedMessageId, boolean sync) {
         super(tClass, myContext, ma, selectedMessageId, sync);
@@ -47,6 +56,7 @@ public class RecursiveConversationLoader<T extends ConversationItem> extends Con
     }
 
     private void cacheConversation(T oMsg) {
+        cachedReplies.clear();
         long conversationId = MyQuery.msgIdToLongColumnValue(MsgTable.CONVERSATION_ID, oMsg.getMsgId());
         String selection = ProjectionMap.MSG_TABLE_ALIAS + "." +
                 (conversationId == 0 ? MsgTable._ID + "=" + oMsg.getMsgId() :
@@ -58,10 +68,19 @@ public class RecursiveConversationLoader<T extends ConversationItem> extends Con
             cursor = myContext.context().getContentResolver().query(uri, oMsg.getProjection(),
                     selection, null, null);
             if (cursor != null) {
+                CursorRow row = new CursorRow(cursor);
                 while (cursor.moveToNext()) {
-                    T oMsg2 = newOMsg(DbUtils.getLong(cursor, BaseColumns._ID));
-                    oMsg2.load(cursor);
+                    T oMsg2 = newOMsg(row.getLong(BaseColumns._ID));
+                    oMsg2.load(row);
                     cachedMessages.put(oMsg2.getMsgId(), oMsg2);
+                    if (oMsg2.inReplyToMsgId != 0) {
+                        List<T> replies = cachedReplies.get(oMsg2.inReplyToMsgId);
+                        if (replies == null) {
+                            replies = new ArrayList<>();
+                            cachedReplies.put(oMsg2.inReplyToMsgId, replies);
+                        }
+                        replies.add(oMsg2);
+                    }
                 }
             }
         } finally {
@@ -90,12 +109,14 @@ public class RecursiveConversationLoader<T extends ConversationItem> extends Con
 
     public void findRepliesRecursively(T oMsg) {
         MyLog.v(this, "findReplies for id=" + oMsg.getMsgId());
-        for (T oMsgReply : cachedMessages.values()) {
-            if (oMsgReply.inReplyToMsgId == oMsg.getMsgId()) {
-                oMsg.mNReplies++;
-                oMsgReply.replyLevel = oMsg.replyLevel + 1;
-                findPreviousMessagesRecursively(oMsgReply);
-            }
+        List<T> replies = cachedReplies.get(oMsg.getMsgId());
+        if (replies == null) {
+            return;
+        }
+        for (T oMsgReply : replies) {
+            oMsg.mNReplies++;
+            oMsgReply.replyLevel = oMsg.replyLevel + 1;
+            findPreviousMessagesRecursively(oMsgReply);
         }
     }
 }
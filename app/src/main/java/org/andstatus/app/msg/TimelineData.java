@@ -24,17 +24,24 @@ import org.andstatus.app.list.ListData;
 import org.andstatus.app.util.MyLog;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
+ * Sliding window of loaded timeline pages.
+ * Positions and message ids of the items are indexed, so the adapter's lookups don't scan all pages
  * @author yvolk@yurivolkov.com
  */
 public class TimelineData extends ListData {
     private static final int MAX_PAGES_COUNT = 5;
     final List<TimelinePage> pages;
+    /** Lazily built, reset after any change of the items of the pages. See {@link #invalidateIndex()} */
+    private volatile Index index = null;
     final long updatedAt = MyLog.uniqueCurrentTimeMS();
     final TimelineListParameters params;
     final boolean isSameTimeline;
@@ -46,8 +53,30 @@ public class TimelineData extends ListData {
                 params.getContentUri().equals(oldData.params.getContentUri());
         this.pages = isSameTimeline ? copyPages(oldData.pages) : new ArrayList<TimelinePage>();
         addThisPage(thisPage);
-        collapseDuplicates(isCollapseDuplicates(), 0);
         dropExcessivePage(thisPage);
+        if (isCollapseDuplicates()) {
+            collapseNewPage(thisPage);
+        }
+    }
+
+    /** Pages from the old data are collapsed already, so only groups, which include the new page's items, are left */
+    private void collapseNewPage(TimelinePage thisPage) {
+        int indPage = pages.indexOf(thisPage);
+        if (indPage < 0) {
+            return;
+        }
+        int indFrom = Math.max(indPage - 1, 0);
+        int indTo = Math.min(indPage + 2, pages.size());
+        for (int ind = indFrom; ind < indTo; ind++) {
+            if (ind != indPage) {
+                // Neighbouring pages are shared with the old data, which may still be shown
+                TimelinePage page = pages.get(ind);
+                pages.set(ind, new TimelinePage(page.params, new ArrayList<TimelineViewItem>(page.items)));
+            }
+        }
+        Set<Pair<TimelinePage, TimelineViewItem>> toCollapse = new HashSet<>();
+        innerCollapseDuplicates(0, pages.subList(indFrom, indTo), toCollapse);
+        removeCollapsed(toCollapse);
     }
 
     private List<TimelinePage> copyPages(List<TimelinePage> pages) {
@@ -132,6 +161,14 @@ public class TimelineData extends ListData {
             return;
         }
         long edgeDate =  ePage.params.minSentDateLoaded;
+        Map<Long, TimelineViewItem> edgeItems = new HashMap<>();
+        for (int eInd = ePage.items.size() - 1; eInd >= 0; eInd--) {
+            TimelineViewItem eItem = ePage.items.get(eInd);
+            if (eItem.sentDate > edgeDate) {
+                break;
+            }
+            edgeItems.put(eItem.getMsgId(), eItem);
+        }
         List<TimelineViewItem> toRemove = new ArrayList<>();
         for (int ind = 0; ind < page.items.size(); ind++) {
             TimelineViewItem item = page.items.get(ind);
@@ -141,20 +178,35 @@ public class TimelineData extends ListData {
                 MyLog.e(this, "This page has an item younger than on a younger page: " + item);
                 toRemove.add(item);
             } else {
-                for (int eInd = ePage.items.size() - 1; eInd >= 0; eInd--) {
-                    TimelineViewItem eItem = ePage.items.get(eInd);
-                    if (eItem.sentDate > item.sentDate) {
-                        break;
-                    }
-                    if (eItem.getMsgId() == item.getMsgId()) {
-                        mergeWithExisting(item, eItem);
-                        toRemove.add(item);
-                        break;
-                    }
-                }
+                removeIfDuplicated(item, edgeItems, toRemove);
             }
         }
-        page.items.removeAll(toRemove);
+        removeItems(page, toRemove);
+    }
+
+    private void removeIfDuplicated(TimelineViewItem item, Map<Long, TimelineViewItem> existingItems,
+                                    List<TimelineViewItem> toRemove) {
+        TimelineViewItem eItem = existingItems.get(item.getMsgId());
+        if (eItem != null) {
+            mergeWithExisting(item, eItem);
+            toRemove.add(item);
+        }
+    }
+
+    /** Unlike {@link List#removeAll(Collection)}, it doesn't call contains() for every item of the page */
+    private static void removeItems(TimelinePage page, List<TimelineViewItem> toRemove) {
+        if (toRemove.isEmpty()) {
+            return;
+        }
+        Set<TimelineViewItem> set = new HashSet<>(toRemove);
+        List<TimelineViewItem> kept = new ArrayList<>(page.items.size());
+        for (TimelineViewItem item : page.items) {
+            if (!set.contains(item)) {
+                kept.add(item);
+            }
+        }
+        page.items.clear();
+        page.items.addAll(kept);
     }
 
     private void mergeWithExisting(TimelineViewItem newItem, TimelineViewItem existingItem) {
@@ -173,6 +225,14 @@ public class TimelineData extends ListData {
             return;
         }
         long edgeDate = ePage.params.maxSentDateLoaded;
+        Map<Long, TimelineViewItem> edgeItems = new HashMap<>();
+        for (int eInd = 0; eInd < ePage.items.size(); eInd++) {
+            TimelineViewItem eItem = ePage.items.get(eInd);
+            if (eItem.sentDate < edgeDate) {
+                break;
+            }
+            edgeItems.put(eItem.getMsgId(), eItem);
+        }
         List<TimelineViewItem> toRemove = new ArrayList<>();
         for (int ind = page.items.size() - 1; ind >= 0; ind--) {
             TimelineViewItem item = page.items.get(ind);
@@ -182,55 +242,78 @@ public class TimelineData extends ListData {
                 MyLog.e(this, "This page has an item older than on an older page: " + item);
                 toRemove.add(item);
             } else {
-                for (int eInd = 0; eInd < ePage.items.size(); eInd++) {
-                    TimelineViewItem eItem = ePage.items.get(eInd);
-                    if (eItem.sentDate < item.sentDate) {
-                        break;
-                    }
-                    if (eItem.getMsgId() == item.getMsgId()) {
-                        mergeWithExisting(item, eItem);
-                        toRemove.add(item);
-                        break;
+                removeIfDuplicated(item, edgeItems, toRemove);
+            }
+        }
+        removeItems(page, toRemove);
+    }
+
+    /** Positions of the pages' first items and the message id to item map */
+    private static class Index {
+        final int[] firstPositions;
+        final int size;
+        final Map<Long, TimelineViewItem> itemsById;
+
+        Index(List<TimelinePage> pages) {
+            firstPositions = new int[pages.size()];
+            int count = 0;
+            for (int ind = 0; ind < pages.size(); ind++) {
+                firstPositions[ind] = count;
+                count += pages.get(ind).items.size();
+            }
+            size = count;
+            itemsById = new HashMap<>(count * 2);
+            for (TimelinePage page : pages) {
+                for (TimelineViewItem item : page.items) {
+                    if (!itemsById.containsKey(item.getMsgId())) {
+                        itemsById.put(item.getMsgId(), item);
                     }
                 }
             }
         }
-        page.items.removeAll(toRemove);
+    }
+
+    @NonNull
+    private Index getIndex() {
+        Index indexLocal = index;
+        if (indexLocal == null) {
+            indexLocal = new Index(pages);
+            index = indexLocal;
+        }
+        return indexLocal;
+    }
+
+    private void invalidateIndex() {
+        index = null;
     }
 
     @Override
     public int size() {
-        int count = 0;
-        for (TimelinePage page : pages) {
-            count += page.items.size();
-        }
-        return count;
+        return getIndex().size;
     }
 
     @Override
     public TimelineViewItem getItem(int position) {
-        int firstPosition = 0;
-        for (TimelinePage page : pages) {
-            if (position < firstPosition) {
-                break;
-            }
-            if (position < firstPosition + page.items.size()) {
-                return page.items.get(position - firstPosition);
+        Index indexLocal = getIndex();
+        if (position < 0 || position >= indexLocal.size) {
+            return TimelineViewItem.getEmpty();
+        }
+        int indPage = Arrays.binarySearch(indexLocal.firstPositions, position);
+        if (indPage < 0) {
+            indPage = -indPage - 2;
+        } else {
+            // Skip empty pages, which start at the same position
+            while (indPage < indexLocal.firstPositions.length - 1
+                    && indexLocal.firstPositions[indPage + 1] == position) {
+                indPage++;
             }
-            firstPosition += page.items.size();
         }
-        return TimelineViewItem.getEmpty();
+        return pages.get(indPage).items.get(position - indexLocal.firstPositions[indPage]);
     }
 
     public TimelineViewItem getById(long itemId) {
-        for (TimelinePage page : pages) {
-            for (TimelineViewItem item : page.items) {
-                if (item.getMsgId() == itemId) {
-                    return item;
-                }
-            }
-        }
-        return TimelineViewItem.getEmpty();
+        TimelineViewItem item = getIndex().itemsById.get(itemId);
+        return item == null ? TimelineViewItem.getEmpty() : item;
     }
 
     public boolean mayHaveYoungerPage() {
@@ -263,16 +346,34 @@ public class TimelineData extends ListData {
 
     private void collapseDuplicates(long itemId) {
         Set<Pair<TimelinePage, TimelineViewItem>> toCollapse = new HashSet<>();
-        innerCollapseDuplicates(itemId, toCollapse);
+        innerCollapseDuplicates(itemId, pages, toCollapse);
+        removeCollapsed(toCollapse);
+    }
+
+    private void removeCollapsed(Collection<Pair<TimelinePage, TimelineViewItem>> toCollapse) {
+        if (toCollapse.isEmpty()) {
+            return;
+        }
+        Map<TimelinePage, List<TimelineViewItem>> toRemove = new HashMap<>();
         for (Pair<TimelinePage, TimelineViewItem> pair : toCollapse) {
-            pair.first.items.remove(pair.second);
+            List<TimelineViewItem> items = toRemove.get(pair.first);
+            if (items == null) {
+                items = new ArrayList<>();
+                toRemove.put(pair.first, items);
+            }
+            items.add(pair.second);
+        }
+        for (Map.Entry<TimelinePage, List<TimelineViewItem>> entry : toRemove.entrySet()) {
+            removeItems(entry.getKey(), entry.getValue());
         }
+        invalidateIndex();
     }
 
-    private void innerCollapseDuplicates(long itemId, Collection<Pair<TimelinePage, TimelineViewItem>> toCollapse) {
+    private void innerCollapseDuplicates(long itemId, List<TimelinePage> pagesToScan,
+                                         Collection<Pair<TimelinePage, TimelineViewItem>> toCollapse) {
         Pair<TimelinePage, TimelineViewItem> parent = new Pair<>(null, null);
         Set<Pair<TimelinePage, TimelineViewItem>> group = new HashSet<>();
-        for (TimelinePage page : pages) {
+        for (TimelinePage page : pagesToScan) {
             for (TimelineViewItem item : page.items) {
                 Pair<TimelinePage, TimelineViewItem> itemPair =new Pair<>(page, item);
                 switch (item.duplicates(parent.second)) {
@@ -336,14 +437,18 @@ public class TimelineData extends ListData {
     }
 
     private void showDuplicates(long itemId) {
-        for (TimelinePage page : pages) {
-            for (int ind = page.items.size() - 1; ind >= 0; ind--) {
-                if (page.items.get(ind).isCollapsed()) {
-                    if (showDuplicatesOfOneItem(itemId, page, ind)) {
-                        return;
+        try {
+            for (TimelinePage page : pages) {
+                for (int ind = page.items.size() - 1; ind >= 0; ind--) {
+                    if (page.items.get(ind).isCollapsed()) {
+                        if (showDuplicatesOfOneItem(itemId, page, ind)) {
+                            return;
+                        }
                     }
                 }
             }
+        } finally {
+            invalidateIndex();
         }
     }
 
@@ -29,7 +29,6 @@ import org.andstatus.app.account.MyAccount;
 import org.andstatus.app.context.MyContext;
 import org.andstatus.app.data.MatchedUri;
 import org.andstatus.app.data.ParsedUri;
-import org.andstatus.app.data.ProjectionMap;
 import org.andstatus.app.data.SelectedUserIds;
 import org.andstatus.app.data.TimelineSql;
 import org.andstatus.app.database.MsgOfUserTable;
@@ -256,7 +255,7 @@ public class TimelineListParameters {
     }
 
     private String buildSortOrderAndLimit() {
-        return (isSortOrderAscending() ? MsgTable.ASC_SORT_ORDER : MsgTable.DESC_SORT_ORDER)
+        return TimelineSql.sentDateColumn(timeline) + (isSortOrderAscending() ? " ASC" : " DESC")
                 + (minSentDate > 0 && maxSentDate > 0 ? "" : " LIMIT " + PAGE_SIZE);
     }
 
@@ -304,13 +303,13 @@ public class TimelineListParameters {
                 break;
         }
 
-        sa.addSelection(ProjectionMap.MSG_TABLE_ALIAS + "." + MsgTable.SENT_DATE
-                        + " >= ?",
+        String sentDateColumn = TimelineSql.sentDateColumn(timeline);
+        sa.addSelection(sentDateColumn + " >= ?",
                 new String[]{
                         String.valueOf(minSentDate > 0 ? minSentDate : 1)
                 });
         if (maxSentDate > 0) {
-            sa.addSelection(ProjectionMap.MSG_TABLE_ALIAS + "." + MsgTable.SENT_DATE + " <= ?",
+            sa.addSelection(sentDateColumn + " <= ?",
                     String.valueOf(maxSentDate));
         }
         return sa;
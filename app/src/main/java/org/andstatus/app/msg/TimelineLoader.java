@@ -24,11 +24,11 @@ import org.andstatus.app.SyncLoader;
 import org.andstatus.app.WhichPage;
 import org.andstatus.app.context.MyContextHolder;
 import org.andstatus.app.context.MyPreferences;
+import org.andstatus.app.data.CursorRow;
 import org.andstatus.app.data.DbUtils;
 import org.andstatus.app.timeline.Timeline;
 import org.andstatus.app.timeline.TimelineType;
 import org.andstatus.app.util.I18n;
-import org.andstatus.app.util.MyHtml;
 import org.andstatus.app.util.MyLog;
 import org.andstatus.app.util.SharedPreferencesUtil;
 
@@ -116,8 +116,7 @@ public class TimelineLoader extends SyncLoader<TimelineViewItem> {
 
     @NonNull
     private void loadFromCursor(Cursor cursor) {
-        KeywordsFilter keywordsFilter = new KeywordsFilter(
-                SharedPreferencesUtil.getString(MyPreferences.KEY_FILTER_HIDE_MESSAGES_BASED_ON_KEYWORDS, ""));
+        KeywordsFilter keywordsFilter = KeywordsFilter.forHidingMessages();
         boolean hideRepliesNotToMeOrFriends = getParams().getTimelineType() == TimelineType.HOME
                 && SharedPreferencesUtil.getBoolean(MyPreferences.KEY_FILTER_HIDE_REPLIES_NOT_TO_ME_OR_FRIENDS, false);
         KeywordsFilter searchQuery = new KeywordsFilter(getParams().getTimeline().getSearchQuery());
@@ -129,11 +128,12 @@ public class TimelineLoader extends SyncLoader<TimelineViewItem> {
             try {
                 if (cursor.moveToFirst()) {
                     boolean reversedOrder = getParams().isSortOrderAscending();
+                    CursorRow row = new CursorRow(cursor);
                     do {
                         rowsCount++;
-                        TimelineViewItem item = TimelineViewItem.fromCursorRow(params.getMyContext(), cursor);
+                        TimelineViewItem item = TimelineViewItem.fromCursorRow(params.getMyContext(), row);
                         getParams().rememberSentDateLoaded(item.sentDate);
-                        String body = MyHtml.getBodyToSearch(item.getBody());
+                        String body = item.getBodyToSearch();
                         boolean skip = keywordsFilter.matchedAny(body);
                         if (!skip && !searchQuery.isEmpty()) {
                             skip = !searchQuery.matchedAll(body);
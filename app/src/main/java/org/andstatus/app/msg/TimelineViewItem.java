@@ -15,18 +15,16 @@
  */
 package org.andstatus.app.msg;
 
-import android.database.Cursor;
 import android.text.Html;
 import android.text.TextUtils;
 
 import org.andstatus.app.context.MyContext;
 import org.andstatus.app.context.MyPreferences;
 import org.andstatus.app.data.AttachedImageFile;
-import org.andstatus.app.data.AvatarFile;
-import org.andstatus.app.data.DbUtils;
+import org.andstatus.app.data.CursorRow;
 import org.andstatus.app.data.DownloadStatus;
 import org.andstatus.app.data.TimelineSql;
-import org.andstatus.app.database.DownloadTable;
+import org.andstatus.app.data.UserCache;
 import org.andstatus.app.database.MsgOfUserTable;
 import org.andstatus.app.database.MsgTable;
 import org.andstatus.app.database.UserTable;
@@ -39,35 +37,35 @@ import org.andstatus.app.util.MyLog;
  */
 public class TimelineViewItem extends MessageViewItem {
     private final static TimelineViewItem EMPTY = new TimelineViewItem();
+    private String bodyToSearch = "";
 
     public static TimelineViewItem getEmpty() {
         return EMPTY;
     }
 
-    public static TimelineViewItem fromCursorRow(MyContext myContext, Cursor cursor) {
+    public static TimelineViewItem fromCursorRow(MyContext myContext, CursorRow row) {
         TimelineViewItem item = new TimelineViewItem();
         item.setMyContext(myContext);
-        item.setMsgId(DbUtils.getLong(cursor, MsgTable._ID));
-        item.setOriginId(DbUtils.getLong(cursor, MsgTable.ORIGIN_ID));
-        item.setLinkedUserAndAccount(DbUtils.getLong(cursor, UserTable.LINKED_USER_ID));
+        item.setMsgId(row.getLong(MsgTable._ID));
+        item.setOriginId(row.getLong(MsgTable.ORIGIN_ID));
+        item.setLinkedUserAndAccount(row.getLong(UserTable.LINKED_USER_ID));
 
-        item.authorName = TimelineSql.userColumnIndexToNameAtTimeline(cursor,
-                cursor.getColumnIndex(UserTable.AUTHOR_NAME), MyPreferences.getShowOrigin());
-        item.setBody(MyHtml.prepareForView(DbUtils.getString(cursor, MsgTable.BODY)));
-        item.inReplyToMsgId = DbUtils.getLong(cursor, MsgTable.IN_REPLY_TO_MSG_ID);
-        item.inReplyToUserId = DbUtils.getLong(cursor, MsgTable.IN_REPLY_TO_USER_ID);
-        item.inReplyToName = DbUtils.getString(cursor, UserTable.IN_REPLY_TO_NAME);
-        item.recipientName = DbUtils.getString(cursor, UserTable.RECIPIENT_NAME);
-        item.favorited = item.isLinkedToMyAccount() && DbUtils.getLong(cursor, MsgOfUserTable.FAVORITED) == 1;
-        item.sentDate = DbUtils.getLong(cursor, MsgTable.SENT_DATE);
-        item.updatedDate = DbUtils.getLong(cursor, MsgTable.UPDATED_DATE);
-        item.msgStatus = DownloadStatus.load(DbUtils.getLong(cursor, MsgTable.MSG_STATUS));
+        item.authorId = row.getLong(MsgTable.AUTHOR_ID);
+        item.authorName = TimelineSql.userIdToNameAtTimeline(row, item.authorId, MyPreferences.getShowOrigin());
+        item.setBody(MyHtml.prepareForView(row.getString(MsgTable.BODY)));
+        item.bodyToSearch = row.getString(MsgTable.BODY_TO_SEARCH);
+        item.inReplyToMsgId = row.getLong(MsgTable.IN_REPLY_TO_MSG_ID);
+        item.inReplyToUserId = row.getLong(MsgTable.IN_REPLY_TO_USER_ID);
+        item.inReplyToName = UserCache.getName(item.inReplyToUserId, MyPreferences.getUserInTimeline());
+        item.recipientName = UserCache.getName(row.getLong(MsgTable.RECIPIENT_ID), MyPreferences.getUserInTimeline());
+        item.favorited = item.isLinkedToMyAccount() && row.getLong(MsgOfUserTable.FAVORITED) == 1;
+        item.sentDate = row.getLong(MsgTable.SENT_DATE);
+        item.updatedDate = row.getLong(MsgTable.UPDATED_DATE);
+        item.msgStatus = DownloadStatus.load(row.getLong(MsgTable.MSG_STATUS));
 
-        item.authorId = DbUtils.getLong(cursor, MsgTable.AUTHOR_ID);
-
-        long senderId = DbUtils.getLong(cursor, MsgTable.ACTOR_ID);
+        long senderId = row.getLong(MsgTable.ACTOR_ID);
         if (senderId != item.authorId) {
-            String senderName = DbUtils.getString(cursor, UserTable.SENDER_NAME);
+            String senderName = UserCache.getName(senderId, MyPreferences.getUserInTimeline());
             if (TextUtils.isEmpty(senderName)) {
                 senderName = "(id" + senderId + ")";
             }
@@ -75,26 +73,32 @@ public class TimelineViewItem extends MessageViewItem {
         }
 
         if (item.isLinkedToMyAccount()) {
-            if (DbUtils.getInt(cursor, MsgOfUserTable.REBLOGGED) == 1) {
+            if (row.getInt(MsgOfUserTable.REBLOGGED) == 1) {
                 item.addReblogger(item.getLinkedMyAccount().getUserId(), item.getLinkedMyAccount().getAccountName());
                 item.reblogged = true;
             }
         }
 
-        String via = DbUtils.getString(cursor, MsgTable.VIA);
+        String via = row.getString(MsgTable.VIA);
         if (!TextUtils.isEmpty(via)) {
             item.messageSource = Html.fromHtml(via).toString().trim();
         }
 
-        item.avatarFile = AvatarFile.fromCursor(item.authorId, cursor);
+        item.avatarFile = UserCache.getAvatarFile(item.authorId);
         if (MyPreferences.getDownloadAndDisplayAttachedImages()) {
-            item.attachedImageFile = new AttachedImageFile(
-                    DbUtils.getLong(cursor, DownloadTable.IMAGE_ID),
-                    DbUtils.getString(cursor, DownloadTable.IMAGE_FILE_NAME));
+            item.attachedImageFile = AttachedImageFile.fromCursor(row);
         }
         return item;
     }
 
+    /** @return {@link MsgTable#BODY_TO_SEARCH}, stored with the message, or computed, if it's absent */
+    public String getBodyToSearch() {
+        if (TextUtils.isEmpty(bodyToSearch)) {
+            bodyToSearch = MyHtml.getBodyToSearch(getBody());
+        }
+        return bodyToSearch;
+    }
+
     private void addReblogger(long userId, String userName) {
         rebloggers.put(userId, userName);
     }
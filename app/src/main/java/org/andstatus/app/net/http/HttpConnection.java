@@ -104,11 +104,12 @@ public abstract class HttpConnection {
     }
     
     private HttpReadResult getRequestCommon(String path, boolean authenticated) throws ConnectionException {
-        if (TextUtils.isEmpty(path)) {
-            throw new IllegalArgumentException("path is empty");
-        }
-        HttpReadResult result = new HttpReadResult(pathToUrlString(path));
+        HttpReadResult result = new HttpReadResult(pathToUrlString(checkedPath(path)));
         result.authenticate = authenticated;
+        return getRequestCommon(result);
+    }
+
+    private HttpReadResult getRequestCommon(HttpReadResult result) throws ConnectionException {
         getRequest(result);
         MyLog.logNetworkLevelMessage("get_response", data.getLogName(), result.strResponse);
         result.parseAndThrow();
@@ -123,8 +124,34 @@ public abstract class HttpConnection {
         return getRequestCommon(path, true).getJsonArray(parentKey);
     }
 
+    public final void getRequestAsArray(String path, JsonObjectConsumer consumer) throws ConnectionException {
+        getRequestAsArray(path, "items", consumer);
+    }
+
+    /**
+     * Objects of the array are passed to the consumer as soon as they are read from the response stream,
+     * without building the whole JSON tree of the response
+     */
+    public final void getRequestAsArray(String path, String parentKey, JsonObjectConsumer consumer)
+            throws ConnectionException {
+        HttpReadResult result = new HttpReadResult(pathToUrlString(checkedPath(path)))
+                .setArrayItemConsumer(parentKey, consumer);
+        getRequestCommon(result).readArrayItems();
+    }
+
+    private static String checkedPath(String path) {
+        if (TextUtils.isEmpty(path)) {
+            throw new IllegalArgumentException("path is empty");
+        }
+        return path;
+    }
+
     public final void downloadFile(String url, File file) throws ConnectionException {
-        HttpReadResult result = new HttpReadResult(url, file);
+        downloadFile(new HttpReadResult(url, file));
+    }
+
+    /** The file is not written, if the result has validators and the resource was not modified */
+    public final void downloadFile(HttpReadResult result) throws ConnectionException {
         getRequest(result);
         result.parseAndThrow();
     }
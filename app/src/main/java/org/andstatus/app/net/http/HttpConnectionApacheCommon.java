@@ -33,6 +33,7 @@ import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import cz.msebera.android.httpclient.Header;
 import cz.msebera.android.httpclient.HttpEntity;
@@ -48,6 +49,7 @@ import cz.msebera.android.httpclient.entity.ContentType;
 import cz.msebera.android.httpclient.entity.mime.MultipartEntityBuilder;
 import cz.msebera.android.httpclient.message.BasicNameValuePair;
 import cz.msebera.android.httpclient.protocol.HTTP;
+import cz.msebera.android.httpclient.util.EntityUtils;
 
 public class HttpConnectionApacheCommon {
     private HttpConnectionApacheSpecific specific;
@@ -135,9 +137,7 @@ public class HttpConnectionApacheCommon {
     }
 
     public static HttpClient getHttpClient(SslModeEnum sslMode) {
-        return sslMode == SslModeEnum.MISCONFIGURED ?
-                MisconfiguredSslHttpClientFactory.getHttpClient() :
-                    MyHttpClientFactory.getHttpClient(sslMode) ;
+        return MyHttpClientFactory.getHttpClient(sslMode);
     }
 
     protected void getRequest(HttpReadResult result) {
@@ -148,6 +148,9 @@ public class HttpConnectionApacheCommon {
             boolean stop = false;
             do {
                 HttpGet httpGet = newHttpGet(result.getUrl());
+                for (Map.Entry<String, String> header : result.getConditionalHeaders().entrySet()) {
+                    httpGet.setHeader(header.getKey(), header.getValue());
+                }
                 if (result.authenticate) {
                     specific.httpApacheSetAuthorization(httpGet);
                 }
@@ -158,12 +161,18 @@ public class HttpConnectionApacheCommon {
                 switch (result.getStatusCode()) {
                     case OK:
                     case UNKNOWN:
+                        result.setResponseValidators(getHeaderValue(httpResponse, HttpReadResult.HEADER_ETAG),
+                                getHeaderValue(httpResponse, HttpReadResult.HEADER_LAST_MODIFIED));
+                        if (result.isNotModified()) {
+                            stop = true;
+                            break;
+                        }
                         HttpEntity entity = httpResponse.getEntity();
                         if (entity != null) {
                             if (result.fileResult != null) {
                                 FileUtils.readStreamToFile(entity.getContent(), result.fileResult);
                             } else {
-                                result.strResponse = HttpConnectionUtils.readStreamToString(entity.getContent());
+                                result.readStream(entity.getContent());
                             }
                         }
                         stop = true;
@@ -181,6 +190,9 @@ public class HttpConnectionApacheCommon {
                             }
                             MyLog.v(this, message.toString());
                         }
+                        // The connection goes back to the shared pool before we follow the redirect
+                        releaseResponse(httpResponse);
+                        httpResponse = null;
                         break;
                     default:
                         result.appendToLog( "statusLine:'" + statusLine + "'");
@@ -192,7 +204,8 @@ public class HttpConnectionApacheCommon {
                         if (!stop) {
                             result.authenticate = false;
                             result.appendToLog("retrying without authentication");
-                            DbUtils.closeSilently(httpResponse);
+                            releaseResponse(httpResponse);
+                            httpResponse = null;
                             MyLog.v(this, result.toString());
                         }
                         break;
@@ -203,10 +216,23 @@ public class HttpConnectionApacheCommon {
         } catch (IllegalArgumentException e) {
             result.setException(e);
         } finally {
+            releaseResponse(httpResponse);
+        }
+    }
+
+    /** Reads the rest of the entity, so the connection may be reused, and closes the response */
+    private static void releaseResponse(HttpResponse httpResponse) {
+        if (httpResponse != null) {
+            EntityUtils.consumeQuietly(httpResponse.getEntity());
             DbUtils.closeSilently(httpResponse);
         }
     }
-    
+
+    private static String getHeaderValue(HttpResponse httpResponse, String name) {
+        Header header = httpResponse.getFirstHeader(name);
+        return header == null ? "" : header.getValue();
+    }
+
     private HttpGet newHttpGet(String url) {
         HttpGet httpGet = new HttpGet(url);
         httpGet.setHeader("User-Agent", HttpConnection.USER_AGENT);
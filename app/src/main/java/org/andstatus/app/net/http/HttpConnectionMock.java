@@ -29,6 +29,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 public class HttpConnectionMock extends HttpConnection {
@@ -62,6 +63,10 @@ public class HttpConnectionMock extends HttpConnection {
     private final List<HttpReadResult> results = new CopyOnWriteArrayList<>();
     private volatile String responseString = "";
     private volatile InputStream responseFileStream = null;
+    /** Validators of the mocked resource */
+    private volatile String responseETag = "";
+    private volatile String responseLastModified = "";
+    private volatile boolean validatorsSentWithNotModified = true;
 
     private volatile RuntimeException runtimeException = null;
     private volatile ConnectionException exception = null;
@@ -90,6 +95,16 @@ public class HttpConnectionMock extends HttpConnection {
         this.responseFileStream = inputStream;
     }
 
+    /**
+     * A conditional request, having any of these validators, gets "304 Not Modified".
+     * A server may omit the validators in that response: see validatorsSentWithNotModified
+     */
+    public void setResponseValidators(String eTag, String lastModified, boolean validatorsSentWithNotModified) {
+        responseETag = eTag;
+        responseLastModified = lastModified;
+        this.validatorsSentWithNotModified = validatorsSentWithNotModified;
+    }
+
     public void setRuntimeException(RuntimeException exception) {
         runtimeException = exception;
     }
@@ -138,12 +153,20 @@ public class HttpConnectionMock extends HttpConnection {
     }
 
     private void onRequest(String method, HttpReadResult result) {
-        result.strResponse = responseString;
-        if (result.fileResult != null && responseFileStream != null) {
-            try {
-                FileUtils.readStreamToFile(responseFileStream, result.fileResult);
-            } catch (IOException e) {
-                result.setException(e);
+        if (isNotModified(result)) {
+            result.setStatusCode(HttpReadResult.STATUS_NOT_MODIFIED);
+            if (validatorsSentWithNotModified) {
+                result.setResponseValidators(responseETag, responseLastModified);
+            }
+        } else {
+            result.setResponseValidators(responseETag, responseLastModified);
+            result.strResponse = responseString;
+            if (result.fileResult != null && responseFileStream != null) {
+                try {
+                    FileUtils.readStreamToFile(responseFileStream, result.fileResult);
+                } catch (IOException e) {
+                    result.setException(e);
+                }
             }
         }
         results.add(result);
@@ -153,6 +176,14 @@ public class HttpConnectionMock extends HttpConnection {
         DbUtils.waitMs("networkDelay", networkDelayMs);
     }
 
+    private boolean isNotModified(HttpReadResult result) {
+        Map<String, String> headers = result.getConditionalHeaders();
+        return (!TextUtils.isEmpty(responseETag)
+                && responseETag.equals(headers.get(HttpReadResult.HEADER_IF_NONE_MATCH)))
+                || (!TextUtils.isEmpty(responseLastModified)
+                && responseLastModified.equals(headers.get(HttpReadResult.HEADER_IF_MODIFIED_SINCE)));
+    }
+
     private void getRequestInner(String method, HttpReadResult result) throws ConnectionException {
         onRequest(method, result);
         throwExceptionIfSet();
@@ -140,6 +140,9 @@ public class HttpConnectionOAuth2JavaNet extends HttpConnectionOAuthJavaNet {
             boolean stop = false;
             do {
                 request = new OAuthRequest(Verb.GET, result.getUrlObj().toString());
+                for (Map.Entry<String, String> header : result.getConditionalHeaders().entrySet()) {
+                    request.addHeader(header.getKey(), header.getValue());
+                }
                 if (result.authenticate) {
                     signRequest(request, service, redirected);
                 }
@@ -147,10 +150,16 @@ public class HttpConnectionOAuth2JavaNet extends HttpConnectionOAuthJavaNet {
                 result.setStatusCode(response.getCode());
                 switch(result.getStatusCode()) {
                     case OK:
+                        result.setResponseValidators(response.getHeader(HttpReadResult.HEADER_ETAG),
+                                response.getHeader(HttpReadResult.HEADER_LAST_MODIFIED));
+                        if (result.isNotModified()) {
+                            stop = true;
+                            break;
+                        }
                         if (result.fileResult != null) {
                             FileUtils.readStreamToFile(response.getStream(), result.fileResult);
                         } else {
-                            result.strResponse = HttpConnectionUtils.readStreamToString(response.getStream());
+                            result.readStream(response.getStream());
                         }
                         stop = true;
                         break;
@@ -168,7 +177,8 @@ public class HttpConnectionOAuth2JavaNet extends HttpConnectionOAuthJavaNet {
                             }
                             MyLog.v(this, message.toString());
                         }
-                        // TODO: ?! ...disconnect();
+                        // Reading the body to the end allows reuse of the kept-alive connection
+                        HttpConnectionUtils.readStreamToString(response.getStream());
                         break;
                     default:
                         result.strResponse = HttpConnectionUtils.readStreamToString(response.getStream());
@@ -208,6 +208,9 @@ public class HttpConnectionOAuthJavaNet extends HttpConnectionOAuth {
             do {
                 conn = (HttpURLConnection) result.getUrlObj().openConnection();
                 conn.setInstanceFollowRedirects(false);
+                for (Entry<String, String> header : result.getConditionalHeaders().entrySet()) {
+                    conn.setRequestProperty(header.getKey(), header.getValue());
+                }
                 if (result.authenticate) {
                     signConnection(conn, consumer, redirected);
                 }
@@ -215,10 +218,16 @@ public class HttpConnectionOAuthJavaNet extends HttpConnectionOAuth {
                 result.setStatusCode(conn.getResponseCode());
                 switch(result.getStatusCode()) {
                     case OK:
+                        result.setResponseValidators(conn.getHeaderField(HttpReadResult.HEADER_ETAG),
+                                conn.getHeaderField(HttpReadResult.HEADER_LAST_MODIFIED));
+                        if (result.isNotModified()) {
+                            stop = true;
+                            break;
+                        }
                         if (result.fileResult != null) {
                             FileUtils.readStreamToFile(conn.getInputStream(), result.fileResult);
                         } else {
-                            result.strResponse = HttpConnectionUtils.readStreamToString(conn.getInputStream());
+                            result.readStream(conn.getInputStream());
                         }
                         stop = true;
                         break;
@@ -238,7 +247,8 @@ public class HttpConnectionOAuthJavaNet extends HttpConnectionOAuth {
                             }
                             MyLog.v(this, message.toString());
                         }
-                        conn.disconnect();
+                        // Reading the body to the end allows reuse of the kept-alive connection
+                        HttpConnectionUtils.readStreamToString(conn.getInputStream());
                         break;
                     default:
                         result.strResponse = HttpConnectionUtils.readStreamToString(conn.getErrorStream());
@@ -18,20 +18,35 @@ package org.andstatus.app.net.http;
 
 import android.text.TextUtils;
 
+import org.andstatus.app.context.MyPreferences;
+import org.andstatus.app.data.DbUtils;
 import org.andstatus.app.net.http.ConnectionException.StatusCode;
 import org.andstatus.app.util.I18n;
 import org.andstatus.app.util.MyLog;
+import org.andstatus.app.util.SharedPreferencesUtil;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONTokener;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class HttpReadResult {
+    static final int STATUS_NOT_MODIFIED = 304;
+    static final String HEADER_ETAG = "ETag";
+    static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
     private final String urlInitial;
     private String urlString = "";
     private URL url;
@@ -48,6 +63,15 @@ public class HttpReadResult {
     private StatusCode statusCode = StatusCode.UNKNOWN;
 
     boolean redirected = false;
+    private JsonArrayStreamReader arrayReader = null;
+    private ConnectionException arrayException = null;
+
+    /** Validators of the copy, which we have already: the request is conditional, if any is present */
+    private String ifNoneMatch = "";
+    private String ifModifiedSince = "";
+    /** Validators of the received response */
+    private String eTag = "";
+    private String lastModified = "";
 
     public HttpReadResult(String urlIn) throws ConnectionException {
         this (urlIn, null);
@@ -71,6 +95,43 @@ public class HttpReadResult {
         }
     }
     
+    /** Makes the request conditional, see https://tools.ietf.org/html/rfc7232 */
+    public HttpReadResult setValidators(String eTagOfCopy, String lastModifiedOfCopy) {
+        ifNoneMatch = eTagOfCopy == null ? "" : eTagOfCopy;
+        ifModifiedSince = lastModifiedOfCopy == null ? "" : lastModifiedOfCopy;
+        return this;
+    }
+
+    /** Headers to add to a GET request */
+    Map<String, String> getConditionalHeaders() {
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (!TextUtils.isEmpty(ifNoneMatch)) {
+            headers.put(HEADER_IF_NONE_MATCH, ifNoneMatch);
+        }
+        if (!TextUtils.isEmpty(ifModifiedSince)) {
+            headers.put(HEADER_IF_MODIFIED_SINCE, ifModifiedSince);
+        }
+        return headers;
+    }
+
+    void setResponseValidators(String eTagIn, String lastModifiedIn) {
+        eTag = eTagIn == null ? "" : eTagIn;
+        lastModified = lastModifiedIn == null ? "" : lastModifiedIn;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /** The copy, which we have, is still valid, so nothing was downloaded */
+    public boolean isNotModified() {
+        return intStatusCode == STATUS_NOT_MODIFIED;
+    }
+
     void setStatusCode(int intStatusCodeIn) {
         intStatusCode = intStatusCodeIn;
         statusCode = ConnectionException.StatusCode.fromResponseCode(intStatusCodeIn);
@@ -183,6 +244,55 @@ public class HttpReadResult {
         return jsa;
     }
  
+    HttpReadResult setArrayItemConsumer(String arrayKey, JsonObjectConsumer consumer) {
+        arrayReader = new JsonArrayStreamReader(arrayKey, consumer);
+        return this;
+    }
+
+    /**
+     * Reads a successful response. If we expect an array, its items are passed to the consumer
+     * straight from the stream. The response is kept as a String only when it's needed for logging
+     */
+    void readStream(InputStream in) throws IOException {
+        if (arrayReader == null || (MyLog.isVerboseEnabled()
+                && SharedPreferencesUtil.getBoolean(MyPreferences.KEY_LOG_NETWORK_LEVEL_MESSAGES, false))) {
+            strResponse = HttpConnectionUtils.readStreamToString(in);
+            return;
+        }
+        if (in == null) {
+            return;
+        }
+        try {
+            arrayReader.read(new InputStreamReader(in, HttpConnectionUtils.UTF_8));
+        } catch (JSONException e) {
+            arrayException = ConnectionException.loggedJsonException(this, "readStream; " + toString(), e, null);
+        } catch (ConnectionException e) {
+            arrayException = e;
+        } finally {
+            DbUtils.closeSilently(in);
+        }
+    }
+
+    /** Passes items of the array to the consumer, if this wasn't done while reading the response */
+    void readArrayItems() throws ConnectionException {
+        if (arrayException != null) {
+            throw arrayException;
+        }
+        if (arrayReader == null || arrayReader.isDone()) {
+            return;
+        }
+        String method = "readArrayItems; ";
+        if (TextUtils.isEmpty(strResponse)) {
+            MyLog.v(this, method + "; response is empty");
+            return;
+        }
+        try {
+            arrayReader.read(new StringReader(strResponse));
+        } catch (IOException | JSONException e) {
+            throw ConnectionException.loggedJsonException(this, method + toString(), e, strResponse);
+        }
+    }
+
     public ConnectionException getExceptionFromJsonErrorResponse() {
         StatusCode statusCode = this.statusCode;
         ConnectionException ce = null;
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.net.http;
+
+import android.support.annotation.NonNull;
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import org.andstatus.app.data.DbUtils;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads objects of a JSON array from a response one by one, so neither the whole response String
+ * nor the JSON tree of the whole response is kept in memory.
+ * The array is found the same way as in {@link HttpReadResult#getJsonArray(String)}
+ * @author yvolk@yurivolkov.com
+ */
+class JsonArrayStreamReader {
+    private final String arrayKey;
+    private final JsonObjectConsumer consumer;
+    private boolean done = false;
+    private int itemsCount = 0;
+
+    JsonArrayStreamReader(String arrayKey, @NonNull JsonObjectConsumer consumer) {
+        this.arrayKey = arrayKey;
+        this.consumer = consumer;
+    }
+
+    boolean isDone() {
+        return done;
+    }
+
+    int getItemsCount() {
+        return itemsCount;
+    }
+
+    void read(Reader in) throws IOException, JSONException, ConnectionException {
+        BufferedReader bufferedReader = new BufferedReader(in);
+        JsonReader reader = new JsonReader(bufferedReader);
+        try {
+            bufferedReader.mark(1);
+            if (bufferedReader.read() < 0) {
+                done = true;
+                return;
+            }
+            bufferedReader.reset();
+            reader.setLenient(true);
+            JsonToken token = reader.peek();
+            switch (token) {
+                case BEGIN_ARRAY:
+                    readItems(reader);
+                    break;
+                case BEGIN_OBJECT:
+                    readArrayInObject(reader);
+                    break;
+                default:
+                    throw new JSONException("Array expected, but found " + token);
+            }
+            done = true;
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new JSONException(e.getMessage());
+        } finally {
+            DbUtils.closeSilently(reader);
+        }
+    }
+
+    private void readArrayInObject(JsonReader reader) throws IOException, JSONException, ConnectionException {
+        JSONArray otherArray = null;
+        boolean found = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (found) {
+                reader.skipValue();
+            } else if (name.equals(arrayKey)) {
+                if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+                    throw new JSONException("'" + arrayKey + "' is not an array?!");
+                }
+                readItems(reader);
+                found = true;
+            } else if (otherArray == null && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                otherArray = readArray(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (!found) {
+            if (otherArray == null) {
+                throw new JSONException("No array found");
+            }
+            for (int index = 0; index < otherArray.length(); index++) {
+                itemsCount++;
+                consumer.accept(otherArray.getJSONObject(index));
+            }
+        }
+    }
+
+    private void readItems(JsonReader reader) throws IOException, JSONException, ConnectionException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                throw new JSONException("Item " + itemsCount + " is not an object: " + reader.peek());
+            }
+            itemsCount++;
+            consumer.accept(readObject(reader));
+        }
+        reader.endArray();
+    }
+
+    static JSONObject readObject(JsonReader reader) throws IOException, JSONException {
+        JSONObject jso = new JSONObject();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            jso.put(name, readValue(reader));
+        }
+        reader.endObject();
+        return jso;
+    }
+
+    static JSONArray readArray(JsonReader reader) throws IOException, JSONException {
+        JSONArray jsa = new JSONArray();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            jsa.put(readValue(reader));
+        }
+        reader.endArray();
+        return jsa;
+    }
+
+    private static Object readValue(JsonReader reader) throws IOException, JSONException {
+        JsonToken token = reader.peek();
+        switch (token) {
+            case BEGIN_OBJECT:
+                return readObject(reader);
+            case BEGIN_ARRAY:
+                return readArray(reader);
+            case STRING:
+                return reader.nextString();
+            case NUMBER:
+                return toNumber(reader.nextString());
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            default:
+                throw new JSONException("Unexpected " + token);
+        }
+    }
+
+    /** The same number types as {@link org.json.JSONTokener} returns, so large ids are not truncated */
+    static Object toNumber(String literal) {
+        if (literal.indexOf('.') < 0 && literal.indexOf('e') < 0 && literal.indexOf('E') < 0) {
+            try {
+                long longValue = Long.parseLong(literal);
+                if (longValue <= Integer.MAX_VALUE && longValue >= Integer.MIN_VALUE) {
+                    return (int) longValue;
+                }
+                return longValue;
+            } catch (NumberFormatException e) {
+                // Fall through to Double
+            }
+        }
+        try {
+            return Double.valueOf(literal);
+        } catch (NumberFormatException e) {
+            return literal;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.net.http;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Receives items of a JSON array one by one, as soon as each of them is read from a response
+ * @author yvolk@yurivolkov.com
+ */
+public interface JsonObjectConsumer {
+    void accept(JSONObject jso) throws JSONException, ConnectionException;
+}
@@ -17,40 +17,125 @@
 package org.andstatus.app.net.http;
 
 import org.andstatus.app.context.MyPreferences;
+import org.andstatus.app.data.DbUtils;
+import org.andstatus.app.util.MyLog;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import cz.msebera.android.httpclient.HttpResponse;
 import cz.msebera.android.httpclient.client.HttpClient;
 import cz.msebera.android.httpclient.client.config.RequestConfig;
 import cz.msebera.android.httpclient.config.Registry;
 import cz.msebera.android.httpclient.config.RegistryBuilder;
+import cz.msebera.android.httpclient.conn.ConnectionKeepAliveStrategy;
 import cz.msebera.android.httpclient.conn.socket.ConnectionSocketFactory;
 import cz.msebera.android.httpclient.conn.socket.PlainConnectionSocketFactory;
+import cz.msebera.android.httpclient.impl.client.DefaultConnectionKeepAliveStrategy;
 import cz.msebera.android.httpclient.impl.client.HttpClientBuilder;
 import cz.msebera.android.httpclient.impl.client.HttpClients;
 import cz.msebera.android.httpclient.impl.conn.PoolingHttpClientConnectionManager;
+import cz.msebera.android.httpclient.pool.PoolStats;
+import cz.msebera.android.httpclient.protocol.HttpContext;
 
+/**
+ * One long-lived client with a connection pool per {@link SslModeEnum} for the whole process,
+ * so connections (and their TLS sessions) to an origin are kept alive and reused by all HttpConnections.
+ * The client is recreated only if the connection timeout preference changed.
+ * The replaced client is closed (stopping its idle connections evictor thread and shutting down its pool)
+ * as soon as none of its connections is leased.
+ */
 public class MyHttpClientFactory {
+    private static final int MAX_CONNECTIONS_TOTAL = 20;
+    static final int MAX_CONNECTIONS_PER_ROUTE = 4;
+    private static final long KEEP_ALIVE_MAX_MS = TimeUnit.SECONDS.toMillis(30);
+    private static final long IDLE_CONNECTIONS_EVICT_AFTER_MS = TimeUnit.SECONDS.toMillis(60);
+    private static final int VALIDATE_AFTER_INACTIVITY_MS = 5000;
+    /** A caller may get a client and start a request a bit later, so we don't close a replaced client at once */
+    private static final long RETIRED_CLIENT_CLOSE_DELAY_MS = TimeUnit.SECONDS.toMillis(10);
+
+    private static class PooledClient {
+        final HttpClient client;
+        final PoolingHttpClientConnectionManager connectionManager;
+        final int connectionTimeoutMs;
+        long retiredAt = 0;
+
+        PooledClient(HttpClient client, PoolingHttpClientConnectionManager connectionManager,
+                     int connectionTimeoutMs) {
+            this.client = client;
+            this.connectionManager = connectionManager;
+            this.connectionTimeoutMs = connectionTimeoutMs;
+        }
+
+        boolean mayBeClosed(long now) {
+            return now - retiredAt >= RETIRED_CLIENT_CLOSE_DELAY_MS
+                    && connectionManager.getTotalStats().getLeased() == 0;
+        }
+    }
+
+    private static final Map<SslModeEnum, PooledClient> clients = new EnumMap<>(SslModeEnum.class);
+    private static final List<PooledClient> retiredClients = new ArrayList<>();
 
     /** Based on: https://github.com/rfc2822/davdroid/blob/master/src/at/bitfire/davdroid/webdav/DavHttpClient.java */
 
     private MyHttpClientFactory() {
         // Empty
     }
-    
-    public static HttpClient getHttpClient(SslModeEnum sslMode) {
+
+    public static synchronized HttpClient getHttpClient(SslModeEnum sslMode) {
+        int connectionTimeoutMs = MyPreferences.getConnectionTimeoutMs();
+        PooledClient pooled = clients.get(sslMode);
+        if (pooled == null || pooled.connectionTimeoutMs != connectionTimeoutMs) {
+            if (pooled != null && pooled.connectionManager != null) {
+                // Requests in progress may still use it, so it will be closed later
+                pooled.connectionManager.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+                pooled.retiredAt = System.currentTimeMillis();
+                retiredClients.add(pooled);
+            }
+            pooled = sslMode == SslModeEnum.MISCONFIGURED
+                    ? new PooledClient(MisconfiguredSslHttpClientFactory.getHttpClient(), null, connectionTimeoutMs)
+                    : newPooledClient(sslMode, connectionTimeoutMs);
+            clients.put(sslMode, pooled);
+        }
+        closeRetiredClients();
+        return pooled.client;
+    }
+
+    private static void closeRetiredClients() {
+        long now = System.currentTimeMillis();
+        for (Iterator<PooledClient> iterator = retiredClients.iterator(); iterator.hasNext(); ) {
+            PooledClient retired = iterator.next();
+            if (retired.mayBeClosed(now)) {
+                MyLog.v(MyHttpClientFactory.class, "Closing replaced HTTP client, timeout was "
+                        + retired.connectionTimeoutMs + "ms");
+                DbUtils.closeSilently(retired.client);
+                iterator.remove();
+            }
+        }
+    }
+
+    private static PooledClient newPooledClient(SslModeEnum sslMode, int connectionTimeoutMs) {
         Registry<ConnectionSocketFactory> registry = 
                 RegistryBuilder.<ConnectionSocketFactory> create()
                     .register("http", PlainConnectionSocketFactory.getSocketFactory())
                     .register("https", TlsSniSocketFactory.getInstance(sslMode))
                     .build();
         PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(registry);
-        // max.  3 connections in total
-        connectionManager.setMaxTotal(3);
-        // max.  2 connections per host
-        connectionManager.setDefaultMaxPerRoute(2);
+        connectionManager.setMaxTotal(MAX_CONNECTIONS_TOTAL);
+        connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+        // Instead of the stale connection check before each request
+        connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MS);
 
         // use request defaults from AndroidHttpClient
         RequestConfig requestConfig = RequestConfig.copy(RequestConfig.DEFAULT)
-                .setConnectTimeout(MyPreferences.getConnectionTimeoutMs())
-                .setSocketTimeout(2*MyPreferences.getConnectionTimeoutMs())
+                // Don't wait forever for a connection of the shared pool
+                .setConnectionRequestTimeout(connectionTimeoutMs)
+                .setConnectTimeout(connectionTimeoutMs)
+                .setSocketTimeout(2*connectionTimeoutMs)
                 .setStaleConnectionCheckEnabled(false)
                 .build();
         
@@ -58,6 +143,8 @@ public class MyHttpClientFactory {
                 .useSystemProperties()
                 .setConnectionManager(connectionManager)
                 .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(KEEP_ALIVE_STRATEGY)
+                .evictIdleConnections(IDLE_CONNECTIONS_EVICT_AFTER_MS, TimeUnit.MILLISECONDS)
                 /* TODO maybe:  
                 .setRetryHandler(DavHttpRequestRetryHandler.INSTANCE)
                 .setRedirectStrategy(DavRedirectStrategy.INSTANCE)  
@@ -66,7 +153,38 @@ public class MyHttpClientFactory {
                 .setUserAgent(HttpConnection.USER_AGENT)
                 .disableCookieManagement();
 
-        return builder.build();
+        return new PooledClient(builder.build(), connectionManager, connectionTimeoutMs);
+    }
+
+    /** Honors the "Keep-Alive" header of a response, but doesn't keep a connection longer than the limit */
+    private static final ConnectionKeepAliveStrategy KEEP_ALIVE_STRATEGY = new ConnectionKeepAliveStrategy() {
+        @Override
+        public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return duration > 0 && duration < KEEP_ALIVE_MAX_MS ? duration : KEEP_ALIVE_MAX_MS;
+        }
+    };
+
+    public static synchronized String getPoolInfo() {
+        StringBuilder builder = new StringBuilder("HTTP connection pools:");
+        if (clients.isEmpty()) {
+            builder.append(" none");
+        }
+        if (!retiredClients.isEmpty()) {
+            builder.append(" replaced, not closed yet: " + retiredClients.size() + ";");
+        }
+        for (Map.Entry<SslModeEnum, PooledClient> entry : clients.entrySet()) {
+            builder.append(" " + entry.getKey().name() + ": ");
+            PoolingHttpClientConnectionManager connectionManager = entry.getValue().connectionManager;
+            if (connectionManager == null) {
+                builder.append("not pooled;");
+            } else {
+                PoolStats stats = connectionManager.getTotalStats();
+                builder.append("leased:" + stats.getLeased() + ", available:" + stats.getAvailable()
+                        + ", pending:" + stats.getPending() + ", max:" + stats.getMax()
+                        + ", routes:" + connectionManager.getRoutes().size() + ";");
+            }
+        }
+        return builder.toString();
     }
-    
 }
@@ -29,6 +29,7 @@ import org.andstatus.app.net.http.ConnectionException.StatusCode;
 import org.andstatus.app.net.http.HttpConnection;
 import org.andstatus.app.net.http.HttpConnectionData;
 import org.andstatus.app.net.http.HttpConnectionMock;
+import org.andstatus.app.net.http.HttpReadResult;
 import org.andstatus.app.net.http.OAuthService;
 import org.andstatus.app.origin.OriginConnectionData;
 import org.andstatus.app.util.MyLog;
@@ -36,6 +37,7 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.Closeable;
 import java.io.File;
 import java.text.DateFormat;
 import java.text.ParseException;
@@ -44,6 +46,11 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Handles connection to the API of the Microblogging System (i.e. to the "Origin")
@@ -76,6 +83,8 @@ public abstract class Connection {
         GET_FOLLOWERS_IDS,
         GET_OPEN_INSTANCES,
         GET_USER,
+        /** Many users by their IDs in one request */
+        GET_USERS,
         POST_MESSAGE,
         POST_WITH_MEDIA,
         POST_DIRECT_MESSAGE,
@@ -382,7 +391,132 @@ public abstract class Connection {
      * @throws ConnectionException
      */
     public abstract MbUser getUser(String userId, String userName) throws ConnectionException;
-    
+
+    /** Maximum number of concurrent {@link #getUser(String, String)} requests of a {@link UsersDownload} */
+    private static final int MAX_PARALLEL_USER_REQUESTS = 4;
+
+    /**
+     * Get information about the specified Users using as few requests as the API allows,
+     * see {@link UsersDownload}
+     * @return Users, which were retrieved. Users, which failed, are absent in the list
+     */
+    @NonNull
+    public List<MbUser> getUsers(List<String> userIds) throws ConnectionException {
+        UsersDownload download = newUsersDownload();
+        try {
+            return download.getUsers(userIds);
+        } finally {
+            download.close();
+        }
+    }
+
+    /** Start a download of Users, which may be done in several chunks. Close it, when the download ends */
+    @NonNull
+    public UsersDownload newUsersDownload() {
+        return new UsersDownload();
+    }
+
+    /**
+     * Users are downloaded with {@link ApiRoutineEnum#GET_USERS} if it's supported,
+     * else with parallel {@link #getUser(String, String)} requests, limited by {@link #rateLimitStatus()}.
+     * The rate limit is checked and the threads are created once per download, not for each chunk
+     */
+    public final class UsersDownload implements Closeable {
+        private ExecutorService executor = null;
+        /** Remaining number of {@link #getUser(String, String)} requests, negative if not known yet */
+        private int requestsAllowed = -1;
+
+        private UsersDownload() {
+            // Created by the Connection
+        }
+
+        /** @return Users, which were retrieved. Users, which failed, are absent in the list */
+        @NonNull
+        public List<MbUser> getUsers(List<String> userIds) throws ConnectionException {
+            List<MbUser> users = new ArrayList<>();
+            if (isApiSupported(ApiRoutineEnum.GET_USERS)) {
+                int batchSize = getUsersBatchSize();
+                for (int from = 0; from < userIds.size(); from += batchSize) {
+                    users.addAll(getUsersBatch(userIds.subList(from, Math.min(from + batchSize, userIds.size()))));
+                }
+            } else {
+                users.addAll(getUsersInParallel(userIds));
+            }
+            return users;
+        }
+
+        @NonNull
+        private List<MbUser> getUsersInParallel(List<String> userIds) throws ConnectionException {
+            final String method = "getUsersInParallel";
+            List<MbUser> users = new ArrayList<>();
+            int requestsCount = Math.min(userIds.size(), getRequestsAllowed());
+            if (requestsCount < userIds.size()) {
+                MyLog.i(this, method + "; only " + requestsCount + " of " + userIds.size()
+                        + " requests are allowed now");
+            }
+            if (requestsCount == 0) {
+                return users;
+            }
+            requestsAllowed -= requestsCount;
+            if (executor == null) {
+                executor = Executors.newFixedThreadPool(MAX_PARALLEL_USER_REQUESTS);
+            }
+            List<Future<MbUser>> futures = new ArrayList<>();
+            try {
+                for (final String userId : userIds.subList(0, requestsCount)) {
+                    futures.add(executor.submit(new Callable<MbUser>() {
+                        @Override
+                        public MbUser call() throws ConnectionException {
+                            return getUser(userId, null);
+                        }
+                    }));
+                }
+                for (Future<MbUser> future : futures) {
+                    try {
+                        MbUser user = future.get();
+                        if (user != null && !user.isEmpty()) {
+                            users.add(user);
+                        }
+                    } catch (ExecutionException e) {
+                        MyLog.i(this, method + "; failed to get a User", e.getCause());
+                    }
+                }
+            } catch (InterruptedException e) {
+                for (Future<MbUser> future : futures) {
+                    future.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                throw new ConnectionException(method + " interrupted", e);
+            }
+            return users;
+        }
+
+        private int getRequestsAllowed() {
+            if (requestsAllowed < 0) {
+                requestsAllowed = Integer.MAX_VALUE;
+                if (isApiSupported(ApiRoutineEnum.ACCOUNT_RATE_LIMIT_STATUS)) {
+                    try {
+                        MbRateLimitStatus rateLimitStatus = rateLimitStatus();
+                        if (!rateLimitStatus.isEmpty()) {
+                            requestsAllowed = Math.max(rateLimitStatus.remaining, 0);
+                        }
+                    } catch (ConnectionException e) {
+                        MyLog.d(this, "getRequestsAllowed; failed to get rate limit status", e);
+                    }
+                }
+            }
+            return requestsAllowed;
+        }
+
+        @Override
+        public void close() {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+        }
+    }
+
     protected final String fixSinceId(String sinceId) {
         String out = "";
         if (!TextUtils.isEmpty(sinceId) && sinceId.length()>1) {
@@ -565,6 +699,11 @@ public abstract class Connection {
         http.downloadFile(url, file);
     }
 
+    /** Conditional download, if the result has validators, see {@link HttpReadResult#isNotModified()} */
+    public void downloadFile(HttpReadResult result) throws ConnectionException {
+        http.downloadFile(result);
+    }
+
     @NonNull
     public HttpConnectionMock getHttpMock() {
         if (http != null && HttpConnectionMock.class.isAssignableFrom(http.getClass())) {
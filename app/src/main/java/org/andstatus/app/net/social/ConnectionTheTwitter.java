@@ -68,6 +68,10 @@ public class ConnectionTheTwitter extends ConnectionTwitterLike {
             case GET_MESSAGE:
                 url = "statuses/show.json" + "?id=%messageId%&tweet_mode=extended";
                 break;
+            case GET_USERS:
+                // https://dev.twitter.com/rest/reference/get/users/lookup
+                url = "users/lookup.json";
+                break;
             case HOME_TIMELINE:
                 url = "statuses/home_timeline.json?tweet_mode=extended";
                 break;
@@ -172,8 +176,7 @@ public class ConnectionTheTwitter extends ConnectionTwitterLike {
         }
         appendPositionParameters(builder, youngestPosition, oldestPosition);
         builder.appendQueryParameter("count", strFixedDownloadLimit(limit, apiRoutine));
-        JSONArray jArr = getRequestArrayInObject(builder.build().toString(), "statuses");
-        return jArrToTimeline(jArr, apiRoutine, url);
+        return getTimelineStreamed(builder.build().toString(), "statuses", apiRoutine, url);
     }
 
     @NonNull
@@ -187,7 +190,7 @@ public class ConnectionTheTwitter extends ConnectionTwitterLike {
             builder.appendQueryParameter("q", searchQuery);
         }
         builder.appendQueryParameter("count", strFixedDownloadLimit(limit, apiRoutine));
-        return jArrToUsers(http.getRequestAsArray(builder.build().toString()), apiRoutine, url);
+        return getUsersStreamed(builder.build().toString(), apiRoutine, url);
     }
 
     private static final String ATTACHMENTS_FIELD_NAME = "media";
@@ -242,7 +245,7 @@ public class ConnectionTheTwitter extends ConnectionTwitterLike {
             builder.appendQueryParameter("user_id", userId);
         }
         builder.appendQueryParameter("count", strFixedDownloadLimit(limit, apiRoutine));
-        return jArrToUsers(http.getRequestAsArray(builder.build().toString()), apiRoutine, url);
+        return getUsersStreamed(builder.build().toString(), apiRoutine, url);
     }
 
 }
@@ -158,8 +158,7 @@ public class ConnectionTwitterGnuSocial extends ConnectionTwitterLike {
             return new ArrayList<>();
         } else {
             String url = getApiPathWithMessageId(ApiRoutineEnum.GET_CONVERSATION, conversationOid);
-            JSONArray jArr = http.getRequestAsArray(url);
-            return jArrToTimeline(jArr, ApiRoutineEnum.GET_CONVERSATION, url);
+            return getTimelineStreamed(url, ApiRoutineEnum.GET_CONVERSATION, url);
         }
     }
 
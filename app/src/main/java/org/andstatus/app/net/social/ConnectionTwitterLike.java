@@ -22,6 +22,7 @@ import android.text.TextUtils;
 
 import org.andstatus.app.data.DownloadStatus;
 import org.andstatus.app.net.http.ConnectionException;
+import org.andstatus.app.net.http.JsonObjectConsumer;
 import org.andstatus.app.util.MyLog;
 import org.andstatus.app.util.SharedPreferencesUtil;
 import org.andstatus.app.util.TriState;
@@ -31,6 +32,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -217,8 +219,7 @@ public abstract class ConnectionTwitterLike extends Connection {
             throws ConnectionException {
         Uri.Builder builder = getTimelineUriBuilder(apiRoutine, limit, userId);
         appendPositionParameters(builder, youngestPosition, oldestPosition);
-        JSONArray jArr = http.getRequestAsArray(builder.build().toString());
-        return jArrToTimeline(jArr, apiRoutine, builder.build().toString());
+        return getTimelineStreamed(builder.build().toString(), apiRoutine, builder.build().toString());
     }
 
     @NonNull
@@ -430,8 +431,7 @@ public abstract class ConnectionTwitterLike extends Connection {
         }
         appendPositionParameters(builder, youngestPosition, oldestPosition);
         builder.appendQueryParameter("count", strFixedDownloadLimit(limit, apiRoutine));
-        JSONArray jArr = http.getRequestAsArray(builder.build().toString());
-        return jArrToTimeline(jArr, apiRoutine, url);
+        return getTimelineStreamed(builder.build().toString(), apiRoutine, url);
     }
 
     protected void appendPositionParameters(Uri.Builder builder, TimelinePosition youngest, TimelinePosition oldest) {
@@ -450,6 +450,26 @@ public abstract class ConnectionTwitterLike extends Connection {
         }
     }
 
+    /** Activities are parsed one by one, while the response is being read */
+    List<MbActivity> getTimelineStreamed(String path, ApiRoutineEnum apiRoutine, String url)
+            throws ConnectionException {
+        return getTimelineStreamed(path, "items", apiRoutine, url);
+    }
+
+    List<MbActivity> getTimelineStreamed(String path, String arrayKey, ApiRoutineEnum apiRoutine, String url)
+            throws ConnectionException {
+        final List<MbActivity> timeline = new ArrayList<>();
+        http.getRequestAsArray(path, arrayKey, new JsonObjectConsumer() {
+            @Override
+            public void accept(JSONObject jso) throws ConnectionException {
+                timeline.add(activityFromTwitterLikeJson(jso));
+            }
+        });
+        // Read the activities in chronological order
+        Collections.reverse(timeline);
+        return onTimelineParsed(timeline, apiRoutine, url);
+    }
+
     List<MbActivity> jArrToTimeline(JSONArray jArr, ApiRoutineEnum apiRoutine, String url) throws ConnectionException {
         List<MbActivity> timeline = new ArrayList<>();
         if (jArr != null) {
@@ -463,6 +483,10 @@ public abstract class ConnectionTwitterLike extends Connection {
                 }
             }
         }
+        return onTimelineParsed(timeline, apiRoutine, url);
+    }
+
+    private List<MbActivity> onTimelineParsed(List<MbActivity> timeline, ApiRoutineEnum apiRoutine, String url) {
         if (apiRoutine.isMsgPublic()) {
             setMessagesPublic(timeline);
         }
@@ -470,19 +494,15 @@ public abstract class ConnectionTwitterLike extends Connection {
         return timeline;
     }
 
-    List<MbUser> jArrToUsers(JSONArray jArr, ApiRoutineEnum apiRoutine, String url) throws ConnectionException {
-        List<MbUser> users = new ArrayList<>();
-        if (jArr != null) {
-            for (int index = 0; index < jArr.length(); index++) {
-                try {
-                    JSONObject jso = jArr.getJSONObject(index);
-                    MbUser item = userFromJson(jso);
-                    users.add(item);
-                } catch (JSONException e) {
-                    throw ConnectionException.loggedJsonException(this, "Parsing " + apiRoutine, e, null);
-                }
+    /** Users are parsed one by one, while the response is being read */
+    List<MbUser> getUsersStreamed(String path, ApiRoutineEnum apiRoutine, String url) throws ConnectionException {
+        final List<MbUser> users = new ArrayList<>();
+        http.getRequestAsArray(path, new JsonObjectConsumer() {
+            @Override
+            public void accept(JSONObject jso) throws ConnectionException {
+                users.add(userFromJson(jso));
             }
-        }
+        });
         if (apiRoutine.isMsgPublic()) {
             setUserMessagesPublic(users);
         }
@@ -490,6 +510,19 @@ public abstract class ConnectionTwitterLike extends Connection {
         return users;
     }
 
+    /**
+     * @see <a href="https://dev.twitter.com/rest/reference/get/users/lookup">GET users/lookup</a>
+     */
+    @NonNull
+    @Override
+    protected List<MbUser> getUsersBatch(List<String> userIds) throws ConnectionException {
+        ApiRoutineEnum apiRoutine = ApiRoutineEnum.GET_USERS;
+        String url = getApiPath(apiRoutine);
+        Uri.Builder builder = Uri.parse(url).buildUpon();
+        builder.appendQueryParameter("user_id", TextUtils.join(",", userIds));
+        return getUsersStreamed(builder.build().toString(), apiRoutine, url);
+    }
+
     /**
      * @see <a href="https://dev.twitter.com/docs/api/1.1/get/users/show">GET users/show</a>
      */
@@ -27,6 +27,7 @@ import org.andstatus.app.net.http.ConnectionException;
 import org.andstatus.app.net.http.ConnectionException.StatusCode;
 import org.andstatus.app.net.http.HttpConnection;
 import org.andstatus.app.net.http.HttpConnectionData;
+import org.andstatus.app.net.http.JsonObjectConsumer;
 import org.andstatus.app.net.social.Connection;
 import org.andstatus.app.net.social.MbActivity;
 import org.andstatus.app.net.social.MbAttachment;
@@ -47,6 +48,7 @@ import org.json.JSONObject;
 
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -184,19 +186,13 @@ public class ConnectionPumpio extends Connection {
         Uri.Builder builder = sUri.buildUpon();
         builder.appendQueryParameter("count", strFixedDownloadLimit(limit, apiRoutine));
         String url = builder.build().toString();
-        JSONArray jArr = conu.httpConnection.getRequestAsArray(url);
-        List<MbUser> users = new ArrayList<>();
-        if (jArr != null) {
-            for (int index = 0; index < jArr.length(); index++) {
-                try {
-                    JSONObject jso = jArr.getJSONObject(index);
-                    MbUser item = userFromJson(jso);
-                    users.add(item);
-                } catch (JSONException e) {
-                    throw ConnectionException.loggedJsonException(this, "Parsing list of users", e, null);
-                }
+        final List<MbUser> users = new ArrayList<>();
+        conu.httpConnection.getRequestAsArray(url, new JsonObjectConsumer() {
+            @Override
+            public void accept(JSONObject jso) throws ConnectionException {
+                users.add(userFromJson(jso));
             }
-        }
+        });
         MyLog.d(TAG, apiRoutine + " '" + url + "' " + users.size() + " users");
         return users;
     }
@@ -331,19 +327,15 @@ public class ConnectionPumpio extends Connection {
         }
         builder.appendQueryParameter("count", strFixedDownloadLimit(limit, apiRoutine));
         String url = builder.build().toString();
-        JSONArray jArr = conu.httpConnection.getRequestAsArray(url);
-        List<MbActivity> activities = new ArrayList<>();
-        if (jArr != null) {
-            // Read the activities in the chronological order
-            for (int index = jArr.length() - 1; index >= 0; index--) {
-                try {
-                    JSONObject jso = jArr.getJSONObject(index);
-                    activities.add(activityFromJson(jso));
-                } catch (JSONException e) {
-                    throw ConnectionException.loggedJsonException(this, "Parsing timeline", e, null);
-                }
+        final List<MbActivity> activities = new ArrayList<>();
+        conu.httpConnection.getRequestAsArray(url, new JsonObjectConsumer() {
+            @Override
+            public void accept(JSONObject jso) throws ConnectionException {
+                activities.add(activityFromJson(jso));
             }
-        }
+        });
+        // Read the activities in the chronological order
+        Collections.reverse(activities);
         MyLog.d(TAG, "getTimeline '" + url + "' " + activities.size() + " messages");
         return activities;
     }
@@ -52,7 +52,7 @@ public abstract class MyAsyncTask<Params, Progress, Result> extends AsyncTask<Pa
     private volatile String firstError = "";
 
     public enum PoolEnum {
-        SYNC(2, MAX_COMMAND_EXECUTION_SECONDS),
+        SYNC(4, MAX_COMMAND_EXECUTION_SECONDS),
         FILE_DOWNLOAD(1, MAX_COMMAND_EXECUTION_SECONDS),
         QUICK_UI(1, 20),
         LONG_UI(1, MAX_COMMAND_EXECUTION_SECONDS),
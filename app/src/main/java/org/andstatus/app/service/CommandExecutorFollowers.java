@@ -30,13 +30,16 @@ import org.andstatus.app.database.MsgTable;
 import org.andstatus.app.database.UserTable;
 import org.andstatus.app.net.http.ConnectionException;
 import org.andstatus.app.net.social.Connection;
+import org.andstatus.app.net.social.MbActivity;
 import org.andstatus.app.net.social.MbUser;
 import org.andstatus.app.timeline.TimelineSyncTracker;
 import org.andstatus.app.timeline.TimelineType;
+import org.andstatus.app.util.LongSet;
 import org.andstatus.app.util.MyLog;
 import org.andstatus.app.util.RelativeTime;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -44,6 +47,7 @@ import java.util.Set;
  * @author yvolk@yurivolkov.com
  */
 public class CommandExecutorFollowers extends CommandExecutorStrategy {
+    private static final int USERS_PER_CHUNK = 100;
     long userId = 0;
     String userOid = "";
     List<MbUser> usersNew = new ArrayList<>();
@@ -122,7 +126,7 @@ public class CommandExecutorFollowers extends CommandExecutorStrategy {
                     + " and " + Connection.ApiRoutineEnum.GET_FOLLOWERS_IDS);
         }
 
-        Set<Long> userIdsOld = MyQuery.getFollowersIds(userId);
+        LongSet userIdsOld = MyQuery.getFollowersIds(userId);
         execContext.getResult().incrementDownloadedCount();
         broadcastProgress(execContext.getContext().getText(R.string.followers).toString()
                 + ": " + userIdsOld.size() + " -> " + usersNew.size(), false);
@@ -133,7 +137,7 @@ public class CommandExecutorFollowers extends CommandExecutorStrategy {
             userIdsOld.remove(mbUser.userId);
             FriendshipValues.setFollowed(mbUser.userId, userId);
         }
-        for (long userIdOld : userIdsOld) {
+        for (long userIdOld : userIdsOld.toArray()) {
             FriendshipValues.setNotFollowed(userIdOld, userId);
         }
     }
@@ -153,7 +157,7 @@ public class CommandExecutorFollowers extends CommandExecutorStrategy {
                             + " and " + Connection.ApiRoutineEnum.GET_FRIENDS_IDS);
         }
 
-        Set<Long> userIdsOld = MyQuery.getFriendsIds(userId);
+        LongSet userIdsOld = MyQuery.getFriendsIds(userId);
         execContext.getResult().incrementDownloadedCount();
         broadcastProgress(execContext.getContext().getText(R.string.friends).toString()
                 + ": " + userIdsOld.size() + " -> " + usersNew.size(), false);
@@ -164,36 +168,53 @@ public class CommandExecutorFollowers extends CommandExecutorStrategy {
             userIdsOld.remove(mbUser.userId);
             FriendshipValues.setFollowed(userId, mbUser.userId);
         }
-        for (long userIdOld : userIdsOld) {
+        for (long userIdOld : userIdsOld.toArray()) {
             FriendshipValues.setNotFollowed(userId, userIdOld);
         }
     }
 
+    /**
+     * Users are requested in chunks of one download, see {@link Connection.UsersDownload}
+     * @return true if we need to interrupt process
+     */
     private boolean getUsersForOids(List<String> userOidsNew, List<MbUser> usersNew) {
-        long count = 0;
-        for (String userOidNew : userOidsNew) {
-            MbUser mbUser = null;
+        Connection.UsersDownload download = execContext.getMyAccount().getConnection().newUsersDownload();
+        try {
+            return getUsersForOids(download, userOidsNew, usersNew);
+        } finally {
+            download.close();
+        }
+    }
+
+    private boolean getUsersForOids(Connection.UsersDownload download, List<String> userOidsNew,
+                                    List<MbUser> usersNew) {
+        for (int from = 0; from < userOidsNew.size(); from += USERS_PER_CHUNK) {
+            List<String> oids = userOidsNew.subList(from, Math.min(from + USERS_PER_CHUNK, userOidsNew.size()));
+            List<MbUser> users = new ArrayList<>();
+            ConnectionException exception = null;
             try {
-                count++;
-                mbUser = execContext.getMyAccount().getConnection().getUser(userOidNew, null);
-                execContext.getResult().incrementDownloadedCount();
+                users = download.getUsers(oids);
             } catch (ConnectionException e) {
-                long userId = MyQuery.oidToId(OidEnum.USER_OID,
-                        execContext.getMyAccount().getOriginId(), userOidNew);
-                if (userId == 0) {
-                    MyLog.i(this, "Failed to identify a User for oid=" + userOidNew, e);
-                } else {
-                    mbUser = MbUser.fromOriginAndUserOid(execContext.getMyAccount().getOriginId(), userOidNew);
-                    mbUser.userId = userId;
-                    mbUser.setWebFingerId(MyQuery.userIdToWebfingerId(userId));
-                    MyLog.v(this, "Server doesn't return User object for " + mbUser , e);
+                exception = e;
+            }
+            Set<String> oidsFound = new HashSet<>();
+            for (MbUser mbUser : users) {
+                oidsFound.add(mbUser.oid);
+                execContext.getResult().incrementDownloadedCount();
+                usersNew.add(mbUser);
+            }
+            for (String userOidNew : oids) {
+                if (!oidsFound.contains(userOidNew)) {
+                    MbUser mbUser = userFromDatabase(userOidNew, exception);
+                    if (mbUser != null) {
+                        usersNew.add(mbUser);
+                    }
                 }
             }
-            if (mbUser != null) {
-                broadcastProgress(String.valueOf(count) + ". "
+            if (!usersNew.isEmpty()) {
+                broadcastProgress(String.valueOf(usersNew.size()) + ". "
                         + execContext.getContext().getText(R.string.get_user)
-                        + ": " + mbUser.getNamePreferablyWebFingerId(), true);
-                usersNew.add(mbUser);
+                        + ": " + usersNew.get(usersNew.size() - 1).getNamePreferablyWebFingerId(), true);
             }
             if (logSoftErrorIfStopping()) {
                 return true;
@@ -202,6 +223,19 @@ public class CommandExecutorFollowers extends CommandExecutorStrategy {
         return false;
     }
 
+    private MbUser userFromDatabase(String userOid, ConnectionException e) {
+        long userId = MyQuery.oidToId(OidEnum.USER_OID, execContext.getMyAccount().getOriginId(), userOid);
+        if (userId == 0) {
+            MyLog.i(this, "Failed to identify a User for oid=" + userOid, e);
+            return null;
+        }
+        MbUser mbUser = MbUser.fromOriginAndUserOid(execContext.getMyAccount().getOriginId(), userOid);
+        mbUser.userId = userId;
+        mbUser.setWebFingerId(MyQuery.userIdToWebfingerId(userId));
+        MyLog.v(this, "Server doesn't return User object for " + mbUser , e);
+        return mbUser;
+    }
+
     /**
      * @return true if we need to interrupt process
      */
@@ -209,19 +243,19 @@ public class CommandExecutorFollowers extends CommandExecutorStrategy {
         DataUpdater di = new DataUpdater(execContext);
         MbUser accountUser = execContext.getMyAccount().toPartialUser();
         boolean messagesLoaded = false;
-        long count = 0;
+        List<MbActivity> activities = new ArrayList<>();
         for (MbUser user : usersNew) {
-            count++;
-            broadcastProgress(String.valueOf(count) + ". " + execContext.getContext().getText(R.string.button_save)
-                    + ": " + user.getNamePreferablyWebFingerId(), true);
-            di.onActivity(user.update(accountUser), false);
+            activities.add(user.update(accountUser));
             if (user.hasLatestMessage()) {
                 messagesLoaded = true;
             }
         }
+        broadcastProgress(String.valueOf(usersNew.size()) + ". "
+                + execContext.getContext().getText(R.string.button_save), true);
+        di.onActivities(activities);
         di.saveLum();
         if (!messagesLoaded) {
-            count = 0;
+            long count = 0;
             for (MbUser mbUser : usersNew) {
                 count++;
                 try {
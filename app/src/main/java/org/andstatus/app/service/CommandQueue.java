@@ -31,19 +31,25 @@ import org.andstatus.app.util.MyLog;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Queue;
-import java.util.concurrent.PriorityBlockingQueue;
 
 /**
+ * Queues of commands, persisted in the {@link CommandTable}.
+ * Saving writes only the rows, which changed since the queues were loaded:
+ * new commands, commands with changed state or moved to other queue, and deletes removed commands.
  * @author yvolk@yurivolkov.com
  */
 public class CommandQueue {
     private final Context context;
     private static class OneQueue {
-        Queue<CommandData> queue = new PriorityBlockingQueue<>(100);
+        final IndexedCommandQueue queue;
         volatile int savedCount = 0;
         volatile boolean savedForegroundTasks = false;
 
+        OneQueue(QueueType queueType) {
+            queue = queueType == QueueType.RETRY || queueType == QueueType.ERROR
+                    ? IndexedCommandQueue.forRetry() : IndexedCommandQueue.forExecution();
+        }
+
         public void clear() {
             queue.clear();
             savedCount = 0;
@@ -55,17 +61,7 @@ public class CommandQueue {
         }
 
         private boolean hasForegroundTasks() {
-            if (savedForegroundTasks) {
-                return true;
-            }
-            boolean has = false;
-            for (CommandData commandData : queue) {
-                if (commandData.isInForeground()) {
-                    has = true;
-                    break;
-                }
-            }
-            return has;
+            return savedForegroundTasks || queue.hasForeground();
         }
 
         public int size() {
@@ -75,6 +71,9 @@ public class CommandQueue {
     private final Map<QueueType, OneQueue> queues = new HashMap<>();
     private volatile boolean loaded = false;
     private volatile boolean saved = false;
+    /** Rows of the loaded commands as they are in the database, by command ID.
+     * Empty values mark rows, which were skipped on loading */
+    private final Map<Long, ContentValues> persisted = new HashMap<>();
 
     public CommandQueue() {
         this(MyContextHolder.get().context());
@@ -83,11 +82,11 @@ public class CommandQueue {
     public CommandQueue(Context context) {
         this.context = context;
         for (QueueType queueType : QueueType.values()) {
-            queues.put(queueType, new OneQueue());
+            queues.put(queueType, new OneQueue(queueType));
         }
     }
 
-    public Queue<CommandData> get(QueueType queueType) {
+    public IndexedCommandQueue get(QueueType queueType) {
         return queues.get(queueType).queue;
     }
 
@@ -110,7 +109,7 @@ public class CommandQueue {
     protected int load(@NonNull QueueType queueType) {
         final String method = "loadQueue-" + queueType.save();
         OneQueue oneQueue = queues.get(queueType);
-        Queue<CommandData> queue = oneQueue.queue;
+        IndexedCommandQueue queue = oneQueue.queue;
         int count = 0;
         SQLiteDatabase db = MyContextHolder.get().getDatabase();
         if (db == null) {
@@ -125,10 +124,13 @@ public class CommandQueue {
                 CommandData cd = CommandData.fromCursor(MyContextHolder.get(), c);
                 if (CommandEnum.EMPTY.equals(cd.getCommand())) {
                     MyLog.e(context, method + "; empty skipped " + cd);
+                    persisted.put(cd.getCommandId(), new ContentValues());
                 } else if (queue.contains(cd)) {
                     MyLog.e(context, method + "; duplicate skipped " + cd);
+                    persisted.put(cd.getCommandId(), new ContentValues());
                 } else {
                     if (queue.offer(cd)) {
+                        persisted.put(cd.getCommandId(), toContentValues(cd, queueType));
                         count++;
                         if (MyLog.isVerboseEnabled() && (count < 6 || cd.getCommand() == CommandEnum.UPDATE_STATUS )) {
                             MyLog.v(context, method + "; " + count + ": " + cd.toString());
@@ -148,60 +150,77 @@ public class CommandQueue {
     }
 
     public synchronized void save() {
-        if (loaded) {
-            clearQueuesInDatabase();
+        final String method = "save";
+        SQLiteDatabase db = MyContextHolder.get().getDatabase();
+        if (db == null) {
+            MyLog.d(context, method + "; Database is unavailable");
+            return;
+        }
+        int count;
+        int countError;
+        int countDeleted = 0;
+        db.beginTransaction();
+        try {
+            count = save(QueueType.CURRENT) + save(QueueType.RETRY);
+            countError = save(QueueType.ERROR);
+            if (loaded) {
+                countDeleted = deleteRemovedCommands(db);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            persisted.clear();
         }
-        int count = save(QueueType.CURRENT) + save(QueueType.RETRY);
-        int countError = save(QueueType.ERROR);
         MyLog.d(this, (loaded ? "Queues saved" : "Saved new queued commands only") + ", "
                 + (count > 0 ? Integer.toString(count) : "no") + " commands"
                 + (countError > 0 ? ", including " + Integer.toString(countError) + " in Error queue" : "")
+                + (countDeleted > 0 ? ", " + Integer.toString(countDeleted) + " deleted" : "")
         );
         saved |= loaded;
         loaded = false;
     }
 
-    /** @return Number of items persisted */
+    /** Writes new and changed commands of the queue, the queue is emptied
+     * @return Number of items persisted */
     public int save(@NonNull QueueType queueType) {
         final String method = "saveQueue-" + queueType.save();
         OneQueue oneQueue = queues.get(queueType);
-        Queue<CommandData> queue = oneQueue.queue;
+        IndexedCommandQueue queue = oneQueue.queue;
         int count = 0;
+        int countChanged = 0;
+        SQLiteDatabase db = MyContextHolder.get().getDatabase();
+        if (db == null) {
+            MyLog.d(context, method + "; Database is unavailable");
+            return 0;
+        }
+        db.beginTransaction();
         try {
-            SQLiteDatabase db = MyContextHolder.get().getDatabase();
-            if (db == null) {
-                MyLog.d(context, method + "; Database is unavailable");
-                return 0;
-            }
             if (loaded) {
                 oneQueue.savedCount = 0;
                 oneQueue.savedForegroundTasks = false;
-                String sql = "DELETE FROM " + CommandTable.TABLE_NAME + " WHERE " + CommandTable.QUEUE_TYPE + "='" + queueType.save() + "'";
-                DbUtils.execSQL(db, sql);
             }
-
-            if (!queue.isEmpty()) {
-                while (!queue.isEmpty() && count < 300) {
-                    CommandData cd = queue.poll();
-                    oneQueue.savedForegroundTasks |= cd.isInForeground();
-                    ContentValues values = new ContentValues();
-                    cd.toContentValues(values);
-                    values.put(CommandTable.QUEUE_TYPE, queueType.save());
-                    db.insert(CommandTable.TABLE_NAME, null, values);
-                    count++;
-                    if (MyLog.isVerboseEnabled() && (count < 6 || cd.getCommand() == CommandEnum.UPDATE_STATUS )) {
-                        MyLog.v(context, method + "; " + count + ": " + cd.toString());
-                    }
-                    if (MyContextHolder.get().isTestRun() && queue.contains(cd)) {
-                        MyLog.e(context, method + "; Duplicated command in a queue:" + count + " " + cd.toString());
-                    }
+            while (!queue.isEmpty()) {
+                CommandData cd = queue.poll();
+                if (cd == null) {
+                    break;
                 }
-                if (queue.isEmpty()) {
-                    MyLog.d(context, method + "; " + count + " saved");
-                } else {
-                    MyLog.e(context, method + "; " + count + " saved" +
-                            (queue.isEmpty() ? "" : ", " + queue.size() + " left"));
+                oneQueue.savedForegroundTasks |= cd.isInForeground();
+                ContentValues values = toContentValues(cd, queueType);
+                if (!values.equals(persisted.remove(cd.getCommandId()))) {
+                    db.replace(CommandTable.TABLE_NAME, null, values);
+                    countChanged++;
+                }
+                count++;
+                if (MyLog.isVerboseEnabled() && (count < 6 || cd.getCommand() == CommandEnum.UPDATE_STATUS )) {
+                    MyLog.v(context, method + "; " + count + ": " + cd.toString());
                 }
+                if (MyContextHolder.get().isTestRun() && queue.contains(cd)) {
+                    MyLog.e(context, method + "; Duplicated command in a queue:" + count + " " + cd.toString());
+                }
+            }
+            db.setTransactionSuccessful();
+            if (count > 0) {
+                MyLog.d(context, method + "; " + count + " saved, " + countChanged + " of them written");
             }
         } catch (Exception e) {
             String msgLog = method + "; " + count + " saved, " + queue.size() + " left.\n"
@@ -212,11 +231,30 @@ public class CommandQueue {
             } else {
                 throw new IllegalStateException(msgLog, e);
             }
+        } finally {
+            db.endTransaction();
         }
         oneQueue.savedCount += count;
         return count;
     }
 
+    private static ContentValues toContentValues(CommandData cd, QueueType queueType) {
+        ContentValues values = new ContentValues();
+        cd.toContentValues(values);
+        values.put(CommandTable.QUEUE_TYPE, queueType.save());
+        return values;
+    }
+
+    /** Deletes rows of the loaded commands, which are not in the queues anymore */
+    private int deleteRemovedCommands(SQLiteDatabase db) {
+        int count = 0;
+        for (Long commandId : persisted.keySet()) {
+            count += db.delete(CommandTable.TABLE_NAME, CommandTable._ID + "=" + commandId, null);
+        }
+        persisted.clear();
+        return count;
+    }
+
     public synchronized void clearQueuesInDatabase() {
         final String method = "clearQueuesInDatabase";
         try {
@@ -226,6 +264,7 @@ public class CommandQueue {
             }
             String sql = "DELETE FROM " + CommandTable.TABLE_NAME;
             DbUtils.execSQL(db, sql);
+            persisted.clear();
         } catch (Exception e) {
             String msgLog = method + MyContextHolder.getSystemInfo(context, true);
             MyLog.e(context, msgLog, e);
@@ -279,9 +318,8 @@ public class CommandQueue {
     }
 
     public void addToQueue(QueueType queueType, CommandData commandData) {
-        if (!get(queueType).contains(commandData)
-                && !get(queueType).offer(commandData)) {
-            MyLog.e(this, queueType.name() + " is full?");
+        if (!get(queueType).offer(commandData)) {
+            MyLog.v(this, "Already in " + queueType.name() + ": " + commandData);
         }
     }
 }
@@ -23,6 +23,7 @@ import org.andstatus.app.data.DownloadData;
 import org.andstatus.app.data.DownloadFile;
 import org.andstatus.app.data.DownloadStatus;
 import org.andstatus.app.net.http.ConnectionException;
+import org.andstatus.app.net.http.HttpReadResult;
 import org.andstatus.app.net.social.Connection;
 import org.andstatus.app.util.MyLog;
 import org.andstatus.app.util.UriUtils;
@@ -49,6 +50,9 @@ public abstract class FileDownloader {
     void load(CommandData commandData) {
         switch (data.getStatus()) {
             case LOADED:
+                // Revalidate: the file will be downloaded again only if it was modified
+                loadUrl();
+                break;
             case HARD_ERROR:
                 break;
             default:
@@ -83,13 +87,23 @@ public abstract class FileDownloader {
     private void downloadFile() {
         final String method = "downloadFile";
         DownloadFile fileTemp = new DownloadFile("temp_" + data.getFilenameNew());
+        boolean notModified = false;
         try {
             String uriString = data.getUri().toString();
             File file = fileTemp.getFile();
             MyAccount ma = findBestAccountForDownload();
             MyLog.v(this, "About to download " + data.toString() + "; account:" + ma.getAccountName());
             if (ma.isValidAndSucceeded()) {
-                ((connectionMock != null) ? connectionMock : getConnection(ma, data.getUri())).downloadFile(uriString, file);
+                Connection connection = (connectionMock != null) ? connectionMock : getConnection(ma, data.getUri());
+                if (UriUtils.isDownloadable(data.getUri())) {
+                    HttpReadResult result = new HttpReadResult(uriString, file)
+                            .setValidators(data.getETagToRevalidate(), data.getLastModifiedToRevalidate());
+                    connection.downloadFile(result);
+                    data.onDownloaded(result.isNotModified(), result.getETag(), result.getLastModified());
+                    notModified = result.isNotModified();
+                } else {
+                    connection.downloadFile(uriString, file);
+                }
             } else {
                 data.hardErrorLogged(method + ", No account to download the file", null);
             }
@@ -100,9 +114,13 @@ public abstract class FileDownloader {
                 data.softErrorLogged(method, e);
             }
         }
-        if (data.isError()) {
+        if (data.isError() || notModified) {
             fileTemp.delete();
         }
+        if (notModified) {
+            MyLog.v(this, "Not modified " + data.toString());
+            return;
+        }
         DownloadFile fileNew = new DownloadFile(data.getFilenameNew());
         fileNew.delete();
         if (!data.isError() && !fileTemp.getFile().renameTo(fileNew.getFile())) {
@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.service;
+
+import android.support.annotation.NonNull;
+
+import org.andstatus.app.util.LongSet;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+
+/**
+ * Thread safe queue of commands without duplicates, see {@link CommandData#equals(Object)}.
+ * The commands are indexed by their identity, so {@link #contains(Object)} and {@link #find(CommandData)}
+ * don't scan the queue, and {@link #remove(Object)} takes O(log n).
+ * Foreground and background commands are kept in separate lanes, so the foreground ones may be polled
+ * without touching the background ones.
+ * Commands of Origins, which reached their limit of executors, may be skipped while polling
+ * without taking them out of the queue.
+ * A queue for execution is ordered by command priority; a queue for retrying - by the time
+ * of the last execution, so the commands, which may be retried already, are at its head.
+ * @author yvolk@yurivolkov.com
+ */
+public class IndexedCommandQueue extends AbstractQueue<CommandData> {
+
+    private static class Node {
+        final CommandData commandData;
+        /** Order and lanes of the commands shouldn't change, while they are in the queue */
+        final long executedAt;
+        final boolean inForeground;
+        final long originId;
+
+        Node(CommandData commandData) {
+            this.commandData = commandData;
+            executedAt = commandData.getResult().getLastExecutedDate();
+            inForeground = commandData.isInForeground();
+            originId = commandData.getTimeline().getOrigin().getId();
+        }
+    }
+
+    private static final Comparator<Node> BY_PRIORITY = new Comparator<Node>() {
+        @Override
+        public int compare(Node lhs, Node rhs) {
+            return lhs.commandData.compareTo(rhs.commandData);
+        }
+    };
+
+    private static final Comparator<Node> BY_EXECUTED_AT = new Comparator<Node>() {
+        @Override
+        public int compare(Node lhs, Node rhs) {
+            if (lhs.executedAt != rhs.executedAt) {
+                return lhs.executedAt < rhs.executedAt ? -1 : 1;
+            }
+            return lhs.commandData.compareTo(rhs.commandData);
+        }
+    };
+
+    private final Comparator<Node> comparator;
+    private final TreeSet<Node> foreground;
+    private final TreeSet<Node> background;
+    private final Map<CommandData, Node> index = new HashMap<>();
+
+    private IndexedCommandQueue(Comparator<Node> comparator) {
+        this.comparator = comparator;
+        foreground = new TreeSet<>(comparator);
+        background = new TreeSet<>(comparator);
+    }
+
+    @NonNull
+    public static IndexedCommandQueue forExecution() {
+        return new IndexedCommandQueue(BY_PRIORITY);
+    }
+
+    @NonNull
+    public static IndexedCommandQueue forRetry() {
+        return new IndexedCommandQueue(BY_EXECUTED_AT);
+    }
+
+    /** @return false if an equal command is in the queue already */
+    @Override
+    public synchronized boolean offer(CommandData commandData) {
+        if (commandData == null) {
+            throw new NullPointerException();
+        }
+        if (index.containsKey(commandData)) {
+            return false;
+        }
+        Node node = new Node(commandData);
+        if (!laneOf(node).add(node)) {
+            return false;
+        }
+        index.put(commandData, node);
+        return true;
+    }
+
+    private TreeSet<Node> laneOf(Node node) {
+        return node.inForeground ? foreground : background;
+    }
+
+    @Override
+    public synchronized CommandData poll() {
+        return poll(false);
+    }
+
+    /** @param foregroundOnly if true, background commands are left in the queue */
+    public synchronized CommandData poll(boolean foregroundOnly) {
+        Node node = peekNode(foregroundOnly);
+        if (node == null) {
+            return null;
+        }
+        removeNode(node);
+        return node.commandData;
+    }
+
+    /**
+     * Polls the first command, which is not of the excluded Origins. Skipped commands stay in their places,
+     * so the scan stops at the first eligible command and nothing is reinserted.
+     * @param foregroundOnly if true, background commands are left in the queue
+     */
+    public synchronized CommandData poll(boolean foregroundOnly, @NonNull LongSet excludedOriginIds) {
+        if (excludedOriginIds.isEmpty()) {
+            return poll(foregroundOnly);
+        }
+        Iterator<Node> itForeground = foreground.iterator();
+        Iterator<Node> itBackground = foregroundOnly ? null : background.iterator();
+        Node nodeForeground = nextEligible(itForeground, excludedOriginIds);
+        Node nodeBackground = nextEligible(itBackground, excludedOriginIds);
+        Node node = nodeBackground == null
+                || (nodeForeground != null && comparator.compare(nodeForeground, nodeBackground) <= 0)
+                ? nodeForeground : nodeBackground;
+        if (node == null) {
+            return null;
+        }
+        removeNode(node);
+        return node.commandData;
+    }
+
+    private static Node nextEligible(Iterator<Node> iterator, LongSet excludedOriginIds) {
+        if (iterator != null) {
+            while (iterator.hasNext()) {
+                Node node = iterator.next();
+                if (!excludedOriginIds.contains(node.originId)) {
+                    return node;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized CommandData peek() {
+        Node node = peekNode(false);
+        return node == null ? null : node.commandData;
+    }
+
+    private Node peekNode(boolean foregroundOnly) {
+        Node first = foreground.isEmpty() ? null : foreground.first();
+        if (foregroundOnly || background.isEmpty()) {
+            return first;
+        }
+        Node firstBackground = background.first();
+        return first == null || comparator.compare(firstBackground, first) < 0 ? firstBackground : first;
+    }
+
+    /** @return the command of the queue, which is equal to the argument, or null */
+    public synchronized CommandData find(CommandData commandData) {
+        Node node = index.get(commandData);
+        return node == null ? null : node.commandData;
+    }
+
+    @Override
+    public synchronized boolean contains(Object o) {
+        return index.containsKey(o);
+    }
+
+    @Override
+    public synchronized boolean remove(Object o) {
+        Node node = index.get(o);
+        if (node == null) {
+            return false;
+        }
+        removeNode(node);
+        return true;
+    }
+
+    private void removeNode(Node node) {
+        index.remove(node.commandData);
+        laneOf(node).remove(node);
+    }
+
+    public synchronized boolean hasForeground() {
+        return !foreground.isEmpty();
+    }
+
+    @Override
+    public synchronized int size() {
+        return index.size();
+    }
+
+    @Override
+    public synchronized void clear() {
+        foreground.clear();
+        background.clear();
+        index.clear();
+    }
+
+    /** Iterates over a snapshot of the queue, in the order of polling */
+    @Override
+    @NonNull
+    public Iterator<CommandData> iterator() {
+        final List<CommandData> snapshot = toList();
+        return new Iterator<CommandData>() {
+            private int ind = 0;
+            private CommandData last = null;
+
+            @Override
+            public boolean hasNext() {
+                return ind < snapshot.size();
+            }
+
+            @Override
+            public CommandData next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                last = snapshot.get(ind++);
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                IndexedCommandQueue.this.remove(last);
+                last = null;
+            }
+        };
+    }
+
+    private synchronized List<CommandData> toList() {
+        List<CommandData> list = new ArrayList<>(index.size());
+        Iterator<Node> itForeground = foreground.iterator();
+        Iterator<Node> itBackground = background.iterator();
+        Node nodeForeground = itForeground.hasNext() ? itForeground.next() : null;
+        Node nodeBackground = itBackground.hasNext() ? itBackground.next() : null;
+        while (nodeForeground != null || nodeBackground != null) {
+            if (nodeBackground == null
+                    || (nodeForeground != null && comparator.compare(nodeForeground, nodeBackground) <= 0)) {
+                list.add(nodeForeground.commandData);
+                nodeForeground = itForeground.hasNext() ? itForeground.next() : null;
+            } else {
+                list.add(nodeBackground.commandData);
+                nodeBackground = itBackground.hasNext() ? itBackground.next() : null;
+            }
+        }
+        return list;
+    }
+}
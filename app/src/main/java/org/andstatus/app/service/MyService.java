@@ -23,6 +23,7 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.os.IBinder;
 import android.os.PowerManager;
+import android.support.annotation.NonNull;
 
 import net.jcip.annotations.GuardedBy;
 
@@ -36,16 +37,20 @@ import org.andstatus.app.notification.CommandsQueueNotifier;
 import org.andstatus.app.os.AsyncTaskLauncher;
 import org.andstatus.app.os.MyAsyncTask;
 import org.andstatus.app.timeline.TimelineType;
+import org.andstatus.app.util.LongSet;
 import org.andstatus.app.util.MyLog;
 import org.andstatus.app.util.RelativeTime;
 import org.andstatus.app.util.SharedPreferencesUtil;
 import org.andstatus.app.util.TriState;
 
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Queue;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -72,9 +77,16 @@ public class MyService extends Service {
     @GuardedBy("serviceStateLock")
     private int mLatestProcessedStartId = 0;
     
+    /** One thread of the {@link MyAsyncTask.PoolEnum#SYNC} pool is reserved for the {@link HeartBeat} */
+    private static final int MAX_EXECUTORS = 3;
+    /** Don't overload one Social network, while other Social networks are waiting */
+    private static final int MAX_EXECUTORS_PER_ORIGIN = 2;
     private final Object executorLock = new Object();
     @GuardedBy("executorLock")
-    private QueueExecutor mExecutor = null;
+    private final List<QueueExecutor> mExecutors = new ArrayList<>();
+    private final AtomicLong executorsCounter = new AtomicLong();
+    /** Queues are saved by the last executor only */
+    private final AtomicInteger executorsInBackground = new AtomicInteger();
 
     private final Object heartBeatLock = new Object();
     @GuardedBy("heartBeatLock")
@@ -209,8 +221,7 @@ public class MyService extends Service {
             commandData.getResult().prepareForLaunch();
             MyLog.v(this, "Adding to Main queue " + commandData);
             if (!queues.get(QueueType.CURRENT).offer(commandData)) {
-                MyLog.e(this, "Couldn't add to the main queue, size=" + queues.get(QueueType.CURRENT).size());
-                return commandData;
+                MyLog.v(this, "Didn't add to Main queue. Added concurrently " + commandData);
             }
         }
 
@@ -268,7 +279,7 @@ public class MyService extends Service {
                 startExecution();
                 break;
             default:
-                MyLog.v(this, "Didn't change execution " + mExecutor);
+                MyLog.v(this, "Didn't change execution " + executorsToString());
                 break;
         }
     }
@@ -363,25 +374,27 @@ public class MyService extends Service {
         final String method = "ensureExecutorStarted";
         StringBuilder logMessageBuilder = new StringBuilder();
         synchronized(executorLock) {
-            if ( mExecutor != null && mExecutor.completedBackgroundWork()) {
-                logMessageBuilder.append(" Removing completed Executor " + mExecutor);
-                removeExecutor(logMessageBuilder);
-            }
-            if ( mExecutor != null && !isExecutorReallyWorkingNow()) {
-                logMessageBuilder.append(" Cancelling stalled Executor " + mExecutor);
-                removeExecutor(logMessageBuilder);
-            }
-            if (mExecutor != null) {
-                logMessageBuilder.append(" There is an Executor already " + mExecutor);
-            } else {
-                // For now let's have only ONE working thread 
-                // (it seems there is some problem in parallel execution...)
-                QueueExecutor newExecutor = new QueueExecutor();
+            for (QueueExecutor executor : new ArrayList<>(mExecutors)) {
+                if (executor.completedBackgroundWork()) {
+                    logMessageBuilder.append(" Removing completed Executor " + executor);
+                    removeExecutor(executor, logMessageBuilder);
+                } else if (!executor.isReallyWorking()) {
+                    logMessageBuilder.append(" Cancelling stalled Executor " + executor);
+                    removeExecutor(executor, logMessageBuilder);
+                }
+            }
+            int executorsNeeded = Math.min(MAX_EXECUTORS, Math.max(1, queues.totalSizeToExecute()));
+            if (mExecutors.size() >= executorsNeeded) {
+                logMessageBuilder.append(" There are " + mExecutors.size() + " Executors already");
+            }
+            while (mExecutors.size() < executorsNeeded) {
+                QueueExecutor newExecutor = new QueueExecutor(executorsCounter.incrementAndGet());
                 logMessageBuilder.append(" Adding and starting new Executor " + newExecutor);
                 if (AsyncTaskLauncher.execute(this, false, newExecutor)) {
-                    mExecutor = newExecutor;
+                    mExecutors.add(newExecutor);
                 } else {
                     logMessageBuilder.append(" New executor was not added");
+                    break;
                 }
             }
         }
@@ -390,17 +403,23 @@ public class MyService extends Service {
         }
     }
     
-    private void removeExecutor(StringBuilder logMessageBuilder) {
+    private void removeExecutor(QueueExecutor executor, StringBuilder logMessageBuilder) {
         synchronized(executorLock) {
-            if (mExecutor == null) {
+            if (!mExecutors.contains(executor)) {
                 return;
             }
-            if (mExecutor.needsBackgroundWork()) {
+            if (executor.needsBackgroundWork()) {
                 logMessageBuilder.append(" Cancelling and");
-                mExecutor.cancelLogged(true);
+                executor.cancelLogged(true);
             }
-            logMessageBuilder.append(" Removing Executor " + mExecutor);
-            mExecutor = null;
+            logMessageBuilder.append(" Removing Executor " + executor);
+            mExecutors.remove(executor);
+        }
+    }
+
+    private String executorsToString() {
+        synchronized(executorLock) {
+            return mExecutors.isEmpty() ? "No executors" : mExecutors.toString();
         }
     }
 
@@ -430,8 +449,13 @@ public class MyService extends Service {
     
     private boolean isExecutorReallyWorkingNow() {
         synchronized(executorLock) {
-          return mExecutor != null && mExecutor.isReallyWorking();
-        }        
+            for (QueueExecutor executor : mExecutors) {
+                if (executor.isReallyWorking()) {
+                    return true;
+                }
+            }
+            return false;
+        }
     }
     
     @Override
@@ -504,16 +528,21 @@ public class MyService extends Service {
         StringBuilder logMessageBuilder = new StringBuilder();
         boolean could = true;
         synchronized(executorLock) {
-            if (mExecutor != null && mExecutor.needsBackgroundWork() && mExecutor.isReallyWorking() ) {
-                if (forceNow) {
-                    logMessageBuilder.append(" Cancelling working Executor;");
-                } else {
-                    logMessageBuilder.append(" Cannot stop now Executor " + mExecutor);
-                    could = false;
+            for (QueueExecutor executor : mExecutors) {
+                if (executor.needsBackgroundWork() && executor.isReallyWorking() ) {
+                    if (forceNow) {
+                        logMessageBuilder.append(" Cancelling working Executor;");
+                    } else {
+                        logMessageBuilder.append(" Cannot stop now Executor " + executor);
+                        could = false;
+                        break;
+                    }
                 }
             }
             if (could) {
-                removeExecutor(logMessageBuilder);
+                for (QueueExecutor executor : new ArrayList<>(mExecutors)) {
+                    removeExecutor(executor, logMessageBuilder);
+                }
             }
         }
         if (logMessageBuilder.length() > 0) {
@@ -532,16 +561,53 @@ public class MyService extends Service {
         }
     }
     
+    /**
+     * Commands without an Origin (e.g. of the whole application) are not limited
+     * @return ids of the Origins, which have at least maxPerOrigin executing commands
+     */
+    @NonNull
+    static LongSet getOriginsAtLimit(List<CommandData> executing, int maxPerOrigin) {
+        LongSet originsAtLimit = new LongSet();
+        Map<Long, Integer> counts = new HashMap<>();
+        for (CommandData commandData : executing) {
+            long originId = commandData.getTimeline().getOrigin().getId();
+            if (originId == 0) {
+                continue;
+            }
+            Integer count = counts.get(originId);
+            count = count == null ? 1 : count + 1;
+            counts.put(originId, count);
+            if (count >= maxPerOrigin) {
+                originsAtLimit.add(originId);
+            }
+        }
+        return originsAtLimit;
+    }
+
     private class QueueExecutor extends MyAsyncTask<Void, Void, Boolean> implements CommandExecutorParent {
         private volatile CommandData currentlyExecuting = null;
         private static final long MAX_EXECUTION_TIME_SECONDS = 60;
 
-        QueueExecutor() {
-            super(PoolEnum.SYNC);
+        QueueExecutor(long executorNumber) {
+            super("QueueExecutor" + executorNumber, PoolEnum.SYNC);
         }
 
         @Override
         protected Boolean doInBackground2(Void... arg0) {
+            executorsInBackground.incrementAndGet();
+            try {
+                executeQueue();
+            } finally {
+                currentlyExecuting = null;
+                // The last executor saves the queues, even if some command failed unexpectedly
+                if (executorsInBackground.decrementAndGet() == 0) {
+                    queues.save();
+                }
+            }
+            return true;
+        }
+
+        private void executeQueue() {
             queues.load();
             MyLog.d(this, "Started, " + queues.get(QueueType.CURRENT).size() + " commands to process");
             String breakReason = "";
@@ -558,15 +624,16 @@ public class MyService extends Service {
                     breakReason = "Executed too long";
                     break;
                 }
+                CommandData commandData;
                 synchronized (executorLock) {
-                    if (mExecutor != this) {
-                        breakReason = "Other executor";
+                    if (!mExecutors.contains(this)) {
+                        breakReason = "Removed executor";
                         break;
                     }
+                    commandData = pollQueue();
+                    currentlyExecuting = commandData;
+                    currentlyExecutingSince = System.currentTimeMillis();
                 }
-                CommandData commandData = pollQueue();
-                currentlyExecuting = commandData;
-                currentlyExecutingSince = System.currentTimeMillis();
                 if (commandData == null) {
                     breakReason = "No more commands";
                     break;
@@ -593,19 +660,23 @@ public class MyService extends Service {
                 addSyncOfThisToQueue(commandData);
             } while (true);
             MyLog.d(this, "Ended, " + breakReason + ", " + queues.totalSizeToExecute() + " commands left");
-            queues.save();
-            return true;
         }
 
+        /** Executors poll the queues one at a time, so per Origin limits are checked consistently */
+        @GuardedBy("executorLock")
         private CommandData pollQueue() {
-            Queue<CommandData> tempQueue = new PriorityBlockingQueue<>(queues.get(QueueType.CURRENT).size()+1);
             CommandData commandData;
+            if (isAnythingToRetryNow()) {
+                // Retried commands compete with new ones by priority instead of waiting for the Main queue to drain
+                moveCommandsFromRetryToMainQueue();
+            }
+            // Background commands simply stay in their lane of the queue
+            boolean foregroundOnly = myContext.isInForeground()
+                    && !MyPreferences.isSyncWhileUsingApplicationEnabled();
+            // Commands of these Origins are skipped and stay in the queue
+            LongSet originsAtLimit = getOriginsAtLimit(getExecutingByOthers(), MAX_EXECUTORS_PER_ORIGIN);
             do {
-                commandData = queues.get(QueueType.CURRENT).poll();
-                if (commandData == null && isAnythingToRetryNow()) {
-                    moveCommandsFromRetryToMainQueue();
-                    commandData = queues.get(QueueType.CURRENT).poll();
-                }
+                commandData = queues.get(QueueType.CURRENT).poll(foregroundOnly, originsAtLimit);
                 if (commandData == null) {
                     break;
                 }
@@ -613,21 +684,7 @@ public class MyService extends Service {
                 if (commandData != null) {
                     commandData = findInErrorQueue(commandData);
                 }
-                if (commandData != null && !commandData.isInForeground()
-                        && myContext.isInForeground()
-                        && !MyPreferences.isSyncWhileUsingApplicationEnabled()) {
-                    tempQueue.add(commandData);
-                    commandData = null;
-                }
             } while (commandData == null);
-            while (!tempQueue.isEmpty()) {
-                CommandData cd = tempQueue.poll();
-                if (!queues.get(QueueType.CURRENT).add(cd)) {
-                    MyLog.e(this, "Couldn't return to main Queue, size=" + queues.get(QueueType.CURRENT).size()
-                            + " command=" + cd);
-                    break;
-                }
-            }
             MyLog.v(this, "Polled in "
                     + (myContext.isInForeground() ? "foreground"
                             + " "
@@ -641,12 +698,27 @@ public class MyService extends Service {
             return commandData;
         }
 
+        @GuardedBy("executorLock")
+        private List<CommandData> getExecutingByOthers() {
+            List<CommandData> executing = new ArrayList<>();
+            for (QueueExecutor executor : mExecutors) {
+                CommandData commandData = executor.currentlyExecuting;
+                if (executor != this && commandData != null) {
+                    executing.add(commandData);
+                }
+            }
+            return executing;
+        }
+
         private static final long MIN_RETRY_PERIOD_SECONDS = 900; 
+        /** The Retry queue is ordered by the time of execution, so only its head is checked */
         private void moveCommandsFromRetryToMainQueue() {
-            for (CommandData cd : queues.get(QueueType.RETRY)) {
-                if (cd.executedMoreSecondsAgoThan(MIN_RETRY_PERIOD_SECONDS)) {
+            IndexedCommandQueue retryQueue = queues.get(QueueType.RETRY);
+            for (CommandData cd = retryQueue.peek();
+                 cd != null && cd.executedMoreSecondsAgoThan(MIN_RETRY_PERIOD_SECONDS);
+                 cd = retryQueue.peek()) {
+                if (retryQueue.remove(cd)) {
                     addToMainQueue(cd);
-                    queues.get(QueueType.RETRY).remove(cd);
                     MyLog.v(this, "Moved from Retry to Main queue: " + cd);
                 }
             }
@@ -655,20 +727,16 @@ public class MyService extends Service {
         
         private CommandData findInRetryQueue(CommandData cdIn) {
             CommandData cdOut = cdIn;
-            if (queues.get(QueueType.RETRY).contains(cdIn)) {
-                for (CommandData cd : queues.get(QueueType.RETRY)) {
-                    if (cd.equals(cdIn)) {
-                        cd.resetRetries();
-                        if (cdIn.isManuallyLaunched() || cd.executedMoreSecondsAgoThan(MIN_RETRY_PERIOD_SECONDS)) {
-                            cdOut = cd;
-                            queues.get(QueueType.RETRY).remove(cd);
-                            MyLog.v(this, "Returned from Retry queue: " + cd);
-                        } else {
-                            cdOut = null;
-                            MyLog.v(this, "Found in Retry queue: " + cd);
-                        }
-                        break;
-                    }
+            CommandData cd = queues.get(QueueType.RETRY).find(cdIn);
+            if (cd != null) {
+                cd.resetRetries();
+                if (cdIn.isManuallyLaunched() || cd.executedMoreSecondsAgoThan(MIN_RETRY_PERIOD_SECONDS)) {
+                    cdOut = cd;
+                    queues.get(QueueType.RETRY).remove(cd);
+                    MyLog.v(this, "Returned from Retry queue: " + cd);
+                } else {
+                    cdOut = null;
+                    MyLog.v(this, "Found in Retry queue: " + cd);
                 }
             }
             return cdOut;
@@ -677,26 +745,24 @@ public class MyService extends Service {
         private static final long MAX_DAYS_IN_ERROR_QUEUE = 10; 
         private CommandData findInErrorQueue(CommandData cdIn) {
             CommandData cdOut = cdIn;
-            if (queues.get(QueueType.ERROR).contains(cdIn)) {
-                for (CommandData cd : queues.get(QueueType.ERROR)) {
-                    if (cd.equals(cdIn)) {
-                        cd.resetRetries();
-                        if (cdIn.isManuallyLaunched() || cd.executedMoreSecondsAgoThan(MIN_RETRY_PERIOD_SECONDS)) {
-                            cdOut = cd;
-                            queues.get(QueueType.ERROR).remove(cd);
-                            MyLog.v(this, "Returned from Error queue: " + cd);
-                        } else {
-                            cdOut = null;
-                            MyLog.v(this, "Found in Error queue: " + cd);
-                        }
-                    } else {
-                        if (cd.executedMoreSecondsAgoThan(TimeUnit.DAYS.toSeconds(MAX_DAYS_IN_ERROR_QUEUE))) {
-                            if (queues.get(QueueType.ERROR).remove(cd)) {
-                                MyLog.i(this, "Removed old from Error queue: " + cd);
-                            } else {
-                                MyLog.i(this, "Failed to Remove old from Error queue: " + cd);
-                            }
-                        }
+            IndexedCommandQueue errorQueue = queues.get(QueueType.ERROR);
+            CommandData cd = errorQueue.find(cdIn);
+            if (cd != null) {
+                cd.resetRetries();
+                if (cdIn.isManuallyLaunched() || cd.executedMoreSecondsAgoThan(MIN_RETRY_PERIOD_SECONDS)) {
+                    cdOut = cd;
+                    errorQueue.remove(cd);
+                    MyLog.v(this, "Returned from Error queue: " + cd);
+                } else {
+                    cdOut = null;
+                    MyLog.v(this, "Found in Error queue: " + cd);
+                }
+                // The Error queue is ordered by the time of execution, so the old commands are at its head
+                for (CommandData cdOld = errorQueue.peek();
+                     cdOld != null && cdOld.executedMoreSecondsAgoThan(TimeUnit.DAYS.toSeconds(MAX_DAYS_IN_ERROR_QUEUE));
+                     cdOld = errorQueue.peek()) {
+                    if (errorQueue.remove(cdOld)) {
+                        MyLog.i(this, "Removed old from Error queue: " + cdOld);
                     }
                 }
             }
@@ -99,8 +99,8 @@ class TimelineDownloaderOther extends TimelineDownloader {
                 for (MbActivity activity : activities) {
                     toDownload--;
                     syncTracker.onNewMsg(activity.getTimelinePosition(), activity.getTimelineDate());
-                    di.onActivity(activity, false);
                 }
+                di.onActivities(activities);
                 if (toDownload <= 0 || activities.isEmpty() || previousPosition.equals(syncTracker.getPreviousPosition())) {
                     break;
                 }
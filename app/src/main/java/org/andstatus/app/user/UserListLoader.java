@@ -12,11 +12,12 @@ import org.andstatus.app.SyncLoader;
 import org.andstatus.app.account.MyAccount;
 import org.andstatus.app.context.MyContextHolder;
 import org.andstatus.app.context.MyPreferences;
-import org.andstatus.app.data.AvatarFile;
+import org.andstatus.app.data.CursorRow;
 import org.andstatus.app.data.DbUtils;
 import org.andstatus.app.data.MatchedUri;
 import org.andstatus.app.data.MyQuery;
 import org.andstatus.app.data.SqlWhere;
+import org.andstatus.app.data.UserCache;
 import org.andstatus.app.data.UserListSql;
 import org.andstatus.app.database.UserTable;
 import org.andstatus.app.net.social.MbUser;
@@ -103,8 +104,9 @@ public class UserListLoader extends SyncLoader<UserListViewItem> {
         try {
             c = MyContextHolder.get().context().getContentResolver()
                     .query(mContentUri, UserListSql.getListProjection(), getSelection(), null, null);
+            CursorRow row = c == null ? null : new CursorRow(c);
             while ( c != null && c.moveToNext()) {
-                populateItem(c);
+                populateItem(row);
             }
         } finally {
             DbUtils.closeSilently(c);
@@ -124,36 +126,35 @@ public class UserListLoader extends SyncLoader<UserListViewItem> {
 
     }
 
-    private void populateItem(Cursor cursor) {
-        long userId = DbUtils.getLong(cursor, BaseColumns._ID);
+    private void populateItem(CursorRow row) {
+        long userId = row.getLong(BaseColumns._ID);
         UserListViewItem item = getById(userId);
         if (item == null) {
             Origin origin = MyContextHolder.get().persistentOrigins().fromId(
-                    DbUtils.getLong(cursor, UserTable.ORIGIN_ID));
+                    row.getLong(UserTable.ORIGIN_ID));
             item = addUserIdToList(origin, userId);
         }
         MbUser user = item.mbUser;
-        user.oid = DbUtils.getString(cursor, UserTable.USER_OID);
-        user.setUserName(DbUtils.getString(cursor, UserTable.USERNAME));
-        user.setWebFingerId(DbUtils.getString(cursor, UserTable.WEBFINGER_ID));
-        user.setRealName(DbUtils.getString(cursor, UserTable.REAL_NAME));
-        user.setDescription(DbUtils.getString(cursor, UserTable.DESCRIPTION));
-        user.location = DbUtils.getString(cursor, UserTable.LOCATION);
+        user.oid = row.getString(UserTable.USER_OID);
+        user.setUserName(row.getString(UserTable.USERNAME));
+        user.setWebFingerId(row.getString(UserTable.WEBFINGER_ID));
+        user.setRealName(row.getString(UserTable.REAL_NAME));
+        user.setDescription(row.getString(UserTable.DESCRIPTION));
+        user.location = row.getString(UserTable.LOCATION);
 
-        user.setProfileUrl(DbUtils.getString(cursor, UserTable.PROFILE_URL));
-        user.setHomepage(DbUtils.getString(cursor, UserTable.HOMEPAGE));
+        user.setProfileUrl(row.getString(UserTable.PROFILE_URL));
+        user.setHomepage(row.getString(UserTable.HOMEPAGE));
 
-        user.msgCount = DbUtils.getLong(cursor, UserTable.MSG_COUNT);
-        user.favoritesCount = DbUtils.getLong(cursor, UserTable.FAVORITES_COUNT);
-        user.followingCount = DbUtils.getLong(cursor, UserTable.FOLLOWING_COUNT);
-        user.followersCount = DbUtils.getLong(cursor, UserTable.FOLLOWERS_COUNT);
+        user.msgCount = row.getLong(UserTable.MSG_COUNT);
+        user.favoritesCount = row.getLong(UserTable.FAVORITES_COUNT);
+        user.followingCount = row.getLong(UserTable.FOLLOWING_COUNT);
+        user.followersCount = row.getLong(UserTable.FOLLOWERS_COUNT);
 
-        user.setCreatedDate(DbUtils.getLong(cursor, UserTable.CREATED_DATE));
-        user.setUpdatedDate(DbUtils.getLong(cursor, UserTable.UPDATED_DATE));
+        user.setCreatedDate(row.getLong(UserTable.CREATED_DATE));
+        user.setUpdatedDate(row.getLong(UserTable.UPDATED_DATE));
 
         item.myFollowers = MyQuery.getMyFollowersOf(userId);
-        AvatarFile avatarFile = AvatarFile.fromCursor(item.getUserId(), cursor);
-        item.setAvatarFile(avatarFile);
+        item.setAvatarFile(UserCache.getAvatarFile(item.getUserId()));
 
         item.populated = true;
     }
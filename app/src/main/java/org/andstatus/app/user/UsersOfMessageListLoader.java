@@ -79,7 +79,7 @@ public class UsersOfMessageListLoader extends UserListLoader {
     }
 
     private void addRebloggers() {
-        for (long rebloggerId : MyQuery.getRebloggers(selectedMessageId)) {
+        for (long rebloggerId : MyQuery.getRebloggers(selectedMessageId).toArray()) {
             addUserIdToList(originOfSelectedMessage, rebloggerId);
         }
     }
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.util;
+
+import android.util.Log;
+
+import net.jcip.annotations.GuardedBy;
+
+import org.andstatus.app.data.DbUtils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes log lines to files in a background thread, so logging callers don't wait for disk I/O.
+ * The lines are queued without locking; when the queue is full, new lines are dropped and counted.
+ * The file is kept open and is flushed after {@link #FLUSH_AFTER_CHARS}, {@link #FLUSH_AFTER_MS}
+ * or after an error line.
+ * @author yvolk@yurivolkov.com
+ */
+class LogFileAppender {
+    private static final String TAG = LogFileAppender.class.getSimpleName();
+    static final int QUEUE_CAPACITY = 4096;
+    private static final int FLUSH_AFTER_CHARS = 8 * 1024;
+    private static final long FLUSH_AFTER_MS = 1000;
+
+    private static class Entry {
+        final int logLevel;
+        final String filename;
+        final String text;
+
+        Entry(int logLevel, String filename, String text) {
+            this.logLevel = logLevel;
+            this.filename = filename;
+            this.text = text;
+        }
+    }
+
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile Thread writerThread = null;
+
+    /** Package-private for tests, which need to hold the writer */
+    final Object writerLock = new Object();
+    @GuardedBy("writerLock")
+    private String openedFilename = null;
+    @GuardedBy("writerLock")
+    private File openedFile = null;
+    @GuardedBy("writerLock")
+    private Writer out = null;
+    @GuardedBy("writerLock")
+    private int charsNotFlushed = 0;
+    @GuardedBy("writerLock")
+    private long flushedAt = 0;
+
+    /** Doesn't block. The line is dropped, if the queue is full */
+    void append(int logLevel, String filename, String text) {
+        if (queueSize.incrementAndGet() > QUEUE_CAPACITY) {
+            queueSize.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        queue.add(new Entry(logLevel, filename, text));
+        Thread thread = getWriterThread();
+        if (logLevel >= Log.ERROR || queueSize.get() > QUEUE_CAPACITY / 2) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private Thread getWriterThread() {
+        Thread thread = writerThread;
+        if (thread == null) {
+            synchronized (this) {
+                thread = writerThread;
+                if (thread == null) {
+                    thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            writeInBackground();
+                        }
+                    }, TAG);
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    writerThread = thread;
+                    thread.start();
+                }
+            }
+        }
+        return thread;
+    }
+
+    private void writeInBackground() {
+        try {
+            while (true) {
+                synchronized (writerLock) {
+                    try {
+                        boolean error = drain();
+                        if (error || charsNotFlushed >= FLUSH_AFTER_CHARS
+                                || System.currentTimeMillis() - flushedAt >= FLUSH_AFTER_MS) {
+                            flush();
+                        }
+                    } catch (RuntimeException e) {
+                        // The writer continues with the next lines
+                        Log.w(TAG, "Failed to write log lines", e);
+                        closeFile();
+                    }
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(FLUSH_AFTER_MS));
+            }
+        } finally {
+            // E.g. after an Error the next append starts a new writer
+            synchronized (this) {
+                if (writerThread == Thread.currentThread()) {
+                    writerThread = null;
+                }
+            }
+        }
+    }
+
+    /** Writes queued lines and flushes the file in the calling thread */
+    void flushNow() {
+        synchronized (writerLock) {
+            drain();
+            flush();
+        }
+    }
+
+    /** Writes queued lines and closes the file */
+    void close() {
+        synchronized (writerLock) {
+            drain();
+            closeFile();
+        }
+    }
+
+    /** @return true if an error line was written */
+    @GuardedBy("writerLock")
+    private boolean drain() {
+        boolean error = false;
+        long droppedCount = dropped.getAndSet(0);
+        Entry entry;
+        while ((entry = queue.poll()) != null) {
+            queueSize.decrementAndGet();
+            if (droppedCount > 0) {
+                write(entry.filename, MyLog.currentDateTimeFormatted() + " W/" + TAG + ": "
+                        + droppedCount + " log lines were dropped\n");
+                droppedCount = 0;
+            }
+            write(entry.filename, entry.text);
+            if (entry.logLevel >= Log.ERROR) {
+                error = true;
+            }
+        }
+        if (droppedCount > 0) {
+            dropped.addAndGet(droppedCount);
+        }
+        return error;
+    }
+
+    @GuardedBy("writerLock")
+    private void write(String filename, String text) {
+        if (!filename.equals(openedFilename)) {
+            closeFile();
+            openFile(filename);
+        }
+        if (out == null) {
+            return;
+        }
+        try {
+            out.write(text);
+            charsNotFlushed += text.length();
+        } catch (IOException e) {
+            Log.d(TAG, "Failed to write to " + filename, e);
+            closeFile();
+        }
+    }
+
+    @GuardedBy("writerLock")
+    private void openFile(String filename) {
+        openedFilename = filename;
+        openedFile = MyLog.getFileInLogDir(filename, false);
+        if (openedFile == null) {
+            return;
+        }
+        try {
+            out = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(openedFile.getAbsolutePath(), true), "UTF-8"));
+        } catch (IOException e) {
+            Log.d(TAG, "Failed to open " + filename, e);
+            out = null;
+        }
+    }
+
+    @GuardedBy("writerLock")
+    private void flush() {
+        flushedAt = System.currentTimeMillis();
+        if (out == null) {
+            return;
+        }
+        try {
+            out.flush();
+            charsNotFlushed = 0;
+        } catch (IOException e) {
+            Log.d(TAG, "Failed to flush " + openedFilename, e);
+            closeFile();
+            return;
+        }
+        if (!openedFile.exists()) {
+            // The file was deleted while open, so we will continue in a new one
+            closeFile();
+        }
+    }
+
+    @GuardedBy("writerLock")
+    private void closeFile() {
+        DbUtils.closeSilently(out, openedFilename);
+        out = null;
+        openedFile = null;
+        openedFilename = null;
+        charsNotFlushed = 0;
+    }
+}
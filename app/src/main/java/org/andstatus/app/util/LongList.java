@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.util;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive longs (e.g. IDs), which doesn't box its elements
+ * @author yvolk@yurivolkov.com
+ */
+public class LongList {
+    private long[] values;
+    private int size = 0;
+
+    public LongList() {
+        this(10);
+    }
+
+    public LongList(int initialCapacity) {
+        values = new long[Math.max(initialCapacity, 1)];
+    }
+
+    public void add(long value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    public long get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index:" + index + ", size:" + size);
+        }
+        return values[index];
+    }
+
+    public boolean contains(long value) {
+        for (int ind = 0; ind < size; ind++) {
+            if (values[ind] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    @Override
+    public String toString() {
+        return "LongList" + Arrays.toString(toArray());
+    }
+}
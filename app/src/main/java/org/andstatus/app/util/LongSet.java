@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.util;
+
+import java.util.Arrays;
+
+/**
+ * Set of primitive longs (e.g. IDs), which doesn't box its elements,
+ * so {@link #contains(long)} doesn't allocate memory.
+ * Open addressing with linear probing. Not thread safe: publish a filled set and don't change it.
+ * @author yvolk@yurivolkov.com
+ */
+public class LongSet {
+    private static final long FREE = 0;
+    private static final int MIN_CAPACITY = 8;
+
+    /** Zero marks free slots, so the zero element is kept separately */
+    private long[] slots;
+    private boolean hasZero = false;
+    private int size = 0;
+
+    public LongSet() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongSet(int expectedSize) {
+        slots = new long[capacityFor(expectedSize)];
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        // Load factor is not more than 1/2
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /** @return true if the value was added, false if it was in the set already */
+    public boolean add(long value) {
+        if (value == FREE) {
+            if (hasZero) {
+                return false;
+            }
+            hasZero = true;
+            size++;
+            return true;
+        }
+        int index = indexOf(value);
+        if (slots[index] == value) {
+            return false;
+        }
+        slots[index] = value;
+        size++;
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == FREE) {
+            return hasZero;
+        }
+        return slots[indexOf(value)] == value;
+    }
+
+    /** @return true if the value was removed */
+    public boolean remove(long value) {
+        if (value == FREE) {
+            if (!hasZero) {
+                return false;
+            }
+            hasZero = false;
+            size--;
+            return true;
+        }
+        int index = indexOf(value);
+        if (slots[index] != value) {
+            return false;
+        }
+        slots[index] = FREE;
+        size--;
+        // Shift back the following elements of the cluster, so they can be found
+        int mask = slots.length - 1;
+        int free = index;
+        int next = (index + 1) & mask;
+        while (slots[next] != FREE) {
+            int home = hash(slots[next]) & mask;
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                slots[free] = slots[next];
+                slots[next] = FREE;
+                free = next;
+            }
+            next = (next + 1) & mask;
+        }
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(slots, FREE);
+        hasZero = false;
+        size = 0;
+    }
+
+    /** @return the elements in no particular order */
+    public long[] toArray() {
+        long[] values = new long[size];
+        int ind = 0;
+        if (hasZero) {
+            values[ind++] = FREE;
+        }
+        for (long slot : slots) {
+            if (slot != FREE) {
+                values[ind++] = slot;
+            }
+        }
+        return values;
+    }
+
+    /** @return the index of the value or of the free slot, where it should be */
+    private int indexOf(long value) {
+        int mask = slots.length - 1;
+        int index = hash(value) & mask;
+        while (slots[index] != FREE && slots[index] != value) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private static int hash(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldSlots = slots;
+        slots = new long[newCapacity];
+        for (long slot : oldSlots) {
+            if (slot != FREE) {
+                slots[indexOf(slot)] = slot;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LongSet" + Arrays.toString(toArray());
+    }
+}
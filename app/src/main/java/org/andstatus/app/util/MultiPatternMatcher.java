@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2017 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.util;
+
+import android.support.annotation.NonNull;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+/**
+ * Finds occurrences of many substrings in one pass over a text,
+ * see <a href="https://en.wikipedia.org/wiki/Aho%E2%80%93Corasick_algorithm">Aho–Corasick algorithm</a>.
+ * Immutable after construction, so it may be shared between threads.
+ * @author yvolk@yurivolkov.com
+ */
+public class MultiPatternMatcher {
+    private static final int ROOT = 0;
+    private static final int NO_NODE = -1;
+
+    private final int patternsCount;
+    /** Sorted characters of transitions from each node */
+    private final char[][] keys;
+    /** Child nodes, aligned with {@link #keys} */
+    private final int[][] children;
+    /** The node of the longest proper suffix, which is also a prefix of some pattern */
+    private final int[] fail;
+    /** Indexes of the patterns, which end at the node (directly or via {@link #fail} links) */
+    private final int[][] outputs;
+
+    /** @param patterns Non empty strings to search for */
+    public MultiPatternMatcher(@NonNull List<String> patterns) {
+        patternsCount = patterns.size();
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<List<Integer>> nodeOutputs = new ArrayList<>();
+        trie.add(new TreeMap<Character, Integer>());
+        nodeOutputs.add(new ArrayList<Integer>());
+        for (int patternIndex = 0; patternIndex < patterns.size(); patternIndex++) {
+            String pattern = patterns.get(patternIndex);
+            if (TextUtils.isEmpty(pattern)) {
+                continue;
+            }
+            int node = ROOT;
+            for (int ind = 0; ind < pattern.length(); ind++) {
+                Integer child = trie.get(node).get(pattern.charAt(ind));
+                if (child == null) {
+                    child = trie.size();
+                    trie.add(new TreeMap<Character, Integer>());
+                    nodeOutputs.add(new ArrayList<Integer>());
+                    trie.get(node).put(pattern.charAt(ind), child);
+                }
+                node = child;
+            }
+            nodeOutputs.get(node).add(patternIndex);
+        }
+
+        int nodesCount = trie.size();
+        keys = new char[nodesCount][];
+        children = new int[nodesCount][];
+        for (int node = 0; node < nodesCount; node++) {
+            TreeMap<Character, Integer> transitions = trie.get(node);
+            keys[node] = new char[transitions.size()];
+            children[node] = new int[transitions.size()];
+            int ind = 0;
+            for (Map.Entry<Character, Integer> entry : transitions.entrySet()) {
+                keys[node][ind] = entry.getKey();
+                children[node][ind] = entry.getValue();
+                ind++;
+            }
+        }
+
+        fail = new int[nodesCount];
+        Queue<Integer> queue = new LinkedList<>();
+        for (int child : children[ROOT]) {
+            fail[child] = ROOT;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int ind = 0; ind < keys[node].length; ind++) {
+                char c = keys[node][ind];
+                int child = children[node][ind];
+                queue.add(child);
+                int state = fail[node];
+                while (childOf(state, c) == NO_NODE && state != ROOT) {
+                    state = fail[state];
+                }
+                int target = childOf(state, c);
+                fail[child] = target == NO_NODE ? ROOT : target;
+                nodeOutputs.get(child).addAll(nodeOutputs.get(fail[child]));
+            }
+        }
+
+        outputs = new int[nodesCount][];
+        for (int node = 0; node < nodesCount; node++) {
+            List<Integer> list = nodeOutputs.get(node);
+            outputs[node] = new int[list.size()];
+            for (int ind = 0; ind < list.size(); ind++) {
+                outputs[node][ind] = list.get(ind);
+            }
+        }
+    }
+
+    private int childOf(int node, char c) {
+        char[] nodeKeys = keys[node];
+        int low = 0;
+        int high = nodeKeys.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (nodeKeys[mid] < c) {
+                low = mid + 1;
+            } else if (nodeKeys[mid] > c) {
+                high = mid - 1;
+            } else {
+                return children[node][mid];
+            }
+        }
+        return NO_NODE;
+    }
+
+    private int nextState(int state, char c) {
+        int current = state;
+        int next;
+        while ((next = childOf(current, c)) == NO_NODE && current != ROOT) {
+            current = fail[current];
+        }
+        return next == NO_NODE ? ROOT : next;
+    }
+
+    public boolean isEmpty() {
+        return patternsCount == 0;
+    }
+
+    /** @return true if the text contains any of the patterns */
+    public boolean matchesAny(String text) {
+        if (isEmpty() || TextUtils.isEmpty(text)) {
+            return false;
+        }
+        int state = ROOT;
+        for (int ind = 0; ind < text.length(); ind++) {
+            state = nextState(state, text.charAt(ind));
+            if (outputs[state].length > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** @return true if the text contains each of the patterns */
+    public boolean matchesAll(String text) {
+        if (isEmpty() || TextUtils.isEmpty(text)) {
+            return false;
+        }
+        boolean[] found = new boolean[patternsCount];
+        int foundCount = 0;
+        int state = ROOT;
+        for (int ind = 0; ind < text.length(); ind++) {
+            state = nextState(state, text.charAt(ind));
+            for (int patternIndex : outputs[state]) {
+                if (!found[patternIndex]) {
+                    found[patternIndex] = true;
+                    foundCount++;
+                    if (foundCount == patternsCount) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
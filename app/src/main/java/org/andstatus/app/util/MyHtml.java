@@ -28,6 +28,12 @@ import org.apache.commons.lang3.text.translate.EntityArrays;
 import org.apache.commons.lang3.text.translate.LookupTranslator;
 import org.apache.commons.lang3.text.translate.NumericEntityUnescaper;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
 public class MyHtml {
     // See http://docs.oracle.com/javase/6/docs/api/java/util/regex/Pattern.html
     private static final String GNU_SOCIAL_FAVORITED_SOMETHING_BY_REGEX = "(?s)([^ ]+) favorited something by [^ ]+ (.+)";
@@ -60,9 +66,171 @@ public class MyHtml {
         return Html.toHtml(spannable);
     }
 
+    /**
+     * The same result as {@link #normalizeWordsForSearch(String)} of {@link #fromHtml(String)} in lower case,
+     * but markup stripping, entities decoding and splitting into words are done
+     * in one pass over the body
+     */
     @NonNull
     public static String getBodyToSearch(String body) {
-        return normalizeWordsForSearch(fromHtml(body)).toLowerCase();
+        if (TextUtils.isEmpty(body)) {
+            return "";
+        }
+        StringBuilder out = SEARCH_BUFFER.get();
+        out.setLength(0);
+        out.append(',');
+        boolean hasMarkup = hasHtmlMarkup(body);
+        int wordStart = out.length();
+        boolean hasText = false;
+        int ind = 0;
+        while (ind < body.length()) {
+            char c = body.charAt(ind);
+            if (hasMarkup && c == '<') {
+                int tagEnd = tagEnd(body, ind);
+                if (tagEnd > ind) {
+                    if (isWordSeparatingTag(body, ind, tagEnd)) {
+                        wordStart = endOfWordForSearch(out, wordStart);
+                    }
+                    ind = tagEnd + 1;
+                    continue;
+                }
+            }
+            if (c == '&') {
+                int entityEnd = body.indexOf(';', ind);
+                if (entityEnd > ind + 1 && entityEnd - ind <= MAX_ENTITY_LENGTH) {
+                    String decoded = decodeEntity(body.substring(ind, entityEnd + 1));
+                    if (decoded != null) {
+                        hasText = true;
+                        for (int ind2 = 0; ind2 < decoded.length(); ind2++) {
+                            wordStart = appendForSearch(out, wordStart, decoded.charAt(ind2));
+                        }
+                        ind = entityEnd + 1;
+                        continue;
+                    }
+                }
+            }
+            hasText |= c > ' ';
+            wordStart = appendForSearch(out, wordStart, c);
+            ind++;
+        }
+        endOfWordForSearch(out, wordStart);
+        // Lower case of the whole string, like before, is locale and context sensitive, unlike of each char
+        String result = hasText ? out.toString().toLowerCase() : "";
+        if (out.capacity() > MAX_SEARCH_BUFFER_CAPACITY) {
+            SEARCH_BUFFER.remove();
+        }
+        return result;
+    }
+
+    private static final int MAX_SEARCH_BUFFER_CAPACITY = 64 * 1024;
+    private static final ThreadLocal<StringBuilder> SEARCH_BUFFER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(1024);
+        }
+    };
+
+    /** Characters of {@link #SPACES_REGEX} */
+    private static final String WORD_SEPARATORS = "[](){}\n'\"<>,:;";
+
+    private static boolean isWordSeparator(char c) {
+        return WORD_SEPARATORS.indexOf(c) >= 0 || c == ' ' || c == '\t' || c == '\013'
+                || c == '\f' || c == '\r';
+    }
+
+    /** @return new start of the current word */
+    private static int appendForSearch(StringBuilder out, int wordStart, char c) {
+        if (isWordSeparator(c)) {
+            return endOfWordForSearch(out, wordStart);
+        }
+        out.append(c);
+        return wordStart;
+    }
+
+    /**
+     * Applies {@link #PUNCTUATION_BEFORE_COMMA_REGEX} and the mentions / hashtags / groups duplication
+     * of {@link #normalizeWordsForSearch(String)} to the word, which starts at wordStart
+     * @return start of the next word
+     */
+    private static int endOfWordForSearch(StringBuilder out, int wordStart) {
+        int length = out.length();
+        while (length > wordStart && ".!?".indexOf(out.charAt(length - 1)) >= 0) {
+            length--;
+        }
+        out.setLength(length);
+        if (length == wordStart) {
+            return wordStart;
+        }
+        if (length - wordStart > 1 && isWordPrefix(out.charAt(wordStart)) && !isWordPrefix(out.charAt(wordStart + 1))) {
+            int nameEnd = wordStart + 2;
+            while (nameEnd < length && !isWordPrefix(out.charAt(nameEnd))) {
+                nameEnd++;
+            }
+            String word = out.substring(wordStart);
+            out.setLength(wordStart);
+            out.append(word, 1, nameEnd - wordStart).append(',').append(word);
+        }
+        out.append(',');
+        return out.length();
+    }
+
+    private static boolean isWordPrefix(char c) {
+        return c == '@' || c == '#' || c == '!';
+    }
+
+    /** @return index of '>' of the tag, starting at the position, or -1 if this is not a tag */
+    private static int tagEnd(String text, int start) {
+        if (start + 1 >= text.length()) {
+            return -1;
+        }
+        char c = text.charAt(start + 1);
+        if (!Character.isLetter(c) && c != '/' && c != '!') {
+            return -1;
+        }
+        return text.indexOf('>', start + 1);
+    }
+
+    /** Block level tags, which {@link Html#fromHtml(String)} turns into line breaks */
+    private static final Set<String> WORD_SEPARATING_TAGS = new HashSet<>(Arrays.asList(
+            "br", "p", "div", "li", "ul", "ol", "blockquote", "h1", "h2", "h3", "h4", "h5", "h6",
+            "tr", "td", "th", "table", "pre", "hr", "dd", "dt"));
+
+    private static boolean isWordSeparatingTag(String text, int tagStart, int tagEnd) {
+        int nameStart = tagStart + 1;
+        if (nameStart < tagEnd && text.charAt(nameStart) == '/') {
+            nameStart++;
+        }
+        int nameEnd = nameStart;
+        while (nameEnd < tagEnd && Character.isLetterOrDigit(text.charAt(nameEnd))) {
+            nameEnd++;
+        }
+        return WORD_SEPARATING_TAGS.contains(text.substring(nameStart, nameEnd).toLowerCase());
+    }
+
+    private static final int MAX_ENTITY_LENGTH = 10;
+    private static final Map<String, String> NAMED_ENTITIES = new HashMap<>();
+    static {
+        for (String[][] entities : new String[][][]{EntityArrays.BASIC_UNESCAPE(),
+                EntityArrays.ISO8859_1_UNESCAPE(), EntityArrays.HTML40_EXTENDED_UNESCAPE(),
+                EntityArrays.APOS_UNESCAPE()}) {
+            for (String[] entity : entities) {
+                NAMED_ENTITIES.put(entity[0], entity[1]);
+            }
+        }
+    }
+
+    /** @return null if this is not a known entity */
+    private static String decodeEntity(String entity) {
+        if (entity.length() > 3 && entity.charAt(1) == '#') {
+            try {
+                boolean hex = entity.charAt(2) == 'x' || entity.charAt(2) == 'X';
+                int codePoint = Integer.parseInt(entity.substring(hex ? 3 : 2, entity.length() - 1), hex ? 16 : 10);
+                return new String(Character.toChars(codePoint));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        return NAMED_ENTITIES.get(entity);
     }
 
     /** Strips HTML markup from the String */
@@ -493,6 +493,7 @@ public class MyLog {
             synchronized (logFileLock) {
                 logFileName = null;
             }
+            logFileAppender.close();
         }
     }
 
@@ -511,7 +512,7 @@ public class MyLog {
         }
     }
     
-    private static Object logFileWriterLock = new Object();
+    private static final LogFileAppender logFileAppender = new LogFileAppender();
     static void logToFile(int logLevel, String tag, String msg, Throwable tr) {
         if(!isLogToFileEnabled()) {
             return;
@@ -534,25 +535,15 @@ public class MyLog {
             builder.append(getStackTrace(tr));
         }
         builder.append("\n");
-        writeRawStringToLogFile(builder);
-    }
-
-    private static void writeRawStringToLogFile(StringBuilder builder)
-    {
-        synchronized (logFileWriterLock)
-        {
-            writeStringToFile(builder.toString(), getMostRecentLogFileName(),
-                              true, false);
-        }
-    }
-    
-    private static String getMostRecentLogFileName() {
         String filename = getLogFilename();
-        if (!FileUtils.exists(getFileInLogDir(filename, false))) {
-            setNextLogFileName(true);
-            filename = getLogFilename();
+        if (filename != null) {
+            logFileAppender.append(logLevel, filename, builder.toString());
         }
-        return filename;
+    }
+
+    /** Writes queued log lines to the log file, see {@link LogFileAppender} */
+    public static void flushLogFile() {
+        logFileAppender.flushNow();
     }
     
     public static String getLogFilename() {